@@ -0,0 +1,60 @@
+#!/bin/bash
+# HTTP接口压测脚本（对本机运行的无界面服务模式）
+#
+# 先启动服务（内存数据库即可，无需MySQL）：
+#   java -Dhealth.storage=memory -Dhealth.http.port=8080 -cp classes Main --headless
+# 再执行：
+#   scripts/api-loadtest.sh [并发数] [每个并发的请求数] [接口路径]
+# 例如：
+#   scripts/api-loadtest.sh 50 200 /api/daily-records
+#
+# 每个并发用一个curl进程顺序发出全部请求，curl在同一进程内复用keep-alive连接；
+# 请求带Accept-Encoding: gzip，并统计304（ETag命中）的比例
+
+CONCURRENCY=${1:-20}
+REQUESTS=${2:-100}
+API_PATH=${3:-/api/daily-records}
+BASE_URL=${BASE_URL:-http://localhost:8080}
+USERNAME=${USERNAME:-root}
+PASSWORD=${PASSWORD:-123456}
+
+TOKEN=$(curl -s -X POST -d "username=${USERNAME}&password=${PASSWORD}" "${BASE_URL}/api/login" \
+    | sed -n 's/.*"token":"\([^"]*\)".*/\1/p')
+if [ -z "$TOKEN" ]; then
+    echo "登录失败，请确认服务已启动: ${BASE_URL}"
+    exit 1
+fi
+
+# 取一次ETag，用于条件请求
+ETAG=$(curl -s -D - -o /dev/null -H "Authorization: Bearer ${TOKEN}" "${BASE_URL}${API_PATH}" \
+    | sed -n 's/^[Ee][Tt]ag: *\(.*\)\r$/\1/p')
+
+WORKDIR=$(mktemp -d)
+trap 'rm -rf "$WORKDIR"' EXIT
+
+worker() {
+    local id=$1
+    local urls=()
+    for ((i = 0; i < REQUESTS; i++)); do
+        urls+=(-o /dev/null "${BASE_URL}${API_PATH}")
+    done
+    curl -s --compressed -H "Authorization: Bearer ${TOKEN}" -H "If-None-Match: ${ETAG}" \
+        -w '%{http_code} %{time_total}\n' "${urls[@]}" > "${WORKDIR}/${id}.log"
+}
+
+echo "并发: ${CONCURRENCY}，每并发请求: ${REQUESTS}，接口: ${API_PATH}"
+START=$(date +%s.%N)
+for ((c = 0; c < CONCURRENCY; c++)); do
+    worker "$c" &
+done
+wait
+END=$(date +%s.%N)
+
+cat "${WORKDIR}"/*.log | sort -k2 -n | awk -v start="$START" -v end="$END" '
+    { codes[$1]++; t[NR] = $2 }
+    END {
+        elapsed = end - start
+        printf "总请求: %d，耗时: %.2f秒，吞吐: %.0f请求/秒\n", NR, elapsed, NR / elapsed
+        printf "延迟 p50: %.1fms  p95: %.1fms  p99: %.1fms\n", t[int(NR*0.5)]*1000, t[int(NR*0.95)]*1000, t[int(NR*0.99)]*1000
+        for (c in codes) printf "状态码 %s: %d\n", c, codes[c]
+    }'
@@ -2,13 +2,37 @@ import ui.MainWindow;
 import ui.dialog.LoginDialog;
 import service.DatabaseManager;
 import service.SessionManager;
+import service.HeadlessService;
+import service.PasswordHasher;
+import service.OfflineJournal;
+import service.PlanCompletionQueue;
 import javax.swing.SwingUtilities;
 
 public class Main {
     public static void main(String[] args) {
+        // 无界面服务模式：java Main --headless（或 -Dhealth.headless=true）
+        boolean headless = Boolean.getBoolean("health.headless") || java.util.Arrays.asList(args).contains("--headless");
+        if (headless) {
+            System.setProperty("java.awt.headless", "true");
+        }
+        
+        // 按本机性能校准密码哈希强度
+        PasswordHasher.calibrate();
+        
         // 启动主窗口前初始化数据库，自动建表
         DatabaseManager.initializeDatabase();
         
+        // 补写上次退出前未写入数据库的运动计划完成状态
+        PlanCompletionQueue.recover();
+        
+        // 补写上次数据库不可用期间记入离线日志的新增记录
+        OfflineJournal.recover();
+        
+        if (headless) {
+            HeadlessService.run();
+            return;
+        }
+        
         // 设置Look and Feel
         try {
             javax.swing.UIManager.setLookAndFeel(javax.swing.UIManager.getSystemLookAndFeelClassName());
@@ -0,0 +1,701 @@
+package api;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import model.DailyRecord;
+import model.DietRecord;
+import model.ExercisePlan;
+import model.HealthStats;
+import model.UserProfile;
+import model.WeightPoint;
+import service.CohortReport;
+import service.DatabaseManager;
+import service.HealthScorer;
+import service.JsonReader;
+import service.JsonWriter;
+import service.LoginThrottle;
+import service.ModelJson;
+import service.PopulationStats;
+import service.SaveResult;
+import service.SearchIndex;
+import service.SessionRegistry;
+import service.UserSession;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 内嵌HTTP/JSON接口（基于JDK自带的com.sun.net.httpserver）
+ * 供Web、移动端等瘦客户端共用同一后端，数据读写全部复用DatabaseManager
+ *
+ * 接口（除登录外均需请求头 Authorization: Bearer 令牌）：
+ * POST /api/login            表单参数username、password，返回令牌；尝试过于频繁或账户被锁定时返回429（带Retry-After），在线会话数已达上限或密码校验繁忙时返回503（带Retry-After）
+ * POST /api/logout           注销当前令牌
+ * GET  /api/profiles         管理员返回全部档案，普通用户只返回自己的档案
+ * POST /api/profiles         保存档案（经UserProfile.validateProfile校验）；须带GET返回的version，
+ *                            档案已被他人修改时返回409及当前档案
+ * GET  /api/daily-records    每日记录，管理员可用?user=指定用户
+ * POST /api/daily-records    新增每日记录（经DailyRecord.validateRecord校验）
+ * GET  /api/exercise-plans   运动计划
+ * GET  /api/diet-records     饮食记录
+ * GET  /api/analytics        体重、BMI、运动完成率等汇总
+ * GET  /api/health-score     最近30天（health.score.days）的目标达成进度、健康评分（A/B/C/D）和建议，管理员可用?user=指定用户
+ * GET  /api/health-scores    全部用户的目标达成进度和健康评分（仅管理员），数据未变化的用户取缓存
+ * GET  /api/population       人群BMI、每周运动分钟数、睡眠的p10/p50/p90（仅管理员），?by=all|gender|age|goal
+ * GET  /api/cohort-report    全体用户最近?days=天（默认30，1到3650）的健康/运动/饮食统计及汇总、各阶段耗时（仅管理员）
+ * GET  /api/search           全文检索每日记录、饮食记录、运动计划，?q=查询（语法见SearchIndex）&limit=条数（默认50），
+ *                            按日期从新到旧排列，管理员可用?user=指定用户
+ *
+ * 保存类接口的请求体可以是表单，也可以是JSON（Content-Type: application/json，格式同GET返回的对象）
+ *
+ * 连接保持HTTP/1.1 keep-alive（响应均带Content-Length）；客户端声明Accept-Encoding: gzip且响应较大时压缩；
+ * GET响应带ETag，If-None-Match命中时返回304
+ *
+ * 请求在固定大小的线程池中处理，排队已满时直接返回503（带Retry-After），不占用接收连接的线程
+ *
+ * 配置（系统属性）：
+ * -Dhealth.http.threads=32   处理线程数
+ * -Dhealth.http.queue=1000   排队上限
+ */
+public class HttpApiServer {
+
+    /**
+     * 超过该字节数的响应才压缩，小响应压缩得不偿失
+     */
+    private static final int GZIP_MIN_BYTES = 1024;
+    private static final int THREADS = Integer.getInteger("health.http.threads", 32);
+    private static final int QUEUE_CAPACITY = Integer.getInteger("health.http.queue", 1000);
+
+    private static HttpServer server;
+    private static ThreadPoolExecutor executor;
+    private static CountDownLatch stopped;
+
+    private HttpApiServer() {}
+
+    /**
+     * 启动服务
+     *
+     * @param port 监听端口
+     * @return 启动成功返回true
+     */
+    public static synchronized boolean start(int port) {
+        if (server != null) return true;
+        try {
+            server = HttpServer.create(new InetSocketAddress(port), 0);
+        } catch (IOException e) {
+            System.err.println("HTTP服务启动失败: " + e.getMessage());
+            return false;
+        }
+        // 数据库访问是阻塞调用，用固定大小线程池；接收线程只负责把请求交给线程池，队列满时直接拒绝
+        AtomicInteger seq = new AtomicInteger();
+        executor = new ThreadPoolExecutor(THREADS, THREADS, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(QUEUE_CAPACITY),
+                r -> new Thread(r, "http-api-" + seq.incrementAndGet()),
+                new ThreadPoolExecutor.AbortPolicy());
+        ThreadPoolExecutor workers = executor;
+        server.createContext("/api/", ex -> dispatch(ex, workers));
+        server.start();
+        stopped = new CountDownLatch(1);
+        System.out.println("HTTP接口已启动: http://localhost:" + port + "/api/");
+        return true;
+    }
+
+    /**
+     * 停止服务
+     */
+    public static synchronized void stop() {
+        if (server == null) return;
+        server.stop(1);
+        executor.shutdown();
+        server = null;
+        executor = null;
+        stopped.countDown();
+        System.out.println("HTTP接口已停止");
+    }
+
+    public static synchronized boolean isRunning() {
+        return server != null;
+    }
+
+    /**
+     * 阻塞直到服务停止
+     */
+    public static void awaitStop() throws InterruptedException {
+        CountDownLatch latch;
+        synchronized (HttpApiServer.class) {
+            latch = stopped;
+        }
+        if (latch != null) latch.await();
+    }
+
+    // ==================== 请求分发 ====================
+
+    /**
+     * 在接收线程上执行：把请求交给线程池，排队已满时返回503
+     */
+    private static void dispatch(HttpExchange ex, ThreadPoolExecutor workers) throws IOException {
+        try {
+            workers.execute(() -> {
+                try {
+                    handle(ex);
+                } catch (IOException e) {
+                    System.err.println("HTTP响应发送失败: " + e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            try {
+                ex.getResponseHeaders().set("Retry-After", "1");
+                sendError(ex, 503, "服务器繁忙，请稍后再试");
+            } finally {
+                ex.close();
+            }
+        }
+    }
+
+    private static void handle(HttpExchange ex) throws IOException {
+        try {
+            String path = ex.getRequestURI().getPath();
+            String method = ex.getRequestMethod();
+            if ("/api/login".equals(path) && "POST".equals(method)) {
+                login(ex);
+                return;
+            }
+            UserSession session = SessionRegistry.get(bearerToken(ex));
+            if (session == null) {
+                sendError(ex, 401, "未登录或会话已超时");
+                return;
+            }
+            switch (method + " " + path) {
+                case "POST /api/logout":
+                    SessionRegistry.logout(session.getToken());
+                    sendOk(ex);
+                    break;
+                case "GET /api/profiles":
+                    getProfiles(ex, session);
+                    break;
+                case "POST /api/profiles":
+                    saveProfile(ex, session);
+                    break;
+                case "GET /api/daily-records":
+                    withUser(ex, session, (w, name) -> ModelJson.writeDailyRecords(w, DatabaseManager.getDailyRecordsByUser(name)));
+                    break;
+                case "POST /api/daily-records":
+                    addDailyRecord(ex, session);
+                    break;
+                case "GET /api/exercise-plans":
+                    withUser(ex, session, (w, name) -> ModelJson.writeExercisePlans(w, DatabaseManager.getExercisePlansByUser(name)));
+                    break;
+                case "GET /api/diet-records":
+                    withUser(ex, session, (w, name) -> ModelJson.writeDietRecords(w, DatabaseManager.getDietRecordsByUser(name)));
+                    break;
+                case "GET /api/analytics":
+                    withUser(ex, session, HttpApiServer::analytics);
+                    break;
+                case "GET /api/health-score":
+                    withUser(ex, session, HttpApiServer::healthScore);
+                    break;
+                case "GET /api/health-scores":
+                    healthScores(ex, session);
+                    break;
+                case "GET /api/population":
+                    population(ex, session);
+                    break;
+                case "GET /api/cohort-report":
+                    cohortReport(ex, session);
+                    break;
+                case "GET /api/search":
+                    search(ex, session);
+                    break;
+                default:
+                    sendError(ex, 404, "接口不存在: " + method + " " + path);
+            }
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            sendError(ex, 500, "服务器内部错误");
+        } finally {
+            ex.close();
+        }
+    }
+
+    private static void login(HttpExchange ex) throws IOException {
+        Map<String, String> form = parseForm(readBody(ex));
+        String username = form.get("username");
+        SessionRegistry.LoginResult result = SessionRegistry.login(username, form.get("password"),
+                ex.getRemoteAddress().getAddress().getHostAddress());
+        if (!result.isSuccess()) {
+            if (result.isThrottled()) {
+                ex.getResponseHeaders().set("Retry-After",
+                        String.valueOf(username != null ? LoginThrottle.retryAfterSeconds(username) : 1));
+                sendError(ex, 429, result.getMessage());
+            } else if (result.isSessionLimit() || result.isBusy()) {
+                ex.getResponseHeaders().set("Retry-After", "1");
+                sendError(ex, 503, result.getMessage());
+            } else {
+                sendError(ex, 401, result.getMessage());
+            }
+            return;
+        }
+        UserSession session = result.getSession();
+        JsonWriter w = JsonWriter.local().beginObject()
+                .name("token").value(session.getToken())
+                .name("username").value(session.getUser().getUsername())
+                .name("role").value(session.getUser().getRole())
+                .endObject();
+        sendJson(ex, 200, w);
+    }
+
+    private static void getProfiles(HttpExchange ex, UserSession session) throws IOException {
+        List<UserProfile> profiles;
+        if (session.isAdmin()) {
+            profiles = DatabaseManager.getAllUserProfiles();
+        } else {
+            UserProfile own = DatabaseManager.getUserProfileByName(ownName(session));
+            profiles = own != null ? List.of(own) : List.of();
+        }
+        JsonWriter w = JsonWriter.local();
+        ModelJson.writeProfiles(w, profiles);
+        sendJson(ex, 200, w);
+    }
+
+    private static void saveProfile(HttpExchange ex, UserSession session) throws IOException {
+        UserProfile profile;
+        try {
+            profile = isJson(ex) ? ModelJson.readProfile(new JsonReader(readBytes(ex))) : profileFromForm(parseForm(readBody(ex)));
+        } catch (IllegalArgumentException e) {
+            sendError(ex, 400, "参数格式错误: " + e.getMessage());
+            return;
+        }
+        if (!session.isAdmin() || profile.getName() == null) {
+            profile.setName(ownName(session));
+        }
+        UserProfile.ValidationResult result = profile.validateProfile();
+        if (!result.isValid()) {
+            sendError(ex, 400, result.getMessage());
+            return;
+        }
+        SaveResult<UserProfile> saved = DatabaseManager.saveUserProfile(profile);
+        if (saved.isConflict()) {
+            // 版本号过期：返回数据库中的当前档案，由客户端合并后带新版本号重试
+            JsonWriter w = JsonWriter.local().beginObject()
+                    .name("error").value(saved.getMessage())
+                    .name("current");
+            ModelJson.write(w, saved.getCurrent());
+            sendJson(ex, 409, w.endObject());
+            return;
+        }
+        if (!saved.isSuccess()) {
+            sendError(ex, 500, "保存档案失败");
+            return;
+        }
+        if (profile.getName().equals(ownName(session))) {
+            session.setProfile(profile);
+        }
+        sendOk(ex);
+    }
+
+    private static UserProfile profileFromForm(Map<String, String> form) {
+        UserProfile profile = new UserProfile();
+        profile.setName(form.get("name"));
+        profile.setAge(Integer.parseInt(form.getOrDefault("age", "0")));
+        profile.setGender(form.get("gender"));
+        profile.setHeight(Double.parseDouble(form.getOrDefault("height", "0")));
+        profile.setWeight(Double.parseDouble(form.getOrDefault("weight", "0")));
+        profile.setTargetWeight(Double.parseDouble(form.getOrDefault("targetWeight", "0")));
+        profile.setFitnessGoal(form.get("fitnessGoal"));
+        profile.setHealthStatus(form.get("healthStatus"));
+        profile.setHealthNotes(form.get("healthNotes"));
+        profile.setPhone(form.get("phone"));
+        profile.setVersion(Integer.parseInt(form.getOrDefault("version", "0")));
+        return profile;
+    }
+
+    private static void addDailyRecord(HttpExchange ex, UserSession session) throws IOException {
+        DailyRecord record;
+        try {
+            record = isJson(ex) ? ModelJson.readDailyRecord(new JsonReader(readBytes(ex))) : dailyRecordFromForm(parseForm(readBody(ex)));
+        } catch (IllegalArgumentException | java.time.DateTimeException e) {
+            sendError(ex, 400, "参数格式错误: " + e.getMessage());
+            return;
+        }
+        String name = targetUser(session, record.getUserName());
+        if (name == null) {
+            sendError(ex, 403, "无权访问其他用户的数据");
+            return;
+        }
+        record.setUserName(name);
+        if (record.getDate() == null) {
+            record.setDate(LocalDate.now());
+        }
+        DailyRecord.ValidationResult result = record.validateRecord();
+        if (!result.isValid()) {
+            sendError(ex, 400, result.getMessage());
+            return;
+        }
+        if (!DatabaseManager.saveDailyRecord(record)) {
+            sendError(ex, 409, "保存失败（该日期可能已有记录）");
+            return;
+        }
+        sendOk(ex);
+    }
+
+    private static DailyRecord dailyRecordFromForm(Map<String, String> form) {
+        DailyRecord record = new DailyRecord();
+        record.setUserName(form.get("user"));
+        if (form.containsKey("date")) {
+            record.setDate(LocalDate.parse(form.get("date")));
+        }
+        record.setWeight(Double.parseDouble(form.getOrDefault("weight", "0")));
+        record.setExerciseDuration(Double.parseDouble(form.getOrDefault("exerciseDuration", "0")));
+        record.setSleepDuration(Double.parseDouble(form.getOrDefault("sleepDuration", "0")));
+        record.setExercise(form.get("exercise"));
+        record.setMood(form.get("mood"));
+        record.setNote(form.get("note"));
+        return record;
+    }
+
+    /**
+     * 汇总统计：最新体重与BMI、体重变化、运动完成率、饮食记录天数
+     */
+    private static void analytics(JsonWriter w, String name) {
+        UserProfile profile = DatabaseManager.getUserProfileByName(name);
+        List<WeightPoint> weights = DatabaseManager.getWeightPointsByUser(name);
+        List<ExercisePlan> plans = DatabaseManager.getExercisePlansByUser(name);
+        List<DietRecord> diets = DatabaseManager.getDietRecordsByUser(name);
+
+        w.beginObject().name("userName").value(name);
+        if (profile != null && !weights.isEmpty()) {
+            WeightPoint latest = weights.get(weights.size() - 1);
+            UserProfile current = new UserProfile();
+            current.setHeight(profile.getHeight());
+            current.setWeight(latest.getWeight());
+            w.name("latestWeight").value(latest.getWeight())
+             .name("latestDate").value(latest.getDate())
+             .name("bmi").value(current.calculateBMI())
+             .name("bmiCategory").value(current.getBMICategory())
+             .name("weightChange").value(latest.getWeight() - profile.getWeight());
+        }
+        int completed = 0;
+        for (ExercisePlan p : plans) {
+            if (p.isCompleted()) completed++;
+        }
+        w.name("dailyRecordCount").value(weights.size())
+         .name("planCount").value(plans.size())
+         .name("planCompleted").value(completed)
+         .name("planCompletionRate").value(plans.isEmpty() ? 0.0 : completed * 100.0 / plans.size())
+         .name("dietRecordCount").value(diets.size());
+        w.endObject();
+    }
+
+    /**
+     * 健康评分：目标达成进度、评分和建议（HealthScorer缓存）
+     */
+    private static void healthScore(JsonWriter w, String name) {
+        HealthStats stats = HealthScorer.score(DatabaseManager.getUserProfileByName(name));
+        w.beginObject().name("userName").value(name);
+        if (stats != null) {
+            writeScore(w, stats);
+            w.name("recommendations").beginArray();
+            for (String r : stats.getRecommendations()) w.value(r);
+            w.endArray();
+        }
+        w.endObject();
+    }
+
+    private static void healthScores(HttpExchange ex, UserSession session) throws IOException {
+        if (!session.isAdmin()) {
+            sendError(ex, 403, "仅管理员可查看全部用户评分");
+            return;
+        }
+        JsonWriter w = JsonWriter.local().beginObject().name("users").beginArray();
+        for (Map.Entry<String, HealthStats> e : HealthScorer.scoreAll(DatabaseManager.getAllUserProfiles()).entrySet()) {
+            w.beginObject().name("userName").value(e.getKey());
+            writeScore(w, e.getValue());
+            w.name("recommendationCount").value(e.getValue().getRecommendations().size()).endObject();
+        }
+        sendJson(ex, 200, w.endArray().endObject());
+    }
+
+    private static void writeScore(JsonWriter w, HealthStats stats) {
+        w.name("start").value(stats.getStartDate())
+         .name("end").value(stats.getEndDate())
+         .name("healthScore").value(stats.getHealthScore())
+         .name("goalProgress").value(stats.getGoalProgress())
+         .name("bmi").value(stats.getCurrentBMI())
+         .name("bmiStatus").value(stats.getBmiStatus())
+         .name("exerciseCompletionRate").value(stats.getExerciseCompletionRate())
+         .name("dietDays").value(stats.getDietRecordFrequency());
+    }
+
+    private static void population(HttpExchange ex, UserSession session) throws IOException {
+        if (!session.isAdmin()) {
+            sendError(ex, 403, "仅管理员可查看人群分布");
+            return;
+        }
+        String by = parseForm(ex.getRequestURI().getRawQuery()).getOrDefault("by", PopulationStats.BY_ALL);
+        List<PopulationStats.Cohort> cohorts = PopulationStats.cohorts(by);
+        JsonWriter w = JsonWriter.local().beginObject()
+                .name("by").value(by)
+                .name("rows").value(PopulationStats.rows())
+                .name("builtAt").value(PopulationStats.builtAt())
+                .name("cohorts").beginArray();
+        for (PopulationStats.Cohort c : cohorts) {
+            w.beginObject().name("name").value(c.getName()).name("users").value(c.getUsers());
+            for (String metric : new String[]{PopulationStats.METRIC_BMI,
+                    PopulationStats.METRIC_WEEKLY_EXERCISE_MINUTES, PopulationStats.METRIC_SLEEP}) {
+                double[] p = c.percentiles(metric);
+                w.name(metric).beginObject().name("count").value(c.count(metric));
+                if (!Double.isNaN(p[1])) {
+                    w.name("p10").value(p[0]).name("p50").value(p[1]).name("p90").value(p[2]);
+                }
+                w.endObject();
+            }
+            w.endObject();
+        }
+        sendJson(ex, 200, w.endArray().endObject());
+    }
+
+    private static void cohortReport(HttpExchange ex, UserSession session) throws IOException {
+        if (!session.isAdmin()) {
+            sendError(ex, 403, "仅管理员可查看全体用户报表");
+            return;
+        }
+        int days;
+        try {
+            days = Integer.parseInt(parseForm(ex.getRequestURI().getRawQuery()).getOrDefault("days", "30"));
+        } catch (NumberFormatException e) {
+            sendError(ex, 400, "days必须是整数");
+            return;
+        }
+        if (days < 1 || days > CohortReport.MAX_DAYS) {
+            sendError(ex, 400, "days必须在1到" + CohortReport.MAX_DAYS + "之间");
+            return;
+        }
+        CohortReport.Result r = CohortReport.lastDays(days);
+        CohortReport.Totals t = r.getTotals();
+        JsonWriter w = JsonWriter.local().beginObject()
+                .name("start").value(r.getStart())
+                .name("end").value(r.getEnd())
+                .name("totals").beginObject()
+                .name("users").value(t.getUsers())
+                .name("averageBmi").value(t.getAverageBmi())
+                .name("totalPlans").value(t.getTotalPlans())
+                .name("completedPlans").value(t.getCompletedPlans())
+                .name("completionRate").value(t.getCompletionRate())
+                .name("actualHours").value(t.getActualHours())
+                .name("dietDays").value(t.getDietDays())
+                .name("grades").beginObject();
+        for (Map.Entry<String, Integer> e : t.getGradeDistribution().entrySet()) w.name(e.getKey()).value(e.getValue());
+        w.endObject().name("bmiLevels").beginObject();
+        for (Map.Entry<String, Integer> e : t.getBmiDistribution().entrySet()) w.name(e.getKey()).value(e.getValue());
+        w.endObject().endObject()
+         .name("timings").beginObject()
+         .name("loadMillis").value(r.getLoadMillis())
+         .name("loadedRows").value(r.getLoadedRows())
+         .name("computeMillis").value(r.getComputeMillis())
+         .name("mergeMillis").value(r.getMergeMillis())
+         .name("threads").value(r.getThreads())
+         .endObject()
+         .name("users").beginArray();
+        for (CohortReport.Row row : r.getRows()) {
+            w.beginObject()
+             .name("name").value(row.getProfile().getName())
+             .name("healthScore").value(row.getHealth().getHealthScore())
+             .name("bmi").value(row.getHealth().getCurrentBMI())
+             .name("bmiStatus").value(row.getHealth().getBmiStatus())
+             .name("weightChange").value(row.getHealth().getWeightChange())
+             .name("completionRate").value(row.getExercise().getCompletionRate())
+             .name("dietDays").value(row.getDiet().getDaysWithRecords())
+             .endObject();
+        }
+        sendJson(ex, 200, w.endArray().endObject());
+    }
+
+    private static void search(HttpExchange ex, UserSession session) throws IOException {
+        Map<String, String> params = parseForm(ex.getRequestURI().getRawQuery());
+        String name = targetUser(session, params.get("user"));
+        if (name == null) {
+            sendError(ex, 403, "无权访问其他用户的数据");
+            return;
+        }
+        String q = params.get("q");
+        if (q == null || q.trim().isEmpty()) {
+            sendError(ex, 400, "缺少查询参数q");
+            return;
+        }
+        int limit;
+        try {
+            limit = Integer.parseInt(params.getOrDefault("limit", "50"));
+        } catch (NumberFormatException e) {
+            sendError(ex, 400, "limit必须是整数");
+            return;
+        }
+        JsonWriter w = JsonWriter.local().beginObject()
+                .name("userName").value(name)
+                .name("query").value(q)
+                .name("hits").beginArray();
+        for (SearchIndex.Hit hit : SearchIndex.search(name, q, limit)) {
+            w.beginObject()
+             .name("type").value(hit.getTypeName())
+             .name("id").value(hit.getId())
+             .name("date").value(hit.getDate())
+             .name("text").value(hit.getText())
+             .endObject();
+        }
+        sendJson(ex, 200, w.endArray().endObject());
+    }
+
+    // ==================== 工具方法 ====================
+
+    @FunctionalInterface
+    private interface UserQuery {
+        void write(JsonWriter w, String userName);
+    }
+
+    /**
+     * 解析?user=参数并做权限检查后执行查询
+     */
+    private static void withUser(HttpExchange ex, UserSession session, UserQuery query) throws IOException {
+        String name = targetUser(session, parseForm(ex.getRequestURI().getRawQuery()).get("user"));
+        if (name == null) {
+            sendError(ex, 403, "无权访问其他用户的数据");
+            return;
+        }
+        JsonWriter w = JsonWriter.local();
+        query.write(w, name);
+        sendJson(ex, 200, w);
+    }
+
+    /**
+     * 管理员可访问任意用户，普通用户只能访问自己
+     *
+     * @return 目标用户名，无权限返回null
+     */
+    private static String targetUser(UserSession session, String requested) {
+        String own = ownName(session);
+        if (requested == null || requested.isEmpty() || requested.equals(own)) return own;
+        return session.isAdmin() ? requested : null;
+    }
+
+    /**
+     * 会话用户自己的档案名（档案以用户名命名）
+     */
+    private static String ownName(UserSession session) {
+        UserProfile profile = session.getProfile();
+        return profile != null ? profile.getName() : session.getUser().getUsername();
+    }
+
+    private static String bearerToken(HttpExchange ex) {
+        String auth = ex.getRequestHeaders().getFirst("Authorization");
+        if (auth != null && auth.startsWith("Bearer ")) {
+            return auth.substring(7).trim();
+        }
+        return null;
+    }
+
+    private static byte[] readBytes(HttpExchange ex) throws IOException {
+        try (InputStream in = ex.getRequestBody()) {
+            return in.readAllBytes();
+        }
+    }
+
+    private static String readBody(HttpExchange ex) throws IOException {
+        return new String(readBytes(ex), StandardCharsets.UTF_8);
+    }
+
+    private static boolean isJson(HttpExchange ex) {
+        String type = ex.getRequestHeaders().getFirst("Content-Type");
+        return type != null && type.startsWith("application/json");
+    }
+
+    /**
+     * 解析application/x-www-form-urlencoded格式（请求体或查询串）
+     */
+    private static Map<String, String> parseForm(String s) {
+        Map<String, String> map = new HashMap<>();
+        if (s == null || s.isEmpty()) return map;
+        for (String pair : s.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq <= 0) continue;
+            map.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                    URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+        }
+        return map;
+    }
+
+    private static void sendOk(HttpExchange ex) throws IOException {
+        sendJson(ex, 200, JsonWriter.local().beginObject().name("ok").value(true).endObject());
+    }
+
+    private static void sendError(HttpExchange ex, int status, String message) throws IOException {
+        sendJson(ex, status, JsonWriter.local().beginObject().name("error").value(message).endObject());
+    }
+
+    /**
+     * 发送JSON响应：GET请求计算ETag并处理If-None-Match，按需gzip压缩，始终带Content-Length以保持连接
+     */
+    private static void sendJson(HttpExchange ex, int status, JsonWriter json) throws IOException {
+        byte[] body = json.buffer();
+        int length = json.size();
+        Headers headers = ex.getResponseHeaders();
+        headers.set("Content-Type", "application/json; charset=utf-8");
+        if (status == 200 && "GET".equals(ex.getRequestMethod())) {
+            String etag = etag(body, length);
+            headers.set("ETag", etag);
+            headers.set("Cache-Control", "private, no-cache");
+            if (etag.equals(ex.getRequestHeaders().getFirst("If-None-Match"))) {
+                ex.sendResponseHeaders(304, -1);
+                return;
+            }
+        }
+        if (length >= GZIP_MIN_BYTES && acceptsGzip(ex)) {
+            body = gzip(body, length);
+            length = body.length;
+            headers.set("Content-Encoding", "gzip");
+        }
+        headers.set("Vary", "Accept-Encoding");
+        ex.sendResponseHeaders(status, length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(body, 0, length);
+        }
+    }
+
+    /**
+     * 以未压缩内容的长度和CRC32作为弱ETag（gzip与否内容语义相同，共用同一个ETag）
+     */
+    private static String etag(byte[] body, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(body, 0, length);
+        return "W/\"" + Integer.toHexString(length) + "-" + Long.toHexString(crc.getValue()) + "\"";
+    }
+
+    private static boolean acceptsGzip(HttpExchange ex) {
+        String accept = ex.getRequestHeaders().getFirst("Accept-Encoding");
+        return accept != null && accept.contains("gzip");
+    }
+
+    private static byte[] gzip(byte[] data, int length) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(length / 4 + 64);
+        try (GZIPOutputStream gz = new GZIPOutputStream(bos)) {
+            gz.write(data, 0, length);
+        }
+        return bos.toByteArray();
+    }
+}
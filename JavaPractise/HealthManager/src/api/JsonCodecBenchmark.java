@@ -0,0 +1,131 @@
+package api;
+
+import model.DailyRecord;
+import service.JsonReader;
+import service.JsonWriter;
+import service.ModelJson;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * JSON编解码性能对比（手动运行）
+ * 对比基线（StringBuilder拼接 + DateTimeFormatter + String.getBytes）与JsonWriter/JsonReader
+ *
+ * 用法：
+ * java -cp classes api.JsonCodecBenchmark [记录数] [轮数]
+ *
+ * 项目没有构建工具，无法引入JMH，这里用预热后多轮计时取最好成绩的方式近似；
+ * 结果受JIT和GC影响，只用于同一台机器上的相对比较
+ */
+public class JsonCodecBenchmark {
+
+    private static final DateTimeFormatter DATE = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        List<DailyRecord> records = sampleRecords(count);
+
+        // 预热
+        long sink = 0;
+        for (int i = 0; i < rounds; i++) {
+            sink += baselineEncode(records).length;
+            sink += codecEncode(records);
+        }
+        JsonWriter writer = new JsonWriter();
+        ModelJson.writeDailyRecords(writer, records);
+        byte[] json = writer.toByteArray();
+        for (int i = 0; i < rounds; i++) {
+            sink += decode(json);
+        }
+
+        long baseline = best(rounds, () -> baselineEncode(records).length);
+        long codec = best(rounds, () -> codecEncode(records));
+        long decode = best(rounds, () -> decode(json));
+
+        System.out.println("记录数: " + count + "，JSON大小: " + json.length + "字节");
+        System.out.printf("编码 基线:      %8.1f 微秒/批%n", baseline / 1000.0);
+        System.out.printf("编码 JsonWriter: %8.1f 微秒/批（%.1f倍）%n", codec / 1000.0, (double) baseline / codec);
+        System.out.printf("解码 JsonReader: %8.1f 微秒/批%n", decode / 1000.0);
+        if (sink == 42) System.out.println();
+    }
+
+    @FunctionalInterface
+    private interface Task {
+        long run();
+    }
+
+    /**
+     * 多轮计时取最短耗时（纳秒）
+     */
+    private static long best(int rounds, Task task) {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < rounds; i++) {
+            long start = System.nanoTime();
+            task.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+
+    private static long codecEncode(List<DailyRecord> records) {
+        JsonWriter w = JsonWriter.local();
+        ModelJson.writeDailyRecords(w, records);
+        return w.size();
+    }
+
+    private static long decode(byte[] json) {
+        JsonReader r = new JsonReader(json);
+        long n = 0;
+        r.beginArray();
+        while (r.hasNext()) {
+            n += ModelJson.readDailyRecord(r).getId();
+        }
+        r.endArray();
+        return n;
+    }
+
+    /**
+     * 基线：常见的StringBuilder拼接写法
+     */
+    private static byte[] baselineEncode(List<DailyRecord> records) {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < records.size(); i++) {
+            DailyRecord r = records.get(i);
+            if (i > 0) sb.append(',');
+            sb.append("{\"id\":").append(r.getId())
+              .append(",\"userName\":\"").append(escape(r.getUserName())).append('"')
+              .append(",\"date\":\"").append(r.getDate().format(DATE)).append('"')
+              .append(",\"weight\":").append(String.valueOf(r.getWeight()))
+              .append(",\"exercise\":\"").append(escape(r.getExercise())).append('"')
+              .append(",\"exerciseDuration\":").append(String.valueOf(r.getExerciseDuration()))
+              .append(",\"sleepDuration\":").append(String.valueOf(r.getSleepDuration()))
+              .append(",\"mood\":\"").append(escape(r.getMood())).append('"')
+              .append(",\"note\":\"").append(escape(r.getNote())).append("\"}");
+        }
+        return sb.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String escape(String s) {
+        return s.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static List<DailyRecord> sampleRecords(int count) {
+        List<DailyRecord> list = new ArrayList<>(count);
+        LocalDate start = LocalDate.of(2024, 1, 1);
+        String[] exercises = {"跑步", "游泳", "骑行", "力量训练"};
+        String[] moods = {"很好", "好", "一般", "差"};
+        for (int i = 0; i < count; i++) {
+            DailyRecord r = new DailyRecord("用户" + (i % 50), start.plusDays(i % 700), 60 + (i % 300) / 10.0,
+                    exercises[i % exercises.length], (i % 4) * 0.5, 6 + (i % 5) * 0.5,
+                    moods[i % moods.length], "第" + i + "条记录");
+            r.setId(i + 1);
+            list.add(r);
+        }
+        return list;
+    }
+}
@@ -0,0 +1,105 @@
+package model;
+
+import java.util.Random;
+
+/**
+ * BMI计算与分级性能对比（手动运行）
+ * 对比逐行写法（Math.pow + if-else阶梯返回等级名称）、逐个调用Bmi.of/Bmi.category、
+ * Bmi.compute/Bmi.categorize按数组批量计算三种方式
+ *
+ * 用法：
+ * java -cp classes model.BmiBenchmark [数据量] [轮数]
+ *
+ * 与JsonCodecBenchmark相同，用预热后多轮计时取最好成绩的方式近似，只用于同一台机器上的相对比较
+ */
+public class BmiBenchmark {
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        double[] weights = new double[n];
+        double[] heights = new double[n];
+        // 固定种子的随机数据，等级分布无规律，贴近真实人群
+        Random random = new Random(42);
+        for (int i = 0; i < n; i++) {
+            weights[i] = 40 + random.nextDouble() * 80;
+            heights[i] = 150 + random.nextDouble() * 40;
+        }
+        double[] bmis = new double[n];
+        byte[] levels = new byte[n];
+        String[] names = new String[n];
+
+        // 预热
+        long sink = 0;
+        for (int i = 0; i < rounds; i++) {
+            sink += baseline(weights, heights, bmis, names, n);
+            sink += scalar(weights, heights, bmis, levels, n);
+            sink += batch(weights, heights, bmis, levels, n);
+        }
+
+        long baseline = best(rounds, () -> baseline(weights, heights, bmis, names, n));
+        long scalar = best(rounds, () -> scalar(weights, heights, bmis, levels, n));
+        long batch = best(rounds, () -> batch(weights, heights, bmis, levels, n));
+
+        System.out.println("数据量: " + n);
+        System.out.printf("逐行 Math.pow+阶梯: %8.1f 微秒/批，%7.1f 百万行/秒%n", baseline / 1000.0, n * 1000.0 / baseline);
+        System.out.printf("逐个 Bmi.of:        %8.1f 微秒/批，%7.1f 百万行/秒（%.1f倍）%n",
+                scalar / 1000.0, n * 1000.0 / scalar, (double) baseline / scalar);
+        System.out.printf("批量 Bmi.compute:   %8.1f 微秒/批，%7.1f 百万行/秒（%.1f倍）%n",
+                batch / 1000.0, n * 1000.0 / batch, (double) baseline / batch);
+        if (sink == 42) System.out.println();
+    }
+
+    @FunctionalInterface
+    private interface Task {
+        long run();
+    }
+
+    /**
+     * 多轮计时取最短耗时（纳秒）
+     */
+    private static long best(int rounds, Task task) {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < rounds; i++) {
+            long start = System.nanoTime();
+            task.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+
+    /**
+     * 基线：原先各处的逐行写法
+     */
+    private static long baseline(double[] weights, double[] heights, double[] bmis, String[] names, int n) {
+        long sum = 0;
+        for (int i = 0; i < n; i++) {
+            double bmi = weights[i] / Math.pow(heights[i] / 100, 2);
+            String name;
+            if (bmi < 18.5) name = "偏瘦";
+            else if (bmi < 24.0) name = "正常";
+            else if (bmi < 28.0) name = "超重";
+            else name = "肥胖";
+            bmis[i] = bmi;
+            names[i] = name;
+            sum += name.length();
+        }
+        return sum;
+    }
+
+    private static long scalar(double[] weights, double[] heights, double[] bmis, byte[] levels, int n) {
+        long sum = 0;
+        for (int i = 0; i < n; i++) {
+            bmis[i] = Bmi.of(weights[i], heights[i]);
+            levels[i] = (byte) Bmi.category(bmis[i]);
+            sum += levels[i];
+        }
+        return sum;
+    }
+
+    private static long batch(double[] weights, double[] heights, double[] bmis, byte[] levels, int n) {
+        Bmi.compute(weights, heights, bmis, n);
+        Bmi.categorize(bmis, levels, n);
+        return levels[n - 1];
+    }
+}
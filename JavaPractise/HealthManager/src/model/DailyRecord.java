@@ -14,6 +14,7 @@ public class DailyRecord implements Serializable {
     private double sleepDuration;    // 单位：小时
     private String mood;
     private String note;
+    private int version;             // 乐观锁版本号，每次更新加1
 
     public DailyRecord() {
         this.date = LocalDate.now();
@@ -49,6 +50,8 @@ public class DailyRecord implements Serializable {
     public void setMood(String mood) { this.mood = mood; }
     public String getNote() { return note; }
     public void setNote(String note) { this.note = note; }
+    public int getVersion() { return version; }
+    public void setVersion(int version) { this.version = version; }
     
     // ==================== 数据校验方法 ====================
     
@@ -1,5 +1,6 @@
 package model;
 
+import java.io.Serializable;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 
@@ -7,7 +8,8 @@ import java.time.LocalDateTime;
  * 饮食记录数据模型类
  * 用于存储和管理用户的饮食记录信息
  */
-public class DietRecord {
+public class DietRecord implements Serializable {
+    private static final long serialVersionUID = 1L;
     private int id;
     private String userName;
     private LocalDate recordDate;
@@ -17,6 +19,11 @@ public class DietRecord {
     private String notes;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
+    private int version; // 乐观锁版本号，每次更新加1
+    // 三餐解析后的食物编号（FoodDictionary），首次读取时解析，修改该餐时清空
+    private transient int[] breakfastFoods;
+    private transient int[] lunchFoods;
+    private transient int[] dinnerFoods;
 
     // 构造方法
     public DietRecord() {
@@ -41,13 +48,13 @@ public class DietRecord {
     public void setRecordDate(LocalDate recordDate) { this.recordDate = recordDate; }
 
     public String getBreakfast() { return breakfast; }
-    public void setBreakfast(String breakfast) { this.breakfast = breakfast; }
+    public void setBreakfast(String breakfast) { this.breakfast = breakfast; this.breakfastFoods = null; }
 
     public String getLunch() { return lunch; }
-    public void setLunch(String lunch) { this.lunch = lunch; }
+    public void setLunch(String lunch) { this.lunch = lunch; this.lunchFoods = null; }
 
     public String getDinner() { return dinner; }
-    public void setDinner(String dinner) { this.dinner = dinner; }
+    public void setDinner(String dinner) { this.dinner = dinner; this.dinnerFoods = null; }
 
     public String getNotes() { return notes; }
     public void setNotes(String notes) { this.notes = notes; }
@@ -58,6 +65,27 @@ public class DietRecord {
     public LocalDateTime getUpdatedAt() { return updatedAt; }
     public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
 
+    public int getVersion() { return version; }
+    public void setVersion(int version) { this.version = version; }
+
+    /**
+     * 早餐的食物编号（见FoodDictionary.parseMeal），未填写或"无安排"为空数组；返回的数组不要修改
+     */
+    public int[] getBreakfastFoods() {
+        if (breakfastFoods == null) breakfastFoods = FoodDictionary.parseMeal(breakfast);
+        return breakfastFoods;
+    }
+
+    public int[] getLunchFoods() {
+        if (lunchFoods == null) lunchFoods = FoodDictionary.parseMeal(lunch);
+        return lunchFoods;
+    }
+
+    public int[] getDinnerFoods() {
+        if (dinnerFoods == null) dinnerFoods = FoodDictionary.parseMeal(dinner);
+        return dinnerFoods;
+    }
+
     /**
      * 获取记录日期的格式化字符串
      */
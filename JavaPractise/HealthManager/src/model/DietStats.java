@@ -19,12 +19,12 @@ public class DietStats {
     private LocalDate startDate;
     private LocalDate endDate;
     private LocalDate lastUpdated;
-    private Map<String, Integer> foodPreference; // 食物偏好统计
+    private FoodCounts foodCounts; // 食物偏好统计（按FoodDictionary编号计数）
 
     // 构造方法
     public DietStats() {
         this.mealCompletion = new HashMap<>();
-        this.foodPreference = new HashMap<>();
+        this.foodCounts = new FoodCounts();
         this.lastUpdated = LocalDate.now();
         
         // 初始化三餐完成情况
@@ -69,8 +69,18 @@ public class DietStats {
     public LocalDate getLastUpdated() { return lastUpdated; }
     public void setLastUpdated(LocalDate lastUpdated) { this.lastUpdated = lastUpdated; }
 
-    public Map<String, Integer> getFoodPreference() { return foodPreference; }
-    public void setFoodPreference(Map<String, Integer> foodPreference) { this.foodPreference = foodPreference; }
+    /**
+     * 食物偏好（食物名称到次数，按次数从高到低），每次调用由编号计数生成
+     */
+    public Map<String, Integer> getFoodPreference() { return foodCounts.toMap(); }
+    public void setFoodPreference(Map<String, Integer> foodPreference) {
+        this.foodCounts = new FoodCounts();
+        for (Map.Entry<String, Integer> e : foodPreference.entrySet()) {
+            foodCounts.add(FoodDictionary.id(e.getKey()), e.getValue());
+        }
+    }
+
+    public FoodCounts getFoodCounts() { return foodCounts; }
 
     /**
      * 添加餐次完成统计
@@ -83,7 +93,14 @@ public class DietStats {
      * 添加食物偏好统计
      */
     public void addFoodPreference(String food) {
-        foodPreference.put(food, foodPreference.getOrDefault(food, 0) + 1);
+        foodCounts.add(FoodDictionary.id(food));
+    }
+
+    /**
+     * 添加一餐的食物偏好统计（食物编号见DietRecord.getBreakfastFoods等）
+     */
+    public void addFoodPreference(int[] foods) {
+        foodCounts.addAll(foods);
     }
 
     /**
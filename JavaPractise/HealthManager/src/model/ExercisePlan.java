@@ -1,5 +1,6 @@
 package model;
 
+import java.io.Serializable;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 
@@ -7,7 +8,8 @@ import java.time.LocalDateTime;
  * 运动计划数据模型类
  * 用于存储和管理用户的运动计划信息
  */
-public class ExercisePlan {
+public class ExercisePlan implements Serializable {
+    private static final long serialVersionUID = 1L;
     private int id;
     private String userName;
     private String exerciseType;
@@ -19,6 +21,7 @@ public class ExercisePlan {
     private String notes;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
+    private int version; // 乐观锁版本号，每次更新加1
 
     // 预设的运动类型
     public static final String[] EXERCISE_TYPES = {
@@ -132,6 +135,14 @@ public class ExercisePlan {
         this.updatedAt = updatedAt;
     }
 
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
     /**
      * 获取完成状态的中文描述
      */
@@ -21,6 +21,9 @@ public class ExerciseStats {
     private double averageDuration; // 平均运动时长
     private double totalDuration; // 总运动时长
     private int activeDays; // 有运动计划的天数
+    private double totalActualDuration; // 已完成计划的实际总时长
+    private double actualCompletionRate; // 实际完成率（实际总时长/计划总时长，百分比）
+    private int completedDays; // 有已完成计划的天数
     private LocalDate startDate;
     private LocalDate endDate;
     private LocalDate lastUpdated;
@@ -69,6 +72,15 @@ public class ExerciseStats {
     public int getActiveDays() { return activeDays; }
     public void setActiveDays(int activeDays) { this.activeDays = activeDays; }
 
+    public double getTotalActualDuration() { return totalActualDuration; }
+    public void setTotalActualDuration(double totalActualDuration) { this.totalActualDuration = totalActualDuration; }
+
+    public double getActualCompletionRate() { return actualCompletionRate; }
+    public void setActualCompletionRate(double actualCompletionRate) { this.actualCompletionRate = actualCompletionRate; }
+
+    public int getCompletedDays() { return completedDays; }
+    public void setCompletedDays(int completedDays) { this.completedDays = completedDays; }
+
     public LocalDate getStartDate() { return startDate; }
     public void setStartDate(LocalDate startDate) { this.startDate = startDate; }
 
@@ -105,6 +117,17 @@ public class ExerciseStats {
         }
     }
 
+    /**
+     * 计算实际完成率
+     */
+    public void calculateActualCompletionRate() {
+        if (totalDuration > 0) {
+            this.actualCompletionRate = totalActualDuration / totalDuration * 100;
+        } else {
+            this.actualCompletionRate = 0;
+        }
+    }
+
     /**
      * 计算平均运动时长
      */
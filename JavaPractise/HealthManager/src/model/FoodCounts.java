@@ -0,0 +1,126 @@
+package model;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 按食物编号（FoodDictionary）计数
+ * 开放寻址的int到int哈希表，键和计数各存一个int数组，计数不装箱、不按字符串哈希；
+ * 单个用户常吃的食物不多，表从16格起按需扩容
+ *
+ * 非线程安全
+ */
+public class FoodCounts {
+
+    private static final int EMPTY = -1;
+
+    private int[] keys;
+    private int[] counts;
+    private int size;
+
+    public FoodCounts() {
+        keys = new int[16];
+        counts = new int[16];
+        Arrays.fill(keys, EMPTY);
+    }
+
+    /**
+     * 该食物计数加1
+     */
+    public void add(int food) {
+        add(food, 1);
+    }
+
+    /**
+     * 一餐中每个食物计数加1
+     */
+    public void addAll(int[] foods) {
+        for (int food : foods) add(food, 1);
+    }
+
+    public void add(int food, int count) {
+        int i = slot(food);
+        if (keys[i] == EMPTY) {
+            keys[i] = food;
+            if (++size * 4 > keys.length * 3) {
+                counts[i] = count;
+                rehash();
+                return;
+            }
+        }
+        counts[i] += count;
+    }
+
+    /**
+     * 该食物的计数，没有为0
+     */
+    public int get(int food) {
+        int i = slot(food);
+        return keys[i] == EMPTY ? 0 : counts[i];
+    }
+
+    /**
+     * 不同食物数
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 把另一份计数合并进来
+     */
+    public void merge(FoodCounts other) {
+        for (int i = 0; i < other.keys.length; i++) {
+            if (other.keys[i] != EMPTY) add(other.keys[i], other.counts[i]);
+        }
+    }
+
+    /**
+     * 按食物名称的计数（按计数从高到低）
+     */
+    public Map<String, Integer> toMap() {
+        return top(size);
+    }
+
+    /**
+     * 计数最高的k种食物（计数相同按编号，即首次出现的先后）
+     */
+    public Map<String, Integer> top(int k) {
+        long[] packed = new long[size];
+        int n = 0;
+        for (int i = 0; i < keys.length; i++) {
+            // 计数取反放高位、编号放低位，升序排序即为计数降序
+            if (keys[i] != EMPTY) packed[n++] = ((long) -counts[i] << 32) | keys[i];
+        }
+        Arrays.sort(packed);
+        Map<String, Integer> map = new LinkedHashMap<>();
+        for (int i = 0; i < Math.min(k, n); i++) {
+            map.put(FoodDictionary.name((int) packed[i]), (int) -(packed[i] >> 32));
+        }
+        return map;
+    }
+
+    private int slot(int food) {
+        int mask = keys.length - 1;
+        int h = food * 0x9E3779B9;
+        int i = (h ^ (h >>> 16)) & mask;
+        while (keys[i] != EMPTY && keys[i] != food) i = (i + 1) & mask;
+        return i;
+    }
+
+    private void rehash() {
+        int[] oldKeys = keys;
+        int[] oldCounts = counts;
+        keys = new int[oldKeys.length * 2];
+        counts = new int[oldKeys.length * 2];
+        Arrays.fill(keys, EMPTY);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int j = slot(oldKeys[i]);
+                keys[j] = oldKeys[i];
+                counts[j] = oldCounts[i];
+            }
+        }
+    }
+}
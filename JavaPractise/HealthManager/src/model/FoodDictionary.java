@@ -0,0 +1,103 @@
+package model;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 食物词典
+ * 饮食记录中每餐是逗号分隔的食物名称（DietPanel拼接），这里把食物名称编码为从0开始连续的int编号，
+ * 一餐解析为int[]；同样的一餐内容（如"米饭, 青菜"）只切分一次，之后直接取缓存的编号数组，
+ * 统计食物偏好时按编号计数（FoodCounts），不再反复切分字符串、按字符串哈希
+ *
+ * 全进程共用一份，编号只增不减；线程安全，查到已有名称时不加锁
+ *
+ * 配置（系统属性）：
+ * -Dhealth.food.mealCacheEntries=8192   缓存解析结果的不同一餐内容数，超出后新内容每次现切分
+ */
+public final class FoodDictionary {
+
+    /**
+     * 该餐未安排的取值（DietPanel中勾选"无安排"时保存）
+     */
+    public static final String NO_MEAL = "无安排";
+
+    private static final int[] NO_FOODS = new int[0];
+    private static final int MEAL_CACHE_ENTRIES = Math.max(0, Integer.getInteger("health.food.mealCacheEntries", 8192));
+
+    private static final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+    private static volatile String[] names = new String[64];
+    private static int size;
+    private static final ConcurrentHashMap<String, int[]> meals = new ConcurrentHashMap<>();
+
+    private FoodDictionary() {}
+
+    /**
+     * 食物名称的编号，首次出现时分配新编号
+     *
+     * @param food 已去除首尾空白的食物名称
+     */
+    public static int id(String food) {
+        Integer id = ids.get(food);
+        return id != null ? id : intern(food);
+    }
+
+    private static synchronized int intern(String food) {
+        Integer id = ids.get(food);
+        if (id != null) return id;
+        String[] n = names;
+        if (size == n.length) n = Arrays.copyOf(n, n.length * 2);
+        n[size] = food;
+        // 先写名称再发布数组和编号，其他线程拿到编号时一定能查到名称
+        names = n;
+        ids.put(food, size);
+        return size++;
+    }
+
+    /**
+     * 编号对应的食物名称
+     */
+    public static String name(int id) {
+        return names[id];
+    }
+
+    /**
+     * 已编号的食物数
+     */
+    public static synchronized int size() {
+        return size;
+    }
+
+    /**
+     * 解析一餐内容为食物编号（按中英文逗号切分、去除空白，保持原顺序，重复的食物保留）
+     *
+     * @param meal 一餐内容，如"米饭, 青菜"
+     * @return 食物编号；未填写或"无安排"返回空数组。返回的数组可能被共享，调用方不要修改
+     */
+    public static int[] parseMeal(String meal) {
+        if (meal == null) return NO_FOODS;
+        int[] cached = meals.get(meal);
+        if (cached != null) return cached;
+        int[] foods = split(meal);
+        if (meals.size() < MEAL_CACHE_ENTRIES) meals.putIfAbsent(meal, foods);
+        return foods;
+    }
+
+    private static int[] split(String meal) {
+        String m = meal.trim();
+        if (m.isEmpty() || NO_MEAL.equals(m)) return NO_FOODS;
+        int[] foods = new int[4];
+        int n = 0;
+        int start = 0;
+        int len = m.length();
+        for (int i = 0; i <= len; i++) {
+            if (i < len && m.charAt(i) != ',' && m.charAt(i) != '，') continue;
+            String food = m.substring(start, i).trim();
+            if (!food.isEmpty()) {
+                if (n == foods.length) foods = Arrays.copyOf(foods, n * 2);
+                foods[n++] = id(food);
+            }
+            start = i + 1;
+        }
+        return n == foods.length ? foods : Arrays.copyOf(foods, n);
+    }
+}
@@ -1,10 +1,12 @@
 package model;
 
+import java.io.Serializable;
 /**
  * 用户认证模型类
  * 用于用户登录验证和权限管理
  */
-public class User {
+public class User implements Serializable {
+    private static final long serialVersionUID = 1L;
     private int id;
     private String username;
     private String password;
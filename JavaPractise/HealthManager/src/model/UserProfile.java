@@ -39,6 +39,7 @@ public class UserProfile implements Serializable {
     private LocalDate lastUpdated;    // 最后更新日期
     
     private int id;
+    private int version;              // 乐观锁版本号，每次更新加1
     
     // 默认构造方法
     public UserProfile() {
@@ -190,17 +191,21 @@ public class UserProfile implements Serializable {
         this.id = id;
     }
     
+    public int getVersion() {
+        return version;
+    }
+    
+    public void setVersion(int version) {
+        this.version = version;
+    }
+    
     // 工具方法
     /**
      * 计算BMI指数
      * @return BMI值
      */
     public double calculateBMI() {
-        if (height <= 0 || weight <= 0) {
-            return 0.0;
-        }
-        double heightInMeters = height / 100.0;
-        return weight / (heightInMeters * heightInMeters);
+        return Bmi.of(weight, height);
     }
     
     /**
@@ -208,16 +213,7 @@ public class UserProfile implements Serializable {
      * @return BMI分类字符串
      */
     public String getBMICategory() {
-        double bmi = calculateBMI();
-        if (bmi < 18.5) {
-            return "偏瘦";
-        } else if (bmi < 24.0) {
-            return "正常";
-        } else if (bmi < 28.0) {
-            return "超重";
-        } else {
-            return "肥胖";
-        }
+        return Bmi.categoryName(calculateBMI());
     }
     
     /**
@@ -0,0 +1,44 @@
+package model;
+
+/**
+ * 用户摘要模型类
+ * 只包含档案ID和姓名，用于用户下拉框等只需要显示姓名的场景
+ */
+public class UserSummary {
+    private final int id;
+    private final String name;
+
+    public UserSummary(int id, String name) {
+        this.id = id;
+        this.name = name;
+    }
+
+    /**
+     * 由完整档案生成摘要
+     */
+    public static UserSummary of(UserProfile profile) {
+        return new UserSummary(profile.getId(), profile.getName());
+    }
+
+    public int getId() { return id; }
+    public String getName() { return name; }
+
+    // 姓名在user_profile表中唯一，按姓名判断相等
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof UserSummary)) return false;
+        UserSummary other = (UserSummary) o;
+        return name != null ? name.equals(other.name) : other.name == null;
+    }
+
+    @Override
+    public int hashCode() {
+        return name != null ? name.hashCode() : 0;
+    }
+
+    @Override
+    public String toString() {
+        return name != null ? name : "未知用户";
+    }
+}
@@ -0,0 +1,25 @@
+package model;
+
+import java.time.LocalDate;
+
+/**
+ * 体重数据点模型类
+ * 只包含日期和体重，用于体重趋势统计
+ */
+public class WeightPoint {
+    private final LocalDate date;
+    private final double weight;
+
+    public WeightPoint(LocalDate date, double weight) {
+        this.date = date;
+        this.weight = weight;
+    }
+
+    public LocalDate getDate() { return date; }
+    public double getWeight() { return weight; }
+
+    @Override
+    public String toString() {
+        return String.format("体重[日期=%s, 体重=%.1f]", date, weight);
+    }
+}
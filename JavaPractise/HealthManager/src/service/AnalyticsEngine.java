@@ -0,0 +1,430 @@
+package service;
+
+import model.Bmi;
+import model.DailyRecord;
+import model.DietRecord;
+import model.DietStats;
+import model.ExercisePlan;
+import model.ExerciseStats;
+import model.FoodDictionary;
+import model.HealthStats;
+import model.UserProfile;
+
+import java.time.LocalDate;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * 统计计算
+ * 由每日记录、运动计划、饮食记录计算HealthStats、ExerciseStats、DietStats，
+ * 统计区间为闭区间[start, end]，每种数据只遍历一遍，输入不要求排序；
+ * 需要同时统计多个区间（本周、本月、全部）时传入多个Window，仍只遍历一遍
+ *
+ * 只做计算，不查库、不依赖Swing：数据分析面板、无界面服务和基准测试都可以直接调用
+ */
+public class AnalyticsEngine {
+
+    /**
+     * 饮食记录中表示该餐未安排的取值
+     */
+    private static final String NO_MEAL = FoodDictionary.NO_MEAL;
+    private static final String[] MEAL_TYPES = {"早餐", "午餐", "晚餐"};
+
+    private AnalyticsEngine() {}
+
+    // ==================== BMI ====================
+
+    /**
+     * 计算BMI，身高或体重无效时返回0
+     *
+     * @param weight 体重（kg）
+     * @param heightCm 身高（cm）
+     */
+    public static double bmi(double weight, double heightCm) {
+        return Bmi.of(weight, heightCm);
+    }
+
+    /**
+     * BMI等级（阈值见Bmi，与UserProfile.getBMICategory一致）
+     */
+    public static String bmiLevel(double bmi) {
+        return Bmi.categoryName(bmi);
+    }
+
+    // ==================== 统计区间 ====================
+
+    /**
+     * 统计区间，闭区间[start, end]
+     */
+    public static final class Window {
+        private final LocalDate start;
+        private final LocalDate end;
+
+        private Window(LocalDate start, LocalDate end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        public static Window of(LocalDate start, LocalDate end) {
+            return new Window(start, end);
+        }
+
+        public LocalDate getStart() { return start; }
+        public LocalDate getEnd() { return end; }
+    }
+
+    /**
+     * 多个区间合在一起覆盖的日期范围，按天编号（0为最早的起始日期）
+     * 记录先按天累加到数组，再做前缀和，每个区间的计数用两次下标相减得到，
+     * 总开销为O(记录数 + 天数 + 区间数)，与区间个数无关
+     */
+    private static final class DayRange {
+        final long base;
+        final int span;
+        final int[] from;
+        final int[] to;
+
+        DayRange(Window[] windows) {
+            long min = Long.MAX_VALUE;
+            long max = Long.MIN_VALUE;
+            for (Window w : windows) {
+                min = Math.min(min, w.start.toEpochDay());
+                max = Math.max(max, w.end.toEpochDay());
+            }
+            base = windows.length > 0 ? min : 0;
+            span = windows.length > 0 ? (int) Math.max(0, max - min + 1) : 0;
+            from = new int[windows.length];
+            to = new int[windows.length];
+            for (int k = 0; k < windows.length; k++) {
+                from[k] = (int) (windows[k].start.toEpochDay() - base);
+                to[k] = (int) (windows[k].end.toEpochDay() - base);
+            }
+        }
+
+        /**
+         * 日期对应的天编号，不在范围内返回-1
+         */
+        int day(LocalDate d) {
+            if (d == null) return -1;
+            long day = d.toEpochDay() - base;
+            return day >= 0 && day < span ? (int) day : -1;
+        }
+
+        /**
+         * 该天是否在第k个区间内
+         */
+        boolean contains(int k, int day) {
+            return day >= from[k] && day <= to[k];
+        }
+
+        /**
+         * 第k个区间的天数，结束早于起始时为0
+         */
+        int length(int k) {
+            return Math.max(0, to[k] - from[k] + 1);
+        }
+
+        /**
+         * 前缀和数组中第k个区间的合计
+         */
+        int sum(int[] prefix, int k) {
+            return to[k] < from[k] ? 0 : prefix[to[k] + 1] - prefix[from[k]];
+        }
+
+        double sum(double[] prefix, int k) {
+            return to[k] < from[k] ? 0 : prefix[to[k] + 1] - prefix[from[k]];
+        }
+    }
+
+    /**
+     * 按天的累加数组转成前缀和（原地，数组长度为天数+1，最后一位为0）
+     */
+    private static void prefix(int[] a) {
+        int sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            int v = a[i];
+            a[i] = sum;
+            sum += v;
+        }
+    }
+
+    private static void prefix(double[] a) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            double v = a[i];
+            a[i] = sum;
+            sum += v;
+        }
+    }
+
+    /**
+     * 按天的有无标记转成计数前缀和
+     */
+    private static int[] prefix(BitSet days, int span) {
+        int[] a = new int[span + 1];
+        for (int i = 0; i < span; i++) {
+            a[i + 1] = a[i] + (days.get(i) ? 1 : 0);
+        }
+        return a;
+    }
+
+    // ==================== 运动统计 ====================
+
+    /**
+     * 运动统计：计划数、完成数、完成率、计划/实际总时长、类型和强度分布、计划天数、完成天数
+     *
+     * @param plans 运动计划（可包含区间外的计划，会被跳过）
+     * @param start 起始日期（含）
+     * @param end 结束日期（含）
+     */
+    public static ExerciseStats exerciseStats(String userName, List<ExercisePlan> plans, LocalDate start, LocalDate end) {
+        return exerciseStats(userName, plans, Window.of(start, end))[0];
+    }
+
+    /**
+     * 多个区间的运动统计，只遍历一遍计划（如本周、本月一起统计），输入不要求排序
+     *
+     * @return 与windows顺序对应的统计结果
+     */
+    public static ExerciseStats[] exerciseStats(String userName, List<ExercisePlan> plans, Window... windows) {
+        DayRange range = new DayRange(windows);
+        int span = range.span;
+        int[] total = new int[span + 1];
+        int[] completed = new int[span + 1];
+        double[] planned = new double[span + 1];
+        double[] actual = new double[span + 1];
+        BitSet planDays = new BitSet(span);
+        BitSet completedDays = new BitSet(span);
+        ExerciseStats[] result = new ExerciseStats[windows.length];
+        for (int k = 0; k < windows.length; k++) {
+            result[k] = new ExerciseStats(userName);
+            result[k].setStartDate(windows[k].start);
+            result[k].setEndDate(windows[k].end);
+        }
+        for (ExercisePlan plan : plans) {
+            int day = range.day(plan.getPlanDate());
+            if (day < 0) continue;
+            total[day]++;
+            planDays.set(day);
+            if (plan.getDuration() != null) planned[day] += plan.getDuration();
+            if (plan.isCompleted()) {
+                completed[day]++;
+                if (plan.getActualDuration() != null) {
+                    actual[day] += plan.getActualDuration();
+                    completedDays.set(day);
+                }
+            }
+            // 分布按区间分别计数
+            for (int k = 0; k < windows.length; k++) {
+                if (!range.contains(k, day)) continue;
+                if (plan.getExerciseType() != null) result[k].addExerciseType(plan.getExerciseType());
+                if (plan.getIntensity() != null) result[k].addIntensity(plan.getIntensity());
+            }
+        }
+        prefix(total);
+        prefix(completed);
+        prefix(planned);
+        prefix(actual);
+        int[] planDayCount = prefix(planDays, span);
+        int[] completedDayCount = prefix(completedDays, span);
+        for (int k = 0; k < windows.length; k++) {
+            ExerciseStats stats = result[k];
+            stats.setTotalPlans(range.sum(total, k));
+            stats.setCompletedPlans(range.sum(completed, k));
+            stats.setTotalDuration(range.sum(planned, k));
+            stats.setTotalActualDuration(range.sum(actual, k));
+            stats.setActiveDays(range.sum(planDayCount, k));
+            stats.setCompletedDays(range.sum(completedDayCount, k));
+            stats.calculateCompletionRate();
+            stats.calculateActualCompletionRate();
+            stats.calculateAverageDuration();
+        }
+        return result;
+    }
+
+    // ==================== 饮食统计 ====================
+
+    /**
+     * 饮食统计：记录数、记录天数、记录频率（记录天数/区间天数）、三餐完成次数、平均每日餐数、
+     * 食物偏好、连续记录天数（区间内最后一个有记录的日期往前连续有记录的天数）
+     *
+     * @param records 饮食记录（可包含区间外的记录，会被跳过）
+     * @param start 起始日期（含）
+     * @param end 结束日期（含）
+     */
+    public static DietStats dietStats(String userName, List<DietRecord> records, LocalDate start, LocalDate end) {
+        return dietStats(userName, records, Window.of(start, end))[0];
+    }
+
+    /**
+     * 多个区间的饮食统计，只遍历一遍记录（如全部、本周、本月一起统计），输入不要求排序
+     *
+     * @return 与windows顺序对应的统计结果
+     */
+    public static DietStats[] dietStats(String userName, List<DietRecord> records, Window... windows) {
+        DayRange range = new DayRange(windows);
+        int span = range.span;
+        int[] total = new int[span + 1];
+        int[] meals = new int[span + 1];
+        BitSet days = new BitSet(span);
+        DietStats[] result = new DietStats[windows.length];
+        for (int k = 0; k < windows.length; k++) {
+            result[k] = new DietStats(userName);
+            result[k].setStartDate(windows[k].start);
+            result[k].setEndDate(windows[k].end);
+        }
+        String[] meal = new String[3];
+        int[][] foods = new int[3][];
+        for (DietRecord r : records) {
+            int day = range.day(r.getRecordDate());
+            if (day < 0) continue;
+            total[day]++;
+            days.set(day);
+            meal[0] = mealContent(r.getBreakfast());
+            meal[1] = mealContent(r.getLunch());
+            meal[2] = mealContent(r.getDinner());
+            foods[0] = r.getBreakfastFoods();
+            foods[1] = r.getLunchFoods();
+            foods[2] = r.getDinnerFoods();
+            for (int m = 0; m < 3; m++) {
+                if (meal[m] == null) continue;
+                meals[day]++;
+                // 三餐完成次数和食物偏好按区间分别计数
+                for (int k = 0; k < windows.length; k++) {
+                    if (range.contains(k, day)) {
+                        result[k].addMealCompletion(MEAL_TYPES[m]);
+                        result[k].addFoodPreference(foods[m]);
+                    }
+                }
+            }
+        }
+        prefix(total);
+        prefix(meals);
+        int[] dayCount = prefix(days, span);
+        // run[i]：截至第i天连续有记录的天数；last[i]：第i天及之前最后一个有记录的天，没有为-1
+        int[] run = new int[span];
+        int[] last = new int[span];
+        for (int i = 0; i < span; i++) {
+            boolean has = days.get(i);
+            run[i] = has ? (i > 0 ? run[i - 1] : 0) + 1 : 0;
+            last[i] = has ? i : (i > 0 ? last[i - 1] : -1);
+        }
+        for (int k = 0; k < windows.length; k++) {
+            DietStats stats = result[k];
+            int daysWithRecords = range.sum(dayCount, k);
+            int mealCount = range.sum(meals, k);
+            stats.setTotalRecords(range.sum(total, k));
+            stats.setDaysWithRecords(daysWithRecords);
+            stats.calculateRecordFrequency(range.length(k));
+            stats.setAverageMealsPerDay(daysWithRecords > 0 ? (double) mealCount / daysWithRecords : 0);
+            int lastDay = range.length(k) > 0 ? last[range.to[k]] : -1;
+            stats.setConsecutiveDays(lastDay < range.from[k] ? 0 : Math.min(run[lastDay], lastDay - range.from[k] + 1));
+        }
+        return result;
+    }
+
+    /**
+     * 一餐的内容，未填写或"无安排"返回null
+     */
+    private static String mealContent(String meal) {
+        if (meal == null) return null;
+        String m = meal.trim();
+        return m.isEmpty() || NO_MEAL.equals(m) ? null : m;
+    }
+
+    // ==================== 健康统计 ====================
+
+    /**
+     * 健康统计：区间内最新体重对应的BMI、区间内体重变化、目标达成进度、运动完成率、饮食记录天数、
+     * 健康评分和建议
+     *
+     * @param profile 用户档案（身高、原始体重、目标体重）
+     * @param daily 每日记录
+     * @param plans 运动计划
+     * @param diets 饮食记录
+     * @param start 起始日期（含）
+     * @param end 结束日期（含）
+     */
+    public static HealthStats healthStats(UserProfile profile, List<DailyRecord> daily, List<ExercisePlan> plans,
+                                          List<DietRecord> diets, LocalDate start, LocalDate end) {
+        return healthStats(profile, DailySeries.of(daily), plans, diets, start, end);
+    }
+
+    /**
+     * 健康统计，每日记录已按列存储（同一用户多次统计时复用）
+     */
+    public static HealthStats healthStats(UserProfile profile, DailySeries daily, List<ExercisePlan> plans,
+                                          List<DietRecord> diets, LocalDate start, LocalDate end) {
+        return healthStats(profile, daily, exerciseStats(profile.getName(), plans, start, end),
+            dietStats(profile.getName(), diets, start, end), start, end);
+    }
+
+    /**
+     * 健康统计，运动统计和饮食统计已按同一区间算好（需要三种统计结果时避免重复计算）
+     */
+    public static HealthStats healthStats(UserProfile profile, DailySeries daily, ExerciseStats exercise,
+                                          DietStats diet, LocalDate start, LocalDate end) {
+        HealthStats stats = new HealthStats(profile.getName());
+        stats.setStartDate(start);
+        stats.setEndDate(end);
+
+        // 区间内最早、最新的有效体重
+        DailySeries window = daily.slice(start, end);
+        int first = 0;
+        while (first < window.size() && window.weight(first) <= 0) first++;
+        int last = window.size() - 1;
+        while (last >= first && window.weight(last) <= 0) last--;
+        boolean hasWeight = first <= last;
+        double firstWeight = hasWeight ? window.weight(first) : 0;
+        double lastWeight = hasWeight ? window.weight(last) : 0;
+        double currentWeight = hasWeight ? lastWeight : profile.getWeight();
+        double bmi = bmi(currentWeight, profile.getHeight());
+        stats.setCurrentBMI(bmi);
+        stats.setBmiStatus(bmi > 0 ? bmiLevel(bmi) : "未知");
+        stats.setWeightChange(hasWeight ? lastWeight - firstWeight : 0);
+        stats.setGoalProgress(goalProgress(profile.getWeight(), currentWeight, profile.getTargetWeight()));
+
+        stats.setExerciseCompletionRate(exercise.getCompletionRate());
+        stats.setDietRecordFrequency(diet.getDaysWithRecords());
+        stats.setHealthScore(grade(bmi, exercise, diet));
+
+        int level = Bmi.category(bmi);
+        if (bmi > 0 && level == Bmi.UNDERWEIGHT) stats.addRecommendation("BMI偏低，注意均衡饮食、适当增加营养摄入");
+        if (level >= Bmi.OVERWEIGHT) stats.addRecommendation("BMI偏高，建议控制饮食并增加有氧运动");
+        if (exercise.getTotalPlans() == 0) {
+            stats.addRecommendation("该时间段没有运动计划，建议制定规律的运动计划");
+        } else if (exercise.getCompletionRate() < 60) {
+            stats.addRecommendation("运动计划完成率较低，可以适当降低强度或时长，坚持完成");
+        }
+        if (diet.getRecordFrequency() < 50) stats.addRecommendation("饮食记录较少，建议每天记录三餐");
+        return stats;
+    }
+
+    /**
+     * 目标达成进度（百分比，0~100）：从档案体重向目标体重移动的比例
+     */
+    private static double goalProgress(double originWeight, double currentWeight, double targetWeight) {
+        if (targetWeight <= 0 || originWeight <= 0 || originWeight == targetWeight) return 0;
+        double progress = (originWeight - currentWeight) / (originWeight - targetWeight) * 100;
+        return Math.max(0, Math.min(100, progress));
+    }
+
+    /**
+     * 健康评分：BMI占40分（正常40，偏瘦/超重20），运动完成率占30分，饮食记录频率占30分；
+     * 85分及以上为A，70分及以上为B，55分及以上为C，否则为D
+     */
+    private static String grade(double bmi, ExerciseStats exercise, DietStats diet) {
+        double score = 0;
+        if (bmi > 0) {
+            int level = Bmi.category(bmi);
+            if (level == Bmi.NORMAL) score += 40;
+            else if (level != Bmi.OBESE) score += 20;
+        }
+        score += exercise.getCompletionRate() * 0.3;
+        score += Math.min(100, diet.getRecordFrequency()) * 0.3;
+        if (score >= 85) return "A";
+        if (score >= 70) return "B";
+        if (score >= 55) return "C";
+        return "D";
+    }
+}
@@ -0,0 +1,345 @@
+package service;
+
+import model.Bmi;
+import model.DailyRecord;
+import model.DietRecord;
+import model.DietStats;
+import model.ExercisePlan;
+import model.ExerciseStats;
+import model.HealthStats;
+import model.UserProfile;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * 全体用户统计报表（管理员）
+ * 对所有档案用户按同一区间计算HealthStats、ExerciseStats、DietStats，并汇总评分分布、BMI等级分布、
+ * 运动完成率、饮食记录天数等
+ *
+ * 分三个阶段，分别计时：
+ * 1. 读取：每日记录、运动计划、饮食记录三张表在线程池中并行流式读取，只保留区间内的记录，按用户分组
+ *    （每日记录按用户、日期顺序读取，直接追加成列式DailySeries）
+ * 2. 计算：用户数组在ForkJoinPool中二分拆分，每个子任务算自己那段用户的三种统计，
+ *    结果写入各自的下标（互不竞争），同时累加本段的汇总
+ * 3. 合并：子任务的汇总在join时两两合并，最终得到全体汇总
+ *
+ * 配置（系统属性）：
+ * -Dhealth.cohort.threads=CPU核数   并行线程数
+ */
+public class CohortReport {
+
+    /**
+     * 每个子任务最多直接处理的用户数，超过则继续拆分
+     */
+    private static final int LEAF_USERS = 32;
+    private static final int THREADS = Math.max(1, Integer.getInteger("health.cohort.threads",
+        Runtime.getRuntime().availableProcessors()));
+    private static final ForkJoinPool POOL = new ForkJoinPool(THREADS);
+    /**
+     * lastDays的天数上限（约10年），统计按天分配数组，不能无限大
+     */
+    public static final int MAX_DAYS = 3650;
+
+    private CohortReport() {}
+
+    /**
+     * 单个用户的统计结果
+     */
+    public static final class Row {
+        private final UserProfile profile;
+        private final HealthStats health;
+        private final ExerciseStats exercise;
+        private final DietStats diet;
+
+        Row(UserProfile profile, HealthStats health, ExerciseStats exercise, DietStats diet) {
+            this.profile = profile;
+            this.health = health;
+            this.exercise = exercise;
+            this.diet = diet;
+        }
+
+        public UserProfile getProfile() { return profile; }
+        public HealthStats getHealth() { return health; }
+        public ExerciseStats getExercise() { return exercise; }
+        public DietStats getDiet() { return diet; }
+    }
+
+    /**
+     * 汇总（每个子任务一份，最后两两合并）
+     */
+    public static final class Totals {
+        private static final String[] GRADES = {"A", "B", "C", "D"};
+        private static final String[] BMI_LEVELS = Bmi.names();
+
+        private int users;
+        private int usersWithBmi;
+        private double sumBmi;
+        private final int[] grades = new int[GRADES.length];
+        private final int[] bmiLevels = new int[BMI_LEVELS.length];
+        private long totalPlans;
+        private long completedPlans;
+        private double actualHours;
+        private long dietDays;
+        private long dietRecords;
+
+        void add(HealthStats health, ExerciseStats exercise, DietStats diet) {
+            users++;
+            if (health.getCurrentBMI() > 0) {
+                usersWithBmi++;
+                sumBmi += health.getCurrentBMI();
+                bmiLevels[Bmi.category(health.getCurrentBMI())]++;
+            }
+            int grade = indexOf(GRADES, health.getHealthScore());
+            if (grade >= 0) grades[grade]++;
+            totalPlans += exercise.getTotalPlans();
+            completedPlans += exercise.getCompletedPlans();
+            actualHours += exercise.getTotalActualDuration();
+            dietDays += diet.getDaysWithRecords();
+            dietRecords += diet.getTotalRecords();
+        }
+
+        Totals merge(Totals other) {
+            users += other.users;
+            usersWithBmi += other.usersWithBmi;
+            sumBmi += other.sumBmi;
+            for (int i = 0; i < grades.length; i++) grades[i] += other.grades[i];
+            for (int i = 0; i < bmiLevels.length; i++) bmiLevels[i] += other.bmiLevels[i];
+            totalPlans += other.totalPlans;
+            completedPlans += other.completedPlans;
+            actualHours += other.actualHours;
+            dietDays += other.dietDays;
+            dietRecords += other.dietRecords;
+            return this;
+        }
+
+        private static int indexOf(String[] values, String value) {
+            for (int i = 0; i < values.length; i++) {
+                if (values[i].equals(value)) return i;
+            }
+            return -1;
+        }
+
+        public int getUsers() { return users; }
+        public double getAverageBmi() { return usersWithBmi > 0 ? sumBmi / usersWithBmi : 0; }
+        public long getTotalPlans() { return totalPlans; }
+        public long getCompletedPlans() { return completedPlans; }
+        public double getCompletionRate() { return totalPlans > 0 ? completedPlans * 100.0 / totalPlans : 0; }
+        public double getActualHours() { return actualHours; }
+        public long getDietDays() { return dietDays; }
+        public long getDietRecords() { return dietRecords; }
+
+        /**
+         * 健康评分分布（A、B、C、D）
+         */
+        public Map<String, Integer> getGradeDistribution() {
+            return distribution(GRADES, grades);
+        }
+
+        /**
+         * BMI等级分布（偏瘦、正常、超重、肥胖）
+         */
+        public Map<String, Integer> getBmiDistribution() {
+            return distribution(BMI_LEVELS, bmiLevels);
+        }
+
+        private static Map<String, Integer> distribution(String[] names, int[] counts) {
+            Map<String, Integer> map = new LinkedHashMap<>();
+            for (int i = 0; i < names.length; i++) map.put(names[i], counts[i]);
+            return map;
+        }
+    }
+
+    /**
+     * 报表结果
+     */
+    public static final class Result {
+        private final LocalDate start;
+        private final LocalDate end;
+        private final List<Row> rows;
+        private final Totals totals;
+        private final long loadedRows;
+        private final long loadMillis;
+        private final long computeMillis;
+        private final long mergeMillis;
+        private final int threads;
+
+        Result(LocalDate start, LocalDate end, List<Row> rows, Totals totals, long loadedRows,
+               long loadMillis, long computeMillis, long mergeMillis, int threads) {
+            this.start = start;
+            this.end = end;
+            this.rows = rows;
+            this.totals = totals;
+            this.loadedRows = loadedRows;
+            this.loadMillis = loadMillis;
+            this.computeMillis = computeMillis;
+            this.mergeMillis = mergeMillis;
+            this.threads = threads;
+        }
+
+        public LocalDate getStart() { return start; }
+        public LocalDate getEnd() { return end; }
+        public List<Row> getRows() { return rows; }
+        public Totals getTotals() { return totals; }
+        /** 读取到的区间内记录总数（三张表） */
+        public long getLoadedRows() { return loadedRows; }
+        /** 读取阶段耗时（毫秒） */
+        public long getLoadMillis() { return loadMillis; }
+        /** 计算阶段耗时（毫秒，含合并） */
+        public long getComputeMillis() { return computeMillis; }
+        /** 各线程合并汇总累计耗时（毫秒） */
+        public long getMergeMillis() { return mergeMillis; }
+        public int getThreads() { return threads; }
+    }
+
+    /**
+     * 生成最近days天（含今天）的全体用户报表，days限制在[1, MAX_DAYS]内
+     */
+    public static Result lastDays(int days) {
+        LocalDate end = LocalDate.now();
+        return generate(end.minusDays(Math.min(Math.max(1, days), MAX_DAYS) - 1), end);
+    }
+
+    /**
+     * 生成全体用户在[start, end]区间的报表
+     */
+    public static Result generate(LocalDate start, LocalDate end) {
+        // 1. 读取
+        long t0 = System.nanoTime();
+        ForkJoinTask<Map<String, DailySeries>> dailyTask = POOL.submit(() -> loadDailySeries(start, end));
+        ForkJoinTask<Map<String, List<ExercisePlan>>> planTask = POOL.submit(() ->
+            groupByUser(DatabaseManager.streamAllExercisePlans(), ExercisePlan::getUserName, ExercisePlan::getPlanDate, start, end));
+        ForkJoinTask<Map<String, List<DietRecord>>> dietTask = POOL.submit(() ->
+            groupByUser(DatabaseManager.streamAllDietRecords(), DietRecord::getUserName, DietRecord::getRecordDate, start, end));
+        List<UserProfile> profiles = DatabaseManager.getAllUserProfiles();
+        Map<String, DailySeries> daily = dailyTask.join();
+        Map<String, List<ExercisePlan>> plans = planTask.join();
+        Map<String, List<DietRecord>> diets = dietTask.join();
+        long loaded = 0;
+        for (DailySeries s : daily.values()) loaded += s.size();
+        for (List<ExercisePlan> l : plans.values()) loaded += l.size();
+        for (List<DietRecord> l : diets.values()) loaded += l.size();
+        long t1 = System.nanoTime();
+
+        // 2. 计算 + 3. 合并
+        UserProfile[] users = profiles.toArray(new UserProfile[0]);
+        Row[] rows = new Row[users.length];
+        AtomicLong mergeNanos = new AtomicLong();
+        Totals totals = POOL.invoke(new Task(users, rows, 0, users.length, daily, plans, diets, start, end, mergeNanos));
+        long t2 = System.nanoTime();
+
+        List<Row> list = new ArrayList<>(rows.length);
+        Collections.addAll(list, rows);
+        return new Result(start, end, list, totals, loaded, (t1 - t0) / 1_000_000, (t2 - t1) / 1_000_000,
+            mergeNanos.get() / 1_000_000, POOL.getParallelism());
+    }
+
+    private static Map<String, DailySeries> loadDailySeries(LocalDate start, LocalDate end) {
+        Map<String, DailySeries> map = new HashMap<>();
+        try (Stream<DailyRecord> stream = DatabaseManager.streamAllDailyRecordsByUser()) {
+            Iterator<DailyRecord> it = stream.iterator();
+            while (it.hasNext()) {
+                DailyRecord r = it.next();
+                if (r.getUserName() == null || !inRange(r.getDate(), start, end)) continue;
+                map.computeIfAbsent(r.getUserName(), k -> new DailySeries()).append(r);
+            }
+        }
+        return map;
+    }
+
+    private static <T> Map<String, List<T>> groupByUser(Stream<T> stream, Function<T, String> user,
+                                                        Function<T, LocalDate> date, LocalDate start, LocalDate end) {
+        Map<String, List<T>> map = new HashMap<>();
+        try (Stream<T> s = stream) {
+            Iterator<T> it = s.iterator();
+            while (it.hasNext()) {
+                T item = it.next();
+                String name = user.apply(item);
+                if (name != null && inRange(date.apply(item), start, end)) {
+                    map.computeIfAbsent(name, k -> new ArrayList<>()).add(item);
+                }
+            }
+        }
+        return map;
+    }
+
+    private static boolean inRange(LocalDate date, LocalDate start, LocalDate end) {
+        return date != null && !date.isBefore(start) && !date.isAfter(end);
+    }
+
+    /**
+     * 处理users[from, to)的子任务
+     */
+    private static final class Task extends RecursiveTask<Totals> {
+        private static final long serialVersionUID = 1L;
+
+        private final UserProfile[] users;
+        private final Row[] rows;
+        private final int from;
+        private final int to;
+        private final Map<String, DailySeries> daily;
+        private final Map<String, List<ExercisePlan>> plans;
+        private final Map<String, List<DietRecord>> diets;
+        private final LocalDate start;
+        private final LocalDate end;
+        private final AtomicLong mergeNanos;
+
+        Task(UserProfile[] users, Row[] rows, int from, int to, Map<String, DailySeries> daily,
+             Map<String, List<ExercisePlan>> plans, Map<String, List<DietRecord>> diets,
+             LocalDate start, LocalDate end, AtomicLong mergeNanos) {
+            this.users = users;
+            this.rows = rows;
+            this.from = from;
+            this.to = to;
+            this.daily = daily;
+            this.plans = plans;
+            this.diets = diets;
+            this.start = start;
+            this.end = end;
+            this.mergeNanos = mergeNanos;
+        }
+
+        @Override
+        protected Totals compute() {
+            if (to - from <= LEAF_USERS) {
+                Totals totals = new Totals();
+                for (int i = from; i < to; i++) {
+                    UserProfile p = users[i];
+                    String name = p.getName();
+                    ExerciseStats exercise = AnalyticsEngine.exerciseStats(name,
+                        plans.getOrDefault(name, Collections.emptyList()), start, end);
+                    DietStats diet = AnalyticsEngine.dietStats(name,
+                        diets.getOrDefault(name, Collections.emptyList()), start, end);
+                    DailySeries series = daily.get(name);
+                    HealthStats health = AnalyticsEngine.healthStats(p,
+                        series != null ? series : new DailySeries(), exercise, diet, start, end);
+                    rows[i] = new Row(p, health, exercise, diet);
+                    totals.add(health, exercise, diet);
+                }
+                return totals;
+            }
+            int mid = (from + to) >>> 1;
+            Task left = new Task(users, rows, from, mid, daily, plans, diets, start, end, mergeNanos);
+            Task right = new Task(users, rows, mid, to, daily, plans, diets, start, end, mergeNanos);
+            left.fork();
+            Totals r = right.compute();
+            Totals l = left.join();
+            long t = System.nanoTime();
+            Totals merged = l.merge(r);
+            mergeNanos.addAndGet(System.nanoTime() - t);
+            return merged;
+        }
+    }
+}
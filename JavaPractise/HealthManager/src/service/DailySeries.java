@@ -0,0 +1,231 @@
+package service;
+
+import model.DailyRecord;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 单个用户每日记录的列式存储
+ * 日期（epoch day）、体重、运动时长、睡眠时长各存一个基本类型数组，心情按字典编码存为byte，
+ * 每个数据点约29字节，不再为每天保留LocalDate和字符串对象；数组按日期升序，
+ * 趋势统计直接在连续数组上遍历
+ *
+ * 按日期顺序追加时直接写到末尾，乱序追加时二分查找插入位置；
+ * slice()按日期区间二分查找上下界，返回共享底层数组的只读视图，不复制数据
+ *
+ * 非线程安全：由一个线程构建，构建完成后可多线程只读；视图应在追加完成后再获取
+ */
+public class DailySeries {
+
+    /**
+     * 心情编码0表示未填写
+     */
+    public static final byte NO_MOOD = 0;
+
+    private int[] days;
+    private double[] weight;
+    private double[] exercise;
+    private double[] sleep;
+    private byte[] mood;
+    /**
+     * 心情字典，编码为下标+1；预置界面上的五种心情
+     */
+    private final List<String> moodDict;
+    /**
+     * 视图在底层数组中的范围[from, to)
+     */
+    private final int from;
+    private int to;
+    private final boolean view;
+
+    public DailySeries() {
+        this(16);
+    }
+
+    public DailySeries(int capacity) {
+        capacity = Math.max(4, capacity);
+        days = new int[capacity];
+        weight = new double[capacity];
+        exercise = new double[capacity];
+        sleep = new double[capacity];
+        mood = new byte[capacity];
+        moodDict = new ArrayList<>(Arrays.asList("愉快", "一般", "疲惫", "压力大", "沮丧"));
+        from = 0;
+        to = 0;
+        view = false;
+    }
+
+    private DailySeries(DailySeries parent, int from, int to) {
+        this.days = parent.days;
+        this.weight = parent.weight;
+        this.exercise = parent.exercise;
+        this.sleep = parent.sleep;
+        this.mood = parent.mood;
+        this.moodDict = parent.moodDict;
+        this.from = from;
+        this.to = to;
+        this.view = true;
+    }
+
+    /**
+     * 由每日记录构建（记录顺序不限，DatabaseManager返回的日期倒序会从末尾开始按顺序追加）
+     */
+    public static DailySeries of(List<DailyRecord> records) {
+        DailySeries series = new DailySeries(records.size());
+        boolean descending = records.size() > 1 && records.get(0).getDate() != null
+            && records.get(records.size() - 1).getDate() != null
+            && records.get(0).getDate().isAfter(records.get(records.size() - 1).getDate());
+        if (descending) {
+            for (int i = records.size() - 1; i >= 0; i--) series.append(records.get(i));
+        } else {
+            for (DailyRecord r : records) series.append(r);
+        }
+        return series;
+    }
+
+    // ==================== 写入 ====================
+
+    /**
+     * 追加一条每日记录，日期为空的跳过
+     */
+    public void append(DailyRecord record) {
+        if (record.getDate() == null) return;
+        append(record.getDate(), record.getWeight(), record.getExerciseDuration(), record.getSleepDuration(), record.getMood());
+    }
+
+    /**
+     * 追加一个数据点，同一天可有多条（保持插入顺序）
+     */
+    public void append(LocalDate date, double weightKg, double exerciseHours, double sleepHours, String moodText) {
+        if (view) throw new UnsupportedOperationException("视图只读");
+        int day = (int) date.toEpochDay();
+        byte code = encodeMood(moodText);
+        if (to == days.length) grow();
+        int i = to;
+        if (to > 0 && day < days[to - 1]) {
+            // 乱序：插到同一天已有数据之后
+            i = upperBound(day);
+            int n = to - i;
+            System.arraycopy(days, i, days, i + 1, n);
+            System.arraycopy(weight, i, weight, i + 1, n);
+            System.arraycopy(exercise, i, exercise, i + 1, n);
+            System.arraycopy(sleep, i, sleep, i + 1, n);
+            System.arraycopy(mood, i, mood, i + 1, n);
+        }
+        days[i] = day;
+        weight[i] = weightKg;
+        exercise[i] = exerciseHours;
+        sleep[i] = sleepHours;
+        mood[i] = code;
+        to++;
+    }
+
+    private void grow() {
+        int capacity = days.length + (days.length >> 1);
+        days = Arrays.copyOf(days, capacity);
+        weight = Arrays.copyOf(weight, capacity);
+        exercise = Arrays.copyOf(exercise, capacity);
+        sleep = Arrays.copyOf(sleep, capacity);
+        mood = Arrays.copyOf(mood, capacity);
+    }
+
+    /**
+     * 心情编码，字典中没有的新增（最多127种，超出记为未填写）
+     */
+    private byte encodeMood(String moodText) {
+        if (moodText == null || moodText.trim().isEmpty()) return NO_MOOD;
+        String m = moodText.trim();
+        int i = moodDict.indexOf(m);
+        if (i < 0) {
+            if (moodDict.size() >= Byte.MAX_VALUE) return NO_MOOD;
+            moodDict.add(m);
+            i = moodDict.size() - 1;
+        }
+        return (byte) (i + 1);
+    }
+
+    // ==================== 读取 ====================
+
+    /**
+     * 日期在[start, end]之间的数据点（视图，共享底层数组）
+     */
+    public DailySeries slice(LocalDate start, LocalDate end) {
+        int lo = lowerBound((int) start.toEpochDay());
+        int hi = Math.max(lo, upperBound((int) end.toEpochDay()));
+        return new DailySeries(this, lo, hi);
+    }
+
+    public int size() {
+        return to - from;
+    }
+
+    public boolean isEmpty() {
+        return to == from;
+    }
+
+    public int epochDay(int i) {
+        return days[from + i];
+    }
+
+    public LocalDate date(int i) {
+        return LocalDate.ofEpochDay(days[from + i]);
+    }
+
+    public double weight(int i) {
+        return weight[from + i];
+    }
+
+    public double exerciseDuration(int i) {
+        return exercise[from + i];
+    }
+
+    public double sleepDuration(int i) {
+        return sleep[from + i];
+    }
+
+    public byte moodCode(int i) {
+        return mood[from + i];
+    }
+
+    /**
+     * 心情文字，未填写返回null
+     */
+    public String mood(int i) {
+        return moodText(mood[from + i]);
+    }
+
+    public String moodText(byte code) {
+        return code == NO_MOOD ? null : moodDict.get(code - 1);
+    }
+
+    /**
+     * 第一个日期不早于day的下标（底层数组下标），限定在本视图内
+     */
+    private int lowerBound(int day) {
+        int lo = from;
+        int hi = to;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (days[mid] < day) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    /**
+     * 第一个日期晚于day的下标（底层数组下标），限定在本视图内
+     */
+    private int upperBound(int day) {
+        int lo = from;
+        int hi = to;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (days[mid] <= day) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+}
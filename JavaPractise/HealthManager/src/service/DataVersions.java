@@ -0,0 +1,52 @@
+package service;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按用户的数据版本号
+ * 用户的档案、每日记录、运动计划、饮食记录每写入一次，该用户的版本号就变大；
+ * 派生结果（如HealthScorer的评分）按(用户, 版本号)缓存，版本号没变说明数据没变，可以直接复用
+ *
+ * 记录时机：
+ * - 写操作（MySQL模式和内存模式相同）都按用户加锁，在释放UserLocks时记录（MySQL模式下此时事务已提交）；
+ *   记录改到其他用户名下、档案改名时原用户和新用户都加了锁，两个用户的版本号都会变大
+ * - 只按ID执行的删除、完成状态更新先查出记录所属的用户再加锁，同样只记录这些用户；
+ *   只有不按用户的批量写操作（UserLocks.lockAll）记一次全局变更，所有用户的版本号一起变大
+ *
+ * 版本号取自同一个全局递增序列，只增不减；读取方应先取版本号再查数据，
+ * 这样缓存中的结果只可能比版本号新、不会比它旧
+ *
+ * 只记录本进程内的写入，其他进程直接改库不会反映到这里
+ */
+public class DataVersions {
+
+    private static final AtomicLong sequence = new AtomicLong();
+    private static final ConcurrentHashMap<String, Long> byUser = new ConcurrentHashMap<>();
+    private static final AtomicLong all = new AtomicLong();
+
+    private DataVersions() {}
+
+    /**
+     * 记录该用户的数据发生了变化
+     */
+    public static void changed(String userName) {
+        if (userName == null) return;
+        byUser.merge(userName, sequence.incrementAndGet(), Math::max);
+    }
+
+    /**
+     * 记录所有用户的数据都可能发生了变化
+     */
+    public static void changedAll() {
+        all.accumulateAndGet(sequence.incrementAndGet(), Math::max);
+    }
+
+    /**
+     * 该用户当前的数据版本号
+     */
+    public static long of(String userName) {
+        Long v = userName != null ? byUser.get(userName) : null;
+        return Math.max(v != null ? v : 0, all.get());
+    }
+}
@@ -4,18 +4,32 @@ import model.UserProfile;
 import model.User;
 import model.ExercisePlan;
 import model.DietRecord;
+import model.UserSummary;
+import model.WeightPoint;
 import java.sql.*;
 // import java.time.LocalDateTime;
 // import java.time.format.DateTimeFormatter;
 import javax.swing.JOptionPane;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import model.DailyRecord;
 
 /**
  * 数据库管理类
  * 负责MySQL数据库的连接和用户档案数据的增删改查操作
  */
+@SuppressWarnings("try") // try-with-resources中的UserLocks.Held只用于离开时释放锁
 public class DatabaseManager {
     
     // 数据库连接配置
@@ -26,6 +40,17 @@ public class DatabaseManager {
     // JDBC驱动类名
     private static final String JDBC_DRIVER = "com.mysql.cj.jdbc.Driver";  //驱动类的名称
     
+    // 查询列（只读取调用方实际使用的列，不使用SELECT *；QueryPlanChecker复用）
+    static final String PROFILE_COLUMNS = "id, name, age, gender, height, weight, target_weight, " +
+            "fitness_goal, health_status, health_notes, phone, version";
+    static final String DAILY_RECORD_COLUMNS = "id, user_name, date, weight, exercise, exercise_duration, " +
+            "sleep_duration, mood, note, version";
+    static final String EXERCISE_PLAN_COLUMNS = "id, user_name, exercise_type, plan_date, duration, intensity, " +
+            "is_completed, actual_duration, notes, created_at, updated_at, version";
+    static final String DIET_RECORD_COLUMNS = "id, user_name, record_date, breakfast, lunch, dinner, notes, " +
+            "created_at, updated_at, version";
+    static final String USER_COLUMNS = "id, username, password, role, profile_name, is_active";
+    
     /**
      * 获取数据库连接
      * 
@@ -43,11 +68,148 @@ public class DatabaseManager {
         }
     }
     
+    /**
+     * 提示数据库错误：桌面模式弹窗，无界面服务模式（java.awt.headless）只输出到控制台
+     */
+    private static void showMessage(String message, String title, int messageType) {
+        if (java.awt.GraphicsEnvironment.isHeadless()) {
+            System.err.println(title + ": " + message);
+            return;
+        }
+        JOptionPane.showMessageDialog(null, message, title, messageType);
+    }
+
+    /**
+     * 记录保存成功后更新全文检索索引（SearchIndex），原样返回结果
+     */
+    private static boolean indexed(Object record, boolean saved) {
+        if (saved) SearchIndex.indexed(record);
+        return saved;
+    }
+
+    private static <T> SaveResult<T> indexed(SaveResult<T> result) {
+        if (result.isSuccess()) SearchIndex.indexed(result.getCurrent());
+        return result;
+    }
+
+    /**
+     * 更新成功后重新索引；记录改到了其他用户名下时先从原用户的索引中移除，原样返回结果
+     */
+    private static <T> SaveResult<T> reindexed(SaveResult<T> result, OwnerLock owners, String userName, int type, int id) {
+        if (result.isSuccess() && owners.movedTo(userName)) SearchIndex.removed(type, id);
+        return indexed(result);
+    }
+
+    /**
+     * 档案改名成功后丢弃原用户名和新用户名的检索索引（改名会级联修改记录的所属用户），原样返回结果
+     */
+    private static SaveResult<UserProfile> renamed(SaveResult<UserProfile> result, OwnerLock owners, String userName) {
+        if (result.isSuccess() && owners.movedTo(userName)) {
+            for (String previous : owners.owners()) {
+                SearchIndex.forget(previous);
+            }
+            SearchIndex.forget(userName);
+        }
+        return result;
+    }
+
+    /**
+     * 记录按ID删除成功后从全文检索索引中移除，原样返回结果
+     */
+    private static boolean removed(int type, int id, boolean deleted) {
+        if (deleted) SearchIndex.removed(type, id);
+        return deleted;
+    }
+
+    /**
+     * 用户档案删除成功后丢弃该用户的检索索引（userName为null表示不知道是哪个用户，全部丢弃），原样返回结果
+     */
+    private static boolean forgotten(String userName, boolean deleted) {
+        if (deleted) {
+            if (userName != null) SearchIndex.forget(userName);
+            else SearchIndex.forgetAll();
+        }
+        return deleted;
+    }
+
+    /**
+     * 按ID删除档案成功后丢弃其所属用户（lockOwners加锁时查出）的检索索引，原样返回结果
+     */
+    private static boolean forgottenOwners(Set<String> userNames, boolean deleted) {
+        if (deleted) {
+            for (String userName : userNames) {
+                SearchIndex.forget(userName);
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * 按记录ID加的用户锁（见lockOwners），同时记下加锁时记录所属的用户
+     */
+    private static final class OwnerLock implements AutoCloseable {
+        private final UserLocks.Held held;
+        private final Set<String> owners;
+
+        OwnerLock(UserLocks.Held held, Set<String> owners) {
+            this.held = held;
+            this.owners = owners;
+        }
+
+        /**
+         * 加锁时记录所属的用户，记录不存在时为空
+         */
+        Set<String> owners() { return owners; }
+
+        /**
+         * 写入后的所属用户与加锁时不同（记录改到其他用户名下、档案改名）
+         */
+        boolean movedTo(String userName) {
+            return !owners.isEmpty() && !owners.contains(userName);
+        }
+
+        @Override
+        public void close() {
+            held.close();
+        }
+    }
+
+    /**
+     * 锁定记录当前所属的用户，以及写入后所属的用户userName（为null表示不改归属）
+     * 先锁定userName（更新时通常就是当前所属用户），在锁内查出所属用户，已在锁定范围内就直接返回，
+     * 更新只查一次；不在范围内时放锁，连同查出的用户重新加锁后再查一次。
+     * 按ID删除不知道所属用户，第一次查询不在锁内，因此固定要查两次主键（记录不存在时一次）。
+     * 改归属的写操作都持有原所属用户的锁，锁内查出的归属在放锁前不会再变
+     */
+    private static OwnerLock lockOwners(Supplier<Set<String>> ownersOf, String userName) {
+        Set<String> names = new HashSet<>();
+        if (userName != null) names.add(userName);
+        while (true) {
+            UserLocks.Held held = UserLocks.lock(names);
+            Set<String> owners = ownersOf.get();
+            if (names.containsAll(owners)) return new OwnerLock(held, owners);
+            held.close();
+            names = new HashSet<>(owners);
+            if (userName != null) names.add(userName);
+        }
+    }
+
+    /**
+     * 按ID查询单条记录的所属用户（供lockOwners使用）
+     */
+    private static <T> Supplier<Set<String>> ownerOf(IntFunction<T> byId, Function<T, String> owner, int id) {
+        return () -> {
+            T record = byId.apply(id);
+            return record != null ? Collections.singleton(owner.apply(record)) : Collections.<String>emptySet();
+        };
+    }
+
     /**
      * 测试数据库连接
      * @return 连接是否成功
      */
     public static boolean testConnection() {
+        if (InMemoryDatabase.isEnabled()) return true;
         try (Connection conn = getConnection()) {
             return conn != null && !conn.isClosed();
         } catch (SQLException e) {
@@ -58,111 +220,18 @@ public class DatabaseManager {
     
     /**
      * 初始化数据库表
-     * 创建各种表(这样在别的电脑上也能运行)
+     * 通过SchemaMigrator按版本执行建表和升级脚本(这样在别的电脑上也能运行)
+     * 已是最新版本时只执行一次schema_version查询
      */
     public static void initializeDatabase() {
-        // 创建用户认证表
-        String createUsersTableSQL = "CREATE TABLE IF NOT EXISTS users (" +
-            "id INT PRIMARY KEY AUTO_INCREMENT COMMENT '用户ID'," +
-            "username VARCHAR(50) NOT NULL UNIQUE COMMENT '登录用户名'," +
-            "password VARCHAR(255) NOT NULL COMMENT '密码'," +
-            "role ENUM('USER', 'ADMIN') NOT NULL DEFAULT 'USER' COMMENT '用户角色'," +
-            "profile_name VARCHAR(50) COMMENT '关联的档案名称'," +
-            "is_active BOOLEAN DEFAULT TRUE COMMENT '是否激活'," +
-            "created_at DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间'," +
-            "updated_at DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间'" +
-            ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='用户认证表'";
-            
-        String createTableSQL = "CREATE TABLE IF NOT EXISTS user_profile (" +
-            "id INT PRIMARY KEY AUTO_INCREMENT COMMENT '用户ID'," +
-            "name VARCHAR(50) NOT NULL UNIQUE COMMENT '姓名-唯一'," +
-            "age INT NOT NULL COMMENT '年龄'," +
-            "gender ENUM('男', '女') NOT NULL COMMENT '性别'," +
-            "height DECIMAL(5,2) NOT NULL COMMENT '身高(cm)'," +
-            "weight DECIMAL(5,2) NOT NULL COMMENT '体重(kg)'," +
-            "target_weight DECIMAL(5,2) COMMENT '目标体重(kg)'," +
-            "fitness_goal VARCHAR(50) COMMENT '健身目标'," +
-            "health_status TEXT COMMENT '健康状况'," +
-            "health_notes TEXT COMMENT '健康备注'," +
-            "phone VARCHAR(20) COMMENT '联系电话'," +
-            "created_date DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间'," +
-            "updated_date DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间'," +
-            "is_active BOOLEAN DEFAULT TRUE COMMENT '是否激活'" +
-            ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='用户档案表'";
-        
-        String createDailyRecordTableSQL = "CREATE TABLE IF NOT EXISTS daily_record (" +
-            "id INT PRIMARY KEY AUTO_INCREMENT COMMENT '记录ID'," +
-            "user_name VARCHAR(50) NOT NULL COMMENT '用户名'," +
-            "date DATE NOT NULL COMMENT '日期'," +
-            "weight DECIMAL(5,2) COMMENT '体重(kg)'," +
-            "exercise VARCHAR(100) COMMENT '运动内容'," +
-            "exercise_duration DECIMAL(4,2) COMMENT '运动时长(小时)'," +
-            "sleep_duration DECIMAL(4,2) COMMENT '睡眠时长(小时)'," +
-            "mood VARCHAR(20) COMMENT '心情'," +
-            "note TEXT COMMENT '备注'," +
-            "created_at DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间'," +
-            "updated_at DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间'," +
-            "UNIQUE KEY uniq_user_date (user_name, date)," +
-            "FOREIGN KEY (user_name) REFERENCES user_profile(name) ON DELETE CASCADE ON UPDATE CASCADE" +
-            ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='每日健康记录表'";
-        
-        String createExercisePlanTableSQL = "CREATE TABLE IF NOT EXISTS exercise_plan (" +
-            "id INT PRIMARY KEY AUTO_INCREMENT COMMENT '计划ID'," +
-            "user_name VARCHAR(50) NOT NULL COMMENT '用户名'," +
-            "exercise_type VARCHAR(50) NOT NULL COMMENT '运动类型'," +
-            "plan_date DATE NOT NULL COMMENT '计划日期'," +
-            "duration DECIMAL(4,2) COMMENT '计划时长(小时)'," +
-            "intensity VARCHAR(20) COMMENT '运动强度(低/中/高)'," +
-            "is_completed BOOLEAN DEFAULT FALSE COMMENT '是否完成'," +
-            "actual_duration DECIMAL(4,2) COMMENT '实际完成时长(小时)'," +
-            "notes TEXT COMMENT '备注'," +
-            "created_at DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间'," +
-            "updated_at DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间'," +
-            "UNIQUE KEY uniq_user_plan_date (user_name, plan_date)," +
-            "FOREIGN KEY (user_name) REFERENCES user_profile(name) ON DELETE CASCADE ON UPDATE CASCADE" +
-            ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='运动计划表'";
-        
-        String createDietRecordTableSQL = "CREATE TABLE IF NOT EXISTS diet_record (" +
-            "id INT PRIMARY KEY AUTO_INCREMENT COMMENT '主键，自增'," +
-            "user_name VARCHAR(50) NOT NULL COMMENT '用户名，关联user_profile表'," +
-            "record_date DATE NOT NULL COMMENT '饮食记录日期'," +
-            "breakfast TEXT COMMENT '早餐内容（多选食物、其它、无安排）'," +
-            "lunch TEXT COMMENT '午餐内容（多选食物、其它、无安排）'," +
-            "dinner TEXT COMMENT '晚餐内容（多选食物、其它、无安排）'," +
-            "notes TEXT COMMENT '备注'," +
-            "created_at DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间'," +
-            "updated_at DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间'," +
-            "INDEX idx_user_date (user_name, record_date)," +
-            "CONSTRAINT fk_diet_user FOREIGN KEY (user_name) REFERENCES user_profile(name) ON DELETE CASCADE" +
-            ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='饮食记录表';";
+        // 内存数据库模式下无需建表
+        if (InMemoryDatabase.isEnabled()) {
+            InMemoryDatabase.initialize();
+            return;
+        }
         
-        try (Connection conn = getConnection();
-             Statement stmt = conn.createStatement()) {
-            
-            // 创建用户认证表
-            stmt.executeUpdate(createUsersTableSQL);
-            System.out.println("用户认证表检查完成");
-            
-            // 检查是否需要插入默认超级管理员账户
-            String checkAdminSQL = "SELECT COUNT(*) FROM users WHERE role = 'ADMIN'";
-            try (ResultSet rs = stmt.executeQuery(checkAdminSQL)) {
-                if (rs.next() && rs.getInt(1) == 0) {
-                    // 插入默认超级管理员账户（root/123456）
-                    String insertAdminSQL = "INSERT INTO users (username, password, role) VALUES ('root', '123456', 'ADMIN')";
-                    stmt.executeUpdate(insertAdminSQL);
-                    System.out.println("默认超级管理员账户创建完成: root/123456");
-                }
-            }
-            
-            stmt.executeUpdate(createTableSQL);
-            System.out.println("用户档案表检查完成");
-            stmt.executeUpdate(createDailyRecordTableSQL);
-            System.out.println("每日记录表检查完成");
-            stmt.executeUpdate(createExercisePlanTableSQL);
-            System.out.println("运动计划表检查完成");
-            stmt.executeUpdate(createDietRecordTableSQL);
-            System.out.println("饮食记录表检查完成");
-            
+        try (Connection conn = getConnection()) {
+            SchemaMigrator.migrate(conn);
         } catch (SQLException e) {
             System.err.println("数据库表初始化失败: " + e.getMessage());
             // 注释掉弹窗，避免启动时的错误提示
@@ -174,26 +243,29 @@ public class DatabaseManager {
     
     /**
      * 保存用户档案到数据库
-     * 如果用户已存在则更新，否则插入新记录
+     * 如果用户已存在则更新（按profile的version检查版本），否则插入新记录
      * 
      * @param profile 用户档案对象
-     * @return 保存是否成功
+     * @return 保存结果
      */
-    public static boolean saveUserProfile(UserProfile profile) {
+    public static SaveResult<UserProfile> saveUserProfile(UserProfile profile) {
         if (profile == null) {
-            return false;
+            return SaveResult.failed();
         }
         
-        // 根据用户名检查用户是否已存在
-        UserProfile existingProfile = getUserProfileByName(profile.getName());
-        
-        if (existingProfile != null) {
-            // 如果存在，设置ID并更新
-            profile.setId(existingProfile.getId());
-            return updateUserProfile(profile);
-        } else {
-            // 如果不存在，插入新记录
-            return insertUserProfile(profile);
+        // 先查后写，加锁避免同一用户同时保存时重复插入
+        try (UserLocks.Held held = UserLocks.lock(profile.getName())) {
+            // 根据用户名检查用户是否已存在
+            UserProfile existingProfile = getUserProfileByName(profile.getName());
+            
+            if (existingProfile != null) {
+                // 如果存在，设置ID并更新
+                profile.setId(existingProfile.getId());
+                return updateUserProfile(profile);
+            } else {
+                // 如果不存在，插入新记录
+                return insertUserProfile(profile) ? SaveResult.saved(profile) : SaveResult.failed();
+            }
         }
     }
     
@@ -201,11 +273,17 @@ public class DatabaseManager {
      * 插入新的用户档案
      */
     public static boolean insertUserProfile(UserProfile profile) {
+        if (InMemoryDatabase.isEnabled()) {
+            try (UserLocks.Held held = UserLocks.lock(profile != null ? profile.getName() : null)) {
+                return InMemoryDatabase.insertUserProfile(profile);
+            }
+        }
         String insertSQL = "INSERT INTO user_profile (name, age, gender, height, weight, target_weight, " +
                           "fitness_goal, health_status, health_notes, phone) " +
                           "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
         
-        try (Connection conn = getConnection();
+        try (UserLocks.Held held = UserLocks.lock(profile.getName());
+             Connection conn = getConnection();
              PreparedStatement pstmt = conn.prepareStatement(insertSQL, Statement.RETURN_GENERATED_KEYS)) {
             
             setProfileParameters(pstmt, profile);
@@ -225,12 +303,10 @@ public class DatabaseManager {
         } catch (SQLException e) {
             System.err.println("用户档案插入失败: " + e.getMessage());
             if (e.getMessage().contains("Duplicate entry")) {
-                JOptionPane.showMessageDialog(null, 
-                    "用户名已存在，请使用不同的用户名！", 
+                showMessage("用户名已存在，请使用不同的用户名！", 
                     "用户名重复", JOptionPane.WARNING_MESSAGE);
             } else {
-                JOptionPane.showMessageDialog(null, 
-                    "保存用户档案失败:\n" + e.getMessage(), 
+                showMessage("保存用户档案失败:\n" + e.getMessage(), 
                     "数据库错误", JOptionPane.ERROR_MESSAGE);
             }
         }
@@ -239,29 +315,42 @@ public class DatabaseManager {
     }
     
     /**
-     * 更新现有用户档案
+     * 更新现有用户档案（按版本号检查，版本不一致时不覆盖）
+     *
+     * @param profile 用户档案，version为读取时的版本号；保存成功后version加1
+     * @return 保存结果，冲突时附带数据库中的当前档案
      */
-    public static boolean updateUserProfile(UserProfile profile) {
+    public static SaveResult<UserProfile> updateUserProfile(UserProfile profile) {
+        if (profile == null) return SaveResult.failed();
+        // 改名会级联修改原用户名下的记录：原用户名和新用户名都要加锁
+        Supplier<Set<String>> owner = ownerOf(DatabaseManager::getUserProfileById, UserProfile::getName, profile.getId());
+        if (InMemoryDatabase.isEnabled()) {
+            try (OwnerLock owners = lockOwners(owner, profile.getName())) {
+                return renamed(InMemoryDatabase.updateUserProfile(profile), owners, profile.getName());
+            }
+        }
         String updateSQL = "UPDATE user_profile " +
                           "SET name=?, age=?, gender=?, height=?, weight=?, target_weight=?, " +
-                          "fitness_goal=?, health_status=?, health_notes=?, phone=? " +
-                          "WHERE id = ?";
-        try (Connection conn = getConnection();
+                          "fitness_goal=?, health_status=?, health_notes=?, phone=?, version=version+1 " +
+                          "WHERE id = ? AND version = ?";
+        try (OwnerLock owners = lockOwners(owner, profile.getName());
+             Connection conn = getConnection();
              PreparedStatement pstmt = conn.prepareStatement(updateSQL)) {
             setProfileParameters(pstmt, profile);
             pstmt.setInt(11, profile.getId());
-            int result = pstmt.executeUpdate();
-            if (result > 0) {
+            pstmt.setInt(12, profile.getVersion());
+            if (pstmt.executeUpdate() > 0) {
+                profile.setVersion(profile.getVersion() + 1);
                 System.out.println("用户档案更新成功");
-                return true;
+                return renamed(SaveResult.saved(profile), owners, profile.getName());
             }
         } catch (SQLException e) {
             System.err.println("用户档案更新失败: " + e.getMessage());
-            JOptionPane.showMessageDialog(null, 
-                "更新用户档案失败:\n" + e.getMessage(), 
+            showMessage("更新用户档案失败:\n" + e.getMessage(), 
                 "数据库错误", JOptionPane.ERROR_MESSAGE);
+            return SaveResult.failed();
         }
-        return false;
+        return conflictOrMissing(getUserProfileById(profile.getId()));
     }
     
     /**
@@ -293,7 +382,8 @@ public class DatabaseManager {
      * @return 用户档案对象，如果不存在则返回null
      */
     public static UserProfile loadUserProfile() {
-        String selectSQL = "SELECT * FROM user_profile WHERE is_active = TRUE ORDER BY updated_date DESC LIMIT 1";
+        if (InMemoryDatabase.isEnabled()) return InMemoryDatabase.loadUserProfile();
+        String selectSQL = "SELECT " + PROFILE_COLUMNS + ", created_date, updated_date FROM user_profile WHERE is_active = TRUE ORDER BY updated_date DESC LIMIT 1";
         
         try (Connection conn = getConnection();
              PreparedStatement pstmt = conn.prepareStatement(selectSQL);
@@ -318,6 +408,7 @@ public class DatabaseManager {
                 profile.setHealthStatus(rs.getString("health_status"));
                 profile.setHealthNotes(rs.getString("health_notes"));
                 profile.setPhone(rs.getString("phone"));
+                profile.setVersion(rs.getInt("version"));
                 
                 // 设置创建和更新时间
                 Timestamp createdTimestamp = rs.getTimestamp("created_date");
@@ -336,8 +427,7 @@ public class DatabaseManager {
             
         } catch (SQLException e) {
             System.err.println("用户档案加载失败: " + e.getMessage());
-            JOptionPane.showMessageDialog(null, 
-                "加载用户档案失败:\n" + e.getMessage(), 
+            showMessage("加载用户档案失败:\n" + e.getMessage(), 
                 "数据库错误", JOptionPane.ERROR_MESSAGE);
         }
         
@@ -350,6 +440,7 @@ public class DatabaseManager {
      * @return 是否存在数据
      */
     public static boolean hasUserProfileData() {
+        if (InMemoryDatabase.isEnabled()) return InMemoryDatabase.hasUserProfileData();
         String countSQL = "SELECT COUNT(*) FROM user_profile WHERE is_active = TRUE";
         
         try (Connection conn = getConnection();
@@ -373,21 +464,27 @@ public class DatabaseManager {
      * @return 删除是否成功
      */
     public static boolean deleteUserProfile() {
+        // 涉及所有用户，锁住全部用户
+        if (InMemoryDatabase.isEnabled()) {
+            try (UserLocks.Held held = UserLocks.lockAll()) {
+                return forgotten(null, InMemoryDatabase.deleteUserProfile());
+            }
+        }
         String deleteSQL = "UPDATE user_profile SET is_active = FALSE WHERE is_active = TRUE";
         
-        try (Connection conn = getConnection();
+        try (UserLocks.Held held = UserLocks.lockAll();
+             Connection conn = getConnection();
              PreparedStatement pstmt = conn.prepareStatement(deleteSQL)) {
             
             int result = pstmt.executeUpdate();
             if (result > 0) {
                 System.out.println("用户档案删除成功");
-                return true;
+                return forgotten(null, true);
             }
             
         } catch (SQLException e) {
             System.err.println("用户档案删除失败: " + e.getMessage());
-            JOptionPane.showMessageDialog(null, 
-                "删除用户档案失败:\n" + e.getMessage(), 
+            showMessage("删除用户档案失败:\n" + e.getMessage(), 
                 "数据库错误", JOptionPane.ERROR_MESSAGE);
         }
         
@@ -398,27 +495,19 @@ public class DatabaseManager {
      * 获取所有用户档案
      */
     public static List<UserProfile> getAllUserProfiles() {
+        if (InMemoryDatabase.isEnabled()) return InMemoryDatabase.getAllUserProfiles();
         List<UserProfile> profiles = new ArrayList<>();
-        String sql = "SELECT * FROM user_profile ORDER BY id ASC";
+        String sql = "SELECT " + PROFILE_COLUMNS + " FROM user_profile ORDER BY id ASC";
         try (Connection conn = getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql);
              ResultSet rs = pstmt.executeQuery()) {
             while (rs.next()) {
-                UserProfile profile = new UserProfile();
-                profile.setId(rs.getInt("id"));
-                profile.setName(rs.getString("name"));
-                profile.setAge(rs.getInt("age"));
-                profile.setGender(rs.getString("gender"));
-                profile.setHeight(rs.getDouble("height"));
-                profile.setWeight(rs.getDouble("weight"));
-                profile.setTargetWeight(rs.getDouble("target_weight"));
-                profile.setFitnessGoal(rs.getString("fitness_goal"));
-                profile.setHealthStatus(rs.getString("health_status"));
-                profile.setHealthNotes(rs.getString("health_notes"));
-                profile.setPhone(rs.getString("phone"));
-                profiles.add(profile);
+                profiles.add(parseUserProfileFromResultSet(rs));
             }
+            OfflineCache.rememberProfiles(profiles);
         } catch (SQLException e) {
+            // 连不上数据库时返回最近一次的查询结果
+            if (OfflineJournal.isConnectionFailure(e)) return OfflineCache.profiles();
             e.printStackTrace();
         }
         return profiles;
@@ -428,25 +517,14 @@ public class DatabaseManager {
      * 根据ID获取用户档案
      */
     public static UserProfile getUserProfileById(int id) {
-        String sql = "SELECT * FROM user_profile WHERE id = ?";
+        if (InMemoryDatabase.isEnabled()) return InMemoryDatabase.getUserProfileById(id);
+        String sql = "SELECT " + PROFILE_COLUMNS + " FROM user_profile WHERE id = ?";
         try (Connection conn = getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setInt(1, id);
             try (ResultSet rs = pstmt.executeQuery()) {
                 if (rs.next()) {
-                    UserProfile profile = new UserProfile();
-                    profile.setId(rs.getInt("id"));
-                    profile.setName(rs.getString("name"));
-                    profile.setAge(rs.getInt("age"));
-                    profile.setGender(rs.getString("gender"));
-                    profile.setHeight(rs.getDouble("height"));
-                    profile.setWeight(rs.getDouble("weight"));
-                    profile.setTargetWeight(rs.getDouble("target_weight"));
-                    profile.setFitnessGoal(rs.getString("fitness_goal"));
-                    profile.setHealthStatus(rs.getString("health_status"));
-                    profile.setHealthNotes(rs.getString("health_notes"));
-                    profile.setPhone(rs.getString("phone"));
-                    return profile;
+                    return parseUserProfileFromResultSet(rs);
                 }
             }
         } catch (SQLException e) {
@@ -459,11 +537,18 @@ public class DatabaseManager {
      * 根据ID删除用户档案
      */
     public static boolean deleteUserProfileById(int id) {
+        Supplier<Set<String>> owner = ownerOf(DatabaseManager::getUserProfileById, UserProfile::getName, id);
+        if (InMemoryDatabase.isEnabled()) {
+            try (OwnerLock owners = lockOwners(owner, null)) {
+                return forgottenOwners(owners.owners(), InMemoryDatabase.deleteUserProfileById(id));
+            }
+        }
         String sql = "DELETE FROM user_profile WHERE id = ?";
-        try (Connection conn = getConnection();
+        try (OwnerLock owners = lockOwners(owner, null);
+             Connection conn = getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setInt(1, id);
-            return pstmt.executeUpdate() > 0;
+            return forgottenOwners(owners.owners(), pstmt.executeUpdate() > 0);
         } catch (SQLException e) {
             e.printStackTrace();
             return false;
@@ -474,33 +559,48 @@ public class DatabaseManager {
      * 根据用户名获取用户档案
      */
     public static UserProfile getUserProfileByName(String name) {
-        String sql = "SELECT * FROM user_profile WHERE name = ?";
+        if (InMemoryDatabase.isEnabled()) return InMemoryDatabase.getUserProfileByName(name);
+        String sql = "SELECT " + PROFILE_COLUMNS + " FROM user_profile WHERE name = ?";
         try (Connection conn = getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, name);
             try (ResultSet rs = pstmt.executeQuery()) {
                 if (rs.next()) {
-                    UserProfile profile = new UserProfile();
-                    profile.setId(rs.getInt("id"));
-                    profile.setName(rs.getString("name"));
-                    profile.setAge(rs.getInt("age"));
-                    profile.setGender(rs.getString("gender"));
-                    profile.setHeight(rs.getDouble("height"));
-                    profile.setWeight(rs.getDouble("weight"));
-                    profile.setTargetWeight(rs.getDouble("target_weight"));
-                    profile.setFitnessGoal(rs.getString("fitness_goal"));
-                    profile.setHealthStatus(rs.getString("health_status"));
-                    profile.setHealthNotes(rs.getString("health_notes"));
-                    profile.setPhone(rs.getString("phone"));
+                    UserProfile profile = parseUserProfileFromResultSet(rs);
+                    OfflineCache.rememberProfile(name, profile);
                     return profile;
                 }
             }
         } catch (SQLException e) {
+            // 连不上数据库时返回最近一次的查询结果
+            if (OfflineJournal.isConnectionFailure(e)) return OfflineCache.profile(name);
             e.printStackTrace();
         }
         return null;
     }
     
+    /**
+     * 获取所有用户的ID和姓名（用户下拉框使用，只读取两列）
+     */
+    public static List<UserSummary> getAllUserSummaries() {
+        if (InMemoryDatabase.isEnabled()) return InMemoryDatabase.getAllUserSummaries();
+        List<UserSummary> users = new ArrayList<>();
+        String sql = "SELECT id, name FROM user_profile ORDER BY id ASC";
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql);
+             ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                users.add(new UserSummary(rs.getInt(1), rs.getString(2)));
+            }
+            OfflineCache.rememberSummaries(users);
+        } catch (SQLException e) {
+            // 连不上数据库时返回最近一次的查询结果
+            if (OfflineJournal.isConnectionFailure(e)) return OfflineCache.summaries();
+            e.printStackTrace();
+        }
+        return users;
+    }
+    
     /**
      * 保存每日记录到数据库
      * @param record DailyRecord对象
@@ -508,10 +608,32 @@ public class DatabaseManager {
      */
     public static boolean saveDailyRecord(DailyRecord record) {
         if (record == null) return false;
+        if (InMemoryDatabase.isEnabled()) {
+            try (UserLocks.Held held = UserLocks.lock(record.getUserName())) {
+                return indexed(record, InMemoryDatabase.saveDailyRecord(record));
+            }
+        }
+        try (UserLocks.Held held = UserLocks.lock(record.getUserName());
+             Connection conn = getConnection()) {
+            return indexed(record, insertDailyRecord(conn, record));
+        } catch (SQLException e) {
+            // 连不上数据库：记入离线日志，恢复后自动补写
+            if (OfflineJournal.isConnectionFailure(e) && OfflineJournal.append(record)) {
+                return true;
+            }
+            System.err.println("每日记录保存失败: " + e.getMessage());
+            showMessage("保存每日记录失败:\n" + e.getMessage(), "数据库错误", JOptionPane.ERROR_MESSAGE);
+        }
+        return false;
+    }
+    
+    /**
+     * 在给定连接上插入每日记录，成功后把生成的ID设置到record中（在线保存和离线日志补写共用）
+     */
+    private static boolean insertDailyRecord(Connection conn, DailyRecord record) throws SQLException {
         String insertSQL = "INSERT INTO daily_record (user_name, date, weight, exercise, exercise_duration, sleep_duration, mood, note) " +
                 "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
-        try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(insertSQL)) {
+        try (PreparedStatement pstmt = conn.prepareStatement(insertSQL, Statement.RETURN_GENERATED_KEYS)) {
             pstmt.setString(1, record.getUserName());
             pstmt.setDate(2, java.sql.Date.valueOf(record.getDate()));
             pstmt.setDouble(3, record.getWeight());
@@ -520,36 +642,28 @@ public class DatabaseManager {
             pstmt.setDouble(6, record.getSleepDuration());
             pstmt.setString(7, record.getMood());
             pstmt.setString(8, record.getNote());
-            int result = pstmt.executeUpdate();
-            return result > 0;
-        } catch (SQLException e) {
-            System.err.println("每日记录保存失败: " + e.getMessage());
-            JOptionPane.showMessageDialog(null, "保存每日记录失败:\n" + e.getMessage(), "数据库错误", JOptionPane.ERROR_MESSAGE);
+            if (pstmt.executeUpdate() == 0) return false;
+            try (ResultSet generatedKeys = pstmt.getGeneratedKeys()) {
+                if (generatedKeys.next()) {
+                    record.setId(generatedKeys.getInt(1));
+                }
+            }
+            return true;
         }
-        return false;
     }
     
     /**
      * 获取所有每日记录
      */
     public static List<DailyRecord> getAllDailyRecords() {
+        if (InMemoryDatabase.isEnabled()) return InMemoryDatabase.getAllDailyRecords();
         List<DailyRecord> records = new ArrayList<>();
-        String sql = "SELECT * FROM daily_record ORDER BY date DESC, id DESC";
+        String sql = "SELECT " + DAILY_RECORD_COLUMNS + " FROM daily_record ORDER BY date DESC, id DESC";
         try (Connection conn = getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql);
              ResultSet rs = pstmt.executeQuery()) {
             while (rs.next()) {
-                DailyRecord record = new DailyRecord();
-                record.setId(rs.getInt("id"));
-                record.setUserName(rs.getString("user_name"));
-                record.setDate(rs.getDate("date").toLocalDate());
-                record.setWeight(rs.getDouble("weight"));
-                record.setExercise(rs.getString("exercise"));
-                record.setExerciseDuration(rs.getDouble("exercise_duration"));
-                record.setSleepDuration(rs.getDouble("sleep_duration"));
-                record.setMood(rs.getString("mood"));
-                record.setNote(rs.getString("note"));
-                records.add(record);
+                records.add(parseDailyRecordFromResultSet(rs));
             }
         } catch (SQLException e) {
             e.printStackTrace();
@@ -558,12 +672,20 @@ public class DatabaseManager {
     }
 
     /**
-     * 更新每日记录
+     * 更新每日记录（按版本号检查，版本不一致时不覆盖）
      */
-    public static boolean updateDailyRecord(DailyRecord record) {
-        if (record == null || record.getId() == 0) return false;
-        String sql = "UPDATE daily_record SET user_name=?, date=?, weight=?, exercise=?, exercise_duration=?, sleep_duration=?, mood=?, note=? WHERE id=?";
-        try (Connection conn = getConnection();
+    public static SaveResult<DailyRecord> updateDailyRecord(DailyRecord record) {
+        if (record == null || record.getId() == 0) return SaveResult.failed();
+        // 记录可能改到其他用户名下：原所属用户和新所属用户都要加锁
+        Supplier<Set<String>> owner = ownerOf(DatabaseManager::getDailyRecordById, DailyRecord::getUserName, record.getId());
+        if (InMemoryDatabase.isEnabled()) {
+            try (OwnerLock owners = lockOwners(owner, record.getUserName())) {
+                return reindexed(InMemoryDatabase.updateDailyRecord(record), owners, record.getUserName(), SearchIndex.TYPE_DAILY, record.getId());
+            }
+        }
+        String sql = "UPDATE daily_record SET user_name=?, date=?, weight=?, exercise=?, exercise_duration=?, sleep_duration=?, mood=?, note=?, version=version+1 WHERE id=? AND version=?";
+        try (OwnerLock owners = lockOwners(owner, record.getUserName());
+             Connection conn = getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, record.getUserName());
             pstmt.setDate(2, java.sql.Date.valueOf(record.getDate()));
@@ -574,22 +696,54 @@ public class DatabaseManager {
             pstmt.setString(7, record.getMood());
             pstmt.setString(8, record.getNote());
             pstmt.setInt(9, record.getId());
-            return pstmt.executeUpdate() > 0;
+            pstmt.setInt(10, record.getVersion());
+            if (pstmt.executeUpdate() > 0) {
+                record.setVersion(record.getVersion() + 1);
+                return reindexed(SaveResult.saved(record), owners, record.getUserName(), SearchIndex.TYPE_DAILY, record.getId());
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return SaveResult.failed();
+        }
+        return conflictOrMissing(getDailyRecordById(record.getId()));
+    }
+
+    /**
+     * 查询单条每日记录
+     */
+    public static DailyRecord getDailyRecordById(int id) {
+        if (InMemoryDatabase.isEnabled()) return InMemoryDatabase.getDailyRecordById(id);
+        String sql = "SELECT " + DAILY_RECORD_COLUMNS + " FROM daily_record WHERE id = ?";
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, id);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    return parseDailyRecordFromResultSet(rs);
+                }
+            }
         } catch (SQLException e) {
             e.printStackTrace();
-            return false;
         }
+        return null;
     }
 
     /**
      * 根据ID删除每日记录
      */
     public static boolean deleteDailyRecordById(int id) {
+        Supplier<Set<String>> owner = ownerOf(DatabaseManager::getDailyRecordById, DailyRecord::getUserName, id);
+        if (InMemoryDatabase.isEnabled()) {
+            try (OwnerLock owners = lockOwners(owner, null)) {
+                return removed(SearchIndex.TYPE_DAILY, id, InMemoryDatabase.deleteDailyRecordById(id));
+            }
+        }
         String sql = "DELETE FROM daily_record WHERE id = ?";
-        try (Connection conn = getConnection();
+        try (OwnerLock owners = lockOwners(owner, null);
+             Connection conn = getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setInt(1, id);
-            return pstmt.executeUpdate() > 0;
+            return removed(SearchIndex.TYPE_DAILY, id, pstmt.executeUpdate() > 0);
         } catch (SQLException e) {
             e.printStackTrace();
             return false;
@@ -602,27 +756,23 @@ public class DatabaseManager {
      * 插入新的运动计划
      */
     public static boolean insertExercisePlan(ExercisePlan plan) {
-        String insertSQL = "INSERT INTO exercise_plan (user_name, exercise_type, plan_date, duration, intensity, is_completed, actual_duration, notes) " +
-                          "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
-        
-        try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(insertSQL, Statement.RETURN_GENERATED_KEYS)) {
-            
-            setExercisePlanParameters(pstmt, plan);
-            
-            int result = pstmt.executeUpdate();
-            if (result > 0) {
-                // 获取生成的ID并设置到plan对象中
-                try (ResultSet generatedKeys = pstmt.getGeneratedKeys()) {
-                    if (generatedKeys.next()) {
-                        plan.setId(generatedKeys.getInt(1));
-                    }
-                }
+        if (InMemoryDatabase.isEnabled()) {
+            try (UserLocks.Held held = UserLocks.lock(plan != null ? plan.getUserName() : null)) {
+                return indexed(plan, InMemoryDatabase.insertExercisePlan(plan));
+            }
+        }
+        try (UserLocks.Held held = UserLocks.lock(plan.getUserName());
+             Connection conn = getConnection()) {
+            if (insertExercisePlan(conn, plan)) {
                 System.out.println("运动计划插入成功，ID: " + plan.getId());
-                return true;
+                return indexed(plan, true);
             }
             
         } catch (SQLException e) {
+            // 连不上数据库：记入离线日志，恢复后自动补写
+            if (OfflineJournal.isConnectionFailure(e) && OfflineJournal.append(plan)) {
+                return true;
+            }
             System.err.println("运动计划插入失败: " + e.getMessage());
             // 不弹窗，只打印日志
         }
@@ -631,27 +781,77 @@ public class DatabaseManager {
     }
     
     /**
-     * 更新运动计划
+     * 更新运动计划（按版本号检查，版本不一致时不覆盖）
      */
-    public static boolean updateExercisePlan(ExercisePlan plan) {
+    public static SaveResult<ExercisePlan> updateExercisePlan(ExercisePlan plan) {
+        if (plan == null) return SaveResult.failed();
+        // 计划可能改到其他用户名下：原所属用户和新所属用户都要加锁
+        Supplier<Set<String>> owner = ownerOf(DatabaseManager::getExercisePlanById, ExercisePlan::getUserName, plan.getId());
+        if (InMemoryDatabase.isEnabled()) {
+            try (OwnerLock owners = lockOwners(owner, plan.getUserName())) {
+                return reindexed(InMemoryDatabase.updateExercisePlan(plan), owners, plan.getUserName(), SearchIndex.TYPE_PLAN, plan.getId());
+            }
+        }
         String updateSQL = "UPDATE exercise_plan " +
                           "SET user_name=?, exercise_type=?, plan_date=?, duration=?, intensity=?, " +
-                          "is_completed=?, actual_duration=?, notes=? " +
-                          "WHERE id = ?";
-        try (Connection conn = getConnection();
+                          "is_completed=?, actual_duration=?, notes=?, version=version+1 " +
+                          "WHERE id = ? AND version = ?";
+        try (OwnerLock owners = lockOwners(owner, plan.getUserName());
+             Connection conn = getConnection();
              PreparedStatement pstmt = conn.prepareStatement(updateSQL)) {
             setExercisePlanParameters(pstmt, plan);
             pstmt.setInt(9, plan.getId());
-            int result = pstmt.executeUpdate();
-            if (result > 0) {
+            pstmt.setInt(10, plan.getVersion());
+            if (pstmt.executeUpdate() > 0) {
+                plan.setVersion(plan.getVersion() + 1);
                 System.out.println("运动计划更新成功");
-                return true;
+                return reindexed(SaveResult.saved(plan), owners, plan.getUserName(), SearchIndex.TYPE_PLAN, plan.getId());
             }
         } catch (SQLException e) {
             System.err.println("运动计划更新失败: " + e.getMessage());
             // 不弹窗，只打印日志
+            return SaveResult.failed();
+        }
+        return conflictOrMissing(getExercisePlanById(plan.getId()));
+    }
+
+    /**
+     * 查询单条运动计划
+     */
+    public static ExercisePlan getExercisePlanById(int id) {
+        if (InMemoryDatabase.isEnabled()) return InMemoryDatabase.getExercisePlanById(id);
+        String sql = "SELECT " + EXERCISE_PLAN_COLUMNS + " FROM exercise_plan WHERE id = ?";
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, id);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    return parseExercisePlanFromResultSet(rs);
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+    
+    /**
+     * 在给定连接上插入运动计划，成功后把生成的ID设置到plan中（在线保存和离线日志补写共用）
+     */
+    private static boolean insertExercisePlan(Connection conn, ExercisePlan plan) throws SQLException {
+        String insertSQL = "INSERT INTO exercise_plan (user_name, exercise_type, plan_date, duration, intensity, is_completed, actual_duration, notes) " +
+                          "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+        try (PreparedStatement pstmt = conn.prepareStatement(insertSQL, Statement.RETURN_GENERATED_KEYS)) {
+            setExercisePlanParameters(pstmt, plan);
+            if (pstmt.executeUpdate() == 0) return false;
+            // 获取生成的ID并设置到plan对象中
+            try (ResultSet generatedKeys = pstmt.getGeneratedKeys()) {
+                if (generatedKeys.next()) {
+                    plan.setId(generatedKeys.getInt(1));
+                }
+            }
+            return true;
         }
-        return false;
     }
     
     /**
@@ -684,36 +884,14 @@ public class DatabaseManager {
      * 获取所有运动计划
      */
     public static List<ExercisePlan> getAllExercisePlans() {
+        if (InMemoryDatabase.isEnabled()) return InMemoryDatabase.getAllExercisePlans();
         List<ExercisePlan> plans = new ArrayList<>();
-        String sql = "SELECT * FROM exercise_plan ORDER BY plan_date DESC, id DESC";
+        String sql = "SELECT " + EXERCISE_PLAN_COLUMNS + " FROM exercise_plan ORDER BY plan_date DESC, id DESC";
         try (Connection conn = getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql);
              ResultSet rs = pstmt.executeQuery()) {
             while (rs.next()) {
-                ExercisePlan plan = new ExercisePlan();
-                plan.setId(rs.getInt("id"));
-                plan.setUserName(rs.getString("user_name"));
-                plan.setExerciseType(rs.getString("exercise_type"));
-                plan.setPlanDate(rs.getDate("plan_date").toLocalDate());
-                
-                double duration = rs.getDouble("duration");
-                if (!rs.wasNull()) {
-                    plan.setDuration(duration);
-                }
-                
-                plan.setIntensity(rs.getString("intensity"));
-                plan.setCompleted(rs.getBoolean("is_completed"));
-                
-                double actualDuration = rs.getDouble("actual_duration");
-                if (!rs.wasNull()) {
-                    plan.setActualDuration(actualDuration);
-                }
-                
-                plan.setNotes(rs.getString("notes"));
-                plan.setCreatedAt(rs.getTimestamp("created_at").toLocalDateTime());
-                plan.setUpdatedAt(rs.getTimestamp("updated_at").toLocalDateTime());
-                
-                plans.add(plan);
+                plans.add(parseExercisePlanFromResultSet(rs));
             }
         } catch (SQLException e) {
             e.printStackTrace();
@@ -725,40 +903,21 @@ public class DatabaseManager {
      * 根据用户名获取运动计划
      */
     public static List<ExercisePlan> getExercisePlansByUser(String userName) {
+        if (InMemoryDatabase.isEnabled()) return InMemoryDatabase.getExercisePlansByUser(userName);
         List<ExercisePlan> plans = new ArrayList<>();
-        String sql = "SELECT * FROM exercise_plan WHERE user_name = ? ORDER BY plan_date DESC, id DESC";
+        String sql = "SELECT " + EXERCISE_PLAN_COLUMNS + " FROM exercise_plan WHERE user_name = ? ORDER BY plan_date DESC, id DESC";
         try (Connection conn = getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, userName);
             try (ResultSet rs = pstmt.executeQuery()) {
                 while (rs.next()) {
-                    ExercisePlan plan = new ExercisePlan();
-                    plan.setId(rs.getInt("id"));
-                    plan.setUserName(rs.getString("user_name"));
-                    plan.setExerciseType(rs.getString("exercise_type"));
-                    plan.setPlanDate(rs.getDate("plan_date").toLocalDate());
-                    
-                    double duration = rs.getDouble("duration");
-                    if (!rs.wasNull()) {
-                        plan.setDuration(duration);
-                    }
-                    
-                    plan.setIntensity(rs.getString("intensity"));
-                    plan.setCompleted(rs.getBoolean("is_completed"));
-                    
-                    double actualDuration = rs.getDouble("actual_duration");
-                    if (!rs.wasNull()) {
-                        plan.setActualDuration(actualDuration);
-                    }
-                    
-                    plan.setNotes(rs.getString("notes"));
-                    plan.setCreatedAt(rs.getTimestamp("created_at").toLocalDateTime());
-                    plan.setUpdatedAt(rs.getTimestamp("updated_at").toLocalDateTime());
-                    
-                    plans.add(plan);
+                    plans.add(parseExercisePlanFromResultSet(rs));
                 }
             }
+            OfflineCache.rememberExercisePlans(userName, plans);
         } catch (SQLException e) {
+            // 连不上数据库时返回最近一次的查询结果
+            if (OfflineJournal.isConnectionFailure(e)) return OfflineCache.exercisePlans(userName);
             e.printStackTrace();
         }
         return plans;
@@ -768,11 +927,18 @@ public class DatabaseManager {
      * 根据ID删除运动计划
      */
     public static boolean deleteExercisePlanById(int id) {
+        Supplier<Set<String>> owner = ownerOf(DatabaseManager::getExercisePlanById, ExercisePlan::getUserName, id);
+        if (InMemoryDatabase.isEnabled()) {
+            try (OwnerLock owners = lockOwners(owner, null)) {
+                return removed(SearchIndex.TYPE_PLAN, id, InMemoryDatabase.deleteExercisePlanById(id));
+            }
+        }
         String sql = "DELETE FROM exercise_plan WHERE id = ?";
-        try (Connection conn = getConnection();
+        try (OwnerLock owners = lockOwners(owner, null);
+             Connection conn = getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setInt(1, id);
-            return pstmt.executeUpdate() > 0;
+            return removed(SearchIndex.TYPE_PLAN, id, pstmt.executeUpdate() > 0);
         } catch (SQLException e) {
             e.printStackTrace();
             return false;
@@ -783,8 +949,15 @@ public class DatabaseManager {
      * 更新运动计划完成状态
      */
     public static boolean updatePlanCompletionStatus(int id, boolean isCompleted) {
-        String sql = "UPDATE exercise_plan SET is_completed = ? WHERE id = ?";
-        try (Connection conn = getConnection();
+        Supplier<Set<String>> owner = ownerOf(DatabaseManager::getExercisePlanById, ExercisePlan::getUserName, id);
+        if (InMemoryDatabase.isEnabled()) {
+            try (OwnerLock owners = lockOwners(owner, null)) {
+                return InMemoryDatabase.updatePlanCompletionStatus(id, isCompleted);
+            }
+        }
+        String sql = "UPDATE exercise_plan SET is_completed = ?, version = version + 1 WHERE id = ?";
+        try (OwnerLock owners = lockOwners(owner, null);
+             Connection conn = getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setBoolean(1, isCompleted);
             pstmt.setInt(2, id);
@@ -799,8 +972,15 @@ public class DatabaseManager {
      * 更新运动计划完成状态和实际时长
      */
     public static boolean updatePlanCompletionStatus(int id, boolean isCompleted, Double actualDuration) {
-        String sql = "UPDATE exercise_plan SET is_completed = ?, actual_duration = ? WHERE id = ?";
-        try (Connection conn = getConnection();
+        Supplier<Set<String>> owner = ownerOf(DatabaseManager::getExercisePlanById, ExercisePlan::getUserName, id);
+        if (InMemoryDatabase.isEnabled()) {
+            try (OwnerLock owners = lockOwners(owner, null)) {
+                return InMemoryDatabase.updatePlanCompletionStatus(id, isCompleted, actualDuration);
+            }
+        }
+        String sql = "UPDATE exercise_plan SET is_completed = ?, actual_duration = ?, version = version + 1 WHERE id = ?";
+        try (OwnerLock owners = lockOwners(owner, null);
+             Connection conn = getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setBoolean(1, isCompleted);
             if (actualDuration != null) {
@@ -815,67 +995,162 @@ public class DatabaseManager {
             return false;
         }
     }
-
-    // ==================== 饮食记录相关操作 ====================
+    
     /**
-     * 插入新的饮食记录
+     * 批量更新运动计划完成状态和实际时长（一个事务、一次批量执行，供PlanCompletionQueue使用）
+     * 计划已被删除的条目不影响其他条目
+     * 
+     * @return 全部写入成功返回true，失败时整批回滚返回false
      */
-    public static boolean insertDietRecord(DietRecord record) {
-        if (record == null) return false;
-        DietRecord.ValidationResult result = record.validateRecord();
-        if (!result.isValid()) {
-            System.err.println("数据验证失败: " + result.getMessage());
-            JOptionPane.showMessageDialog(null, "数据验证失败: " + result.getMessage(), "数据错误", JOptionPane.WARNING_MESSAGE);
-            return false;
+    public static boolean updatePlanCompletionStatusBatch(List<PlanCompletionQueue.Entry> entries) {
+        if (entries == null || entries.isEmpty()) return true;
+        Supplier<Set<String>> owner = () -> planOwners(entries);
+        if (InMemoryDatabase.isEnabled()) {
+            try (OwnerLock owners = lockOwners(owner, null)) {
+                return InMemoryDatabase.updatePlanCompletionStatusBatch(entries);
+            }
         }
-        String insertSQL = "INSERT INTO diet_record (user_name, record_date, breakfast, lunch, dinner, notes) " +
-                "VALUES (?, ?, ?, ?, ?, ?)";
-        try (Connection conn = getConnection();
-                 PreparedStatement pstmt = conn.prepareStatement(insertSQL, Statement.RETURN_GENERATED_KEYS)) {
-            setDietRecordParameters(pstmt, record);
-            int resultNum = pstmt.executeUpdate();
-            if (resultNum > 0) {
-                try (ResultSet generatedKeys = pstmt.getGeneratedKeys()) {
-                    if (generatedKeys.next()) {
-                        record.setId(generatedKeys.getInt(1));
+        String sql = "UPDATE exercise_plan SET is_completed = ?, actual_duration = ?, version = version + 1 WHERE id = ?";
+        try (OwnerLock owners = lockOwners(owner, null);
+             Connection conn = getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                for (PlanCompletionQueue.Entry entry : entries) {
+                    pstmt.setBoolean(1, entry.isCompleted());
+                    if (entry.getActualDuration() != null) {
+                        pstmt.setDouble(2, entry.getActualDuration());
+                    } else {
+                        pstmt.setNull(2, Types.DECIMAL);
                     }
+                    pstmt.setInt(3, entry.getPlanId());
+                    pstmt.addBatch();
                 }
-                System.out.println("饮食记录插入成功，ID: " + record.getId());
+                pstmt.executeBatch();
+                conn.commit();
                 return true;
+            } catch (SQLException e) {
+                conn.rollback();
+                System.err.println("批量更新完成状态失败，已回滚: " + e.getMessage());
+                return false;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            System.err.println("批量更新完成状态失败: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 批量更新涉及的运动计划的所属用户（一次查询）
+     */
+    private static Set<String> planOwners(List<PlanCompletionQueue.Entry> entries) {
+        Set<String> owners = new HashSet<>();
+        if (InMemoryDatabase.isEnabled()) {
+            for (PlanCompletionQueue.Entry entry : entries) {
+                ExercisePlan plan = InMemoryDatabase.getExercisePlanById(entry.getPlanId());
+                if (plan != null) owners.add(plan.getUserName());
+            }
+            return owners;
+        }
+        StringBuilder sql = new StringBuilder("SELECT DISTINCT user_name FROM exercise_plan WHERE id IN (");
+        for (int i = 0; i < entries.size(); i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+        sql.append(")");
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+            for (int i = 0; i < entries.size(); i++) {
+                pstmt.setInt(i + 1, entries.get(i).getPlanId());
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    owners.add(rs.getString("user_name"));
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("查询运动计划所属用户失败: " + e.getMessage());
+        }
+        return owners;
+    }
+
+    // ==================== 饮食记录相关操作 ====================
+    /**
+     * 插入新的饮食记录
+     */
+    public static boolean insertDietRecord(DietRecord record) {
+        if (record == null) return false;
+        DietRecord.ValidationResult result = record.validateRecord();
+        if (!result.isValid()) {
+            System.err.println("数据验证失败: " + result.getMessage());
+            showMessage("数据验证失败: " + result.getMessage(), "数据错误", JOptionPane.WARNING_MESSAGE);
+            return false;
+        }
+        if (InMemoryDatabase.isEnabled()) {
+            try (UserLocks.Held held = UserLocks.lock(record.getUserName())) {
+                return indexed(record, InMemoryDatabase.insertDietRecord(record));
+            }
+        }
+        try (UserLocks.Held held = UserLocks.lock(record.getUserName());
+             Connection conn = getConnection()) {
+            if (insertDietRecord(conn, record)) {
+                System.out.println("饮食记录插入成功，ID: " + record.getId());
+                return indexed(record, true);
             }
         } catch (SQLException e) {
+            // 连不上数据库：记入离线日志，恢复后自动补写
+            if (OfflineJournal.isConnectionFailure(e) && OfflineJournal.append(record)) {
+                return true;
+            }
             System.err.println("饮食记录插入失败: " + e.getMessage());
-            JOptionPane.showMessageDialog(null, "饮食记录插入失败:\n" + e.getMessage(), "数据库错误", JOptionPane.ERROR_MESSAGE);
+            showMessage("饮食记录插入失败:\n" + e.getMessage(), "数据库错误", JOptionPane.ERROR_MESSAGE);
         }
         return false;
     }
 
     /**
-     * 更新饮食记录
+     * 更新饮食记录（按版本号检查，版本不一致时不覆盖）
      */
-    public static boolean updateDietRecord(DietRecord record) {
-        if (record == null || record.getId() == 0) return false;
+    public static SaveResult<DietRecord> updateDietRecord(DietRecord record) {
+        if (record == null || record.getId() == 0) return SaveResult.failed();
         DietRecord.ValidationResult result = record.validateRecord();
         if (!result.isValid()) {
             System.err.println("数据验证失败: " + result.getMessage());
-            JOptionPane.showMessageDialog(null, "数据验证失败: " + result.getMessage(), "数据错误", JOptionPane.WARNING_MESSAGE);
-            return false;
+            showMessage("数据验证失败: " + result.getMessage(), "数据错误", JOptionPane.WARNING_MESSAGE);
+            return SaveResult.failed();
         }
-        String updateSQL = "UPDATE diet_record SET user_name=?, record_date=?, breakfast=?, lunch=?, dinner=?, notes=? WHERE id=?";
-        try (Connection conn = getConnection();
+        // 记录可能改到其他用户名下：原所属用户和新所属用户都要加锁
+        Supplier<Set<String>> owner = ownerOf(DatabaseManager::getDietRecordById, DietRecord::getUserName, record.getId());
+        if (InMemoryDatabase.isEnabled()) {
+            try (OwnerLock owners = lockOwners(owner, record.getUserName())) {
+                return reindexed(InMemoryDatabase.updateDietRecord(record), owners, record.getUserName(), SearchIndex.TYPE_DIET, record.getId());
+            }
+        }
+        String updateSQL = "UPDATE diet_record SET user_name=?, record_date=?, breakfast=?, lunch=?, dinner=?, notes=?, version=version+1 WHERE id=? AND version=?";
+        try (OwnerLock owners = lockOwners(owner, record.getUserName());
+             Connection conn = getConnection();
              PreparedStatement pstmt = conn.prepareStatement(updateSQL)) {
             setDietRecordParameters(pstmt, record);
             pstmt.setInt(7, record.getId());
-            int resultNum = pstmt.executeUpdate();
-            if (resultNum > 0) {
+            pstmt.setInt(8, record.getVersion());
+            if (pstmt.executeUpdate() > 0) {
+                record.setVersion(record.getVersion() + 1);
                 System.out.println("饮食记录更新成功");
-                return true;
+                return reindexed(SaveResult.saved(record), owners, record.getUserName(), SearchIndex.TYPE_DIET, record.getId());
             }
         } catch (SQLException e) {
             System.err.println("饮食记录更新失败: " + e.getMessage());
-            JOptionPane.showMessageDialog(null, "饮食记录更新失败:\n" + e.getMessage(), "数据库错误", JOptionPane.ERROR_MESSAGE);
+            showMessage("饮食记录更新失败:\n" + e.getMessage(), "数据库错误", JOptionPane.ERROR_MESSAGE);
+            return SaveResult.failed();
         }
-        return false;
+        return conflictOrMissing(getDietRecordById(record.getId()));
+    }
+
+    /**
+     * 版本号检查未通过：记录仍存在则为冲突（附带当前记录），否则为已删除
+     */
+    private static <T> SaveResult<T> conflictOrMissing(T current) {
+        return current != null ? SaveResult.conflict(current, new ArrayList<>()) : SaveResult.notFound();
     }
 
     /**
@@ -883,14 +1158,21 @@ public class DatabaseManager {
      */
     public static boolean deleteDietRecordById(int id) {
         if (id <= 0) return false;
+        Supplier<Set<String>> owner = ownerOf(DatabaseManager::getDietRecordById, DietRecord::getUserName, id);
+        if (InMemoryDatabase.isEnabled()) {
+            try (OwnerLock owners = lockOwners(owner, null)) {
+                return removed(SearchIndex.TYPE_DIET, id, InMemoryDatabase.deleteDietRecordById(id));
+            }
+        }
         String sql = "DELETE FROM diet_record WHERE id = ?";
-        try (Connection conn = getConnection();
+        try (OwnerLock owners = lockOwners(owner, null);
+             Connection conn = getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setInt(1, id);
-            return pstmt.executeUpdate() > 0;
+            return removed(SearchIndex.TYPE_DIET, id, pstmt.executeUpdate() > 0);
         } catch (SQLException e) {
             e.printStackTrace();
-            JOptionPane.showMessageDialog(null, "删除饮食记录失败:\n" + e.getMessage(), "数据库错误", JOptionPane.ERROR_MESSAGE);
+            showMessage("删除饮食记录失败:\n" + e.getMessage(), "数据库错误", JOptionPane.ERROR_MESSAGE);
             return false;
         }
     }
@@ -900,8 +1182,9 @@ public class DatabaseManager {
      */
     public static List<DietRecord> getDietRecordsByUser(String userName) {
         if (userName == null || userName.trim().isEmpty()) return new ArrayList<>();
+        if (InMemoryDatabase.isEnabled()) return InMemoryDatabase.getDietRecordsByUser(userName);
         List<DietRecord> records = new ArrayList<>();
-        String sql = "SELECT * FROM diet_record WHERE user_name = ? ORDER BY record_date DESC, id DESC";
+        String sql = "SELECT " + DIET_RECORD_COLUMNS + " FROM diet_record WHERE user_name = ? ORDER BY record_date DESC, id DESC";
         try (Connection conn = getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, userName);
@@ -910,9 +1193,12 @@ public class DatabaseManager {
                     records.add(parseDietRecordFromResultSet(rs));
                 }
             }
+            OfflineCache.rememberDietRecords(userName, records);
         } catch (SQLException e) {
+            // 连不上数据库时返回最近一次的查询结果
+            if (OfflineJournal.isConnectionFailure(e)) return OfflineCache.dietRecords(userName);
             e.printStackTrace();
-            JOptionPane.showMessageDialog(null, "查询饮食记录失败:\n" + e.getMessage(), "数据库错误", JOptionPane.ERROR_MESSAGE);
+            showMessage("查询饮食记录失败:\n" + e.getMessage(), "数据库错误", JOptionPane.ERROR_MESSAGE);
         }
         return records;
     }
@@ -922,7 +1208,8 @@ public class DatabaseManager {
      */
     public static DietRecord getDietRecordById(int id) {
         if (id <= 0) return null;
-        String sql = "SELECT * FROM diet_record WHERE id = ?";
+        if (InMemoryDatabase.isEnabled()) return InMemoryDatabase.getDietRecordById(id);
+        String sql = "SELECT " + DIET_RECORD_COLUMNS + " FROM diet_record WHERE id = ?";
         try (Connection conn = getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setInt(1, id);
@@ -933,11 +1220,71 @@ public class DatabaseManager {
             }
         } catch (SQLException e) {
             e.printStackTrace();
-            JOptionPane.showMessageDialog(null, "查询饮食记录失败:\n" + e.getMessage(), "数据库错误", JOptionPane.ERROR_MESSAGE);
+            showMessage("查询饮食记录失败:\n" + e.getMessage(), "数据库错误", JOptionPane.ERROR_MESSAGE);
         }
         return null;
     }
 
+    /**
+     * 在给定连接上插入饮食记录，成功后把生成的ID设置到record中（在线保存和离线日志补写共用）
+     */
+    private static boolean insertDietRecord(Connection conn, DietRecord record) throws SQLException {
+        String insertSQL = "INSERT INTO diet_record (user_name, record_date, breakfast, lunch, dinner, notes) " +
+                "VALUES (?, ?, ?, ?, ?, ?)";
+        try (PreparedStatement pstmt = conn.prepareStatement(insertSQL, Statement.RETURN_GENERATED_KEYS)) {
+            setDietRecordParameters(pstmt, record);
+            if (pstmt.executeUpdate() == 0) return false;
+            try (ResultSet generatedKeys = pstmt.getGeneratedKeys()) {
+                if (generatedKeys.next()) {
+                    record.setId(generatedKeys.getInt(1));
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * 补写一条离线日志中的新增记录（OfflineJournal调用）
+     * 登记幂等键和插入记录在同一事务中；键已登记说明之前已补写过，不再插入
+     *
+     * @param key 幂等键
+     * @param record DailyRecord、ExercisePlan或DietRecord
+     * @return 插入返回true，已补写过返回false
+     * @throws SQLException 连接中断或数据错误，事务已回滚
+     */
+    static boolean applyJournaled(Connection conn, String key, Object record) throws SQLException {
+        String userName = record instanceof DailyRecord ? ((DailyRecord) record).getUserName()
+                : record instanceof ExercisePlan ? ((ExercisePlan) record).getUserName()
+                : ((DietRecord) record).getUserName();
+        try (UserLocks.Held held = UserLocks.lock(userName)) {
+            conn.setAutoCommit(false);
+            try {
+                try (PreparedStatement pstmt = conn.prepareStatement("INSERT IGNORE INTO offline_applied (op_key) VALUES (?)")) {
+                    pstmt.setString(1, key);
+                    if (pstmt.executeUpdate() == 0) {
+                        conn.rollback();
+                        return false;
+                    }
+                }
+                if (record instanceof DailyRecord) {
+                    insertDailyRecord(conn, (DailyRecord) record);
+                } else if (record instanceof ExercisePlan) {
+                    insertExercisePlan(conn, (ExercisePlan) record);
+                } else {
+                    insertDietRecord(conn, (DietRecord) record);
+                }
+                conn.commit();
+                SearchIndex.indexed(record);
+                return true;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
     /**
      * 设置饮食记录PreparedStatement参数
      */
@@ -950,6 +1297,26 @@ public class DatabaseManager {
         pstmt.setString(6, record.getNotes());
     }
 
+    /**
+     * 从ResultSet解析UserProfile对象（PROFILE_COLUMNS）
+     */
+    private static UserProfile parseUserProfileFromResultSet(ResultSet rs) throws SQLException {
+        UserProfile profile = new UserProfile();
+        profile.setId(rs.getInt("id"));
+        profile.setName(rs.getString("name"));
+        profile.setAge(rs.getInt("age"));
+        profile.setGender(rs.getString("gender"));
+        profile.setHeight(rs.getDouble("height"));
+        profile.setWeight(rs.getDouble("weight"));
+        profile.setTargetWeight(rs.getDouble("target_weight"));
+        profile.setFitnessGoal(rs.getString("fitness_goal"));
+        profile.setHealthStatus(rs.getString("health_status"));
+        profile.setHealthNotes(rs.getString("health_notes"));
+        profile.setPhone(rs.getString("phone"));
+        profile.setVersion(rs.getInt("version"));
+        return profile;
+    }
+
     /**
      * 从ResultSet解析DietRecord对象
      */
@@ -966,63 +1333,321 @@ public class DatabaseManager {
         if (created != null) record.setCreatedAt(created.toLocalDateTime());
         Timestamp updated = rs.getTimestamp("updated_at");
         if (updated != null) record.setUpdatedAt(updated.toLocalDateTime());
+        record.setVersion(rs.getInt("version"));
         return record;
     }
 
+    /**
+     * 从ResultSet解析DailyRecord对象
+     */
+    private static DailyRecord parseDailyRecordFromResultSet(ResultSet rs) throws SQLException {
+        DailyRecord record = new DailyRecord();
+        record.setId(rs.getInt("id"));
+        record.setUserName(rs.getString("user_name"));
+        record.setDate(rs.getDate("date").toLocalDate());
+        record.setWeight(rs.getDouble("weight"));
+        record.setExercise(rs.getString("exercise"));
+        record.setExerciseDuration(rs.getDouble("exercise_duration"));
+        record.setSleepDuration(rs.getDouble("sleep_duration"));
+        record.setMood(rs.getString("mood"));
+        record.setNote(rs.getString("note"));
+        record.setVersion(rs.getInt("version"));
+        return record;
+    }
+
+    /**
+     * 从ResultSet解析ExercisePlan对象
+     */
+    private static ExercisePlan parseExercisePlanFromResultSet(ResultSet rs) throws SQLException {
+        ExercisePlan plan = new ExercisePlan();
+        plan.setId(rs.getInt("id"));
+        plan.setUserName(rs.getString("user_name"));
+        plan.setExerciseType(rs.getString("exercise_type"));
+        plan.setPlanDate(rs.getDate("plan_date").toLocalDate());
+        
+        double duration = rs.getDouble("duration");
+        if (!rs.wasNull()) {
+            plan.setDuration(duration);
+        }
+        
+        plan.setIntensity(rs.getString("intensity"));
+        plan.setCompleted(rs.getBoolean("is_completed"));
+        
+        double actualDuration = rs.getDouble("actual_duration");
+        if (!rs.wasNull()) {
+            plan.setActualDuration(actualDuration);
+        }
+        
+        plan.setNotes(rs.getString("notes"));
+        plan.setCreatedAt(rs.getTimestamp("created_at").toLocalDateTime());
+        plan.setUpdatedAt(rs.getTimestamp("updated_at").toLocalDateTime());
+        plan.setVersion(rs.getInt("version"));
+        return plan;
+    }
+
+    // ==================== 全量流式读取 ====================
+
+    /**
+     * 流式读取的每批行数，可通过 -Dhealth.db.fetchSize=N 调整
+     */
+    private static final int STREAM_FETCH_SIZE = Integer.getInteger("health.db.fetchSize", 500);
+
+    /**
+     * 单行映射（允许抛出SQLException）
+     */
+    @FunctionalInterface
+    private interface RowMapper<T> {
+        T map(ResultSet rs) throws SQLException;
+    }
+
+    /**
+     * 流式读取全部每日记录（导出、全量统计使用）
+     * 使用服务端游标按批拉取，内存占用与总行数无关；返回的Stream必须关闭（try-with-resources），
+     * 关闭时释放连接。按id升序；内存数据库模式下顺序不作保证
+     *
+     * @return 每日记录流，连接失败时为空流
+     */
+    public static Stream<DailyRecord> streamAllDailyRecords() {
+        if (InMemoryDatabase.isEnabled()) return InMemoryDatabase.streamAllDailyRecords();
+        return streamQuery("SELECT " + DAILY_RECORD_COLUMNS + " FROM daily_record ORDER BY id ASC",
+                DatabaseManager::parseDailyRecordFromResultSet);
+    }
+
+    /**
+     * 流式读取全部每日记录，按用户、日期排序（同一用户的记录连续出现，走idx_daily_user_date_weight索引），
+     * 用于逐个用户汇总后丢弃的全量统计；用法同streamAllDailyRecords
+     *
+     * @return 每日记录流，连接失败时为空流
+     */
+    public static Stream<DailyRecord> streamAllDailyRecordsByUser() {
+        if (InMemoryDatabase.isEnabled()) return InMemoryDatabase.streamAllDailyRecordsByUser();
+        return streamQuery("SELECT " + DAILY_RECORD_COLUMNS + " FROM daily_record ORDER BY user_name ASC, date ASC, id ASC",
+                DatabaseManager::parseDailyRecordFromResultSet);
+    }
+
+    /**
+     * 流式读取全部运动计划，用法同streamAllDailyRecords
+     *
+     * @return 运动计划流，连接失败时为空流
+     */
+    public static Stream<ExercisePlan> streamAllExercisePlans() {
+        if (InMemoryDatabase.isEnabled()) return InMemoryDatabase.streamAllExercisePlans();
+        return streamQuery("SELECT " + EXERCISE_PLAN_COLUMNS + " FROM exercise_plan ORDER BY id ASC",
+                DatabaseManager::parseExercisePlanFromResultSet);
+    }
+
+    /**
+     * 流式读取全部饮食记录，用法同streamAllDailyRecords
+     *
+     * @return 饮食记录流，连接失败时为空流
+     */
+    public static Stream<DietRecord> streamAllDietRecords() {
+        if (InMemoryDatabase.isEnabled()) return InMemoryDatabase.streamAllDietRecords();
+        return streamQuery("SELECT " + DIET_RECORD_COLUMNS + " FROM diet_record ORDER BY id ASC",
+                DatabaseManager::parseDietRecordFromResultSet);
+    }
+
+    /**
+     * 执行查询并把结果集包装为惰性Stream，Stream关闭时依次关闭ResultSet、语句和连接
+     * 连接带useCursorFetch=true，配合setFetchSize使MySQL驱动按批从服务端游标取数，而不是一次读入整个结果集
+     */
+    private static <T> Stream<T> streamQuery(String sql, RowMapper<T> mapper) {
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+        try {
+            Class.forName(JDBC_DRIVER);
+            conn = DriverManager.getConnection(DB_URL + "?useCursorFetch=true", DB_USER, DB_PASSWORD);
+            pstmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            pstmt.setFetchSize(STREAM_FETCH_SIZE);
+            rs = pstmt.executeQuery();
+        } catch (SQLException | ClassNotFoundException e) {
+            e.printStackTrace();
+            closeQuietly(rs, pstmt, conn);
+            return Stream.empty();
+        }
+        final Connection c = conn;
+        final PreparedStatement ps = pstmt;
+        final ResultSet r = rs;
+        Spliterator<T> spliterator = new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE,
+                Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
+                try {
+                    if (!r.next()) return false;
+                    action.accept(mapper.map(r));
+                    return true;
+                } catch (SQLException e) {
+                    // 读到一半失败时不能静默截断，否则导出结果不完整
+                    throw new IllegalStateException("流式读取失败: " + e.getMessage(), e);
+                }
+            }
+        };
+        return StreamSupport.stream(spliterator, false).onClose(() -> closeQuietly(r, ps, c));
+    }
+
+    /**
+     * 依次关闭JDBC资源，忽略关闭异常
+     */
+    private static void closeQuietly(AutoCloseable... resources) {
+        for (AutoCloseable resource : resources) {
+            if (resource == null) continue;
+            try {
+                resource.close();
+            } catch (Exception e) {
+                System.err.println("关闭数据库资源失败: " + e.getMessage());
+            }
+        }
+    }
+
     // ==================== 数据统计相关操作 ====================
     
-    // 注意：以下统计相关方法已被删除，因为项目中没有实际使用：
-    // - calculateHealthStats() - 复杂的健康统计计算
-    // - calculateHealthScore() - 健康评分计算  
-    // - generateHealthRecommendations() - 健康建议生成
-    // - calculateExerciseStats() - 复杂的运动统计计算
-    // - calculateDietStats() - 复杂的饮食统计计算
-    // 当前统计功能直接在DataAnalysisPanel中通过DailyRecord/ExercisePlan/DietRecord列表实现
+    // 注意：统计计算（健康统计、健康评分和建议、运动统计、饮食统计）不在这里，
+    // 见AnalyticsEngine：由下面查询得到的DailyRecord/ExercisePlan/DietRecord列表计算
 
     /**
      * 根据用户名获取每日记录
      */
     public static List<DailyRecord> getDailyRecordsByUser(String userName) {
+        if (InMemoryDatabase.isEnabled()) return InMemoryDatabase.getDailyRecordsByUser(userName);
         List<DailyRecord> records = new ArrayList<>();
-        String sql = "SELECT * FROM daily_record WHERE user_name = ? ORDER BY date DESC, id DESC";
+        String sql = "SELECT " + DAILY_RECORD_COLUMNS + " FROM daily_record WHERE user_name = ? ORDER BY date DESC, id DESC";
         try (Connection conn = getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, userName);
             try (ResultSet rs = pstmt.executeQuery()) {
                 while (rs.next()) {
-                    DailyRecord record = new DailyRecord();
-                    record.setId(rs.getInt("id"));
-                    record.setUserName(rs.getString("user_name"));
-                    record.setDate(rs.getDate("date").toLocalDate());
-                    record.setWeight(rs.getDouble("weight"));
-                    record.setExercise(rs.getString("exercise"));
-                    record.setExerciseDuration(rs.getDouble("exercise_duration"));
-                    record.setSleepDuration(rs.getDouble("sleep_duration"));
-                    record.setMood(rs.getString("mood"));
-                    record.setNote(rs.getString("note"));
-                    records.add(record);
+                    records.add(parseDailyRecordFromResultSet(rs));
                 }
             }
+            OfflineCache.rememberDailyRecords(userName, records);
         } catch (SQLException e) {
+            // 连不上数据库时返回最近一次的查询结果
+            if (OfflineJournal.isConnectionFailure(e)) return OfflineCache.dailyRecords(userName);
             e.printStackTrace();
         }
         return records;
     }
     
+    /**
+     * 根据用户名获取体重数据点（按日期升序，体重趋势统计使用）
+     * 只读取date和weight两列，由覆盖索引idx_daily_user_date_weight直接返回
+     */
+    public static List<WeightPoint> getWeightPointsByUser(String userName) {
+        if (InMemoryDatabase.isEnabled()) return InMemoryDatabase.getWeightPointsByUser(userName);
+        List<WeightPoint> points = new ArrayList<>();
+        String sql = "SELECT date, weight FROM daily_record WHERE user_name = ? ORDER BY date ASC";
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, userName);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    points.add(new WeightPoint(rs.getDate(1).toLocalDate(), rs.getDouble(2)));
+                }
+            }
+            OfflineCache.rememberWeightPoints(userName, points);
+        } catch (SQLException e) {
+            // 连不上数据库时返回最近一次的查询结果
+            if (OfflineJournal.isConnectionFailure(e)) return OfflineCache.weightPoints(userName);
+            e.printStackTrace();
+        }
+        return points;
+    }
+    
     // ==================== 用户认证相关操作 ====================
     
     /**
-     * 用户身份验证
+     * 登录校验结果
+     */
+    public static final class Authentication {
+        private final User user;
+        private final boolean knownUser;
+        private final boolean busy;
+
+        Authentication(User user, boolean knownUser) {
+            this(user, knownUser, false);
+        }
+
+        Authentication(User user, boolean knownUser, boolean busy) {
+            this.user = user;
+            this.knownUser = knownUser;
+            this.busy = busy;
+        }
+
+        /**
+         * 密码正确且账户已启用时为该用户，否则为null
+         */
+        public User getUser() { return user; }
+
+        /**
+         * 用户名是否已注册（不论是否启用）；查询失败时按已注册处理，避免把真实用户误缓存为不存在
+         */
+        public boolean isKnownUser() { return knownUser; }
+
+        /**
+         * 密码校验线程池繁忙、未能完成校验（不代表密码错误）
+         */
+        public boolean isBusy() { return busy; }
+    }
+
+    /**
+     * 用户认证
      * @param username 用户名
      * @param password 密码
-     * @return 验证成功返回用户对象，否则返回null
+     * @return 认证成功返回User对象，失败返回null
      */
     public static User authenticateUser(String username, String password) {
-        String sql = "SELECT * FROM users WHERE username = ? AND password = ? AND is_active = TRUE";
+        return authenticate(username, password).getUser();
+    }
+
+    /**
+     * 用户认证，同时给出用户名是否已注册（登录限流据此缓存未知用户名，不必再查一次库）
+     * 密码为旧明文或迭代次数过低时，认证成功后升级为当前配置的哈希
+     */
+    public static Authentication authenticate(String username, String password) {
+        if (username == null || password == null) return new Authentication(null, false);
+        User user;
+        boolean known;
+        try {
+            user = findUser(username);
+            known = user != null;
+        } catch (SQLException e) {
+            System.err.println("用户认证失败: " + e.getMessage());
+            user = null;
+            known = true;
+        }
+        User active = user != null && user.isActive() ? user : null;
+        // 用户不存在或未启用时也做一次等耗时校验
+        PasswordHasher.Verification verification =
+                PasswordHasher.check(password, active != null ? active.getPassword() : null);
+        if (verification == PasswordHasher.Verification.BUSY) {
+            return new Authentication(null, known, true);
+        }
+        if (verification != PasswordHasher.Verification.MATCH) {
+            return new Authentication(null, known);
+        }
+        if (PasswordHasher.needsRehash(active.getPassword())) {
+            // 哈希线程池繁忙时跳过升级，下次登录再升级
+            String upgraded = PasswordHasher.hash(password);
+            if (upgraded != null && replacePasswordHash(username, active.getPassword(), upgraded)) {
+                active.setPassword(upgraded);
+            }
+        }
+        return new Authentication(active, true);
+    }
+
+    /**
+     * 根据用户名查询用户（含密码哈希，不论是否启用）
+     *
+     * @return 用户不存在返回null
+     * @throws SQLException 查询失败
+     */
+    private static User findUser(String username) throws SQLException {
+        if (InMemoryDatabase.isEnabled()) return InMemoryDatabase.findUser(username);
+        String sql = "SELECT " + USER_COLUMNS + " FROM users WHERE username = ?";
         try (Connection conn = getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, username);
-            pstmt.setString(2, password);
             try (ResultSet rs = pstmt.executeQuery()) {
                 if (rs.next()) {
                     User user = new User();
@@ -1035,11 +1660,32 @@ public class DatabaseManager {
                     return user;
                 }
             }
-        } catch (SQLException e) {
-            System.err.println("用户认证失败: " + e.getMessage());
         }
         return null;
     }
+
+    /**
+     * 登录时升级密码哈希：仅当存储值仍是旧值时替换，避免覆盖同时发生的改密
+     */
+    private static boolean replacePasswordHash(String username, String oldValue, String newHash) {
+        if (InMemoryDatabase.isEnabled()) {
+            try (UserLocks.Held held = UserLocks.lock(username)) {
+                return InMemoryDatabase.replacePasswordHash(username, oldValue, newHash);
+            }
+        }
+        String sql = "UPDATE users SET password = ? WHERE username = ? AND password = ?";
+        try (UserLocks.Held held = UserLocks.lock(username);
+             Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, newHash);
+            pstmt.setString(2, username);
+            pstmt.setString(3, oldValue);
+            return pstmt.executeUpdate() > 0;
+        } catch (SQLException e) {
+            System.err.println("升级密码哈希失败: " + e.getMessage());
+            return false;
+        }
+    }
     
     /**
      * 创建新用户
@@ -1049,17 +1695,36 @@ public class DatabaseManager {
      * @return 创建是否成功
      */
     public static boolean createUser(String username, String password, String role) {
-        String sql = "INSERT INTO users (username, password, role) VALUES (?, ?, ?)";
-        try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, username);
-            pstmt.setString(2, password);
-            pstmt.setString(3, role);
-            return pstmt.executeUpdate() > 0;
-        } catch (SQLException e) {
-            System.err.println("创建用户失败: " + e.getMessage());
+        if (password == null) return false;
+        String hashed = PasswordHasher.hash(password);
+        if (hashed == null) {
+            System.err.println("创建用户失败: 密码哈希繁忙，请稍后再试");
             return false;
         }
+        boolean created;
+        if (InMemoryDatabase.isEnabled()) {
+            try (UserLocks.Held held = UserLocks.lock(username)) {
+                created = InMemoryDatabase.createUser(username, hashed, role);
+            }
+        } else {
+            String sql = "INSERT INTO users (username, password, role) VALUES (?, ?, ?)";
+            try (UserLocks.Held held = UserLocks.lock(username);
+                 Connection conn = getConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setString(1, username);
+                pstmt.setString(2, hashed);
+                pstmt.setString(3, role);
+                created = pstmt.executeUpdate() > 0;
+            } catch (SQLException e) {
+                System.err.println("创建用户失败: " + e.getMessage());
+                return false;
+            }
+        }
+        if (created) {
+            // 新注册的用户名可能还在不存在用户名缓存中
+            LoginThrottle.userCreated(username);
+        }
+        return created;
     }
     
     /**
@@ -1067,8 +1732,9 @@ public class DatabaseManager {
      * @return 用户列表
      */
     public static List<User> getAllUsers() {
+        if (InMemoryDatabase.isEnabled()) return InMemoryDatabase.getAllUsers();
         List<User> users = new ArrayList<>();
-        String sql = "SELECT * FROM users ORDER BY id ASC";
+        String sql = "SELECT " + USER_COLUMNS + " FROM users ORDER BY id ASC";
         try (Connection conn = getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql);
              ResultSet rs = pstmt.executeQuery()) {
@@ -1094,8 +1760,15 @@ public class DatabaseManager {
      * @return 删除是否成功
      */
     public static boolean deleteUser(int userId) {
+        Supplier<Set<String>> owner = () -> usernameOf(userId);
+        if (InMemoryDatabase.isEnabled()) {
+            try (OwnerLock owners = lockOwners(owner, null)) {
+                return InMemoryDatabase.deleteUser(userId);
+            }
+        }
         String sql = "DELETE FROM users WHERE id = ?";
-        try (Connection conn = getConnection();
+        try (OwnerLock owners = lockOwners(owner, null);
+             Connection conn = getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setInt(1, userId);
             return pstmt.executeUpdate() > 0;
@@ -1104,6 +1777,27 @@ public class DatabaseManager {
             return false;
         }
     }
+
+    /**
+     * 按用户ID查询用户名（供lockOwners使用），用户不存在或查询失败时为空
+     */
+    private static Set<String> usernameOf(int userId) {
+        if (InMemoryDatabase.isEnabled()) {
+            User user = InMemoryDatabase.getUserById(userId);
+            return user != null ? Collections.singleton(user.getUsername()) : Collections.<String>emptySet();
+        }
+        String sql = "SELECT username FROM users WHERE id = ?";
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, userId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) return Collections.singleton(rs.getString("username"));
+            }
+        } catch (SQLException e) {
+            System.err.println("查询用户失败: " + e.getMessage());
+        }
+        return Collections.emptySet();
+    }
     
     /**
      * 更新用户档案关联
@@ -1112,8 +1806,14 @@ public class DatabaseManager {
      * @return 更新是否成功
      */
     public static boolean updateUserProfileLink(String username, String profileName) {
+        if (InMemoryDatabase.isEnabled()) {
+            try (UserLocks.Held held = UserLocks.lock(username)) {
+                return InMemoryDatabase.updateUserProfileLink(username, profileName);
+            }
+        }
         String sql = "UPDATE users SET profile_name = ? WHERE username = ?";
-        try (Connection conn = getConnection();
+        try (UserLocks.Held held = UserLocks.lock(username);
+             Connection conn = getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, profileName);
             pstmt.setString(2, username);
@@ -1128,9 +1828,15 @@ public class DatabaseManager {
      * 注册新用户时自动创建user_profile档案
      */
     public static boolean insertUserProfileForNewUser(String username) {
+        if (InMemoryDatabase.isEnabled()) {
+            try (UserLocks.Held held = UserLocks.lock(username)) {
+                return InMemoryDatabase.insertUserProfileForNewUser(username);
+            }
+        }
         // 只插入用户名，其他字段用默认值
         String insertSQL = "INSERT INTO user_profile (name, age, gender, height, weight, is_active) VALUES (?, ?, ?, ?, ?, ?)";
-        try (Connection conn = getConnection();
+        try (UserLocks.Held held = UserLocks.lock(username);
+             Connection conn = getConnection();
              PreparedStatement pstmt = conn.prepareStatement(insertSQL)) {
             pstmt.setString(1, username);
             pstmt.setInt(2, 18); // 默认年龄
@@ -1149,10 +1855,22 @@ public class DatabaseManager {
      * 管理员重置用户密码
      */
     public static boolean updateUserPassword(String username, String newPassword) {
+        if (newPassword == null) return false;
+        String hashed = PasswordHasher.hash(newPassword);
+        if (hashed == null) {
+            System.err.println("重置用户密码失败: 密码哈希繁忙，请稍后再试");
+            return false;
+        }
+        if (InMemoryDatabase.isEnabled()) {
+            try (UserLocks.Held held = UserLocks.lock(username)) {
+                return InMemoryDatabase.updateUserPassword(username, hashed);
+            }
+        }
         String sql = "UPDATE users SET password = ? WHERE username = ?";
-        try (Connection conn = getConnection();
+        try (UserLocks.Held held = UserLocks.lock(username);
+             Connection conn = getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, newPassword);
+            pstmt.setString(1, hashed);
             pstmt.setString(2, username);
             return pstmt.executeUpdate() > 0;
         } catch (SQLException e) {
@@ -1165,8 +1883,14 @@ public class DatabaseManager {
      * 根据用户名删除用户（users表）
      */
     public static boolean deleteUserByUsername(String username) {
+        if (InMemoryDatabase.isEnabled()) {
+            try (UserLocks.Held held = UserLocks.lock(username)) {
+                return InMemoryDatabase.deleteUserByUsername(username);
+            }
+        }
         String sql = "DELETE FROM users WHERE username = ?";
-        try (Connection conn = getConnection();
+        try (UserLocks.Held held = UserLocks.lock(username);
+             Connection conn = getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, username);
             return pstmt.executeUpdate() > 0;
@@ -1180,11 +1904,17 @@ public class DatabaseManager {
      * 根据用户名删除用户档案（user_profile表）
      */
     public static boolean deleteUserProfileByName(String name) {
+        if (InMemoryDatabase.isEnabled()) {
+            try (UserLocks.Held held = UserLocks.lock(name)) {
+                return forgotten(name, InMemoryDatabase.deleteUserProfileByName(name));
+            }
+        }
         String sql = "DELETE FROM user_profile WHERE name = ?";
-        try (Connection conn = getConnection();
+        try (UserLocks.Held held = UserLocks.lock(name);
+             Connection conn = getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, name);
-            return pstmt.executeUpdate() > 0;
+            return forgotten(name, pstmt.executeUpdate() > 0);
         } catch (SQLException e) {
             System.err.println("删除用户档案失败: " + e.getMessage());
             return false;
@@ -1198,48 +1928,58 @@ public class DatabaseManager {
      * 相关的daily_record、exercise_plan、diet_record表中的数据
      * 
      * @param username 用户名
-     * @return 删除是否成功
+     * @return 删除了档案或账户时返回true，两者都不存在或删除失败返回false
      */
-    public static synchronized boolean deleteUserCompletely(String username) {
-        try (Connection conn = getConnection()) {
-            // 开启事务
-            conn.setAutoCommit(false);
-            
-            try {
-                // 第一步：删除user_profile表中的数据（会级联删除相关记录）
-                String deleteProfileSQL = "DELETE FROM user_profile WHERE name = ?";
-                try (PreparedStatement pstmt = conn.prepareStatement(deleteProfileSQL)) {
-                    pstmt.setString(1, username);
-                    int profileResult = pstmt.executeUpdate();
-                    System.out.println("删除用户档案结果: " + profileResult);
-                }
+    public static boolean deleteUserCompletely(String username) {
+        try (UserLocks.Held held = UserLocks.lock(username)) {
+            if (InMemoryDatabase.isEnabled()) return InMemoryDatabase.deleteUserCompletely(username);
+            try (Connection conn = getConnection()) {
+                // 开启事务
+                conn.setAutoCommit(false);
                 
-                // 第二步：删除users表中的数据
-                String deleteUserSQL = "DELETE FROM users WHERE username = ?";
-                try (PreparedStatement pstmt = conn.prepareStatement(deleteUserSQL)) {
-                    pstmt.setString(1, username);
-                    int userResult = pstmt.executeUpdate();
-                    System.out.println("删除用户认证结果: " + userResult);
+                try {
+                    // 第一步：删除user_profile表中的数据（会级联删除相关记录）
+                    int profileResult;
+                    String deleteProfileSQL = "DELETE FROM user_profile WHERE name = ?";
+                    try (PreparedStatement pstmt = conn.prepareStatement(deleteProfileSQL)) {
+                        pstmt.setString(1, username);
+                        profileResult = pstmt.executeUpdate();
+                        System.out.println("删除用户档案结果: " + profileResult);
+                    }
+                    
+                    // 第二步：删除users表中的数据
+                    int userResult;
+                    String deleteUserSQL = "DELETE FROM users WHERE username = ?";
+                    try (PreparedStatement pstmt = conn.prepareStatement(deleteUserSQL)) {
+                        pstmt.setString(1, username);
+                        userResult = pstmt.executeUpdate();
+                        System.out.println("删除用户认证结果: " + userResult);
+                    }
+                    
+                    // 提交事务
+                    conn.commit();
+                    // 档案和账户都不存在时没有删除任何数据
+                    if (profileResult == 0 && userResult == 0) return false;
+                    System.out.println("用户完全删除成功: " + username);
+                    return true;
+                    
+                } catch (SQLException e) {
+                    // 回滚事务
+                    conn.rollback();
+                    System.err.println("删除用户失败，已回滚: " + e.getMessage());
+                    return false;
+                } finally {
+                    // 恢复自动提交
+                    conn.setAutoCommit(true);
                 }
                 
-                // 提交事务
-                conn.commit();
-                System.out.println("用户完全删除成功: " + username);
-                return true;
-                
             } catch (SQLException e) {
-                // 回滚事务
-                conn.rollback();
-                System.err.println("删除用户失败，已回滚: " + e.getMessage());
+                System.err.println("删除用户失败: " + e.getMessage());
                 return false;
-            } finally {
-                // 恢复自动提交
-                conn.setAutoCommit(true);
             }
-            
-        } catch (SQLException e) {
-            System.err.println("删除用户失败: " + e.getMessage());
-            return false;
+        } finally {
+            // 档案及其记录已删除（或删除失败），丢弃该用户的检索索引，下次检索重新建立
+            SearchIndex.forget(username);
         }
     }
     
@@ -1247,64 +1987,77 @@ public class DatabaseManager {
      * 根据用户档案ID完全删除用户
      * 
      * @param profileId 用户档案ID
-     * @return 删除是否成功
+     * @return 删除了档案或账户时返回true，两者都不存在或删除失败返回false
      */
-    public static synchronized boolean deleteUserCompletelyById(int profileId) {
-        try (Connection conn = getConnection()) {
-            // 开启事务
-            conn.setAutoCommit(false);
-            
-            try {
-                // 第一步：根据档案ID获取用户名
-                String getUserSQL = "SELECT name FROM user_profile WHERE id = ?";
-                String username = null;
-                try (PreparedStatement pstmt = conn.prepareStatement(getUserSQL)) {
-                    pstmt.setInt(1, profileId);
-                    try (ResultSet rs = pstmt.executeQuery()) {
-                        if (rs.next()) {
-                            username = rs.getString("name");
+    public static boolean deleteUserCompletelyById(int profileId) {
+        // 先查出档案对应的用户名再加锁，与该用户的其他写操作互斥
+        OwnerLock owners = lockOwners(ownerOf(DatabaseManager::getUserProfileById, UserProfile::getName, profileId), null);
+        try (owners) {
+            if (InMemoryDatabase.isEnabled()) return InMemoryDatabase.deleteUserCompletelyById(profileId);
+            try (Connection conn = getConnection()) {
+                // 开启事务
+                conn.setAutoCommit(false);
+                
+                try {
+                    // 第一步：根据档案ID获取用户名
+                    String getUserSQL = "SELECT name FROM user_profile WHERE id = ?";
+                    String username = null;
+                    try (PreparedStatement pstmt = conn.prepareStatement(getUserSQL)) {
+                        pstmt.setInt(1, profileId);
+                        try (ResultSet rs = pstmt.executeQuery()) {
+                            if (rs.next()) {
+                                username = rs.getString("name");
+                            }
                         }
                     }
-                }
-                
-                // 第二步：删除user_profile表中的数据（会级联删除相关记录）
-                String deleteProfileSQL = "DELETE FROM user_profile WHERE id = ?";
-                try (PreparedStatement pstmt = conn.prepareStatement(deleteProfileSQL)) {
-                    pstmt.setInt(1, profileId);
-                    int profileResult = pstmt.executeUpdate();
-                    System.out.println("删除用户档案结果: " + profileResult);
-                }
-                
-                // 第三步：如果找到了用户名，删除users表中的数据
-                if (username != null) {
-                    String deleteUserSQL = "DELETE FROM users WHERE username = ?";
-                    try (PreparedStatement pstmt = conn.prepareStatement(deleteUserSQL)) {
-                        pstmt.setString(1, username);
-                        int userResult = pstmt.executeUpdate();
-                        System.out.println("删除用户认证结果: " + userResult);
+                    
+                    // 第二步：删除user_profile表中的数据（会级联删除相关记录）
+                    int profileResult;
+                    String deleteProfileSQL = "DELETE FROM user_profile WHERE id = ?";
+                    try (PreparedStatement pstmt = conn.prepareStatement(deleteProfileSQL)) {
+                        pstmt.setInt(1, profileId);
+                        profileResult = pstmt.executeUpdate();
+                        System.out.println("删除用户档案结果: " + profileResult);
                     }
-                } else {
-                    System.out.println("未找到ID为 " + profileId + " 的用户档案，仅删除档案记录");
+                    
+                    // 第三步：如果找到了用户名，删除users表中的数据
+                    int userResult = 0;
+                    if (username != null) {
+                        String deleteUserSQL = "DELETE FROM users WHERE username = ?";
+                        try (PreparedStatement pstmt = conn.prepareStatement(deleteUserSQL)) {
+                            pstmt.setString(1, username);
+                            userResult = pstmt.executeUpdate();
+                            System.out.println("删除用户认证结果: " + userResult);
+                        }
+                    } else {
+                        System.out.println("未找到ID为 " + profileId + " 的用户档案，仅删除档案记录");
+                    }
+                    
+                    // 提交事务
+                    conn.commit();
+                    // 档案和账户都不存在时没有删除任何数据
+                    if (profileResult == 0 && userResult == 0) return false;
+                    System.out.println("用户完全删除成功，档案ID: " + profileId + ", 用户名: " + username);
+                    return true;
+                    
+                } catch (SQLException e) {
+                    // 回滚事务
+                    conn.rollback();
+                    System.err.println("删除用户失败，已回滚: " + e.getMessage());
+                    return false;
+                } finally {
+                    // 恢复自动提交
+                    conn.setAutoCommit(true);
                 }
                 
-                // 提交事务
-                conn.commit();
-                System.out.println("用户完全删除成功，档案ID: " + profileId + ", 用户名: " + username);
-                return true;
-                
             } catch (SQLException e) {
-                // 回滚事务
-                conn.rollback();
-                System.err.println("删除用户失败，已回滚: " + e.getMessage());
+                System.err.println("删除用户失败: " + e.getMessage());
                 return false;
-            } finally {
-                // 恢复自动提交
-                conn.setAutoCommit(true);
             }
-            
-        } catch (SQLException e) {
-            System.err.println("删除用户失败: " + e.getMessage());
-            return false;
+        } finally {
+            for (String name : owners.owners()) {
+                SearchIndex.forget(name);
+            }
         }
     }
 } 
\ No newline at end of file
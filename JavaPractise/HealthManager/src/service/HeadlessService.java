@@ -0,0 +1,187 @@
+package service;
+
+import api.HttpApiServer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 无界面服务模式
+ * 不启动Swing界面，一个进程通过SessionRegistry同时为多个用户提供会话
+ *
+ * 启动：java Main --headless
+ * 同时开启HTTP接口：java -Dhealth.http.port=8080 Main --headless（见api.HttpApiServer）
+ * 控制台命令：
+ * login 用户名 密码   登录并打印令牌
+ * whoami 令牌         查看令牌对应的会话
+ * logout 令牌         注销会话
+ * sessions            列出当前会话
+ * throttle            查看登录限流计数
+ * queue               查看完成状态写入队列计数
+ * offline             查看离线日志计数并立即尝试补写
+ * population [维度]   人群BMI、每周运动分钟数、睡眠的p10/p50/p90，维度为all|gender|age|goal（默认all）
+ * cohort [天数]       全体用户最近N天（默认30，最多3650）的健康/运动/饮食统计汇总及各阶段耗时
+ * search 用户名 查询   全文检索该用户的记录（查询语法见SearchIndex），按日期从新到旧列出前20条
+ * quit                退出
+ */
+public class HeadlessService {
+
+    private HeadlessService() {}
+
+    /**
+     * 启动服务并进入控制台循环，直到输入quit或标准输入关闭
+     */
+    public static void run() {
+        SessionRegistry.startSweeper();
+        Integer port = Integer.getInteger("health.http.port");
+        if (port != null && !HttpApiServer.start(port)) {
+            SessionRegistry.stopSweeper();
+            return;
+        }
+        System.out.println("无界面服务模式已启动，输入help查看命令");
+        boolean quit = false;
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty()) continue;
+                if ("quit".equals(line) || "exit".equals(line)) {
+                    quit = true;
+                    break;
+                }
+                System.out.println(execute(line));
+            }
+        } catch (IOException e) {
+            System.err.println("读取控制台输入失败: " + e.getMessage());
+        }
+        try {
+            // 以后台服务方式运行时标准输入会直接关闭，此时继续提供HTTP服务直到进程被终止
+            if (!quit && HttpApiServer.isRunning()) {
+                System.out.println("控制台输入已关闭，HTTP接口继续运行");
+                HttpApiServer.awaitStop();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            HttpApiServer.stop();
+            SessionRegistry.stopSweeper();
+            System.out.println("无界面服务模式已退出");
+        }
+    }
+
+    /**
+     * 执行一条控制台命令
+     *
+     * @return 命令输出
+     */
+    static String execute(String line) {
+        String[] parts = line.split("\\s+");
+        switch (parts[0]) {
+            case "login": {
+                if (parts.length != 3) return "用法: login 用户名 密码";
+                UserSession session = SessionRegistry.login(parts[1], parts[2]);
+                return session != null ? "令牌: " + session.getToken() : "登录失败";
+            }
+            case "whoami": {
+                if (parts.length != 2) return "用法: whoami 令牌";
+                UserSession session = SessionRegistry.get(parts[1]);
+                return session != null ? session.getDisplayName() : "会话不存在或已超时";
+            }
+            case "logout": {
+                if (parts.length != 2) return "用法: logout 令牌";
+                return SessionRegistry.logout(parts[1]) ? "已注销" : "会话不存在或已超时";
+            }
+            case "sessions": {
+                SimpleDateFormat fmt = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+                StringBuilder sb = new StringBuilder("当前会话数: " + SessionRegistry.size());
+                for (UserSession s : SessionRegistry.snapshot()) {
+                    sb.append("\n  ").append(s.getDisplayName())
+                      .append("  最后访问: ").append(fmt.format(new Date(s.getLastAccessAt())));
+                }
+                return sb.toString();
+            }
+            case "throttle": {
+                StringBuilder sb = new StringBuilder("登录限流计数:");
+                for (Map.Entry<String, Long> e : LoginThrottle.metrics().entrySet()) {
+                    sb.append("\n  ").append(e.getKey()).append(": ").append(e.getValue());
+                }
+                return sb.toString();
+            }
+            case "queue": {
+                StringBuilder sb = new StringBuilder("完成状态写入队列:");
+                for (Map.Entry<String, Long> e : PlanCompletionQueue.metrics().entrySet()) {
+                    sb.append("\n  ").append(e.getKey()).append(": ").append(e.getValue());
+                }
+                return sb.toString();
+            }
+            case "offline": {
+                boolean drained = OfflineJournal.replay();
+                StringBuilder sb = new StringBuilder(drained ? "离线日志已全部补写:" : "数据库仍不可用，离线日志:");
+                for (Map.Entry<String, Long> e : OfflineJournal.metrics().entrySet()) {
+                    sb.append("\n  ").append(e.getKey()).append(": ").append(e.getValue());
+                }
+                return sb.toString();
+            }
+            case "population": {
+                String by = parts.length > 1 ? parts[1] : PopulationStats.BY_ALL;
+                List<PopulationStats.Cohort> cohorts = PopulationStats.cohorts(by);
+                if (cohorts.isEmpty()) return "用法: population [all|gender|age|goal]（暂无每日记录时也为空）";
+                StringBuilder sb = new StringBuilder("人群分布（p10/p50/p90），统计记录数: " + PopulationStats.rows());
+                for (PopulationStats.Cohort c : cohorts) {
+                    sb.append("\n  ").append(c.getName()).append("（").append(c.getUsers()).append("人）");
+                    appendPercentiles(sb, "BMI", c.percentiles(PopulationStats.METRIC_BMI));
+                    appendPercentiles(sb, "每周运动(分钟)", c.percentiles(PopulationStats.METRIC_WEEKLY_EXERCISE_MINUTES));
+                    appendPercentiles(sb, "睡眠(小时)", c.percentiles(PopulationStats.METRIC_SLEEP));
+                }
+                return sb.toString();
+            }
+            case "cohort": {
+                int days;
+                try {
+                    days = parts.length > 1 ? Integer.parseInt(parts[1]) : 30;
+                } catch (NumberFormatException e) {
+                    return "用法: cohort [天数]";
+                }
+                CohortReport.Result r = CohortReport.lastDays(days);
+                CohortReport.Totals t = r.getTotals();
+                return String.format("全体用户报表（%s ~ %s）: 用户%d人，平均BMI %.2f，运动完成率%.1f%%（%d/%d），" +
+                        "实际运动%.1f小时，饮食记录%d天%n  评分分布: %s%n  BMI分布: %s%n" +
+                        "  耗时: 读取%dms（%d条） 计算%dms（其中合并%dms） 线程%d",
+                    r.getStart(), r.getEnd(), t.getUsers(), t.getAverageBmi(), t.getCompletionRate(),
+                    t.getCompletedPlans(), t.getTotalPlans(), t.getActualHours(), t.getDietDays(),
+                    t.getGradeDistribution(), t.getBmiDistribution(),
+                    r.getLoadMillis(), r.getLoadedRows(), r.getComputeMillis(), r.getMergeMillis(), r.getThreads());
+            }
+            case "search": {
+                String[] args = line.split("\\s+", 3);
+                if (args.length != 3) return "用法: search 用户名 查询";
+                List<SearchIndex.Hit> hits = SearchIndex.search(args[1], args[2], 20);
+                if (hits.isEmpty()) return "没有匹配的记录";
+                StringBuilder sb = new StringBuilder("匹配").append(hits.size()).append("条:");
+                for (SearchIndex.Hit hit : hits) {
+                    sb.append(String.format("%n  %s %s #%d %s", hit.getDate(), hit.getTypeName(), hit.getId(), hit.getText()));
+                }
+                return sb.toString();
+            }
+            case "help":
+                return "命令: login 用户名 密码 | whoami 令牌 | logout 令牌 | sessions | throttle | queue | offline | population [all|gender|age|goal] | cohort [天数] | search 用户名 查询 | quit";
+            default:
+                return "未知命令: " + parts[0] + "，输入help查看命令";
+        }
+    }
+
+    private static void appendPercentiles(StringBuilder sb, String label, double[] p) {
+        sb.append("  ").append(label).append(": ");
+        if (Double.isNaN(p[1])) {
+            sb.append("无数据");
+        } else {
+            sb.append(String.format("%.1f/%.1f/%.1f", p[0], p[1], p[2]));
+        }
+    }
+}
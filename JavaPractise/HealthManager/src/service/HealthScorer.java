@@ -0,0 +1,201 @@
+package service;
+
+import model.HealthStats;
+import model.UserProfile;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 健康评分
+ * 由用户档案和最近一段时间的每日记录、运动计划、饮食记录计算目标达成进度、A/B/C/D评分和健康建议
+ * （统计口径见AnalyticsEngine.healthStats），并在此基础上补充与目标相关的建议：
+ * 目标日期是否来得及、体重趋势是否背离目标、睡眠是否充足
+ *
+ * 结果按(用户, DataVersions版本号, 档案版本号, 日期)缓存：数据没有变化时重复查看同一用户、
+ * 管理员列表中未变化的用户都直接返回缓存，不再查库计算；为兼顾其他进程直接改库，缓存另有有效期
+ *
+ * 返回的HealthStats由缓存共享，调用方不要修改
+ *
+ * 配置（系统属性）：
+ * -Dhealth.score.days=30            统计最近多少天
+ * -Dhealth.score.ttlMinutes=10      缓存有效期（分钟），0为不缓存
+ * -Dhealth.score.cacheEntries=1024  最多缓存的用户数
+ */
+public class HealthScorer {
+
+    /**
+     * 健康的减重、增重速度（kg/周）
+     */
+    public static final double LOSS_PER_WEEK = 0.5;
+    public static final double GAIN_PER_WEEK = 0.3;
+
+    private static final int DAYS = Math.max(1, Integer.getInteger("health.score.days", 30));
+    private static final long TTL_MILLIS = Math.max(0, Long.getLong("health.score.ttlMinutes", 10)) * 60_000L;
+    private static final int MAX_ENTRIES = Math.max(16, Integer.getInteger("health.score.cacheEntries", 1024));
+
+    private static final Map<String, Entry> cache = Collections.synchronizedMap(
+        new LinkedHashMap<String, Entry>(64, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > MAX_ENTRIES;
+            }
+        });
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+
+    private HealthScorer() {}
+
+    private static final class Entry {
+        final long dataVersion;
+        final int profileVersion;
+        final LocalDate day;
+        final long computedAt;
+        final HealthStats stats;
+
+        Entry(long dataVersion, int profileVersion, LocalDate day, long computedAt, HealthStats stats) {
+            this.dataVersion = dataVersion;
+            this.profileVersion = profileVersion;
+            this.day = day;
+            this.computedAt = computedAt;
+            this.stats = stats;
+        }
+    }
+
+    // ==================== 评分 ====================
+
+    /**
+     * 用户最近一段时间的健康评分（有缓存直接返回）
+     *
+     * @param profile 用户档案
+     * @return 评分结果；档案为空返回null
+     */
+    public static HealthStats score(UserProfile profile) {
+        if (profile == null || profile.getName() == null) return null;
+        String name = profile.getName();
+        // 先取版本号再查数据：计算期间发生的写入会让版本号变大，下次不会命中这次的结果
+        long version = DataVersions.of(name);
+        LocalDate today = LocalDate.now();
+        long now = System.currentTimeMillis();
+        Entry e = cache.get(name);
+        if (e != null && e.dataVersion == version && e.profileVersion == profile.getVersion()
+                && e.day.equals(today) && now - e.computedAt < TTL_MILLIS) {
+            hits.incrementAndGet();
+            return e.stats;
+        }
+        misses.incrementAndGet();
+        HealthStats stats = compute(profile, today);
+        cache.put(name, new Entry(version, profile.getVersion(), today, now, stats));
+        return stats;
+    }
+
+    /**
+     * 批量评分（管理员列表），未变化的用户取缓存
+     *
+     * @return 按档案顺序的用户名到评分
+     */
+    public static Map<String, HealthStats> scoreAll(List<UserProfile> profiles) {
+        Map<String, HealthStats> result = new LinkedHashMap<>();
+        for (UserProfile p : profiles) {
+            HealthStats s = score(p);
+            if (s != null) result.put(p.getName(), s);
+        }
+        return result;
+    }
+
+    /**
+     * 缓存命中次数
+     */
+    public static long hits() {
+        return hits.get();
+    }
+
+    /**
+     * 缓存未命中（重新计算）次数
+     */
+    public static long misses() {
+        return misses.get();
+    }
+
+    /**
+     * 清空缓存（测试或数据被外部批量修改后调用）
+     */
+    public static void invalidateAll() {
+        cache.clear();
+    }
+
+    private static HealthStats compute(UserProfile profile, LocalDate today) {
+        String name = profile.getName();
+        LocalDate start = today.minusDays(DAYS - 1);
+        DailySeries daily = DailySeries.of(DatabaseManager.getDailyRecordsByUser(name));
+        HealthStats stats = AnalyticsEngine.healthStats(profile, daily,
+            DatabaseManager.getExercisePlansByUser(name), DatabaseManager.getDietRecordsByUser(name), start, today);
+        addGoalRecommendations(stats, profile, daily.slice(start, today), today);
+        return stats;
+    }
+
+    /**
+     * 与目标相关的建议：按健康速度目标日期是否来得及、最近体重趋势是否背离目标、平均睡眠是否不足
+     */
+    private static void addGoalRecommendations(HealthStats stats, UserProfile profile, DailySeries recent, LocalDate today) {
+        RollingStats trend = RollingStats.of(recent, profile.getHeight());
+        double current = trend.weight().count() > 0 ? trend.weight().last() : profile.getWeight();
+        double target = profile.getTargetWeight();
+        if (target > 0 && current > 0 && Math.abs(current - target) >= 0.5) {
+            LocalDate targetDate = profile.getTargetDate();
+            if (targetDate != null) {
+                long days = ChronoUnit.DAYS.between(today, targetDate);
+                int weeks = weeksNeeded(current, target);
+                if (days <= 0) {
+                    stats.addRecommendation("目标日期已过，建议按当前体重重新设定目标日期");
+                } else if (days < weeks * 7L) {
+                    stats.addRecommendation(String.format("按每周%s%.1fkg的健康速度约需%d周，目标日期偏紧，建议推迟到%s",
+                        target < current ? "减重" : "增重", weeklyRate(current, target), weeks,
+                        suggestedTargetDate(current, target, today)));
+                }
+            }
+            if (trend.weight().count30() >= 2) {
+                double slope = trend.weight().weeklySlope();
+                if (Math.abs(slope) >= 0.1 && Math.signum(slope) != Math.signum(target - current)) {
+                    stats.addRecommendation(String.format("最近体重每周%+.1fkg，与目标方向相反，建议调整饮食和运动安排", slope));
+                }
+            }
+        }
+        if (trend.sleep().count() > 0 && trend.sleep().ma30() < 7) {
+            stats.addRecommendation(String.format("最近平均睡眠%.1f小时，建议保证每天7小时以上", trend.sleep().ma30()));
+        }
+        if (recent.isEmpty()) {
+            stats.addRecommendation("最近没有每日记录，建议每天记录体重和睡眠");
+        }
+    }
+
+    // ==================== 目标日期 ====================
+
+    /**
+     * 健康的每周体重变化速度：减重0.5kg/周，增重0.3kg/周
+     */
+    public static double weeklyRate(double currentWeight, double targetWeight) {
+        return targetWeight < currentWeight ? LOSS_PER_WEEK : GAIN_PER_WEEK;
+    }
+
+    /**
+     * 按健康速度达到目标体重需要的周数
+     */
+    public static int weeksNeeded(double currentWeight, double targetWeight) {
+        return (int) Math.ceil(Math.abs(currentWeight - targetWeight) / weeklyRate(currentWeight, targetWeight));
+    }
+
+    /**
+     * 按健康速度从from开始推算的建议目标日期
+     */
+    public static LocalDate suggestedTargetDate(double currentWeight, double targetWeight, LocalDate from) {
+        return from.plusWeeks(weeksNeeded(currentWeight, targetWeight));
+    }
+}
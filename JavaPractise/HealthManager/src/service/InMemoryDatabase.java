@@ -0,0 +1,957 @@
+package service;
+
+import model.DailyRecord;
+import model.DietRecord;
+import model.ExercisePlan;
+import model.User;
+import model.UserProfile;
+import model.UserSummary;
+import model.WeightPoint;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * 内存数据库
+ * 与DatabaseManager提供相同的增删改查操作，数据全部保存在内存中，用于压测和快速启动
+ *
+ * 启用方式：启动参数 -Dhealth.storage=memory，或调用 InMemoryDatabase.enable()
+ * 可选快照：-Dhealth.memory.snapshot=文件路径，启动时加载、退出时写回
+ *
+ * 约束与MySQL表结构保持一致：
+ * - users.username、user_profile.name 唯一
+ * - daily_record(user_name, date)、exercise_plan(user_name, plan_date) 唯一
+ * - 删除档案时级联删除每日记录、运动计划和饮食记录
+ * - 档案改名时级联更新每日记录和运动计划；存在饮食记录时拒绝改名（diet_record外键无ON UPDATE CASCADE）
+ */
+public class InMemoryDatabase {
+
+    private static volatile boolean enabled = "memory".equalsIgnoreCase(System.getProperty("health.storage"));
+
+    // 自增主键
+    private static final AtomicInteger userIdSeq = new AtomicInteger();
+    private static final AtomicInteger profileIdSeq = new AtomicInteger();
+    private static final AtomicInteger dailyIdSeq = new AtomicInteger();
+    private static final AtomicInteger planIdSeq = new AtomicInteger();
+    private static final AtomicInteger dietIdSeq = new AtomicInteger();
+
+    // users表：按ID有序，另建用户名唯一索引
+    private static final ConcurrentSkipListMap<Integer, User> usersById = new ConcurrentSkipListMap<>();
+    private static final ConcurrentHashMap<String, Integer> userIdByName = new ConcurrentHashMap<>();
+
+    // user_profile表：按ID有序，另建姓名唯一索引
+    private static final ConcurrentSkipListMap<Integer, UserProfile> profilesById = new ConcurrentSkipListMap<>();
+    private static final ConcurrentHashMap<String, Integer> profileIdByName = new ConcurrentHashMap<>();
+    private static final Set<String> inactiveProfiles = ConcurrentHashMap.newKeySet();
+
+    // 每个用户一棵按日期有序的跳表，日期即唯一键
+    private static final ConcurrentHashMap<String, ConcurrentSkipListMap<LocalDate, DailyRecord>> dailyByUser = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<Integer, DailyRecord> dailyById = new ConcurrentHashMap<>();
+
+    private static final ConcurrentHashMap<String, ConcurrentSkipListMap<LocalDate, ExercisePlan>> plansByUser = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<Integer, ExercisePlan> plansById = new ConcurrentHashMap<>();
+
+    // 饮食记录同一天可以有多条，键为 (日期epochDay << 32 | id)，天然按 record_date, id 排序
+    private static final ConcurrentHashMap<String, ConcurrentSkipListMap<Long, DietRecord>> dietByUser = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<Integer, DietRecord> dietById = new ConcurrentHashMap<>();
+
+    // 记录级写操作共享读锁，档案级结构变更（删除、改名、快照）独占写锁
+    private static final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private InMemoryDatabase() {}
+
+    /**
+     * 是否启用内存数据库
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 启用内存数据库（压测或基准测试代码中调用）
+     */
+    public static void enable() {
+        enabled = true;
+    }
+
+    /**
+     * 初始化：插入默认超级管理员，按需加载快照
+     */
+    public static void initialize() {
+        String snapshot = System.getProperty("health.memory.snapshot");
+        if (snapshot != null && !snapshot.trim().isEmpty()) {
+            File file = new File(snapshot);
+            if (file.exists()) {
+                loadSnapshot(file);
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> saveSnapshot(file), "memory-snapshot"));
+        }
+        boolean hasAdmin = usersById.values().stream().anyMatch(User::isAdmin);
+        if (!hasAdmin) {
+            createUser("root", PasswordHasher.hash("123456"), "ADMIN");
+            System.out.println("默认超级管理员账户创建完成: root/123456");
+        }
+        System.out.println("内存数据库初始化完成");
+    }
+
+    /**
+     * 清空所有数据
+     */
+    public static void clear() {
+        lock.writeLock().lock();
+        try {
+            usersById.clear();
+            userIdByName.clear();
+            profilesById.clear();
+            profileIdByName.clear();
+            inactiveProfiles.clear();
+            dailyByUser.clear();
+            dailyById.clear();
+            plansByUser.clear();
+            plansById.clear();
+            dietByUser.clear();
+            dietById.clear();
+            userIdSeq.set(0);
+            profileIdSeq.set(0);
+            dailyIdSeq.set(0);
+            planIdSeq.set(0);
+            dietIdSeq.set(0);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ==================== 用户档案相关操作 ====================
+
+    public static boolean insertUserProfile(UserProfile profile) {
+        if (profile == null || profile.getName() == null) return false;
+        lock.readLock().lock();
+        try {
+            int id = profileIdSeq.incrementAndGet();
+            if (profileIdByName.putIfAbsent(profile.getName(), id) != null) {
+                System.err.println("用户档案插入失败: Duplicate entry '" + profile.getName() + "'");
+                return false;
+            }
+            profile.setId(id);
+            profile.setVersion(0);
+            profilesById.put(id, copyOf(profile));
+            return true;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public static SaveResult<UserProfile> updateUserProfile(UserProfile profile) {
+        if (profile == null || profile.getName() == null) return SaveResult.failed();
+        lock.writeLock().lock();
+        try {
+            UserProfile existing = profilesById.get(profile.getId());
+            if (existing == null) return SaveResult.notFound();
+            if (existing.getVersion() != profile.getVersion()) {
+                return SaveResult.conflict(copyOf(existing), new ArrayList<>());
+            }
+            String oldName = existing.getName();
+            String newName = profile.getName();
+            if (!oldName.equals(newName)) {
+                if (profileIdByName.containsKey(newName)) {
+                    System.err.println("用户档案更新失败: Duplicate entry '" + newName + "'");
+                    return SaveResult.failed();
+                }
+                ConcurrentSkipListMap<Long, DietRecord> diets = dietByUser.get(oldName);
+                if (diets != null && !diets.isEmpty()) {
+                    System.err.println("用户档案更新失败: 存在饮食记录，外键约束禁止改名");
+                    return SaveResult.failed();
+                }
+                renameSeries(dailyByUser, oldName, newName, r -> r.setUserName(newName));
+                renameSeries(plansByUser, oldName, newName, p -> p.setUserName(newName));
+                profileIdByName.remove(oldName);
+                profileIdByName.put(newName, profile.getId());
+                if (inactiveProfiles.remove(oldName)) {
+                    inactiveProfiles.add(newName);
+                }
+            }
+            profile.setVersion(existing.getVersion() + 1);
+            UserProfile stored = copyOf(profile);
+            stored.setCreatedDate(existing.getCreatedDate());
+            stored.setUpdatedDate(LocalDate.now());
+            profilesById.put(profile.getId(), stored);
+            return SaveResult.saved(profile);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public static UserProfile loadUserProfile() {
+        return profilesById.values().stream()
+            .filter(p -> !inactiveProfiles.contains(p.getName()))
+            .max(Comparator.comparing(UserProfile::getLastUpdated, Comparator.nullsFirst(Comparator.<LocalDate>naturalOrder()))
+                .thenComparingInt(UserProfile::getId))
+            .map(InMemoryDatabase::copyOf)
+            .orElse(null);
+    }
+
+    public static boolean hasUserProfileData() {
+        return profilesById.values().stream().anyMatch(p -> !inactiveProfiles.contains(p.getName()));
+    }
+
+    public static boolean deleteUserProfile() {
+        boolean changed = false;
+        for (UserProfile p : profilesById.values()) {
+            changed |= inactiveProfiles.add(p.getName());
+        }
+        return changed;
+    }
+
+    public static List<UserProfile> getAllUserProfiles() {
+        List<UserProfile> profiles = new ArrayList<>(profilesById.size());
+        for (UserProfile p : profilesById.values()) {
+            profiles.add(copyOf(p));
+        }
+        return profiles;
+    }
+
+    public static List<UserSummary> getAllUserSummaries() {
+        List<UserSummary> users = new ArrayList<>(profilesById.size());
+        for (UserProfile p : profilesById.values()) {
+            users.add(UserSummary.of(p));
+        }
+        return users;
+    }
+
+    public static UserProfile getUserProfileById(int id) {
+        UserProfile p = profilesById.get(id);
+        return p != null ? copyOf(p) : null;
+    }
+
+    public static UserProfile getUserProfileByName(String name) {
+        if (name == null) return null;
+        Integer id = profileIdByName.get(name);
+        return id != null ? getUserProfileById(id) : null;
+    }
+
+    public static boolean deleteUserProfileById(int id) {
+        lock.writeLock().lock();
+        try {
+            UserProfile removed = profilesById.remove(id);
+            if (removed == null) return false;
+            profileIdByName.remove(removed.getName());
+            inactiveProfiles.remove(removed.getName());
+            cascadeDelete(removed.getName());
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public static boolean deleteUserProfileByName(String name) {
+        Integer id = name != null ? profileIdByName.get(name) : null;
+        return id != null && deleteUserProfileById(id);
+    }
+
+    public static boolean insertUserProfileForNewUser(String username) {
+        UserProfile profile = new UserProfile(username, 18, "男", 170.0, 60.0);
+        return insertUserProfile(profile);
+    }
+
+    // ==================== 每日记录相关操作 ====================
+
+    public static boolean saveDailyRecord(DailyRecord record) {
+        if (record == null || record.getDate() == null) return false;
+        lock.readLock().lock();
+        try {
+            ConcurrentSkipListMap<LocalDate, DailyRecord> series = seriesOf(dailyByUser, record.getUserName());
+            if (series == null) {
+                System.err.println("每日记录保存失败: 用户档案不存在 " + record.getUserName());
+                return false;
+            }
+            DailyRecord stored = copyOf(record);
+            synchronized (series) {
+                if (series.containsKey(record.getDate())) {
+                    System.err.println("每日记录保存失败: Duplicate entry '" + record.getUserName() + "-" + record.getDate() + "'");
+                    return false;
+                }
+                int id = dailyIdSeq.incrementAndGet();
+                stored.setId(id);
+                stored.setVersion(0);
+                record.setId(id);
+                record.setVersion(0);
+                series.put(stored.getDate(), stored);
+                dailyById.put(id, stored);
+            }
+            return true;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public static List<DailyRecord> getAllDailyRecords() {
+        List<DailyRecord> records = new ArrayList<>(dailyById.size());
+        for (DailyRecord r : dailyById.values()) {
+            records.add(copyOf(r));
+        }
+        records.sort(Comparator.comparing(DailyRecord::getDate).thenComparingInt(DailyRecord::getId).reversed());
+        return records;
+    }
+
+    /**
+     * 惰性遍历全部每日记录，逐条拷贝，不整体复制（弱一致，顺序不作保证）
+     */
+    public static Stream<DailyRecord> streamAllDailyRecords() {
+        return dailyById.values().stream().map(InMemoryDatabase::copyOf);
+    }
+
+    /**
+     * 惰性遍历全部每日记录，同一用户的记录连续出现且按日期升序（用户之间的顺序不作保证）
+     */
+    public static Stream<DailyRecord> streamAllDailyRecordsByUser() {
+        return dailyByUser.values().stream()
+            .flatMap(series -> series.values().stream())
+            .map(InMemoryDatabase::copyOf);
+    }
+
+    public static List<DailyRecord> getDailyRecordsByUser(String userName) {
+        List<DailyRecord> records = new ArrayList<>();
+        ConcurrentSkipListMap<LocalDate, DailyRecord> series = userName != null ? dailyByUser.get(userName) : null;
+        if (series != null) {
+            for (DailyRecord r : series.descendingMap().values()) {
+                records.add(copyOf(r));
+            }
+        }
+        return records;
+    }
+
+    public static List<WeightPoint> getWeightPointsByUser(String userName) {
+        List<WeightPoint> points = new ArrayList<>();
+        ConcurrentSkipListMap<LocalDate, DailyRecord> series = userName != null ? dailyByUser.get(userName) : null;
+        if (series != null) {
+            for (DailyRecord r : series.values()) {
+                points.add(new WeightPoint(r.getDate(), r.getWeight()));
+            }
+        }
+        return points;
+    }
+
+    public static SaveResult<DailyRecord> updateDailyRecord(DailyRecord record) {
+        if (record == null || record.getId() == 0 || record.getDate() == null) return SaveResult.failed();
+        while (true) {
+            DailyRecord existing = dailyById.get(record.getId());
+            if (existing == null) return SaveResult.notFound();
+            boolean moveUser = !existing.getUserName().equals(record.getUserName());
+            // 跨用户移动记录涉及两棵跳表，升级为独占锁
+            java.util.concurrent.locks.Lock held = moveUser ? lock.writeLock() : lock.readLock();
+            held.lock();
+            try {
+                // 持锁后重新判断：加锁前记录可能已被移到其他用户名下，读锁不足以覆盖跨用户移动时换独占锁重试
+                existing = dailyById.get(record.getId());
+                if (existing == null) return SaveResult.notFound();
+                if (!moveUser && !existing.getUserName().equals(record.getUserName())) continue;
+                ConcurrentSkipListMap<LocalDate, DailyRecord> from = dailyByUser.get(existing.getUserName());
+                ConcurrentSkipListMap<LocalDate, DailyRecord> to = seriesOf(dailyByUser, record.getUserName());
+                if (from == null || to == null) return SaveResult.failed();
+                synchronized (to) {
+                    // 持锁后重新读取，版本号检查和写入之间不会插入其他更新
+                    DailyRecord current = dailyById.get(record.getId());
+                    if (current == null) return SaveResult.notFound();
+                    if (current.getVersion() != record.getVersion()) {
+                        return SaveResult.conflict(copyOf(current), new ArrayList<>());
+                    }
+                    DailyRecord occupant = to.get(record.getDate());
+                    if (occupant != null && occupant.getId() != record.getId()) {
+                        System.err.println("每日记录更新失败: Duplicate entry '" + record.getUserName() + "-" + record.getDate() + "'");
+                        return SaveResult.failed();
+                    }
+                    from.remove(current.getDate(), current);
+                    record.setVersion(current.getVersion() + 1);
+                    DailyRecord stored = copyOf(record);
+                    to.put(stored.getDate(), stored);
+                    dailyById.put(stored.getId(), stored);
+                }
+                return SaveResult.saved(record);
+            } finally {
+                held.unlock();
+            }
+        }
+    }
+
+    /**
+     * 与更新相同持读锁并在所属用户的跳表上同步：读锁下记录不会被移到其他用户，
+     * 同一用户的更新与删除互斥，已通过版本号检查的更新不会把刚删除的记录写回
+     */
+    public static boolean deleteDailyRecordById(int id) {
+        lock.readLock().lock();
+        try {
+            DailyRecord existing = dailyById.get(id);
+            if (existing == null) return false;
+            ConcurrentSkipListMap<LocalDate, DailyRecord> series = dailyByUser.get(existing.getUserName());
+            if (series == null) return dailyById.remove(id) != null;
+            synchronized (series) {
+                DailyRecord removed = dailyById.remove(id);
+                if (removed == null) return false;
+                series.remove(removed.getDate(), removed);
+            }
+            return true;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ==================== 运动计划相关操作 ====================
+
+    public static boolean insertExercisePlan(ExercisePlan plan) {
+        if (plan == null || plan.getPlanDate() == null) return false;
+        lock.readLock().lock();
+        try {
+            ConcurrentSkipListMap<LocalDate, ExercisePlan> series = seriesOf(plansByUser, plan.getUserName());
+            if (series == null) {
+                System.err.println("运动计划插入失败: 用户档案不存在 " + plan.getUserName());
+                return false;
+            }
+            synchronized (series) {
+                if (series.containsKey(plan.getPlanDate())) {
+                    System.err.println("运动计划插入失败: Duplicate entry '" + plan.getUserName() + "-" + plan.getPlanDate() + "'");
+                    return false;
+                }
+                int id = planIdSeq.incrementAndGet();
+                plan.setId(id);
+                plan.setVersion(0);
+                ExercisePlan stored = copyOf(plan);
+                LocalDateTime now = LocalDateTime.now();
+                stored.setCreatedAt(now);
+                stored.setUpdatedAt(now);
+                series.put(stored.getPlanDate(), stored);
+                plansById.put(id, stored);
+            }
+            return true;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public static SaveResult<ExercisePlan> updateExercisePlan(ExercisePlan plan) {
+        if (plan == null || plan.getPlanDate() == null) return SaveResult.failed();
+        while (true) {
+            ExercisePlan existing = plansById.get(plan.getId());
+            if (existing == null) return SaveResult.notFound();
+            boolean moveUser = !existing.getUserName().equals(plan.getUserName());
+            java.util.concurrent.locks.Lock held = moveUser ? lock.writeLock() : lock.readLock();
+            held.lock();
+            try {
+                existing = plansById.get(plan.getId());
+                if (existing == null) return SaveResult.notFound();
+                if (!moveUser && !existing.getUserName().equals(plan.getUserName())) continue;
+                ConcurrentSkipListMap<LocalDate, ExercisePlan> from = plansByUser.get(existing.getUserName());
+                ConcurrentSkipListMap<LocalDate, ExercisePlan> to = seriesOf(plansByUser, plan.getUserName());
+                if (from == null || to == null) return SaveResult.failed();
+                synchronized (to) {
+                    ExercisePlan current = plansById.get(plan.getId());
+                    if (current == null) return SaveResult.notFound();
+                    if (current.getVersion() != plan.getVersion()) {
+                        return SaveResult.conflict(copyOf(current), new ArrayList<>());
+                    }
+                    ExercisePlan occupant = to.get(plan.getPlanDate());
+                    if (occupant != null && occupant.getId() != plan.getId()) {
+                        System.err.println("运动计划更新失败: Duplicate entry '" + plan.getUserName() + "-" + plan.getPlanDate() + "'");
+                        return SaveResult.failed();
+                    }
+                    from.remove(current.getPlanDate(), current);
+                    plan.setVersion(current.getVersion() + 1);
+                    ExercisePlan stored = copyOf(plan);
+                    stored.setCreatedAt(current.getCreatedAt());
+                    stored.setUpdatedAt(LocalDateTime.now());
+                    to.put(stored.getPlanDate(), stored);
+                    plansById.put(stored.getId(), stored);
+                }
+                return SaveResult.saved(plan);
+            } finally {
+                held.unlock();
+            }
+        }
+    }
+
+    public static List<ExercisePlan> getAllExercisePlans() {
+        List<ExercisePlan> plans = new ArrayList<>(plansById.size());
+        for (ExercisePlan p : plansById.values()) {
+            plans.add(copyOf(p));
+        }
+        plans.sort(Comparator.comparing(ExercisePlan::getPlanDate).thenComparingInt(ExercisePlan::getId).reversed());
+        return plans;
+    }
+
+    public static Stream<ExercisePlan> streamAllExercisePlans() {
+        return plansById.values().stream().map(InMemoryDatabase::copyOf);
+    }
+
+    public static List<ExercisePlan> getExercisePlansByUser(String userName) {
+        List<ExercisePlan> plans = new ArrayList<>();
+        ConcurrentSkipListMap<LocalDate, ExercisePlan> series = userName != null ? plansByUser.get(userName) : null;
+        if (series != null) {
+            for (ExercisePlan p : series.descendingMap().values()) {
+                plans.add(copyOf(p));
+            }
+        }
+        return plans;
+    }
+
+    public static boolean deleteExercisePlanById(int id) {
+        lock.readLock().lock();
+        try {
+            ExercisePlan existing = plansById.get(id);
+            if (existing == null) return false;
+            ConcurrentSkipListMap<LocalDate, ExercisePlan> series = plansByUser.get(existing.getUserName());
+            if (series == null) return plansById.remove(id) != null;
+            synchronized (series) {
+                ExercisePlan removed = plansById.remove(id);
+                if (removed == null) return false;
+                series.remove(removed.getPlanDate(), removed);
+            }
+            return true;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public static boolean updatePlanCompletionStatus(int id, boolean isCompleted) {
+        ExercisePlan existing = plansById.get(id);
+        if (existing == null) return false;
+        ExercisePlan updated = copyOf(existing);
+        updated.setCompleted(isCompleted);
+        return updateExercisePlan(updated).isSuccess();
+    }
+
+    public static boolean updatePlanCompletionStatus(int id, boolean isCompleted, Double actualDuration) {
+        ExercisePlan existing = plansById.get(id);
+        if (existing == null) return false;
+        ExercisePlan updated = copyOf(existing);
+        updated.setCompleted(isCompleted);
+        updated.setActualDuration(actualDuration);
+        return updateExercisePlan(updated).isSuccess();
+    }
+
+    public static boolean updatePlanCompletionStatusBatch(List<PlanCompletionQueue.Entry> entries) {
+        for (PlanCompletionQueue.Entry entry : entries) {
+            // 计划已被删除时跳过，与数据库批量更新影响0行一致
+            updatePlanCompletionStatus(entry.getPlanId(), entry.isCompleted(), entry.getActualDuration());
+        }
+        return true;
+    }
+
+    // ==================== 饮食记录相关操作 ====================
+
+    public static boolean insertDietRecord(DietRecord record) {
+        if (record == null || record.getRecordDate() == null) return false;
+        lock.readLock().lock();
+        try {
+            ConcurrentSkipListMap<Long, DietRecord> series = seriesOf(dietByUser, record.getUserName());
+            if (series == null) {
+                System.err.println("饮食记录插入失败: 用户档案不存在 " + record.getUserName());
+                return false;
+            }
+            int id = dietIdSeq.incrementAndGet();
+            record.setId(id);
+            record.setVersion(0);
+            DietRecord stored = copyOf(record);
+            LocalDateTime now = LocalDateTime.now();
+            stored.setCreatedAt(now);
+            stored.setUpdatedAt(now);
+            series.put(dietKey(stored), stored);
+            dietById.put(id, stored);
+            return true;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public static SaveResult<DietRecord> updateDietRecord(DietRecord record) {
+        if (record == null || record.getId() == 0 || record.getRecordDate() == null) return SaveResult.failed();
+        while (true) {
+            DietRecord existing = dietById.get(record.getId());
+            if (existing == null) return SaveResult.notFound();
+            boolean moveUser = !existing.getUserName().equals(record.getUserName());
+            java.util.concurrent.locks.Lock held = moveUser ? lock.writeLock() : lock.readLock();
+            held.lock();
+            try {
+                existing = dietById.get(record.getId());
+                if (existing == null) return SaveResult.notFound();
+                if (!moveUser && !existing.getUserName().equals(record.getUserName())) continue;
+                ConcurrentSkipListMap<Long, DietRecord> from = dietByUser.get(existing.getUserName());
+                ConcurrentSkipListMap<Long, DietRecord> to = seriesOf(dietByUser, record.getUserName());
+                if (from == null || to == null) return SaveResult.failed();
+                synchronized (to) {
+                    DietRecord current = dietById.get(record.getId());
+                    if (current == null) return SaveResult.notFound();
+                    if (current.getVersion() != record.getVersion()) {
+                        return SaveResult.conflict(copyOf(current), new ArrayList<>());
+                    }
+                    from.remove(dietKey(current), current);
+                    record.setVersion(current.getVersion() + 1);
+                    DietRecord stored = copyOf(record);
+                    stored.setCreatedAt(current.getCreatedAt());
+                    stored.setUpdatedAt(LocalDateTime.now());
+                    to.put(dietKey(stored), stored);
+                    dietById.put(stored.getId(), stored);
+                }
+                return SaveResult.saved(record);
+            } finally {
+                held.unlock();
+            }
+        }
+    }
+
+    public static boolean deleteDietRecordById(int id) {
+        lock.readLock().lock();
+        try {
+            DietRecord existing = dietById.get(id);
+            if (existing == null) return false;
+            ConcurrentSkipListMap<Long, DietRecord> series = dietByUser.get(existing.getUserName());
+            if (series == null) return dietById.remove(id) != null;
+            synchronized (series) {
+                DietRecord removed = dietById.remove(id);
+                if (removed == null) return false;
+                series.remove(dietKey(removed), removed);
+            }
+            return true;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 惰性遍历全部饮食记录，逐条拷贝，不整体复制（弱一致，顺序不作保证）
+     */
+    public static Stream<DietRecord> streamAllDietRecords() {
+        return dietById.values().stream().map(InMemoryDatabase::copyOf);
+    }
+
+    public static List<DietRecord> getDietRecordsByUser(String userName) {
+        List<DietRecord> records = new ArrayList<>();
+        ConcurrentSkipListMap<Long, DietRecord> series = userName != null ? dietByUser.get(userName) : null;
+        if (series != null) {
+            for (DietRecord r : series.descendingMap().values()) {
+                records.add(copyOf(r));
+            }
+        }
+        return records;
+    }
+
+    public static DailyRecord getDailyRecordById(int id) {
+        DailyRecord r = dailyById.get(id);
+        return r != null ? copyOf(r) : null;
+    }
+
+    public static ExercisePlan getExercisePlanById(int id) {
+        ExercisePlan p = plansById.get(id);
+        return p != null ? copyOf(p) : null;
+    }
+
+    public static DietRecord getDietRecordById(int id) {
+        DietRecord r = dietById.get(id);
+        return r != null ? copyOf(r) : null;
+    }
+
+    // ==================== 用户认证相关操作 ====================
+
+    public static User findUser(String username) {
+        Integer id = username != null ? userIdByName.get(username) : null;
+        User user = id != null ? usersById.get(id) : null;
+        return user != null ? copyOf(user) : null;
+    }
+
+    public static User getUserById(int userId) {
+        User user = usersById.get(userId);
+        return user != null ? copyOf(user) : null;
+    }
+
+    public static boolean replacePasswordHash(String username, String oldValue, String newHash) {
+        Integer id = username != null ? userIdByName.get(username) : null;
+        if (id == null) return false;
+        boolean[] replaced = {false};
+        usersById.computeIfPresent(id, (k, u) -> {
+            if (!u.getPassword().equals(oldValue)) return u;
+            User updated = copyOf(u);
+            updated.setPassword(newHash);
+            replaced[0] = true;
+            return updated;
+        });
+        return replaced[0];
+    }
+
+    public static boolean createUser(String username, String password, String role) {
+        if (username == null || password == null) return false;
+        int id = userIdSeq.incrementAndGet();
+        if (userIdByName.putIfAbsent(username, id) != null) {
+            System.err.println("创建用户失败: Duplicate entry '" + username + "'");
+            return false;
+        }
+        User user = new User(username, password, role != null ? role : "USER");
+        user.setId(id);
+        usersById.put(id, user);
+        return true;
+    }
+
+    public static List<User> getAllUsers() {
+        List<User> users = new ArrayList<>(usersById.size());
+        for (User u : usersById.values()) {
+            users.add(copyOf(u));
+        }
+        return users;
+    }
+
+    public static boolean deleteUser(int userId) {
+        User removed = usersById.remove(userId);
+        if (removed == null) return false;
+        userIdByName.remove(removed.getUsername(), userId);
+        return true;
+    }
+
+    public static boolean deleteUserByUsername(String username) {
+        Integer id = username != null ? userIdByName.get(username) : null;
+        return id != null && deleteUser(id);
+    }
+
+    public static boolean updateUserProfileLink(String username, String profileName) {
+        return updateUser(username, u -> u.setProfileName(profileName));
+    }
+
+    public static boolean updateUserPassword(String username, String newPassword) {
+        return updateUser(username, u -> u.setPassword(newPassword));
+    }
+
+    public static boolean deleteUserCompletely(String username) {
+        lock.writeLock().lock();
+        try {
+            boolean profileDeleted = deleteUserProfileByName(username);
+            boolean userDeleted = deleteUserByUsername(username);
+            if (!profileDeleted && !userDeleted) return false;
+            System.out.println("用户完全删除成功: " + username);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public static boolean deleteUserCompletelyById(int profileId) {
+        lock.writeLock().lock();
+        try {
+            UserProfile profile = profilesById.get(profileId);
+            boolean profileDeleted = deleteUserProfileById(profileId);
+            boolean userDeleted = profile != null && deleteUserByUsername(profile.getName());
+            return profileDeleted || userDeleted;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ==================== 快照 ====================
+
+    /**
+     * 将当前全部数据写入快照文件
+     */
+    public static boolean saveSnapshot(File file) {
+        lock.writeLock().lock();
+        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(file))) {
+            Snapshot snapshot = new Snapshot();
+            snapshot.users = new ArrayList<>(usersById.values());
+            snapshot.profiles = new ArrayList<>(profilesById.values());
+            snapshot.inactiveProfiles = new ArrayList<>(inactiveProfiles);
+            snapshot.dailyRecords = new ArrayList<>(dailyById.values());
+            snapshot.exercisePlans = new ArrayList<>(plansById.values());
+            snapshot.dietRecords = new ArrayList<>(dietById.values());
+            snapshot.sequences = new int[] {
+                userIdSeq.get(), profileIdSeq.get(), dailyIdSeq.get(), planIdSeq.get(), dietIdSeq.get()
+            };
+            out.writeObject(snapshot);
+            System.out.println("内存数据库快照已保存: " + file.getPath());
+            return true;
+        } catch (IOException e) {
+            System.err.println("内存数据库快照保存失败: " + e.getMessage());
+            return false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 从快照文件恢复全部数据（会先清空当前数据）
+     */
+    public static boolean loadSnapshot(File file) {
+        Snapshot snapshot;
+        try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(file))) {
+            snapshot = (Snapshot) in.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            System.err.println("内存数据库快照加载失败: " + e.getMessage());
+            return false;
+        }
+        lock.writeLock().lock();
+        try {
+            clear();
+            for (User u : snapshot.users) {
+                usersById.put(u.getId(), u);
+                userIdByName.put(u.getUsername(), u.getId());
+            }
+            for (UserProfile p : snapshot.profiles) {
+                profilesById.put(p.getId(), p);
+                profileIdByName.put(p.getName(), p.getId());
+            }
+            inactiveProfiles.addAll(snapshot.inactiveProfiles);
+            for (DailyRecord r : snapshot.dailyRecords) {
+                seriesOf(dailyByUser, r.getUserName()).put(r.getDate(), r);
+                dailyById.put(r.getId(), r);
+            }
+            for (ExercisePlan p : snapshot.exercisePlans) {
+                seriesOf(plansByUser, p.getUserName()).put(p.getPlanDate(), p);
+                plansById.put(p.getId(), p);
+            }
+            for (DietRecord r : snapshot.dietRecords) {
+                seriesOf(dietByUser, r.getUserName()).put(dietKey(r), r);
+                dietById.put(r.getId(), r);
+            }
+            userIdSeq.set(snapshot.sequences[0]);
+            profileIdSeq.set(snapshot.sequences[1]);
+            dailyIdSeq.set(snapshot.sequences[2]);
+            planIdSeq.set(snapshot.sequences[3]);
+            dietIdSeq.set(snapshot.sequences[4]);
+            System.out.println("内存数据库快照已加载: " + file.getPath());
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 快照文件内容
+     */
+    private static class Snapshot implements Serializable {
+        private static final long serialVersionUID = 1L;
+        List<User> users;
+        List<UserProfile> profiles;
+        List<String> inactiveProfiles;
+        List<DailyRecord> dailyRecords;
+        List<ExercisePlan> exercisePlans;
+        List<DietRecord> dietRecords;
+        int[] sequences;
+    }
+
+    // ==================== 内部工具方法 ====================
+
+    /**
+     * 获取某用户的记录跳表；档案不存在时返回null（对应外键约束）
+     */
+    private static <K, V> ConcurrentSkipListMap<K, V> seriesOf(
+            ConcurrentHashMap<String, ConcurrentSkipListMap<K, V>> table, String userName) {
+        if (userName == null || !profileIdByName.containsKey(userName)) {
+            return null;
+        }
+        return table.computeIfAbsent(userName, k -> new ConcurrentSkipListMap<>());
+    }
+
+    private static <K, V> void renameSeries(ConcurrentHashMap<String, ConcurrentSkipListMap<K, V>> table,
+                                            String oldName, String newName, java.util.function.Consumer<V> rename) {
+        ConcurrentSkipListMap<K, V> series = table.remove(oldName);
+        if (series != null) {
+            series.values().forEach(rename);
+            table.put(newName, series);
+        }
+    }
+
+    private static void cascadeDelete(String userName) {
+        ConcurrentSkipListMap<LocalDate, DailyRecord> daily = dailyByUser.remove(userName);
+        if (daily != null) {
+            daily.values().forEach(r -> dailyById.remove(r.getId()));
+        }
+        ConcurrentSkipListMap<LocalDate, ExercisePlan> plans = plansByUser.remove(userName);
+        if (plans != null) {
+            plans.values().forEach(p -> plansById.remove(p.getId()));
+        }
+        ConcurrentSkipListMap<Long, DietRecord> diets = dietByUser.remove(userName);
+        if (diets != null) {
+            diets.values().forEach(r -> dietById.remove(r.getId()));
+        }
+    }
+
+    private static boolean updateUser(String username, java.util.function.Consumer<User> change) {
+        Integer id = username != null ? userIdByName.get(username) : null;
+        if (id == null) return false;
+        return usersById.computeIfPresent(id, (k, u) -> {
+            User updated = copyOf(u);
+            change.accept(updated);
+            return updated;
+        }) != null;
+    }
+
+    private static long dietKey(DietRecord record) {
+        return (record.getRecordDate().toEpochDay() << 32) | (record.getId() & 0xFFFFFFFFL);
+    }
+
+    // 存取时一律复制，调用方修改返回对象不会影响已存数据（与数据库语义一致）；OfflineJournal、OfflineCache也用这些方法复制
+
+    static UserProfile copyOf(UserProfile p) {
+        UserProfile c = new UserProfile(p.getName(), p.getAge(), p.getGender(), p.getHeight(), p.getWeight(),
+            p.getTargetWeight(), p.getFitnessGoal(), p.getPhone(), p.getHealthNotes());
+        c.setId(p.getId());
+        c.setHealthStatus(p.getHealthStatus());
+        c.setTargetDate(p.getTargetDate());
+        c.setCreatedDate(p.getCreatedDate());
+        c.setUpdatedDate(p.getLastUpdated());
+        c.setVersion(p.getVersion());
+        return c;
+    }
+
+    static DailyRecord copyOf(DailyRecord r) {
+        DailyRecord c = new DailyRecord(r.getUserName(), r.getDate(), r.getWeight(), r.getExercise(),
+            r.getExerciseDuration(), r.getSleepDuration(), r.getMood(), r.getNote());
+        c.setId(r.getId());
+        c.setVersion(r.getVersion());
+        return c;
+    }
+
+    static ExercisePlan copyOf(ExercisePlan p) {
+        ExercisePlan c = new ExercisePlan(p.getUserName(), p.getExerciseType(), p.getPlanDate());
+        c.setId(p.getId());
+        c.setDuration(p.getDuration());
+        c.setIntensity(p.getIntensity());
+        c.setCompleted(p.isCompleted());
+        c.setActualDuration(p.getActualDuration());
+        c.setNotes(p.getNotes());
+        c.setCreatedAt(p.getCreatedAt());
+        c.setUpdatedAt(p.getUpdatedAt());
+        c.setVersion(p.getVersion());
+        return c;
+    }
+
+    static DietRecord copyOf(DietRecord r) {
+        DietRecord c = new DietRecord(r.getUserName(), r.getRecordDate());
+        c.setId(r.getId());
+        c.setBreakfast(r.getBreakfast());
+        c.setLunch(r.getLunch());
+        c.setDinner(r.getDinner());
+        c.setNotes(r.getNotes());
+        c.setCreatedAt(r.getCreatedAt());
+        c.setUpdatedAt(r.getUpdatedAt());
+        c.setVersion(r.getVersion());
+        return c;
+    }
+
+    private static User copyOf(User u) {
+        User c = new User(u.getUsername(), u.getPassword(), u.getRole());
+        c.setId(u.getId());
+        c.setProfileName(u.getProfileName());
+        c.setActive(u.isActive());
+        return c;
+    }
+}
@@ -0,0 +1,333 @@
+package service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+/**
+ * JSON拉取式解析器
+ * 直接在UTF-8字节上解析，数字和日期逐位计算，不生成中间String
+ *
+ * 用法：
+ * JsonReader r = new JsonReader(bytes, 0, length);
+ * r.beginObject();
+ * while (r.hasNext()) {
+ *     switch (r.nextName()) { case "id": id = r.nextInt(); break; default: r.skipValue(); }
+ * }
+ * r.endObject();
+ *
+ * 元素之间的逗号按分隔符处理（可直接连续调用nextXxx读取数组元素），格式错误时抛出IllegalArgumentException
+ */
+public class JsonReader {
+    private static final double[] POW10 = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+        1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final byte[] buf;
+    private int pos;
+    private final int end;
+    // 字符串解码复用的缓冲区
+    private char[] chars = new char[64];
+
+    public JsonReader(byte[] buf) {
+        this(buf, 0, buf.length);
+    }
+
+    public JsonReader(byte[] buf, int offset, int length) {
+        this.buf = buf;
+        this.pos = offset;
+        this.end = offset + length;
+    }
+
+    public void beginObject() {
+        expect('{');
+    }
+
+    public void endObject() {
+        expect('}');
+    }
+
+    public void beginArray() {
+        expect('[');
+    }
+
+    public void endArray() {
+        expect(']');
+    }
+
+    /**
+     * 当前对象或数组是否还有元素（自动跳过元素间的逗号）
+     */
+    public boolean hasNext() {
+        int c = peekByte();
+        return c != '}' && c != ']';
+    }
+
+    /**
+     * 读取属性名（含冒号）
+     */
+    public String nextName() {
+        String name = nextString();
+        expect(':');
+        return name;
+    }
+
+    /**
+     * 下一个值是否为null（是则消费掉）
+     */
+    public boolean nextNull() {
+        if (peekByte() == 'n') {
+            expectLiteral("null");
+            return true;
+        }
+        return false;
+    }
+
+    public String nextString() {
+        if (nextNull()) return null;
+        expect('"');
+        int n = 0;
+        while (true) {
+            if (pos >= end) throw error("字符串未结束");
+            int b = buf[pos++] & 0xFF;
+            if (b == '"') break;
+            if (n + 2 > chars.length) {
+                chars = java.util.Arrays.copyOf(chars, chars.length * 2);
+            }
+            if (b == '\\') {
+                if (pos >= end) throw error("转义未结束");
+                int e = buf[pos++];
+                switch (e) {
+                    case '"': case '\\': case '/': chars[n++] = (char) e; break;
+                    case 'n': chars[n++] = '\n'; break;
+                    case 'r': chars[n++] = '\r'; break;
+                    case 't': chars[n++] = '\t'; break;
+                    case 'b': chars[n++] = '\b'; break;
+                    case 'f': chars[n++] = '\f'; break;
+                    case 'u': chars[n++] = (char) readHex4(); break;
+                    default: throw error("无效转义");
+                }
+            } else if (b < 0x80) {
+                chars[n++] = (char) b;
+            } else if (b < 0xE0) {
+                chars[n++] = (char) (((b & 0x1F) << 6) | cont());
+            } else if (b < 0xF0) {
+                chars[n++] = (char) (((b & 0x0F) << 12) | (cont() << 6) | cont());
+            } else {
+                int cp = ((b & 0x07) << 18) | (cont() << 12) | (cont() << 6) | cont();
+                chars[n++] = Character.highSurrogate(cp);
+                chars[n++] = Character.lowSurrogate(cp);
+            }
+        }
+        return new String(chars, 0, n);
+    }
+
+    public boolean nextBoolean() {
+        if (peekByte() == 't') {
+            expectLiteral("true");
+            return true;
+        }
+        expectLiteral("false");
+        return false;
+    }
+
+    public int nextInt() {
+        long v = nextLong();
+        if (v < Integer.MIN_VALUE || v > Integer.MAX_VALUE) throw error("整数超出范围");
+        return (int) v;
+    }
+
+    public long nextLong() {
+        skipWhitespace();
+        boolean negative = consume('-');
+        int start = pos;
+        // 按负数累加，Long.MIN_VALUE也能表示
+        long v = 0;
+        while (pos < end && isDigit(buf[pos])) {
+            int d = buf[pos++] - '0';
+            if (v < (Long.MIN_VALUE + d) / 10) throw error("整数超出范围");
+            v = v * 10 - d;
+        }
+        if (pos == start) throw error("应为数字");
+        if (negative) return v;
+        if (v == Long.MIN_VALUE) throw error("整数超出范围");
+        return -v;
+    }
+
+    /**
+     * 读取小数：尾数不超过15位、无指数时逐位计算（一次精确除法，结果正确舍入），其余回退到Double.parseDouble
+     */
+    public double nextDouble() {
+        skipWhitespace();
+        int start = pos;
+        boolean negative = consume('-');
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = 0;
+        while (pos < end && isDigit(buf[pos])) {
+            mantissa = mantissa * 10 + (buf[pos++] - '0');
+            digits++;
+        }
+        if (pos < end && buf[pos] == '.') {
+            pos++;
+            while (pos < end && isDigit(buf[pos])) {
+                mantissa = mantissa * 10 + (buf[pos++] - '0');
+                digits++;
+                fractionDigits++;
+            }
+        }
+        if (digits == 0) throw error("应为数字");
+        boolean hasExponent = pos < end && (buf[pos] == 'e' || buf[pos] == 'E');
+        if (!hasExponent && digits <= 15) {
+            double v = mantissa / POW10[fractionDigits];
+            return negative ? -v : v;
+        }
+        if (hasExponent) {
+            pos++;
+            if (pos < end && (buf[pos] == '+' || buf[pos] == '-')) pos++;
+            while (pos < end && isDigit(buf[pos])) pos++;
+        }
+        return Double.parseDouble(new String(buf, start, pos - start, StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * 可为null的小数
+     */
+    public Double nextNullableDouble() {
+        return nextNull() ? null : nextDouble();
+    }
+
+    /**
+     * 读取yyyy-MM-dd格式的日期字符串
+     */
+    public LocalDate nextDate() {
+        if (nextNull()) return null;
+        expect('"');
+        if (end - pos < 11 || buf[pos + 4] != '-' || buf[pos + 7] != '-' || buf[pos + 10] != '"') {
+            throw error("日期格式应为yyyy-MM-dd");
+        }
+        int year = digit(pos) * 1000 + digit(pos + 1) * 100 + digit(pos + 2) * 10 + digit(pos + 3);
+        int month = digit(pos + 5) * 10 + digit(pos + 6);
+        int day = digit(pos + 8) * 10 + digit(pos + 9);
+        pos += 11;
+        try {
+            return LocalDate.of(year, month, day);
+        } catch (java.time.DateTimeException e) {
+            throw error("无效日期");
+        }
+    }
+
+    /**
+     * 跳过一个任意值（未知属性）
+     */
+    public void skipValue() {
+        int c = peekByte();
+        switch (c) {
+            case '{':
+                beginObject();
+                while (hasNext()) {
+                    nextName();
+                    skipValue();
+                }
+                endObject();
+                break;
+            case '[':
+                beginArray();
+                while (hasNext()) skipValue();
+                endArray();
+                break;
+            case '"':
+                skipString();
+                break;
+            case 't': case 'f':
+                nextBoolean();
+                break;
+            case 'n':
+                expectLiteral("null");
+                break;
+            default:
+                nextDouble();
+        }
+    }
+
+    // ==================== 内部方法 ====================
+
+    private void skipString() {
+        expect('"');
+        while (pos < end) {
+            byte b = buf[pos++];
+            if (b == '\\') pos++;
+            else if (b == '"') return;
+        }
+        throw error("字符串未结束");
+    }
+
+    private int cont() {
+        if (pos >= end) throw error("UTF-8序列不完整");
+        return buf[pos++] & 0x3F;
+    }
+
+    private int readHex4() {
+        if (end - pos < 4) throw error("\\u转义不完整");
+        int v = 0;
+        for (int i = 0; i < 4; i++) {
+            int h = Character.digit(buf[pos++], 16);
+            if (h < 0) throw error("\\u转义无效");
+            v = (v << 4) | h;
+        }
+        return v;
+    }
+
+    private int digit(int at) {
+        byte b = buf[at];
+        if (!isDigit(b)) throw error("应为数字");
+        return b - '0';
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    /**
+     * 跳过空白和元素间的逗号
+     */
+    private void skipWhitespace() {
+        while (pos < end) {
+            byte b = buf[pos];
+            if (b == ' ' || b == '\n' || b == '\r' || b == '\t' || b == ',') pos++;
+            else break;
+        }
+    }
+
+    private int peekByte() {
+        skipWhitespace();
+        if (pos >= end) throw error("意外的结尾");
+        return buf[pos];
+    }
+
+    private boolean consume(char c) {
+        if (pos < end && buf[pos] == c) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(char c) {
+        if (peekByte() != c) throw error("应为'" + c + "'");
+        pos++;
+    }
+
+    private void expectLiteral(String literal) {
+        skipWhitespace();
+        if (end - pos < literal.length()) throw error("应为" + literal);
+        for (int i = 0; i < literal.length(); i++) {
+            if (buf[pos + i] != literal.charAt(i)) throw error("应为" + literal);
+        }
+        pos += literal.length();
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException("JSON格式错误（位置" + pos + "）: " + message);
+    }
+}
@@ -0,0 +1,388 @@
+package service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+/**
+ * JSON输出器
+ * 直接按UTF-8写入内部可复用的字节缓冲区，自动处理逗号和字符串转义；
+ * 整数、常见小数、日期和时间均逐位写出，不经过中间String或DateTimeFormatter
+ *
+ * 用法：
+ * JsonWriter w = JsonWriter.local();   // 当前线程复用的实例，已清空
+ * w.beginObject().name("id").value(1).endObject();
+ * w.writeTo(out);
+ */
+public class JsonWriter {
+    private static final ThreadLocal<JsonWriter> LOCAL = ThreadLocal.withInitial(() -> new JsonWriter(4096));
+    /**
+     * 线程复用实例的缓冲区超过该大小时，reset后丢弃重建，避免一次大响应长期占用内存
+     */
+    private static final int MAX_RETAINED_BYTES = 1 << 20;
+    private static final byte[] NULL = {'n', 'u', 'l', 'l'};
+    private static final byte[] TRUE = {'t', 'r', 'u', 'e'};
+    private static final byte[] FALSE = {'f', 'a', 'l', 's', 'e'};
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final long[] POW10 = {1L, 10L, 100L, 1000L, 10000L};
+
+    private byte[] buf;
+    private int len;
+    // 当前层级是否还没有写过元素（决定是否需要逗号），最多支持32层嵌套
+    private final boolean[] first = new boolean[32];
+    private int depth = 0;
+    private boolean afterName = false;
+
+    public JsonWriter() {
+        this(256);
+    }
+
+    public JsonWriter(int capacity) {
+        this.buf = new byte[Math.max(capacity, 16)];
+    }
+
+    /**
+     * 获取当前线程复用的输出器（已清空）
+     * 同一线程内同一时刻只能有一个调用方使用
+     */
+    public static JsonWriter local() {
+        JsonWriter w = LOCAL.get();
+        if (w.buf.length > MAX_RETAINED_BYTES) {
+            w = new JsonWriter(4096);
+            LOCAL.set(w);
+        }
+        return w.reset();
+    }
+
+    /**
+     * 清空内容以便复用缓冲区
+     */
+    public JsonWriter reset() {
+        len = 0;
+        depth = 0;
+        afterName = false;
+        return this;
+    }
+
+    public JsonWriter beginObject() {
+        beforeValue();
+        put((byte) '{');
+        first[++depth] = true;
+        return this;
+    }
+
+    public JsonWriter endObject() {
+        put((byte) '}');
+        depth--;
+        return this;
+    }
+
+    public JsonWriter beginArray() {
+        beforeValue();
+        put((byte) '[');
+        first[++depth] = true;
+        return this;
+    }
+
+    public JsonWriter endArray() {
+        put((byte) ']');
+        depth--;
+        return this;
+    }
+
+    public JsonWriter name(String name) {
+        beforeValue();
+        writeString(name);
+        put((byte) ':');
+        afterName = true;
+        return this;
+    }
+
+    public JsonWriter value(String value) {
+        beforeValue();
+        if (value == null) {
+            put(NULL);
+        } else {
+            writeString(value);
+        }
+        return this;
+    }
+
+    public JsonWriter value(int value) {
+        return value((long) value);
+    }
+
+    public JsonWriter value(long value) {
+        beforeValue();
+        writeLong(value);
+        return this;
+    }
+
+    /**
+     * 写出小数：最多4位小数且可精确还原的值（体重、时长等常见数据）逐位写出，其余回退到Double.toString
+     */
+    public JsonWriter value(double value) {
+        beforeValue();
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            put(NULL);
+            return this;
+        }
+        for (int scale = 1; scale < POW10.length; scale++) {
+            double scaled = value * POW10[scale];
+            if (Math.abs(scaled) < 1e15 && scaled == Math.rint(scaled) && (long) scaled / (double) POW10[scale] == value) {
+                writeScaled((long) scaled, scale);
+                return this;
+            }
+        }
+        writeAscii(Double.toString(value));
+        return this;
+    }
+
+    public JsonWriter value(Double value) {
+        if (value == null) {
+            beforeValue();
+            put(NULL);
+            return this;
+        }
+        return value(value.doubleValue());
+    }
+
+    public JsonWriter value(boolean value) {
+        beforeValue();
+        put(value ? TRUE : FALSE);
+        return this;
+    }
+
+    /**
+     * 写出日期（yyyy-MM-dd），null输出null
+     */
+    public JsonWriter value(LocalDate date) {
+        beforeValue();
+        if (date == null) {
+            put(NULL);
+            return this;
+        }
+        put((byte) '"');
+        writeDate(date.getYear(), date.getMonthValue(), date.getDayOfMonth());
+        put((byte) '"');
+        return this;
+    }
+
+    /**
+     * 写出时间（yyyy-MM-ddTHH:mm:ss），null输出null
+     */
+    public JsonWriter value(LocalDateTime time) {
+        beforeValue();
+        if (time == null) {
+            put(NULL);
+            return this;
+        }
+        put((byte) '"');
+        writeDate(time.getYear(), time.getMonthValue(), time.getDayOfMonth());
+        put((byte) 'T');
+        write2(time.getHour());
+        put((byte) ':');
+        write2(time.getMinute());
+        put((byte) ':');
+        write2(time.getSecond());
+        put((byte) '"');
+        return this;
+    }
+
+    /**
+     * 已写入的字节数
+     */
+    public int size() {
+        return len;
+    }
+
+    /**
+     * 内部缓冲区（有效内容为前size()个字节），只读使用，下次写入或reset后失效
+     */
+    public byte[] buffer() {
+        return buf;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buf, len);
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(buf, 0, len);
+    }
+
+    @Override
+    public String toString() {
+        return new String(buf, 0, len, StandardCharsets.UTF_8);
+    }
+
+    // ==================== 内部写入 ====================
+
+    private void beforeValue() {
+        if (afterName) {
+            afterName = false;
+            return;
+        }
+        if (depth > 0) {
+            if (first[depth]) {
+                first[depth] = false;
+            } else {
+                put((byte) ',');
+            }
+        }
+    }
+
+    private void ensure(int extra) {
+        if (len + extra > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length * 2, len + extra));
+        }
+    }
+
+    private void put(byte b) {
+        ensure(1);
+        buf[len++] = b;
+    }
+
+    private void put(byte[] bytes) {
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, buf, len, bytes.length);
+        len += bytes.length;
+    }
+
+    private void writeAscii(String s) {
+        ensure(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            buf[len++] = (byte) s.charAt(i);
+        }
+    }
+
+    private void writeLong(long v) {
+        if (v == Long.MIN_VALUE) {
+            writeAscii(Long.toString(v));
+            return;
+        }
+        ensure(20);
+        if (v < 0) {
+            buf[len++] = '-';
+            v = -v;
+        }
+        int start = len;
+        do {
+            buf[len++] = (byte) ('0' + v % 10);
+            v /= 10;
+        } while (v != 0);
+        reverse(start, len - 1);
+    }
+
+    /**
+     * 写出 unscaled / 10^scale，去掉末尾多余的0但至少保留一位小数
+     */
+    private void writeScaled(long unscaled, int scale) {
+        ensure(24);
+        if (unscaled < 0) {
+            buf[len++] = '-';
+            unscaled = -unscaled;
+        }
+        long intPart = unscaled / POW10[scale];
+        long frac = unscaled % POW10[scale];
+        writeLong(intPart);
+        buf[len++] = '.';
+        int digits = scale;
+        while (digits > 1 && frac % 10 == 0) {
+            frac /= 10;
+            digits--;
+        }
+        for (int i = digits - 1; i >= 0; i--) {
+            buf[len + i] = (byte) ('0' + frac % 10);
+            frac /= 10;
+        }
+        len += digits;
+    }
+
+    private void writeDate(int year, int month, int day) {
+        if (year < 0 || year > 9999) {
+            writeAscii(LocalDate.of(year, month, day).toString());
+            return;
+        }
+        ensure(10);
+        buf[len++] = (byte) ('0' + year / 1000);
+        buf[len++] = (byte) ('0' + year / 100 % 10);
+        buf[len++] = (byte) ('0' + year / 10 % 10);
+        buf[len++] = (byte) ('0' + year % 10);
+        buf[len++] = '-';
+        write2(month);
+        buf[len++] = '-';
+        write2(day);
+    }
+
+    private void write2(int v) {
+        ensure(2);
+        buf[len++] = (byte) ('0' + v / 10);
+        buf[len++] = (byte) ('0' + v % 10);
+    }
+
+    private void reverse(int i, int j) {
+        while (i < j) {
+            byte t = buf[i];
+            buf[i++] = buf[j];
+            buf[j--] = t;
+        }
+    }
+
+    /**
+     * 按UTF-8编码写出带引号的字符串，处理转义和代理对
+     */
+    private void writeString(String s) {
+        int n = s.length();
+        ensure(n * 3 + 2);
+        buf[len++] = '"';
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                if (c == '"' || c == '\\') {
+                    ensure(2 + (n - i) * 3);
+                    buf[len++] = '\\';
+                    buf[len++] = (byte) c;
+                } else if (c < 0x20) {
+                    ensure(6 + (n - i) * 3);
+                    buf[len++] = '\\';
+                    switch (c) {
+                        case '\n': buf[len++] = 'n'; break;
+                        case '\r': buf[len++] = 'r'; break;
+                        case '\t': buf[len++] = 't'; break;
+                        default:
+                            buf[len++] = 'u';
+                            buf[len++] = '0';
+                            buf[len++] = '0';
+                            buf[len++] = HEX[c >> 4];
+                            buf[len++] = HEX[c & 0xF];
+                    }
+                } else {
+                    buf[len++] = (byte) c;
+                }
+            } else if (c < 0x800) {
+                buf[len++] = (byte) (0xC0 | (c >> 6));
+                buf[len++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                buf[len++] = (byte) (0xF0 | (cp >> 18));
+                buf[len++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                buf[len++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                buf[len++] = (byte) (0x80 | (cp & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // 不成对的代理字符，按替换字符输出
+                buf[len++] = (byte) 0xEF;
+                buf[len++] = (byte) 0xBF;
+                buf[len++] = (byte) 0xBD;
+            } else {
+                buf[len++] = (byte) (0xE0 | (c >> 12));
+                buf[len++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buf[len++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        put((byte) '"');
+    }
+}
@@ -0,0 +1,244 @@
+package service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 登录限流
+ * 在校验密码（查库 + PBKDF2）之前拦截暴力破解和撞库请求，全部状态保存在内存中且条目数有上限：
+ * 1. 令牌桶：每个用户名、每个来源（IP或"desktop"）各一个，突发用完后按固定速率恢复
+ * 2. 不存在的用户名短时缓存，期间直接拒绝，不再查库
+ * 3. 连续失败达到阈值后锁定用户名，锁定时长随失败次数指数增长，登录成功后清零
+ *
+ * 被拒绝的次数按原因计数，见metrics()
+ */
+public class LoginThrottle {
+
+    /**
+     * 检查结果
+     */
+    public enum Decision {
+        ALLOWED("允许"),
+        RATE_LIMITED("尝试过于频繁，请稍后再试"),
+        LOCKED("连续失败次数过多，账户已临时锁定，请稍后再试"),
+        UNKNOWN_USER("用户名或密码错误"),
+        /**
+         * 同时在线的会话数已达上限（由SessionRegistry给出，不经过限流计数）
+         */
+        SESSION_LIMIT("在线会话数已达上限，请稍后再试"),
+        /**
+         * 密码校验线程池繁忙，未能完成校验（由SessionRegistry给出，不计入失败次数）
+         */
+        BUSY("服务器繁忙，请稍后再试");
+
+        private final String message;
+
+        Decision(String message) {
+            this.message = message;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+    }
+
+    // 每个用户名：突发5次，之后每12秒恢复1次
+    private static final double USER_BURST = 5;
+    private static final double USER_REFILL_PER_SECOND = 1.0 / 12;
+    // 每个来源：突发20次，之后每秒恢复1次
+    private static final double SOURCE_BURST = 20;
+    private static final double SOURCE_REFILL_PER_SECOND = 1.0;
+    // 连续失败5次开始锁定，锁定30秒起步、每多失败一次翻倍，最长1小时
+    private static final int LOCK_THRESHOLD = 5;
+    private static final long BASE_LOCK_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    private static final long MAX_LOCK_MILLIS = TimeUnit.HOURS.toMillis(1);
+    // 不存在的用户名缓存1分钟
+    private static final long UNKNOWN_TTL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    // 每张表的条目上限，超出时淘汰最久未访问的条目
+    private static final int MAX_ENTRIES = Integer.getInteger("health.login.maxEntries", 10_000);
+
+    private static final Lru<String, Bucket> userBuckets = new Lru<>(MAX_ENTRIES);
+    private static final Lru<String, Bucket> sourceBuckets = new Lru<>(MAX_ENTRIES);
+    private static final Lru<String, Failures> failures = new Lru<>(MAX_ENTRIES);
+    private static final Lru<String, Long> unknownUsers = new Lru<>(MAX_ENTRIES);
+
+    private static final AtomicLong allowed = new AtomicLong();
+    private static final AtomicLong rateLimited = new AtomicLong();
+    private static final AtomicLong locked = new AtomicLong();
+    private static final AtomicLong unknownRejected = new AtomicLong();
+    private static final AtomicLong failed = new AtomicLong();
+    private static final AtomicLong lockouts = new AtomicLong();
+
+    private LoginThrottle() {}
+
+    /**
+     * 登录前检查，允许时消耗用户名和来源各一个令牌
+     *
+     * @param username 用户名
+     * @param source 来源（IP地址，桌面端为"desktop"）
+     */
+    public static Decision check(String username, String source) {
+        long now = System.currentTimeMillis();
+        Long unknownUntil = unknownUsers.get(username);
+        if (unknownUntil != null) {
+            if (unknownUntil > now) {
+                unknownRejected.incrementAndGet();
+                return Decision.UNKNOWN_USER;
+            }
+            unknownUsers.remove(username);
+        }
+        Failures f = failures.get(username);
+        if (f != null && f.lockedUntil > now) {
+            locked.incrementAndGet();
+            return Decision.LOCKED;
+        }
+        Bucket sourceBucket = sourceBuckets.computeIfAbsent(source, k -> new Bucket(SOURCE_BURST, SOURCE_REFILL_PER_SECOND));
+        Bucket userBucket = userBuckets.computeIfAbsent(username, k -> new Bucket(USER_BURST, USER_REFILL_PER_SECOND));
+        if (!sourceBucket.tryAcquire() || !userBucket.tryAcquire()) {
+            rateLimited.incrementAndGet();
+            return Decision.RATE_LIMITED;
+        }
+        allowed.incrementAndGet();
+        return Decision.ALLOWED;
+    }
+
+    /**
+     * 登录成功：清除失败记录
+     */
+    public static void recordSuccess(String username) {
+        failures.remove(username);
+    }
+
+    /**
+     * 登录失败：用户名不存在时加入短时缓存，否则累计失败次数，达到阈值后按指数增长锁定
+     */
+    public static void recordFailure(String username, boolean userExists) {
+        failed.incrementAndGet();
+        long now = System.currentTimeMillis();
+        if (!userExists) {
+            unknownUsers.put(username, now + UNKNOWN_TTL_MILLIS);
+            return;
+        }
+        Failures f = failures.computeIfAbsent(username, k -> new Failures());
+        synchronized (f) {
+            f.count++;
+            if (f.count >= LOCK_THRESHOLD) {
+                int shift = Math.min(f.count - LOCK_THRESHOLD, 20);
+                f.lockedUntil = now + Math.min(BASE_LOCK_MILLIS << shift, MAX_LOCK_MILLIS);
+                lockouts.incrementAndGet();
+                System.err.println("用户 " + username + " 连续登录失败" + f.count + "次，锁定至"
+                        + new java.util.Date(f.lockedUntil));
+            }
+        }
+    }
+
+    /**
+     * 被拒绝后建议的重试等待秒数：锁定中返回剩余锁定时间，否则返回用户名令牌桶恢复一次的时间
+     */
+    public static long retryAfterSeconds(String username) {
+        Failures f = failures.get(username);
+        long remaining = f != null ? f.lockedUntil - System.currentTimeMillis() : 0;
+        if (remaining > 0) {
+            return TimeUnit.MILLISECONDS.toSeconds(remaining) + 1;
+        }
+        return (long) Math.ceil(1 / USER_REFILL_PER_SECOND);
+    }
+
+    /**
+     * 用户名已注册：移出不存在用户名缓存
+     */
+    public static void userCreated(String username) {
+        unknownUsers.remove(username);
+    }
+
+    /**
+     * 各项计数（监控用）
+     */
+    public static Map<String, Long> metrics() {
+        Map<String, Long> m = new LinkedHashMap<>();
+        m.put("allowed", allowed.get());
+        m.put("rejectedRateLimited", rateLimited.get());
+        m.put("rejectedLocked", locked.get());
+        m.put("rejectedUnknownUser", unknownRejected.get());
+        m.put("failed", failed.get());
+        m.put("lockouts", lockouts.get());
+        m.put("rejectedVerifyQueueFull", PasswordHasher.rejectedVerifications());
+        m.put("trackedUsernames", (long) userBuckets.size());
+        m.put("trackedSources", (long) sourceBuckets.size());
+        return m;
+    }
+
+    /**
+     * 令牌桶
+     */
+    private static class Bucket {
+        private final double capacity;
+        private final double refillPerNano;
+        private double tokens;
+        private long lastRefill;
+
+        Bucket(double capacity, double refillPerSecond) {
+            this.capacity = capacity;
+            this.refillPerNano = refillPerSecond / TimeUnit.SECONDS.toNanos(1);
+            this.tokens = capacity;
+            this.lastRefill = System.nanoTime();
+        }
+
+        synchronized boolean tryAcquire() {
+            long now = System.nanoTime();
+            tokens = Math.min(capacity, tokens + (now - lastRefill) * refillPerNano);
+            lastRefill = now;
+            if (tokens >= 1) {
+                tokens -= 1;
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * 连续失败记录
+     */
+    private static class Failures {
+        int count;
+        volatile long lockedUntil;
+    }
+
+    /**
+     * 按访问顺序淘汰的有界表（方法全部同步，登录频率下竞争可以忽略）
+     */
+    private static class Lru<K, V> {
+        private final LinkedHashMap<K, V> map;
+
+        Lru(int maxEntries) {
+            this.map = new LinkedHashMap<K, V>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                    return size() > maxEntries;
+                }
+            };
+        }
+
+        synchronized V get(K key) {
+            return map.get(key);
+        }
+
+        synchronized void put(K key, V value) {
+            map.put(key, value);
+        }
+
+        synchronized void remove(K key) {
+            map.remove(key);
+        }
+
+        synchronized V computeIfAbsent(K key, java.util.function.Function<K, V> factory) {
+            return map.computeIfAbsent(key, factory);
+        }
+
+        synchronized int size() {
+            return map.size();
+        }
+    }
+}
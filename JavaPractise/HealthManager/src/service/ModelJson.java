@@ -0,0 +1,198 @@
+package service;
+
+import model.DailyRecord;
+import model.DietRecord;
+import model.ExercisePlan;
+import model.UserProfile;
+
+import java.util.List;
+
+/**
+ * 领域模型与JSON之间的转换（手写，不使用反射）
+ * 解码时忽略未知属性，缺失的属性保持模型默认值
+ */
+public class ModelJson {
+
+    private ModelJson() {}
+
+    // ==================== 编码 ====================
+
+    public static void write(JsonWriter w, UserProfile p) {
+        w.beginObject()
+         .name("id").value(p.getId())
+         .name("name").value(p.getName())
+         .name("age").value(p.getAge())
+         .name("gender").value(p.getGender())
+         .name("height").value(p.getHeight())
+         .name("weight").value(p.getWeight())
+         .name("targetWeight").value(p.getTargetWeight())
+         .name("fitnessGoal").value(p.getFitnessGoal())
+         .name("healthStatus").value(p.getHealthStatus())
+         .name("healthNotes").value(p.getHealthNotes())
+         .name("phone").value(p.getPhone())
+         .name("version").value(p.getVersion())
+         .name("bmi").value(p.calculateBMI())
+         .name("bmiCategory").value(p.getBMICategory())
+         .endObject();
+    }
+
+    public static void write(JsonWriter w, DailyRecord r) {
+        w.beginObject()
+         .name("id").value(r.getId())
+         .name("userName").value(r.getUserName())
+         .name("date").value(r.getDate())
+         .name("weight").value(r.getWeight())
+         .name("exercise").value(r.getExercise())
+         .name("exerciseDuration").value(r.getExerciseDuration())
+         .name("sleepDuration").value(r.getSleepDuration())
+         .name("mood").value(r.getMood())
+         .name("note").value(r.getNote())
+         .name("version").value(r.getVersion())
+         .endObject();
+    }
+
+    public static void write(JsonWriter w, ExercisePlan p) {
+        w.beginObject()
+         .name("id").value(p.getId())
+         .name("userName").value(p.getUserName())
+         .name("exerciseType").value(p.getExerciseType())
+         .name("planDate").value(p.getPlanDate())
+         .name("duration").value(p.getDuration())
+         .name("intensity").value(p.getIntensity())
+         .name("completed").value(p.isCompleted())
+         .name("actualDuration").value(p.getActualDuration())
+         .name("notes").value(p.getNotes())
+         .name("version").value(p.getVersion())
+         .endObject();
+    }
+
+    public static void write(JsonWriter w, DietRecord r) {
+        w.beginObject()
+         .name("id").value(r.getId())
+         .name("userName").value(r.getUserName())
+         .name("recordDate").value(r.getRecordDate())
+         .name("breakfast").value(r.getBreakfast())
+         .name("lunch").value(r.getLunch())
+         .name("dinner").value(r.getDinner())
+         .name("notes").value(r.getNotes())
+         .name("version").value(r.getVersion())
+         .endObject();
+    }
+
+    public static void writeProfiles(JsonWriter w, List<UserProfile> list) {
+        w.beginArray();
+        for (UserProfile p : list) write(w, p);
+        w.endArray();
+    }
+
+    public static void writeDailyRecords(JsonWriter w, List<DailyRecord> list) {
+        w.beginArray();
+        for (DailyRecord r : list) write(w, r);
+        w.endArray();
+    }
+
+    public static void writeExercisePlans(JsonWriter w, List<ExercisePlan> list) {
+        w.beginArray();
+        for (ExercisePlan p : list) write(w, p);
+        w.endArray();
+    }
+
+    public static void writeDietRecords(JsonWriter w, List<DietRecord> list) {
+        w.beginArray();
+        for (DietRecord r : list) write(w, r);
+        w.endArray();
+    }
+
+    // ==================== 解码 ====================
+
+    /**
+     * 解码用户档案（bmi、bmiCategory为派生值，忽略）
+     */
+    public static UserProfile readProfile(JsonReader r) {
+        UserProfile p = new UserProfile();
+        r.beginObject();
+        while (r.hasNext()) {
+            switch (r.nextName()) {
+                case "id": p.setId(r.nextInt()); break;
+                case "name": p.setName(r.nextString()); break;
+                case "age": p.setAge(r.nextInt()); break;
+                case "gender": p.setGender(r.nextString()); break;
+                case "height": p.setHeight(r.nextDouble()); break;
+                case "weight": p.setWeight(r.nextDouble()); break;
+                case "targetWeight": p.setTargetWeight(r.nextDouble()); break;
+                case "fitnessGoal": p.setFitnessGoal(r.nextString()); break;
+                case "healthStatus": p.setHealthStatus(r.nextString()); break;
+                case "healthNotes": p.setHealthNotes(r.nextString()); break;
+                case "phone": p.setPhone(r.nextString()); break;
+                case "version": p.setVersion(r.nextInt()); break;
+                default: r.skipValue();
+            }
+        }
+        r.endObject();
+        return p;
+    }
+
+    public static DailyRecord readDailyRecord(JsonReader r) {
+        DailyRecord d = new DailyRecord();
+        r.beginObject();
+        while (r.hasNext()) {
+            switch (r.nextName()) {
+                case "id": d.setId(r.nextInt()); break;
+                case "userName": d.setUserName(r.nextString()); break;
+                case "date": d.setDate(r.nextDate()); break;
+                case "weight": d.setWeight(r.nextDouble()); break;
+                case "exercise": d.setExercise(r.nextString()); break;
+                case "exerciseDuration": d.setExerciseDuration(r.nextDouble()); break;
+                case "sleepDuration": d.setSleepDuration(r.nextDouble()); break;
+                case "mood": d.setMood(r.nextString()); break;
+                case "note": d.setNote(r.nextString()); break;
+                case "version": d.setVersion(r.nextInt()); break;
+                default: r.skipValue();
+            }
+        }
+        r.endObject();
+        return d;
+    }
+
+    public static ExercisePlan readExercisePlan(JsonReader r) {
+        ExercisePlan p = new ExercisePlan();
+        r.beginObject();
+        while (r.hasNext()) {
+            switch (r.nextName()) {
+                case "id": p.setId(r.nextInt()); break;
+                case "userName": p.setUserName(r.nextString()); break;
+                case "exerciseType": p.setExerciseType(r.nextString()); break;
+                case "planDate": p.setPlanDate(r.nextDate()); break;
+                case "duration": p.setDuration(r.nextNullableDouble()); break;
+                case "intensity": p.setIntensity(r.nextString()); break;
+                case "completed": p.setCompleted(r.nextBoolean()); break;
+                case "actualDuration": p.setActualDuration(r.nextNullableDouble()); break;
+                case "notes": p.setNotes(r.nextString()); break;
+                case "version": p.setVersion(r.nextInt()); break;
+                default: r.skipValue();
+            }
+        }
+        r.endObject();
+        return p;
+    }
+
+    public static DietRecord readDietRecord(JsonReader r) {
+        DietRecord d = new DietRecord();
+        r.beginObject();
+        while (r.hasNext()) {
+            switch (r.nextName()) {
+                case "id": d.setId(r.nextInt()); break;
+                case "userName": d.setUserName(r.nextString()); break;
+                case "recordDate": d.setRecordDate(r.nextDate()); break;
+                case "breakfast": d.setBreakfast(r.nextString()); break;
+                case "lunch": d.setLunch(r.nextString()); break;
+                case "dinner": d.setDinner(r.nextString()); break;
+                case "notes": d.setNotes(r.nextString()); break;
+                case "version": d.setVersion(r.nextInt()); break;
+                default: r.skipValue();
+            }
+        }
+        r.endObject();
+        return d;
+    }
+}
@@ -0,0 +1,142 @@
+package service;
+
+import model.DailyRecord;
+import model.DietRecord;
+import model.ExercisePlan;
+import model.UserProfile;
+import model.UserSummary;
+import model.WeightPoint;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+/**
+ * 离线查询缓存
+ * DatabaseManager每次查询成功后记住结果；连不上数据库时返回最近一次的结果，
+ * 按用户查询的记录再合并OfflineJournal中尚未补写的新增记录，数据库重启期间界面照常显示
+ *
+ * 只保存在内存中，按最近使用淘汰；读取时返回档案和记录的副本，调用方修改不影响缓存和离线日志
+ *
+ * 配置（系统属性）：
+ * -Dhealth.offline.cacheEntries=256   最多缓存的查询结果数
+ */
+public class OfflineCache {
+
+    private static final int MAX_ENTRIES = Math.max(16, Integer.getInteger("health.offline.cacheEntries", 256));
+
+    private static final Map<String, Object> cache = Collections.synchronizedMap(
+        new LinkedHashMap<String, Object>(64, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Object> eldest) {
+                return size() > MAX_ENTRIES;
+            }
+        });
+
+    private OfflineCache() {}
+
+    // ==================== 查询成功后记录 ====================
+
+    static void rememberProfiles(List<UserProfile> list) {
+        cache.put("profiles", new ArrayList<>(list));
+    }
+
+    static void rememberSummaries(List<UserSummary> list) {
+        cache.put("summaries", new ArrayList<>(list));
+    }
+
+    static void rememberProfile(String name, UserProfile profile) {
+        if (profile != null) cache.put("profile:" + name, profile);
+    }
+
+    static void rememberDailyRecords(String userName, List<DailyRecord> list) {
+        cache.put("daily:" + userName, new ArrayList<>(list));
+    }
+
+    static void rememberWeightPoints(String userName, List<WeightPoint> list) {
+        cache.put("weight:" + userName, new ArrayList<>(list));
+    }
+
+    static void rememberExercisePlans(String userName, List<ExercisePlan> list) {
+        cache.put("plans:" + userName, new ArrayList<>(list));
+    }
+
+    static void rememberDietRecords(String userName, List<DietRecord> list) {
+        cache.put("diet:" + userName, new ArrayList<>(list));
+    }
+
+    // ==================== 离线时读取 ====================
+
+    static List<UserProfile> profiles() {
+        return recall("profiles", InMemoryDatabase::copyOf);
+    }
+
+    static List<UserSummary> summaries() {
+        return recall("summaries");
+    }
+
+    static UserProfile profile(String name) {
+        UserProfile profile = (UserProfile) cache.get("profile:" + name);
+        return profile != null ? InMemoryDatabase.copyOf(profile) : null;
+    }
+
+    /**
+     * 每日记录（日期倒序，含未补写的离线记录）
+     */
+    static List<DailyRecord> dailyRecords(String userName) {
+        List<DailyRecord> list = recall("daily:" + userName, InMemoryDatabase::copyOf);
+        list.addAll(OfflineJournal.pendingRecords(DailyRecord.class, userName));
+        list.sort(Comparator.comparing(DailyRecord::getDate, Comparator.nullsLast(Comparator.reverseOrder())));
+        return list;
+    }
+
+    /**
+     * 体重数据点（日期升序，含未补写的离线记录）
+     */
+    static List<WeightPoint> weightPoints(String userName) {
+        List<WeightPoint> list = recall("weight:" + userName);
+        for (DailyRecord r : OfflineJournal.pendingRecords(DailyRecord.class, userName)) {
+            list.add(new WeightPoint(r.getDate(), r.getWeight()));
+        }
+        list.sort(Comparator.comparing(WeightPoint::getDate));
+        return list;
+    }
+
+    static List<ExercisePlan> exercisePlans(String userName) {
+        List<ExercisePlan> list = recall("plans:" + userName, InMemoryDatabase::copyOf);
+        list.addAll(OfflineJournal.pendingRecords(ExercisePlan.class, userName));
+        list.sort(Comparator.comparing(ExercisePlan::getPlanDate, Comparator.nullsLast(Comparator.reverseOrder())));
+        return list;
+    }
+
+    static List<DietRecord> dietRecords(String userName) {
+        List<DietRecord> list = recall("diet:" + userName, InMemoryDatabase::copyOf);
+        list.addAll(OfflineJournal.pendingRecords(DietRecord.class, userName));
+        list.sort(Comparator.comparing(DietRecord::getRecordDate, Comparator.nullsLast(Comparator.reverseOrder())));
+        return list;
+    }
+
+    /**
+     * 缓存结果的副本，没有缓存时返回空列表
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> List<T> recall(String key) {
+        List<T> list = (List<T>) cache.get(key);
+        return list != null ? new ArrayList<>(list) : new ArrayList<>();
+    }
+
+    /**
+     * 缓存结果的副本，元素逐个复制
+     */
+    private static <T> List<T> recall(String key, UnaryOperator<T> copy) {
+        List<T> list = recall(key);
+        list.replaceAll(copy);
+        return list;
+    }
+}
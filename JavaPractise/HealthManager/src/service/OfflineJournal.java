@@ -0,0 +1,490 @@
+package service;
+
+import model.DailyRecord;
+import model.DietRecord;
+import model.ExercisePlan;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * 数据库不可用时的本地离线日志（只追加）
+ * 新增每日记录、运动计划、饮食记录时如果连不上数据库，记录连同幂等键写入本地日志并落盘，
+ * 保存视为成功；后台每隔几秒尝试按写入顺序补写到数据库，全部补写后清空日志
+ *
+ * 日志格式：每条为 [4字节长度][4字节CRC32][JSON]，JSON为 {"key":幂等键,"op":类型,"data":记录}；
+ * 程序崩溃时写了一半的末尾记录在启动时被截掉
+ *
+ * 组提交：追加只写入文件，随后等待落盘；同一时刻只有一个线程执行force，
+ * 等待期间其他线程追加的记录由下一次force一起落盘，并发保存时多条记录共用一次磁盘同步
+ *
+ * 幂等：补写与在offline_applied表登记幂等键在同一事务中，键已存在的记录跳过，
+ * 补写成功后、清理日志前程序退出也不会重复插入
+ *
+ * 只覆盖新增操作；修改和删除依赖版本号或已有记录，连不上数据库时仍按失败处理
+ * 离线期间的查询由OfflineCache返回最近一次查询结果（含本日志中尚未补写的记录）
+ *
+ * 配置（系统属性）：
+ * -Dhealth.offline.journal=data/offline.wal   日志文件
+ * -Dhealth.offline.retrySeconds=5             补写重试间隔（秒）
+ */
+public class OfflineJournal {
+
+    private static final Path FILE = Paths.get(System.getProperty("health.offline.journal", "data/offline.wal"));
+    private static final long RETRY_SECONDS = Math.max(1, Long.getLong("health.offline.retrySeconds", 5));
+    private static final int HEADER_BYTES = 8;
+
+    /**
+     * 日志记录类型
+     */
+    enum Op {
+        DAILY_RECORD("daily_record"),
+        EXERCISE_PLAN("exercise_plan"),
+        DIET_RECORD("diet_record");
+
+        private final String code;
+
+        Op(String code) {
+            this.code = code;
+        }
+
+        static Op of(Object record) {
+            if (record instanceof DailyRecord) return DAILY_RECORD;
+            if (record instanceof ExercisePlan) return EXERCISE_PLAN;
+            if (record instanceof DietRecord) return DIET_RECORD;
+            throw new IllegalArgumentException("不支持离线保存的记录类型: " + record.getClass().getName());
+        }
+
+        static Op fromCode(String code) {
+            for (Op op : values()) {
+                if (op.code.equals(code)) return op;
+            }
+            throw new IllegalArgumentException("未知的离线日志类型: " + code);
+        }
+    }
+
+    /**
+     * 一条尚未补写的记录
+     */
+    private static final class Entry {
+        private final String key;
+        private final Object record;
+        private final byte[] frame;
+
+        private Entry(String key, Object record, byte[] frame) {
+            this.key = key;
+            this.record = record;
+            this.frame = frame;
+        }
+    }
+
+    /**
+     * 保护channel、pending和writtenSeq
+     */
+    private static final Object writeLock = new Object();
+    /**
+     * 同一时刻只有一个线程执行force或整理文件；加锁顺序：先forceLock后writeLock
+     */
+    private static final Object forceLock = new Object();
+    /**
+     * 保证同一时刻只有一个补写过程
+     */
+    private static final Object replayLock = new Object();
+
+    private static FileChannel channel;
+    private static final List<Entry> pending = new ArrayList<>();
+    private static long writtenSeq;
+    private static volatile long durableSeq;
+    private static volatile int pendingCount;
+
+    private static final AtomicLong appended = new AtomicLong();
+    private static final AtomicLong forces = new AtomicLong();
+    private static final AtomicLong replayed = new AtomicLong();
+    private static final AtomicLong duplicates = new AtomicLong();
+    private static final AtomicLong rejected = new AtomicLong();
+
+    private static ScheduledExecutorService replayer;
+
+    private OfflineJournal() {}
+
+    /**
+     * 是否为连接类错误（数据库宕机、网络中断、连接被拒绝）
+     * 语法、约束等其他错误返回false，仍按原逻辑处理
+     */
+    static boolean isConnectionFailure(SQLException e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SQLTransientConnectionException || t instanceof SQLNonTransientConnectionException
+                    || t instanceof SQLRecoverableException || t instanceof ConnectException || t instanceof SocketException) {
+                return true;
+            }
+            if (t instanceof SQLException) {
+                String state = ((SQLException) t).getSQLState();
+                if (state != null && state.startsWith("08")) return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 记入离线日志并等待落盘
+     *
+     * @param record DailyRecord、ExercisePlan或DietRecord
+     * @return 已落盘返回true，写日志失败返回false（此时调用方按保存失败处理）
+     */
+    static boolean append(Object record) {
+        String key = UUID.randomUUID().toString();
+        byte[] frame = frame(encode(key, Op.of(record), record));
+        long seq;
+        try {
+            synchronized (writeLock) {
+                ensureOpen();
+                ByteBuffer buf = ByteBuffer.wrap(frame);
+                while (buf.hasRemaining()) {
+                    channel.write(buf);
+                }
+                // 保存解码后的副本，调用方之后修改原对象不影响补写内容
+                pending.add(decode(frame, HEADER_BYTES, frame.length - HEADER_BYTES));
+                pendingCount = pending.size();
+                seq = ++writtenSeq;
+            }
+            sync(seq);
+        } catch (IOException e) {
+            System.err.println("写入离线日志失败: " + e.getMessage());
+            return false;
+        }
+        appended.incrementAndGet();
+        System.err.println("数据库暂不可用，记录已保存到本地离线日志，恢复连接后自动补写");
+        startReplayer();
+        return true;
+    }
+
+    /**
+     * 启动时读取上次未补写完的日志并开始补写（内存数据库模式下不使用）
+     *
+     * @return 待补写的记录数
+     */
+    public static int recover() {
+        if (InMemoryDatabase.isEnabled()) return 0;
+        synchronized (writeLock) {
+            if (channel != null) return pending.size();
+            try {
+                ensureOpen();
+            } catch (IOException e) {
+                System.err.println("打开离线日志失败: " + e.getMessage());
+                return 0;
+            }
+            if (!pending.isEmpty()) {
+                System.out.println("离线日志中有 " + pending.size() + " 条记录待补写");
+            }
+        }
+        if (pendingCount > 0) startReplayer();
+        return pendingCount;
+    }
+
+    /**
+     * 立即尝试补写
+     *
+     * @return 日志已全部补写（或为空）返回true，数据库仍不可用返回false
+     */
+    public static boolean replay() {
+        synchronized (replayLock) {
+            List<Entry> batch;
+            synchronized (writeLock) {
+                if (pending.isEmpty()) return true;
+                batch = new ArrayList<>(pending);
+            }
+            int done = 0;
+            boolean offline = false;
+            try (Connection conn = DatabaseManager.getConnection()) {
+                for (Entry e : batch) {
+                    try {
+                        if (DatabaseManager.applyJournaled(conn, e.key, e.record)) {
+                            replayed.incrementAndGet();
+                        } else {
+                            duplicates.incrementAndGet();
+                        }
+                    } catch (SQLException ex) {
+                        if (isConnectionFailure(ex)) {
+                            offline = true;
+                            break;
+                        }
+                        // 数据本身有问题（如所属用户已删除），重试也不会成功，丢弃并记录
+                        rejected.incrementAndGet();
+                        System.err.println("离线记录补写失败，已丢弃 " + e.key + ": " + ex.getMessage());
+                    }
+                    done++;
+                }
+            } catch (SQLException e) {
+                offline = true;
+            }
+            if (done > 0) {
+                compact(done);
+                System.out.println("离线日志已补写 " + done + " 条");
+            }
+            return !offline && done == batch.size() && pendingCount == 0;
+        }
+    }
+
+    /**
+     * 尚未补写的记录数
+     */
+    public static int pendingCount() {
+        return pendingCount;
+    }
+
+    /**
+     * 尚未补写的某用户某类记录的副本（离线查询时合并到缓存结果中，调用方修改不影响日志中的记录）
+     */
+    static <T> List<T> pendingRecords(Class<T> type, String userName) {
+        List<T> result = new ArrayList<>();
+        if (pendingCount == 0) return result;
+        synchronized (writeLock) {
+            for (Entry e : pending) {
+                if (type.isInstance(e.record) && userName != null && userName.equals(userNameOf(e.record))) {
+                    result.add(type.cast(copyOf(e.record)));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 日志计数
+     */
+    public static Map<String, Long> metrics() {
+        Map<String, Long> m = new LinkedHashMap<>();
+        m.put("pending", (long) pendingCount);
+        m.put("appended", appended.get());
+        m.put("forces", forces.get());
+        m.put("replayed", replayed.get());
+        m.put("duplicates", duplicates.get());
+        m.put("rejected", rejected.get());
+        return m;
+    }
+
+    // ==================== 文件读写 ====================
+
+    /**
+     * 组提交：等待序号seq之前追加的记录落盘
+     */
+    private static void sync(long seq) throws IOException {
+        if (durableSeq >= seq) return;
+        synchronized (forceLock) {
+            if (durableSeq >= seq) return;
+            long target;
+            FileChannel ch;
+            synchronized (writeLock) {
+                target = writtenSeq;
+                ch = channel;
+            }
+            ch.force(false);
+            forces.incrementAndGet();
+            durableSeq = target;
+        }
+    }
+
+    /**
+     * 打开日志文件，读出未补写的记录，截掉末尾不完整的记录（调用方持有writeLock）
+     */
+    private static void ensureOpen() throws IOException {
+        if (channel != null) return;
+        Path dir = FILE.toAbsolutePath().getParent();
+        if (dir != null) Files.createDirectories(dir);
+        FileChannel ch = FileChannel.open(FILE, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = ch.size();
+        long valid = 0;
+        // 以文件内容为准：整理后重新打开失败时，pending中剩下的记录都在文件里，重新读出而不是重复追加
+        pending.clear();
+        if (size > 0) {
+            ByteBuffer all = ByteBuffer.allocate((int) size);
+            while (all.hasRemaining() && ch.read(all, all.position()) > 0) {
+                // 读满为止
+            }
+            byte[] bytes = all.array();
+            while (valid + HEADER_BYTES <= size) {
+                ByteBuffer header = ByteBuffer.wrap(bytes, (int) valid, HEADER_BYTES);
+                int len = header.getInt();
+                int crc = header.getInt();
+                if (len <= 0 || valid + HEADER_BYTES + len > size || crc32(bytes, (int) valid + HEADER_BYTES, len) != crc) {
+                    break;
+                }
+                try {
+                    pending.add(decode(bytes, (int) valid + HEADER_BYTES, len));
+                } catch (IllegalArgumentException ex) {
+                    System.err.println("跳过无法解析的离线日志记录: " + ex.getMessage());
+                }
+                valid += HEADER_BYTES + len;
+            }
+            if (valid < size) {
+                System.err.println("离线日志末尾有 " + (size - valid) + " 字节不完整的记录，已截掉");
+                ch.truncate(valid);
+                ch.force(false);
+            }
+        }
+        ch.position(valid);
+        channel = ch;
+        pendingCount = pending.size();
+    }
+
+    /**
+     * 去掉前done条已补写的记录：全部补写完则清空文件，否则把剩余记录写入新文件后替换
+     * 文件整理成功后才从pending中去掉这些记录
+     */
+    private static void compact(int done) {
+        synchronized (forceLock) {
+            synchronized (writeLock) {
+                List<Entry> remaining = pending.subList(done, pending.size());
+                try {
+                    if (remaining.isEmpty()) {
+                        channel.truncate(0);
+                        channel.position(0);
+                        channel.force(false);
+                        pending.clear();
+                        pendingCount = 0;
+                        durableSeq = writtenSeq;
+                    } else {
+                        Path tmp = FILE.resolveSibling(FILE.getFileName() + ".tmp");
+                        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                            for (Entry e : remaining) {
+                                ByteBuffer buf = ByteBuffer.wrap(e.frame);
+                                while (buf.hasRemaining()) out.write(buf);
+                            }
+                            out.force(false);
+                        }
+                        // 先替换文件再切换channel：替换失败时原channel不受影响，可以继续追加
+                        Files.move(tmp, FILE, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                        // 新文件已落盘，包含此前追加的全部未补写记录
+                        durableSeq = writtenSeq;
+                        FileChannel old = channel;
+                        // 之后打开新文件失败时channel为null，下次append由ensureOpen按文件内容重新打开
+                        channel = null;
+                        pending.subList(0, done).clear();
+                        pendingCount = pending.size();
+                        old.close();
+                        FileChannel ch = FileChannel.open(FILE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                        ch.position(ch.size());
+                        channel = ch;
+                    }
+                } catch (IOException e) {
+                    // 文件未整理成功时保留原内容和pending，已补写的记录下次补写时会因幂等键重复而跳过
+                    System.err.println("整理离线日志失败: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private static void startReplayer() {
+        synchronized (OfflineJournal.class) {
+            if (replayer != null) return;
+            replayer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "offline-replay");
+                t.setDaemon(true);
+                return t;
+            });
+            replayer.scheduleWithFixedDelay(() -> {
+                try {
+                    if (pendingCount > 0) replay();
+                } catch (RuntimeException e) {
+                    System.err.println("离线日志补写出错: " + e);
+                }
+            }, RETRY_SECONDS, RETRY_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    // ==================== 编解码 ====================
+
+    private static byte[] encode(String key, Op op, Object record) {
+        JsonWriter w = new JsonWriter(512);
+        w.beginObject().name("key").value(key).name("op").value(op.code).name("data");
+        switch (op) {
+            case DAILY_RECORD: ModelJson.write(w, (DailyRecord) record); break;
+            case EXERCISE_PLAN: ModelJson.write(w, (ExercisePlan) record); break;
+            default: ModelJson.write(w, (DietRecord) record); break;
+        }
+        return w.endObject().toByteArray();
+    }
+
+    /**
+     * 解码一条记录（key、op在data之前写入）
+     */
+    private static Entry decode(byte[] buf, int offset, int length) {
+        JsonReader r = new JsonReader(buf, offset, length);
+        String key = null;
+        Op op = null;
+        Object record = null;
+        r.beginObject();
+        while (r.hasNext()) {
+            switch (r.nextName()) {
+                case "key": key = r.nextString(); break;
+                case "op": op = Op.fromCode(r.nextString()); break;
+                case "data":
+                    if (op == null) throw new IllegalArgumentException("缺少op");
+                    switch (op) {
+                        case DAILY_RECORD: record = ModelJson.readDailyRecord(r); break;
+                        case EXERCISE_PLAN: record = ModelJson.readExercisePlan(r); break;
+                        default: record = ModelJson.readDietRecord(r); break;
+                    }
+                    break;
+                default: r.skipValue();
+            }
+        }
+        r.endObject();
+        if (key == null || record == null) throw new IllegalArgumentException("记录不完整");
+        return new Entry(key, record, frameOf(buf, offset, length));
+    }
+
+    private static byte[] frame(byte[] payload) {
+        return ByteBuffer.allocate(HEADER_BYTES + payload.length)
+                .putInt(payload.length)
+                .putInt(crc32(payload, 0, payload.length))
+                .put(payload)
+                .array();
+    }
+
+    private static byte[] frameOf(byte[] buf, int offset, int length) {
+        return frame(Arrays.copyOfRange(buf, offset, offset + length));
+    }
+
+    private static int crc32(byte[] buf, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(buf, offset, length);
+        return (int) crc.getValue();
+    }
+
+    private static String userNameOf(Object record) {
+        if (record instanceof DailyRecord) return ((DailyRecord) record).getUserName();
+        if (record instanceof ExercisePlan) return ((ExercisePlan) record).getUserName();
+        return ((DietRecord) record).getUserName();
+    }
+
+    private static Object copyOf(Object record) {
+        if (record instanceof DailyRecord) return InMemoryDatabase.copyOf((DailyRecord) record);
+        if (record instanceof ExercisePlan) return InMemoryDatabase.copyOf((ExercisePlan) record);
+        return InMemoryDatabase.copyOf((DietRecord) record);
+    }
+}
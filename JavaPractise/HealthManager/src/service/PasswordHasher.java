@@ -0,0 +1,258 @@
+package service;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 密码哈希（PBKDF2WithHmacSHA256，每个用户独立随机盐）
+ *
+ * 存储格式：pbkdf2$迭代次数$盐(Base64)$哈希(Base64)，不是该格式的旧数据按明文比较，
+ * 登录成功后由DatabaseManager.authenticateUser自动升级为哈希；
+ * 按明文比较时同样在线程池中做一次PBKDF2，耗时与哈希校验一致，不能借响应时间分辨哪些账户尚未升级
+ *
+ * 迭代次数在启动时按目标耗时自动校准（calibrate），也可固定：
+ * -Dhealth.password.targetMillis=100   单次哈希的目标耗时（毫秒）
+ * -Dhealth.password.iterations=N       直接指定迭代次数，跳过校准
+ * 校准结果每次启动略有波动，已存储的哈希只有迭代次数不到当前配置的一半时才在登录后重新哈希
+ *
+ * 校验和生成哈希都在独立的有界线程池中执行，大量请求时多余的请求直接失败，不会占满数据库访问线程：
+ * -Dhealth.password.threads=N          校验线程数，默认CPU核数
+ * -Dhealth.password.queue=64           排队上限
+ */
+public class PasswordHasher {
+
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final String PREFIX = "pbkdf2$";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+    /**
+     * 迭代次数下限，校准结果再低也不会低于此值
+     */
+    private static final int MIN_ITERATIONS = 10_000;
+    private static final int CALIBRATION_ITERATIONS = 20_000;
+    private static final long TARGET_MILLIS = Long.getLong("health.password.targetMillis", 100);
+    private static final long VERIFY_TIMEOUT_SECONDS = 10;
+    /**
+     * 存储的迭代次数低于当前配置的该比例时才重新哈希
+     */
+    private static final double REHASH_BELOW = 0.5;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final ThreadPoolExecutor VERIFIER;
+    static {
+        int threads = Integer.getInteger("health.password.threads", Runtime.getRuntime().availableProcessors());
+        AtomicInteger seq = new AtomicInteger();
+        VERIFIER = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Integer.getInteger("health.password.queue", 64)),
+                r -> {
+                    Thread t = new Thread(r, "password-verify-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    private static final AtomicLong REJECTED = new AtomicLong();
+
+    private static volatile int iterations = 0;
+    // 用户不存在时用于比对的哈希，使其耗时与真实校验一致，避免通过耗时判断用户名是否存在
+    private static volatile String dummyHash;
+
+    private PasswordHasher() {}
+
+    /**
+     * 按目标耗时校准迭代次数（启动时调用一次，重复调用无副作用）
+     */
+    public static synchronized void calibrate() {
+        if (iterations > 0) return;
+        Integer fixed = Integer.getInteger("health.password.iterations");
+        if (fixed != null) {
+            iterations = Math.max(fixed, 1);
+        } else {
+            byte[] salt = new byte[SALT_BYTES];
+            char[] sample = "calibrate".toCharArray();
+            pbkdf2(sample, salt, CALIBRATION_ITERATIONS); // 预热
+            long start = System.nanoTime();
+            pbkdf2(sample, salt, CALIBRATION_ITERATIONS);
+            long elapsed = Math.max(System.nanoTime() - start, 1);
+            long scaled = CALIBRATION_ITERATIONS * TimeUnit.MILLISECONDS.toNanos(TARGET_MILLIS) / elapsed;
+            iterations = (int) Math.max(MIN_ITERATIONS, Math.min(scaled, Integer.MAX_VALUE));
+        }
+        dummyHash = compute("dummy");
+        System.out.println("密码哈希迭代次数: " + iterations);
+    }
+
+    /**
+     * 当前迭代次数
+     */
+    public static int iterations() {
+        if (iterations == 0) calibrate();
+        return iterations;
+    }
+
+    /**
+     * 生成带随机盐的密码哈希（在有界线程池中执行）
+     *
+     * @return 存储格式的哈希字符串；线程池已满或超时返回null
+     */
+    public static String hash(String password) {
+        if (password == null) return null;
+        return runBounded(() -> compute(password));
+    }
+
+    private static String compute(String password) {
+        int n = iterations();
+        byte[] salt = new byte[SALT_BYTES];
+        RANDOM.nextBytes(salt);
+        byte[] hash = pbkdf2(password.toCharArray(), salt, n);
+        Base64.Encoder b64 = Base64.getEncoder().withoutPadding();
+        return PREFIX + n + "$" + b64.encodeToString(salt) + "$" + b64.encodeToString(hash);
+    }
+
+    /**
+     * 密码校验结果
+     */
+    public enum Verification {
+        MATCH,
+        MISMATCH,
+        /**
+         * 线程池已满或超时，未能完成校验（不代表密码错误）
+         */
+        BUSY
+    }
+
+    /**
+     * 校验密码（在有界线程池中执行）
+     *
+     * @param password 用户输入的密码
+     * @param stored 存储的哈希或旧的明文密码；为null表示用户不存在，仍做一次等耗时计算后返回false
+     * @return 密码正确返回true；不正确、线程池已满或超时返回false
+     */
+    public static boolean verify(String password, String stored) {
+        return check(password, stored) == Verification.MATCH;
+    }
+
+    /**
+     * 校验密码，并区分密码错误与线程池繁忙
+     *
+     * @param stored 存储的哈希或旧的明文密码；为null表示用户不存在，仍做一次等耗时计算后返回MISMATCH
+     */
+    public static Verification check(String password, String stored) {
+        if (password == null) return Verification.MISMATCH;
+        if (dummyHash == null) calibrate();
+        // 用户不存在或旧数据为明文时对dummyHash计算一次，三种情况耗时相同
+        boolean plaintext = stored != null && !isHashed(stored);
+        String target = stored != null && !plaintext ? stored : dummyHash;
+        Boolean matched = runBounded(() -> matches(password, target));
+        if (matched == null) return Verification.BUSY;
+        if (plaintext) {
+            matched = MessageDigest.isEqual(password.getBytes(StandardCharsets.UTF_8),
+                    stored.getBytes(StandardCharsets.UTF_8));
+        }
+        return matched && stored != null ? Verification.MATCH : Verification.MISMATCH;
+    }
+
+    /**
+     * 在有界线程池中执行并等待结果
+     *
+     * @return 计算结果；线程池已满、超时、被中断或计算出错返回null
+     */
+    private static <T> T runBounded(Callable<T> task) {
+        Future<T> future;
+        try {
+            future = VERIFIER.submit(task);
+        } catch (RejectedExecutionException e) {
+            // 突发时每100次输出一条，避免日志刷屏
+            if (REJECTED.incrementAndGet() % 100 == 1) {
+                System.err.println("请求过多，密码哈希队列已满，累计拒绝" + REJECTED.get() + "次");
+            }
+            return null;
+        }
+        try {
+            return future.get(VERIFY_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            return null;
+        } catch (ExecutionException | TimeoutException e) {
+            future.cancel(true);
+            System.err.println("密码哈希计算失败: " + e);
+            return null;
+        }
+    }
+
+    /**
+     * 是否需要重新哈希（旧明文，或迭代次数不到当前配置的一半）
+     * 校准结果每次启动都有波动，只按差距明显的下限判断，避免重启后每次登录都重写哈希
+     */
+    public static boolean needsRehash(String stored) {
+        if (stored == null || !isHashed(stored)) return true;
+        String[] parts = stored.split("\\$");
+        try {
+            return parts.length != 4 || Integer.parseInt(parts[1]) < Math.max(MIN_ITERATIONS, iterations() * REHASH_BELOW);
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    /**
+     * 是否已是哈希格式
+     */
+    public static boolean isHashed(String stored) {
+        return stored != null && stored.startsWith(PREFIX);
+    }
+
+    /**
+     * 当前等待校验的请求数（监控用）
+     */
+    public static int pendingVerifications() {
+        return VERIFIER.getQueue().size() + VERIFIER.getActiveCount();
+    }
+
+    /**
+     * 因队列已满被拒绝的校验次数（监控用）
+     */
+    public static long rejectedVerifications() {
+        return REJECTED.get();
+    }
+
+    private static boolean matches(String password, String stored) {
+        String[] parts = stored.split("\\$");
+        if (parts.length != 4) return false;
+        try {
+            int n = Integer.parseInt(parts[1]);
+            byte[] salt = Base64.getDecoder().decode(parts[2]);
+            byte[] expected = Base64.getDecoder().decode(parts[3]);
+            return MessageDigest.isEqual(expected, pbkdf2(password.toCharArray(), salt, n));
+        } catch (IllegalArgumentException e) {
+            System.err.println("密码哈希格式错误: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private static byte[] pbkdf2(char[] password, byte[] salt, int iterationCount) {
+        PBEKeySpec spec = new PBEKeySpec(password, salt, iterationCount, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("JDK不支持" + ALGORITHM, e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
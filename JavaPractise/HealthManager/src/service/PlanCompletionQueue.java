@@ -0,0 +1,307 @@
+package service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 运动计划完成状态的延迟批量写入
+ * 表格中勾选/取消完成状态时不再每次点击都立即写库：先记入本地日志（同步落盘），再放入待写队列，
+ * 同一计划在写入前的多次切换只保留最后一次，由后台定时（或切换标签页、退出登录、程序退出时）一次批量写入
+ *
+ * 崩溃恢复：日志每行一条"计划ID,是否完成,实际时长"，写库成功后清理；
+ * 程序启动时调用recover()读取日志中尚未写入的记录并补写（完成状态的写入是幂等的，重复补写无害）
+ *
+ * 读取运动计划前调用flush()，保证读到刚刚切换的状态
+ *
+ * 写库结果：提交时可带回调，所在批次写库后在写库线程上回调（成功true、失败false）；
+ * 写库失败时带回调的记录移出队列，由调用方恢复界面并提示，不再自动重试；
+ * 从日志恢复的记录没有回调，失败后留在队列中稍后重试
+ *
+ * 配置（系统属性）：
+ * -Dhealth.plan.flushMillis=500                         定时写入间隔（毫秒）
+ * -Dhealth.plan.maxBatch=200                            队列达到该长度时立即写入
+ * -Dhealth.plan.journal=data/plan-completion.journal   本地日志文件
+ */
+public class PlanCompletionQueue {
+
+    private static final long FLUSH_MILLIS = Long.getLong("health.plan.flushMillis", 500);
+    private static final int MAX_BATCH = Math.max(1, Integer.getInteger("health.plan.maxBatch", 200));
+    private static final Path JOURNAL = Paths.get(System.getProperty("health.plan.journal", "data/plan-completion.journal"));
+
+    /**
+     * 待写入的完成状态，按计划ID合并；队列、日志的读写都在该对象上同步
+     */
+    private static final Map<Integer, Entry> pending = new LinkedHashMap<>();
+    /**
+     * 保证同一时刻只有一个批次在写库
+     */
+    private static final Object flushLock = new Object();
+
+    private static final AtomicLong submitted = new AtomicLong();
+    private static final AtomicLong coalesced = new AtomicLong();
+    private static final AtomicLong flushedRows = new AtomicLong();
+    private static final AtomicLong flushBatches = new AtomicLong();
+    private static final AtomicLong failedBatches = new AtomicLong();
+    private static final AtomicLong journalErrors = new AtomicLong();
+    private static volatile int maxDepth;
+
+    private static final ScheduledExecutorService FLUSHER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "plan-completion-flush");
+        t.setDaemon(true);
+        return t;
+    });
+    static {
+        FLUSHER.scheduleWithFixedDelay(PlanCompletionQueue::flushQuietly, FLUSH_MILLIS, FLUSH_MILLIS, TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(PlanCompletionQueue::flush, "plan-completion-shutdown"));
+    }
+
+    private PlanCompletionQueue() {}
+
+    /**
+     * 一条待写入的完成状态
+     */
+    public static final class Entry {
+        private final int planId;
+        private final boolean completed;
+        private final Double actualDuration;
+        /**
+         * 写库结果回调，不写入日志；为null时失败后留在队列中重试
+         */
+        private final Consumer<Boolean> callback;
+
+        Entry(int planId, boolean completed, Double actualDuration) {
+            this(planId, completed, actualDuration, null);
+        }
+
+        Entry(int planId, boolean completed, Double actualDuration, Consumer<Boolean> callback) {
+            this.planId = planId;
+            this.completed = completed;
+            this.actualDuration = actualDuration;
+            this.callback = callback;
+        }
+
+        public int getPlanId() { return planId; }
+        public boolean isCompleted() { return completed; }
+        public Double getActualDuration() { return actualDuration; }
+
+        String toJournalLine() {
+            return planId + "," + (completed ? 1 : 0) + "," + (actualDuration != null ? actualDuration : "") + "\n";
+        }
+
+        /**
+         * 解析日志行，格式不对（如崩溃时写了半行）返回null
+         */
+        static Entry parse(String line) {
+            String[] parts = line.split(",", -1);
+            if (parts.length != 3) return null;
+            try {
+                Double actual = parts[2].isEmpty() ? null : Double.valueOf(parts[2]);
+                return new Entry(Integer.parseInt(parts[0]), "1".equals(parts[1]), actual);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * 提交一次完成状态的修改（立即返回，稍后批量写库）
+     *
+     * @param planId 计划ID
+     * @param completed 是否完成
+     * @param actualDuration 实际时长，可为null
+     */
+    public static void submit(int planId, boolean completed, Double actualDuration) {
+        submit(planId, completed, actualDuration, null);
+    }
+
+    /**
+     * 提交一次完成状态的修改，写库后回调结果
+     * 写入前又提交了同一计划时，本次被新的覆盖，不再回调
+     *
+     * @param callback 写库成功回调true，失败回调false（本次修改已放弃）；在写库线程上调用，可为null
+     */
+    public static void submit(int planId, boolean completed, Double actualDuration, Consumer<Boolean> callback) {
+        Entry entry = new Entry(planId, completed, actualDuration, callback);
+        int depth;
+        synchronized (pending) {
+            appendJournal(entry);
+            if (pending.remove(planId) != null) {
+                coalesced.incrementAndGet();
+            }
+            pending.put(planId, entry);
+            depth = pending.size();
+        }
+        submitted.incrementAndGet();
+        if (depth > maxDepth) maxDepth = depth;
+        if (depth >= MAX_BATCH) {
+            FLUSHER.execute(PlanCompletionQueue::flushQuietly);
+        }
+    }
+
+    /**
+     * 立即把队列中的完成状态写入数据库（阻塞到写完）
+     *
+     * @return 写入成功或队列为空返回true，写库失败返回false（没有回调的记录留在队列和日志中，稍后重试）
+     */
+    public static boolean flush() {
+        synchronized (flushLock) {
+            List<Entry> batch;
+            synchronized (pending) {
+                if (pending.isEmpty()) return true;
+                batch = new ArrayList<>(pending.values());
+                pending.clear();
+            }
+            boolean ok = DatabaseManager.updatePlanCompletionStatusBatch(batch);
+            List<Entry> notify = new ArrayList<>();
+            synchronized (pending) {
+                if (ok) {
+                    flushBatches.incrementAndGet();
+                    flushedRows.addAndGet(batch.size());
+                    notify.addAll(batch);
+                } else {
+                    failedBatches.incrementAndGet();
+                    // 写库失败：写入期间又有新的切换时以新的为准；带回调的放弃并通知调用方，其余放回队列重试
+                    Map<Integer, Entry> retry = new LinkedHashMap<>();
+                    for (Entry e : batch) {
+                        if (pending.containsKey(e.planId)) continue;
+                        if (e.callback != null) {
+                            notify.add(e);
+                        } else {
+                            retry.put(e.planId, e);
+                        }
+                    }
+                    retry.putAll(pending);
+                    pending.clear();
+                    pending.putAll(retry);
+                }
+                rewriteJournal();
+            }
+            for (Entry e : notify) {
+                if (e.callback == null) continue;
+                try {
+                    e.callback.accept(ok);
+                } catch (RuntimeException ex) {
+                    System.err.println("完成状态写库回调失败: " + ex);
+                }
+            }
+            return ok;
+        }
+    }
+
+    /**
+     * 启动时补写上次未写入数据库的完成状态
+     *
+     * @return 从日志中恢复的记录数
+     */
+    public static int recover() {
+        List<String> lines;
+        try {
+            if (!Files.exists(JOURNAL)) return 0;
+            lines = Files.readAllLines(JOURNAL, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            System.err.println("读取完成状态日志失败: " + e.getMessage());
+            return 0;
+        }
+        // 日志按时间顺序追加，同一计划后出现的覆盖先出现的
+        Map<Integer, Entry> logged = new LinkedHashMap<>();
+        for (String line : lines) {
+            Entry e = Entry.parse(line.trim());
+            if (e != null) logged.put(e.planId, e);
+        }
+        int recovered = logged.size();
+        synchronized (pending) {
+            // 已在队列中的是本次运行的新修改，不覆盖
+            for (Entry e : logged.values()) {
+                pending.putIfAbsent(e.planId, e);
+            }
+        }
+        if (recovered > 0) {
+            System.out.println("从本地日志恢复完成状态 " + recovered + " 条，正在写入数据库");
+            flush();
+        }
+        return recovered;
+    }
+
+    /**
+     * 待写入的记录数
+     */
+    public static int depth() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+
+    /**
+     * 队列计数
+     */
+    public static Map<String, Long> metrics() {
+        Map<String, Long> m = new LinkedHashMap<>();
+        m.put("depth", (long) depth());
+        m.put("maxDepth", (long) maxDepth);
+        m.put("submitted", submitted.get());
+        m.put("coalesced", coalesced.get());
+        m.put("flushedRows", flushedRows.get());
+        m.put("flushBatches", flushBatches.get());
+        m.put("failedBatches", failedBatches.get());
+        m.put("journalErrors", journalErrors.get());
+        return m;
+    }
+
+    private static void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            System.err.println("完成状态批量写入失败: " + e);
+        }
+    }
+
+    /**
+     * 追加一条日志并同步落盘（调用方持有pending的锁）
+     */
+    private static void appendJournal(Entry entry) {
+        try {
+            Path dir = JOURNAL.toAbsolutePath().getParent();
+            if (dir != null) Files.createDirectories(dir);
+            Files.write(JOURNAL, entry.toJournalLine().getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.WRITE, StandardOpenOption.DSYNC);
+        } catch (IOException e) {
+            journalErrors.incrementAndGet();
+            System.err.println("写入完成状态日志失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 写库后重写日志，只保留仍在队列中的记录（调用方持有pending的锁）
+     */
+    private static void rewriteJournal() {
+        try {
+            if (pending.isEmpty()) {
+                Files.deleteIfExists(JOURNAL);
+                return;
+            }
+            StringBuilder sb = new StringBuilder();
+            for (Entry e : pending.values()) sb.append(e.toJournalLine());
+            Path tmp = JOURNAL.resolveSibling(JOURNAL.getFileName() + ".tmp");
+            Files.write(tmp, sb.toString().getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE, StandardOpenOption.DSYNC);
+            Files.move(tmp, JOURNAL, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            journalErrors.incrementAndGet();
+            System.err.println("整理完成状态日志失败: " + e.getMessage());
+        }
+    }
+}
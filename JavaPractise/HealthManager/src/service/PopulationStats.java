@@ -0,0 +1,292 @@
+package service;
+
+import model.DailyRecord;
+import model.UserProfile;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * 人群健康分布（管理员看板）
+ * 全部用户BMI、每周运动分钟数、睡眠时长的p10/p50/p90，可按性别、年龄段、健身目标分组
+ *
+ * 统计方式：按用户、日期顺序流式读取全部每日记录，每个用户各建一组QuantileSketch，
+ * 读完一个用户即合并进其所属的各个分组后丢弃，内存只与分组数有关、与表的行数无关；
+ * 查询时直接读取已合并好的分组草图，毫秒级返回，误差见QuantileSketch
+ *
+ * 指标口径：
+ * - BMI：每条每日记录的体重与档案身高计算
+ * - 每周运动分钟数：同一用户同一自然周（周一起）每日记录运动时长之和×60，只统计已结束的周
+ * - 睡眠时长：每条每日记录的睡眠时长（小时）
+ * 体重、睡眠不大于0的记录不计入对应指标
+ *
+ * 结果按配置的间隔在后台重新统计，期间查询返回上一次的结果
+ *
+ * 配置（系统属性）：
+ * -Dhealth.population.refreshMinutes=10   重新统计的间隔（分钟）
+ * -Dhealth.population.sketchK=200         草图精度参数k
+ */
+public class PopulationStats {
+
+    public static final String METRIC_BMI = "bmi";
+    public static final String METRIC_WEEKLY_EXERCISE_MINUTES = "weeklyExerciseMinutes";
+    public static final String METRIC_SLEEP = "sleep";
+    private static final String[] METRICS = {METRIC_BMI, METRIC_WEEKLY_EXERCISE_MINUTES, METRIC_SLEEP};
+
+    /**
+     * 分组维度
+     */
+    public static final String BY_ALL = "all";
+    public static final String BY_GENDER = "gender";
+    public static final String BY_AGE = "age";
+    public static final String BY_GOAL = "goal";
+    private static final String[] DIMENSIONS = {BY_ALL, BY_GENDER, BY_AGE, BY_GOAL};
+
+    private static final long REFRESH_MILLIS = Math.max(1, Long.getLong("health.population.refreshMinutes", 10)) * 60_000L;
+    private static final int SKETCH_K = Integer.getInteger("health.population.sketchK", QuantileSketch.DEFAULT_K);
+
+    private static volatile Snapshot snapshot;
+    private static final AtomicBoolean refreshing = new AtomicBoolean();
+    private static final ExecutorService REFRESHER = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "population-stats-refresh");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private PopulationStats() {}
+
+    // ==================== 查询 ====================
+
+    /**
+     * 按维度分组的人群分布
+     *
+     * @param by all/gender/age/goal
+     * @return 各分组（按名称排序）；维度不存在返回空列表
+     */
+    public static List<Cohort> cohorts(String by) {
+        Map<String, Cohort> groups = current().groups.get(by);
+        if (groups == null) return Collections.emptyList();
+        List<Cohort> list = new ArrayList<>(groups.values());
+        list.sort((a, b) -> a.name.compareTo(b.name));
+        return list;
+    }
+
+    /**
+     * 最近一次统计完成的时间（毫秒），尚未统计过为0
+     */
+    public static long builtAt() {
+        Snapshot s = snapshot;
+        return s != null ? s.builtAt : 0;
+    }
+
+    /**
+     * 最近一次统计读取的记录数
+     */
+    public static long rows() {
+        Snapshot s = snapshot;
+        return s != null ? s.rows : 0;
+    }
+
+    /**
+     * 立即重新统计（阻塞到完成）
+     */
+    public static void refresh() {
+        snapshot = build();
+    }
+
+    /**
+     * 当前结果：从未统计过时同步统计，过期时在后台重新统计并先返回旧结果
+     */
+    private static Snapshot current() {
+        Snapshot s = snapshot;
+        if (s == null) {
+            synchronized (PopulationStats.class) {
+                if (snapshot == null) snapshot = build();
+                return snapshot;
+            }
+        }
+        if (System.currentTimeMillis() - s.builtAt > REFRESH_MILLIS && refreshing.compareAndSet(false, true)) {
+            REFRESHER.execute(() -> {
+                try {
+                    snapshot = build();
+                } catch (RuntimeException e) {
+                    System.err.println("人群分布统计失败: " + e);
+                } finally {
+                    refreshing.set(false);
+                }
+            });
+        }
+        return s;
+    }
+
+    // ==================== 统计 ====================
+
+    /**
+     * 一个分组的三项指标草图
+     */
+    public static final class Cohort {
+        private final String dimension;
+        private final String name;
+        private final Map<String, QuantileSketch> sketches = new LinkedHashMap<>();
+        private int users;
+
+        Cohort(String dimension, String name) {
+            this.dimension = dimension;
+            this.name = name;
+            for (String m : METRICS) sketches.put(m, new QuantileSketch(SKETCH_K));
+        }
+
+        public String getDimension() { return dimension; }
+        public String getName() { return name; }
+        public int getUsers() { return users; }
+
+        /**
+         * 该指标的数据点数
+         */
+        public long count(String metric) {
+            QuantileSketch s = sketches.get(metric);
+            return s != null ? s.count() : 0;
+        }
+
+        /**
+         * 该指标的p10、p50、p90，没有数据时均为NaN
+         */
+        public double[] percentiles(String metric) {
+            QuantileSketch s = sketches.get(metric);
+            return s != null ? s.quantiles(0.1, 0.5, 0.9) : new double[]{Double.NaN, Double.NaN, Double.NaN};
+        }
+
+        void merge(Map<String, QuantileSketch> user) {
+            users++;
+            for (Map.Entry<String, QuantileSketch> e : user.entrySet()) {
+                sketches.get(e.getKey()).merge(e.getValue());
+            }
+        }
+    }
+
+    private static final class Snapshot {
+        final long builtAt;
+        final long rows;
+        final Map<String, Map<String, Cohort>> groups;
+
+        Snapshot(long builtAt, long rows, Map<String, Map<String, Cohort>> groups) {
+            this.builtAt = builtAt;
+            this.rows = rows;
+            this.groups = groups;
+        }
+    }
+
+    /**
+     * 流式读取全部每日记录，逐个用户建草图并合并进分组
+     */
+    private static Snapshot build() {
+        Map<String, UserProfile> profiles = new HashMap<>();
+        for (UserProfile p : DatabaseManager.getAllUserProfiles()) {
+            profiles.put(p.getName(), p);
+        }
+        Map<String, Map<String, Cohort>> groups = new LinkedHashMap<>();
+        for (String d : DIMENSIONS) groups.put(d, new HashMap<>());
+        long currentWeek = LocalDate.now().with(DayOfWeek.MONDAY).toEpochDay();
+
+        UserAccumulator acc = null;
+        long rows = 0;
+        try (Stream<DailyRecord> stream = DatabaseManager.streamAllDailyRecordsByUser()) {
+            Iterator<DailyRecord> it = stream.iterator();
+            while (it.hasNext()) {
+                DailyRecord r = it.next();
+                if (r.getUserName() == null || r.getDate() == null) continue;
+                rows++;
+                if (acc == null || !acc.userName.equals(r.getUserName())) {
+                    if (acc != null) acc.finish(currentWeek, groups);
+                    acc = new UserAccumulator(r.getUserName(), profiles.get(r.getUserName()));
+                }
+                acc.add(r);
+            }
+        }
+        if (acc != null) acc.finish(currentWeek, groups);
+        return new Snapshot(System.currentTimeMillis(), rows, groups);
+    }
+
+    /**
+     * 单个用户的统计（记录按日期升序到达）
+     */
+    private static final class UserAccumulator {
+        final String userName;
+        final UserProfile profile;
+        final Map<String, QuantileSketch> sketches = new LinkedHashMap<>();
+        long week = Long.MIN_VALUE;
+        double weekHours;
+
+        UserAccumulator(String userName, UserProfile profile) {
+            this.userName = userName;
+            this.profile = profile;
+            for (String m : METRICS) sketches.put(m, new QuantileSketch(SKETCH_K));
+        }
+
+        void add(DailyRecord r) {
+            if (r.getWeight() > 0 && profile != null) {
+                double bmi = AnalyticsEngine.bmi(r.getWeight(), profile.getHeight());
+                if (bmi > 0) sketches.get(METRIC_BMI).add(bmi);
+            }
+            if (r.getSleepDuration() > 0) sketches.get(METRIC_SLEEP).add(r.getSleepDuration());
+            long w = r.getDate().with(DayOfWeek.MONDAY).toEpochDay();
+            if (w != week) {
+                flushWeek(Long.MAX_VALUE);
+                week = w;
+                weekHours = 0;
+            }
+            weekHours += Math.max(0, r.getExerciseDuration());
+        }
+
+        /**
+         * 记入已结束的周（早于currentWeek）
+         */
+        void flushWeek(long currentWeek) {
+            if (week != Long.MIN_VALUE && week < currentWeek) {
+                sketches.get(METRIC_WEEKLY_EXERCISE_MINUTES).add(weekHours * 60);
+            }
+        }
+
+        void finish(long currentWeek, Map<String, Map<String, Cohort>> groups) {
+            flushWeek(currentWeek);
+            String[] keys = {
+                "全部",
+                label(profile != null ? profile.getGender() : null),
+                profile != null ? ageBand(profile.getAge()) : "未知",
+                label(profile != null ? profile.getFitnessGoal() : null)
+            };
+            for (int i = 0; i < DIMENSIONS.length; i++) {
+                String d = DIMENSIONS[i];
+                groups.get(d).computeIfAbsent(keys[i], name -> new Cohort(d, name)).merge(sketches);
+            }
+        }
+    }
+
+    private static String label(String value) {
+        return value == null || value.trim().isEmpty() ? "未知" : value.trim();
+    }
+
+    /**
+     * 年龄段
+     */
+    static String ageBand(int age) {
+        if (age <= 0) return "未知";
+        if (age < 18) return "18岁以下";
+        if (age < 30) return "18-29岁";
+        if (age < 40) return "30-39岁";
+        if (age < 50) return "40-49岁";
+        if (age < 60) return "50-59岁";
+        return "60岁及以上";
+    }
+}
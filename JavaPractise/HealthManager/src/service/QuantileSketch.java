@@ -0,0 +1,255 @@
+package service;
+
+import java.util.Arrays;
+
+/**
+ * 可合并的分位数草图（KLL）
+ * 数据逐个add()，内存只与精度参数k有关、与数据量无关（约3k个double）；两个草图可merge()，
+ * 先按用户各建一个再合并成人群，结果与把全部数据放进同一个草图的精度相同
+ *
+ * 误差：quantile(q)返回值的真实排名与q×总数之差不超过约1.7/k×总数（k=200时约±1%的排名误差，
+ * 以很高概率成立）；数据量不超过k时结果是精确的
+ *
+ * 实现：level h中每个元素代表2^h个原始数据；总元素数超过各层容量之和时，把最低的一个超出容量的层排序，
+ * 随机取奇数位或偶数位升到上一层；每层容量按(2/3)^(层高差)递减，最高层容量为k
+ *
+ * 非线程安全
+ */
+public class QuantileSketch {
+
+    public static final int DEFAULT_K = 200;
+    private static final int MIN_CAPACITY = 8;
+
+    private final int k;
+    private double[][] levels = new double[1][];
+    private int[] sizes = new int[1];
+    private long count;
+    private double min = Double.NaN;
+    private double max = Double.NaN;
+    /**
+     * 压缩时决定取奇数位还是偶数位（xorshift，固定种子，结果可复现）
+     */
+    private long seed = 0x9E3779B97F4A7C15L;
+
+    public QuantileSketch() {
+        this(DEFAULT_K);
+    }
+
+    public QuantileSketch(int k) {
+        this.k = Math.max(MIN_CAPACITY, k);
+        levels[0] = new double[capacity(0)];
+    }
+
+    /**
+     * 加入一个数据，NaN忽略
+     */
+    public void add(double value) {
+        if (Double.isNaN(value)) return;
+        if (count == 0) {
+            min = value;
+            max = value;
+        } else {
+            if (value < min) min = value;
+            if (value > max) max = value;
+        }
+        count++;
+        append(0, value);
+        compress();
+    }
+
+    /**
+     * 把另一个草图合并进来（另一个草图不变）
+     */
+    public void merge(QuantileSketch other) {
+        if (other == null || other.count == 0) return;
+        for (int h = 0; h < other.levels.length; h++) {
+            for (int i = 0; i < other.sizes[h]; i++) {
+                append(h, other.levels[h][i]);
+            }
+        }
+        min = count == 0 ? other.min : Math.min(min, other.min);
+        max = count == 0 ? other.max : Math.max(max, other.max);
+        count += other.count;
+        compress();
+    }
+
+    /**
+     * 数据总数
+     */
+    public long count() {
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    public double min() {
+        return min;
+    }
+
+    public double max() {
+        return max;
+    }
+
+    /**
+     * 草图当前保存的元素数（内存占用）
+     */
+    public int retained() {
+        int n = 0;
+        for (int s : sizes) n += s;
+        return n;
+    }
+
+    /**
+     * 分位数
+     *
+     * @param q 0~1
+     * @return 近似分位数，没有数据时返回NaN
+     */
+    public double quantile(double q) {
+        return quantiles(q)[0];
+    }
+
+    /**
+     * 一次计算多个分位数（只排序一次）
+     *
+     * @param qs 0~1，可无序
+     * @return 与qs顺序对应的近似分位数，没有数据时均为NaN
+     */
+    public double[] quantiles(double... qs) {
+        double[] result = new double[qs.length];
+        if (count == 0) {
+            Arrays.fill(result, Double.NaN);
+            return result;
+        }
+        // 各层排序后按值归并，得到带权有序序列
+        int n = retained();
+        double[] values = new double[n];
+        long[] weights = new long[n];
+        int filled = 0;
+        for (int h = 0; h < levels.length; h++) {
+            int size = sizes[h];
+            if (size == 0) continue;
+            double[] level = Arrays.copyOf(levels[h], size);
+            Arrays.sort(level);
+            filled = mergeSorted(values, weights, filled, level, 1L << h);
+        }
+        long total = 0;
+        for (int i = 0; i < n; i++) total += weights[i];
+        for (int j = 0; j < qs.length; j++) {
+            double q = qs[j];
+            if (q <= 0) {
+                result[j] = min;
+                continue;
+            }
+            if (q >= 1) {
+                result[j] = max;
+                continue;
+            }
+            double target = q * total;
+            long cum = 0;
+            int i = 0;
+            while (i < n - 1 && cum + weights[i] < target) {
+                cum += weights[i];
+                i++;
+            }
+            result[j] = values[i];
+        }
+        return result;
+    }
+
+    // ==================== 内部实现 ====================
+
+    /**
+     * 第h层的容量（层数越多，低层容量越小）
+     */
+    private int capacity(int h) {
+        int depth = levels.length - 1 - h;
+        return Math.max(MIN_CAPACITY, (int) Math.ceil(k * Math.pow(2.0 / 3.0, depth)));
+    }
+
+    private void append(int h, double value) {
+        while (h >= levels.length) addLevel();
+        if (sizes[h] == levels[h].length) {
+            levels[h] = Arrays.copyOf(levels[h], Math.max(MIN_CAPACITY, levels[h].length * 2));
+        }
+        levels[h][sizes[h]++] = value;
+    }
+
+    private void addLevel() {
+        levels = Arrays.copyOf(levels, levels.length + 1);
+        sizes = Arrays.copyOf(sizes, sizes.length + 1);
+        levels[levels.length - 1] = new double[MIN_CAPACITY];
+    }
+
+    /**
+     * 总元素数超过各层容量之和时，压缩最低的一个超出容量的层，直到不再超出
+     */
+    private void compress() {
+        while (retained() > totalCapacity()) {
+            int h = 0;
+            while (sizes[h] < capacity(h)) h++;
+            compact(h);
+        }
+    }
+
+    private int totalCapacity() {
+        int total = 0;
+        for (int h = 0; h < levels.length; h++) total += capacity(h);
+        return total;
+    }
+
+    /**
+     * 压缩第h层：排序后隔一个取一个升到上一层
+     */
+    private void compact(int h) {
+        if (h + 1 >= levels.length) addLevel();
+        double[] level = levels[h];
+        int size = sizes[h];
+        Arrays.sort(level, 0, size);
+        // 元素个数为奇数时保留最大的一个在本层，其余两两取一升到上一层
+        int pairs = size / 2;
+        int offset = nextBit();
+        for (int i = 0; i < pairs; i++) {
+            append(h + 1, level[2 * i + offset]);
+        }
+        if ((size & 1) == 1) {
+            level[0] = level[size - 1];
+            sizes[h] = 1;
+        } else {
+            sizes[h] = 0;
+        }
+    }
+
+    private int nextBit() {
+        seed ^= seed << 13;
+        seed ^= seed >>> 7;
+        seed ^= seed << 17;
+        return (int) (seed & 1);
+    }
+
+    /**
+     * 把有序数组level（每个元素权重weight）归并进values/weights的前filled个元素
+     *
+     * @return 归并后的元素个数
+     */
+    private static int mergeSorted(double[] values, long[] weights, int filled, double[] level, long weight) {
+        int i = filled - 1;
+        int j = level.length - 1;
+        int out = filled + level.length - 1;
+        while (j >= 0) {
+            if (i >= 0 && values[i] > level[j]) {
+                values[out] = values[i];
+                weights[out] = weights[i];
+                i--;
+            } else {
+                values[out] = level[j];
+                weights[out] = weight;
+                j--;
+            }
+            out--;
+        }
+        return filled + level.length;
+    }
+}
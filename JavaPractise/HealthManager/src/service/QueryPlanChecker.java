@@ -0,0 +1,206 @@
+package service;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 热点查询执行计划检查（构建检查，退出码非0表示未通过）
+ * 在一个事务中写入固定的测试数据，对DatabaseManager中的高频查询执行EXPLAIN，出现以下任一情况即失败：
+ * - type为ALL（全表扫描）或index（全索引扫描）
+ * - Extra含Using filesort（文件排序）
+ * - 选用的索引（key列）不是预期的索引
+ * 检查结束后回滚事务，不在库中留下数据；不执行迁移，库须已由程序启动时升级到最新版本
+ *
+ * 用法：
+ * java -cp "classes:lib/mysql-connector-j-9.3.0.jar" service.QueryPlanChecker
+ *
+ * 新增或修改DatabaseManager中的高频查询时，需同步更新hotQueries
+ */
+public class QueryPlanChecker {
+
+    /**
+     * 测试数据：用户数和每个用户的每日记录、运动计划、饮食记录条数
+     * 数据量让按用户的等值查找明显比全表扫描划算，优化器的选择不再取决于库中原有的数据
+     */
+    private static final int FIXTURE_USERS = 50;
+    private static final int FIXTURE_DAYS = 30;
+    private static final String FIXTURE_PREFIX = "__plan_check_";
+
+    /**
+     * 高频查询的SQL、参数和可接受的索引
+     */
+    private static final class HotQuery {
+        private final String sql;
+        private final Object[] params;
+        private final List<String> expectedKeys;
+
+        HotQuery(String sql, Object[] params, String... expectedKeys) {
+            this.sql = sql;
+            this.params = params;
+            this.expectedKeys = Arrays.asList(expectedKeys);
+        }
+    }
+
+    private QueryPlanChecker() {}
+
+    /**
+     * 高频查询（与DatabaseManager中的SQL保持一致），参数取自测试数据
+     */
+    private static List<HotQuery> hotQueries(String user, int profileId, int dietId) {
+        List<HotQuery> queries = new ArrayList<>();
+        queries.add(new HotQuery("SELECT " + DatabaseManager.USER_COLUMNS + " FROM users WHERE username = ?",
+            new Object[] {user}, "username"));
+        queries.add(new HotQuery("SELECT " + DatabaseManager.PROFILE_COLUMNS + " FROM user_profile WHERE name = ?",
+            new Object[] {user}, "name"));
+        queries.add(new HotQuery("SELECT " + DatabaseManager.PROFILE_COLUMNS + " FROM user_profile WHERE id = ?",
+            new Object[] {profileId}, "PRIMARY"));
+        queries.add(new HotQuery("SELECT " + DatabaseManager.PROFILE_COLUMNS + ", created_date, updated_date FROM user_profile " +
+            "WHERE is_active = TRUE ORDER BY updated_date DESC LIMIT 1", new Object[0], "idx_profile_active_updated"));
+        queries.add(new HotQuery("SELECT " + DatabaseManager.DAILY_RECORD_COLUMNS + " FROM daily_record " +
+            "WHERE user_name = ? ORDER BY date DESC, id DESC",
+            new Object[] {user}, "uniq_user_date", "idx_daily_user_date_weight"));
+        queries.add(new HotQuery("SELECT date, weight FROM daily_record WHERE user_name = ? ORDER BY date ASC",
+            new Object[] {user}, "idx_daily_user_date_weight"));
+        queries.add(new HotQuery("SELECT " + DatabaseManager.EXERCISE_PLAN_COLUMNS + " FROM exercise_plan " +
+            "WHERE user_name = ? ORDER BY plan_date DESC, id DESC", new Object[] {user}, "uniq_user_plan_date"));
+        queries.add(new HotQuery("SELECT " + DatabaseManager.DIET_RECORD_COLUMNS + " FROM diet_record " +
+            "WHERE user_name = ? ORDER BY record_date DESC, id DESC", new Object[] {user}, "idx_user_date"));
+        queries.add(new HotQuery("SELECT " + DatabaseManager.DIET_RECORD_COLUMNS + " FROM diet_record WHERE id = ?",
+            new Object[] {dietId}, "PRIMARY"));
+        return queries;
+    }
+
+    /**
+     * 写入测试数据后检查全部高频查询的执行计划，结束后回滚
+     *
+     * @param conn 数据库连接（检查期间关闭自动提交，结束后恢复）
+     * @return 未通过的描述列表，为空表示全部通过
+     * @throws SQLException 写入测试数据或EXPLAIN执行失败
+     */
+    public static List<String> checkHotQueries(Connection conn) throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try {
+            int[] ids = insertFixtures(conn);
+            List<String> problems = new ArrayList<>();
+            for (HotQuery query : hotQueries(FIXTURE_PREFIX + 0, ids[0], ids[1])) {
+                explain(conn, query, problems);
+            }
+            return problems;
+        } finally {
+            conn.rollback();
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    private static void explain(Connection conn, HotQuery query, List<String> problems) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("EXPLAIN " + query.sql)) {
+            for (int i = 0; i < query.params.length; i++) {
+                pstmt.setObject(i + 1, query.params[i]);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next()) {
+                    problems.add("EXPLAIN无结果: " + query.sql);
+                    return;
+                }
+                String type = rs.getString("type");
+                String key = rs.getString("key");
+                String extra = rs.getString("Extra");
+                if ("ALL".equals(type) || "index".equals(type)) {
+                    problems.add(String.format("全表扫描[type=%s]: %s", type, query.sql));
+                }
+                if (extra != null && extra.contains("Using filesort")) {
+                    problems.add(String.format("文件排序[Extra=%s]: %s", extra, query.sql));
+                }
+                if (key == null || !query.expectedKeys.contains(key)) {
+                    problems.add(String.format("索引不符[key=%s, 预期%s]: %s", key, query.expectedKeys, query.sql));
+                }
+            }
+        }
+    }
+
+    /**
+     * 写入测试用户、档案及其每日记录、运动计划、饮食记录（在调用方的事务中，不提交）
+     *
+     * @return 第一个测试用户的档案ID和一条饮食记录ID
+     */
+    private static int[] insertFixtures(Connection conn) throws SQLException {
+        int profileId = 0;
+        int dietId = 0;
+        LocalDate today = LocalDate.now();
+        LocalDateTime now = LocalDateTime.now();
+        try (PreparedStatement user = conn.prepareStatement(
+                 "INSERT INTO users (username, password, role) VALUES (?, 'x', 'USER')");
+             PreparedStatement profile = conn.prepareStatement(
+                 "INSERT INTO user_profile (name, age, gender, height, weight, is_active, updated_date) " +
+                 "VALUES (?, 30, '男', 170, 65, ?, ?)", Statement.RETURN_GENERATED_KEYS);
+             PreparedStatement daily = conn.prepareStatement(
+                 "INSERT INTO daily_record (user_name, date, weight, note) VALUES (?, ?, 65, 'x')");
+             PreparedStatement plan = conn.prepareStatement(
+                 "INSERT INTO exercise_plan (user_name, exercise_type, plan_date, duration) VALUES (?, '跑步', ?, 1)");
+             PreparedStatement diet = conn.prepareStatement(
+                 "INSERT INTO diet_record (user_name, record_date, breakfast) VALUES (?, ?, 'x')",
+                 Statement.RETURN_GENERATED_KEYS)) {
+            for (int u = 0; u < FIXTURE_USERS; u++) {
+                String name = FIXTURE_PREFIX + u;
+                user.setString(1, name);
+                user.executeUpdate();
+                profile.setString(1, name);
+                profile.setBoolean(2, u % 5 != 0);
+                profile.setTimestamp(3, Timestamp.valueOf(now.minusMinutes(u)));
+                profile.executeUpdate();
+                if (u == 0) profileId = generatedKey(profile);
+                for (int d = 0; d < FIXTURE_DAYS; d++) {
+                    Date date = Date.valueOf(today.minusDays(d));
+                    daily.setString(1, name);
+                    daily.setDate(2, date);
+                    daily.addBatch();
+                    plan.setString(1, name);
+                    plan.setDate(2, date);
+                    plan.addBatch();
+                }
+                daily.executeBatch();
+                plan.executeBatch();
+                for (int d = 0; d < FIXTURE_DAYS; d++) {
+                    diet.setString(1, name);
+                    diet.setDate(2, Date.valueOf(today.minusDays(d)));
+                    diet.executeUpdate();
+                    if (u == 0 && d == 0) dietId = generatedKey(diet);
+                }
+            }
+        }
+        return new int[] {profileId, dietId};
+    }
+
+    private static int generatedKey(PreparedStatement pstmt) throws SQLException {
+        try (ResultSet keys = pstmt.getGeneratedKeys()) {
+            return keys.next() ? keys.getInt(1) : 0;
+        }
+    }
+
+    public static void main(String[] args) {
+        List<String> problems;
+        try (Connection conn = DatabaseManager.getConnection()) {
+            problems = checkHotQueries(conn);
+        } catch (SQLException e) {
+            System.err.println("执行计划检查失败: " + e.getMessage());
+            System.exit(2);
+            return;
+        }
+        for (String problem : problems) {
+            System.err.println(problem);
+        }
+        System.out.printf("热点查询执行计划检查完成: 共%d条，未通过%d项%n", hotQueries("", 0, 0).size(), problems.size());
+        if (!problems.isEmpty()) System.exit(1);
+    }
+}
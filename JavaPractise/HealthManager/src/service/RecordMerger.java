@@ -0,0 +1,163 @@
+package service;
+
+import model.DailyRecord;
+import model.DietRecord;
+import model.ExercisePlan;
+import model.UserProfile;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * 版本冲突时的三方合并
+ * base为编辑开始时读到的记录，mine为本次修改后的记录，theirs为数据库中的当前记录：
+ * 1. 只有一方修改的字段取修改方的值
+ * 2. 双方都修改且值不同的字段记为冲突，此时不保存，交给用户选择
+ * 无冲突时把本次的改动应用到theirs上，以theirs的版本号重新保存
+ *
+ * 用法：界面保留编辑前的记录作为base，保存时调用对应的updateXxx(base, mine)代替DatabaseManager.updateXxx(mine)
+ */
+public class RecordMerger {
+
+    /**
+     * 合并后再次保存仍冲突（他人连续修改）时的最多重试次数
+     */
+    private static final int MAX_ATTEMPTS = 3;
+
+    private static final List<Field<DailyRecord>> DAILY_RECORD_FIELDS = Arrays.asList(
+        field("用户", DailyRecord::getUserName, DailyRecord::setUserName),
+        field("日期", DailyRecord::getDate, DailyRecord::setDate),
+        field("体重", DailyRecord::getWeight, DailyRecord::setWeight),
+        field("运动", DailyRecord::getExercise, DailyRecord::setExercise),
+        field("运动时长", DailyRecord::getExerciseDuration, DailyRecord::setExerciseDuration),
+        field("睡眠时长", DailyRecord::getSleepDuration, DailyRecord::setSleepDuration),
+        field("心情", DailyRecord::getMood, DailyRecord::setMood),
+        field("备注", DailyRecord::getNote, DailyRecord::setNote)
+    );
+
+    private static final List<Field<ExercisePlan>> EXERCISE_PLAN_FIELDS = Arrays.asList(
+        field("用户", ExercisePlan::getUserName, ExercisePlan::setUserName),
+        field("运动类型", ExercisePlan::getExerciseType, ExercisePlan::setExerciseType),
+        field("计划日期", ExercisePlan::getPlanDate, ExercisePlan::setPlanDate),
+        field("计划时长", ExercisePlan::getDuration, ExercisePlan::setDuration),
+        field("运动强度", ExercisePlan::getIntensity, ExercisePlan::setIntensity),
+        field("完成状态", ExercisePlan::isCompleted, ExercisePlan::setCompleted),
+        field("实际时长", ExercisePlan::getActualDuration, ExercisePlan::setActualDuration),
+        field("备注", ExercisePlan::getNotes, ExercisePlan::setNotes)
+    );
+
+    private static final List<Field<DietRecord>> DIET_RECORD_FIELDS = Arrays.asList(
+        field("用户", DietRecord::getUserName, DietRecord::setUserName),
+        field("日期", DietRecord::getRecordDate, DietRecord::setRecordDate),
+        field("早餐", DietRecord::getBreakfast, DietRecord::setBreakfast),
+        field("午餐", DietRecord::getLunch, DietRecord::setLunch),
+        field("晚餐", DietRecord::getDinner, DietRecord::setDinner),
+        field("备注", DietRecord::getNotes, DietRecord::setNotes)
+    );
+
+    private static final List<Field<UserProfile>> PROFILE_FIELDS = Arrays.asList(
+        field("姓名", UserProfile::getName, UserProfile::setName),
+        field("年龄", UserProfile::getAge, UserProfile::setAge),
+        field("性别", UserProfile::getGender, UserProfile::setGender),
+        field("身高", UserProfile::getHeight, UserProfile::setHeight),
+        field("体重", UserProfile::getWeight, UserProfile::setWeight),
+        field("目标体重", UserProfile::getTargetWeight, UserProfile::setTargetWeight),
+        field("健身目标", UserProfile::getFitnessGoal, UserProfile::setFitnessGoal),
+        field("健康状况", UserProfile::getHealthStatus, UserProfile::setHealthStatus),
+        field("健康备注", UserProfile::getHealthNotes, UserProfile::setHealthNotes),
+        field("电话", UserProfile::getPhone, UserProfile::setPhone)
+    );
+
+    private RecordMerger() {}
+
+    public static SaveResult<DailyRecord> updateDailyRecord(DailyRecord base, DailyRecord mine) {
+        return update(base, mine, DAILY_RECORD_FIELDS, DatabaseManager::updateDailyRecord);
+    }
+
+    public static SaveResult<ExercisePlan> updateExercisePlan(ExercisePlan base, ExercisePlan mine) {
+        return update(base, mine, EXERCISE_PLAN_FIELDS, DatabaseManager::updateExercisePlan);
+    }
+
+    public static SaveResult<DietRecord> updateDietRecord(DietRecord base, DietRecord mine) {
+        return update(base, mine, DIET_RECORD_FIELDS, DatabaseManager::updateDietRecord);
+    }
+
+    public static SaveResult<UserProfile> updateUserProfile(UserProfile base, UserProfile mine) {
+        return update(base, mine, PROFILE_FIELDS, DatabaseManager::updateUserProfile);
+    }
+
+    /**
+     * 保存，版本冲突时尝试合并后重新保存
+     *
+     * @param base 编辑前的记录，为null时不合并，直接返回冲突
+     */
+    private static <T> SaveResult<T> update(T base, T mine, List<Field<T>> fields, Function<T, SaveResult<T>> save) {
+        SaveResult<T> result = save.apply(mine);
+        for (int attempt = 1; attempt < MAX_ATTEMPTS && result.isConflict() && base != null; attempt++) {
+            T theirs = result.getCurrent();
+            List<String> conflicts = conflictingFields(base, mine, theirs, fields);
+            if (!conflicts.isEmpty()) {
+                return SaveResult.conflict(theirs, conflicts);
+            }
+            // 把本次改动应用到数据库当前记录上，以其版本号重新保存
+            for (Field<T> f : fields) {
+                if (!Objects.equals(f.get(mine), f.get(base))) {
+                    f.set(theirs, f.get(mine));
+                }
+            }
+            result = save.apply(theirs);
+            if (result.isSuccess()) {
+                return SaveResult.merged(result.getCurrent());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 双方都修改且取值不同的字段
+     */
+    private static <T> List<String> conflictingFields(T base, T mine, T theirs, List<Field<T>> fields) {
+        List<String> conflicts = new ArrayList<>();
+        for (Field<T> f : fields) {
+            Object b = f.get(base);
+            Object m = f.get(mine);
+            Object t = f.get(theirs);
+            if (!Objects.equals(m, b) && !Objects.equals(t, b) && !Objects.equals(m, t)) {
+                conflicts.add(f.name);
+            }
+        }
+        return conflicts;
+    }
+
+    /**
+     * 参与合并的字段
+     */
+    private static final class Field<T> {
+        private final String name;
+        private final Function<T, Object> getter;
+        private final BiConsumer<T, Object> setter;
+
+        private Field(String name, Function<T, Object> getter, BiConsumer<T, Object> setter) {
+            this.name = name;
+            this.getter = getter;
+            this.setter = setter;
+        }
+
+        Object get(T record) {
+            return getter.apply(record);
+        }
+
+        void set(T record, Object value) {
+            setter.accept(record, value);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T, V> Field<T> field(String name, Function<T, V> getter, BiConsumer<T, V> setter) {
+        return new Field<>(name, getter::apply, (record, value) -> setter.accept(record, (V) value));
+    }
+}
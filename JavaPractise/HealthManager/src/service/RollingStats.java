@@ -0,0 +1,270 @@
+package service;
+
+import java.time.LocalDate;
+
+/**
+ * 滚动统计
+ * 按日期顺序逐天喂入体重、睡眠，增量维护体重、BMI、睡眠各自的7日/30日移动平均、
+ * 指数加权平均（EWMA）和最近30天最小二乘拟合的每周变化量；每个数据点O(1)（均摊），
+ * 新的一天直接add()，不必重算历史
+ *
+ * 移动平均按自然日计算：7日均值为最近一个数据点往前7天（含当天）内所有数据点的平均，缺记的天不补
+ * EWMA按天衰减：两个数据点相隔g天时，新数据点的权重为1-(1-α)^g
+ *
+ * 配置（系统属性）：
+ * -Dhealth.trend.alpha=0.1   EWMA每天的平滑系数（限制在0.001~1之间，无法解析时使用默认值）
+ */
+public class RollingStats {
+
+    private static final double DEFAULT_ALPHA = 0.1;
+    private static final double ALPHA = alpha();
+    /**
+     * 预计达成日期最多往后推算的天数，超出视为按当前趋势无法达成
+     */
+    private static final int MAX_ETA_DAYS = 3650;
+
+    /**
+     * 距目标体重小于该值（kg）视为已达到
+     */
+    private static final double GOAL_TOLERANCE = 0.05;
+
+    private final double heightCm;
+    private final Tracker weight = new Tracker();
+    private final Tracker bmi = new Tracker();
+    private final Tracker sleep = new Tracker();
+
+    /**
+     * @param heightCm 身高（cm），用于计算BMI；无效时BMI不统计
+     */
+    public RollingStats(double heightCm) {
+        this.heightCm = heightCm;
+    }
+
+    /**
+     * 由列式每日记录一次性计算
+     */
+    public static RollingStats of(DailySeries series, double heightCm) {
+        RollingStats stats = new RollingStats(heightCm);
+        for (int i = 0; i < series.size(); i++) {
+            stats.add(series.epochDay(i), series.weight(i), series.sleepDuration(i));
+        }
+        return stats;
+    }
+
+    /**
+     * 喂入一天的数据（日期须不早于上一次），体重、睡眠不大于0的不计入对应指标
+     *
+     * @param epochDay 日期（LocalDate.toEpochDay()）
+     * @param weightKg 体重（kg）
+     * @param sleepHours 睡眠时长（小时）
+     */
+    public void add(long epochDay, double weightKg, double sleepHours) {
+        if (weightKg > 0) {
+            weight.add(epochDay, weightKg);
+            double b = AnalyticsEngine.bmi(weightKg, heightCm);
+            if (b > 0) bmi.add(epochDay, b);
+        }
+        if (sleepHours > 0) sleep.add(epochDay, sleepHours);
+    }
+
+    public void add(LocalDate date, double weightKg, double sleepHours) {
+        add(date.toEpochDay(), weightKg, sleepHours);
+    }
+
+    private static double alpha() {
+        String value = System.getProperty("health.trend.alpha");
+        if (value == null) return DEFAULT_ALPHA;
+        try {
+            double alpha = Double.parseDouble(value.trim());
+            if (!Double.isNaN(alpha)) return Math.min(1.0, Math.max(0.001, alpha));
+        } catch (NumberFormatException e) {
+            // 下面按无效值处理
+        }
+        System.err.println("health.trend.alpha无效: " + value + "，使用默认值" + DEFAULT_ALPHA);
+        return DEFAULT_ALPHA;
+    }
+
+    public Tracker weight() { return weight; }
+    public Tracker bmi() { return bmi; }
+    public Tracker sleep() { return sleep; }
+
+    /**
+     * 当前体重水平（EWMA）是否已达到目标体重：与目标相差不到0.05kg，
+     * 或已从起始体重一侧越过目标（减重时低于目标、增重时高于目标）
+     *
+     * @param startWeight 起始体重（kg，档案中的体重）；无效时只按相差是否不到0.05kg判断
+     * @param targetWeight 目标体重（kg）
+     */
+    public boolean goalReached(double startWeight, double targetWeight) {
+        if (targetWeight <= 0 || weight.count() == 0) return false;
+        double gap = targetWeight - weight.ewma();
+        if (Math.abs(gap) < GOAL_TOLERANCE) return true;
+        double planned = targetWeight - startWeight;
+        return startWeight > 0 && Math.abs(planned) >= GOAL_TOLERANCE && Math.signum(gap) != Math.signum(planned);
+    }
+
+    /**
+     * 按当前体重趋势（EWMA为当前水平，最近30天每周变化量为速度）推算达到目标体重的日期
+     *
+     * @param startWeight 起始体重（kg，档案中的体重），用于判断是否已越过目标，见goalReached
+     * @param targetWeight 目标体重（kg）
+     * @return 预计达成日期；已达到返回最近一次记录的日期；数据不足、趋势背离目标或超过10年返回null
+     */
+    public LocalDate projectGoal(double startWeight, double targetWeight) {
+        if (targetWeight <= 0 || weight.count() == 0) return null;
+        if (goalReached(startWeight, targetWeight)) return LocalDate.ofEpochDay(weight.lastDay());
+        double gap = targetWeight - weight.ewma();
+        if (weight.count30() < 2) return null;
+        double perDay = weight.weeklySlope() / 7.0;
+        if (perDay == 0 || Math.signum(perDay) != Math.signum(gap)) return null;
+        double days = Math.ceil(gap / perDay);
+        if (days > MAX_ETA_DAYS) return null;
+        return LocalDate.ofEpochDay(weight.lastDay() + (long) days);
+    }
+
+    // ==================== 单个指标 ====================
+
+    /**
+     * 单个指标的滚动统计
+     */
+    public static final class Tracker {
+        private final Window week = new Window(7);
+        private final Window month = new Window(30);
+        private long count;
+        private long lastDay;
+        private double last;
+        private double ewma;
+
+        void add(long day, double value) {
+            if (count > 0 && day < lastDay) {
+                throw new IllegalArgumentException("数据须按日期顺序喂入");
+            }
+            if (count == 0) {
+                ewma = value;
+            } else {
+                double a = 1 - Math.pow(1 - ALPHA, Math.max(1, day - lastDay));
+                ewma += a * (value - ewma);
+            }
+            week.add(day, value);
+            month.add(day, value);
+            count++;
+            lastDay = day;
+            last = value;
+        }
+
+        /**
+         * 数据点总数
+         */
+        public long count() { return count; }
+
+        /**
+         * 最近30天内的数据点数
+         */
+        public int count30() { return month.size; }
+
+        /**
+         * 最近一个数据点的日期（epoch day），没有数据时为0
+         */
+        public long lastDay() { return lastDay; }
+
+        public double last() { return last; }
+
+        /**
+         * 7日移动平均，没有数据时为0
+         */
+        public double ma7() { return week.mean(); }
+
+        /**
+         * 30日移动平均，没有数据时为0
+         */
+        public double ma30() { return month.mean(); }
+
+        public double ewma() { return ewma; }
+
+        /**
+         * 最近30天最小二乘拟合的每周变化量，数据点少于2个或都在同一天时为0
+         */
+        public double weeklySlope() { return month.slope() * 7; }
+    }
+
+    /**
+     * 按自然日滑动的窗口，环形缓冲保存窗口内的数据点，同时维护最小二乘所需的累加和
+     * 横坐标以窗口内第一个数据点的日期为原点，避免epoch day平方后精度下降
+     */
+    private static final class Window {
+        private final int days;
+        private long[] day = new long[8];
+        private double[] value = new double[8];
+        private int head;
+        private int size;
+        private long origin;
+        private double sumX;
+        private double sumY;
+        private double sumXX;
+        private double sumXY;
+
+        Window(int days) {
+            this.days = days;
+        }
+
+        void add(long d, double v) {
+            if (size == day.length) grow();
+            day[(head + size) % day.length] = d;
+            value[(head + size) % day.length] = v;
+            if (size == 0) origin = d;
+            size++;
+            accumulate(d, v, 1);
+            // 移出窗口外（早于d-days+1）的数据点
+            while (size > 0 && day[head] <= d - days) {
+                accumulate(day[head], value[head], -1);
+                head = (head + 1) % day.length;
+                size--;
+            }
+            // 原点离当前太远时重新以窗口首个数据点为原点累加，保持数值稳定
+            if (size > 0 && day[head] - origin > 4L * days) rebase();
+        }
+
+        private void accumulate(long d, double v, int sign) {
+            double x = d - origin;
+            sumX += sign * x;
+            sumY += sign * v;
+            sumXX += sign * x * x;
+            sumXY += sign * x * v;
+        }
+
+        private void rebase() {
+            origin = day[head];
+            sumX = sumY = sumXX = sumXY = 0;
+            for (int i = 0; i < size; i++) {
+                int k = (head + i) % day.length;
+                accumulate(day[k], value[k], 1);
+            }
+        }
+
+        private void grow() {
+            long[] d = new long[day.length * 2];
+            double[] v = new double[day.length * 2];
+            for (int i = 0; i < size; i++) {
+                d[i] = day[(head + i) % day.length];
+                v[i] = value[(head + i) % day.length];
+            }
+            day = d;
+            value = v;
+            head = 0;
+        }
+
+        double mean() {
+            return size > 0 ? sumY / size : 0;
+        }
+
+        /**
+         * 每天的变化量（最小二乘斜率）
+         */
+        double slope() {
+            if (size < 2) return 0;
+            double denom = size * sumXX - sumX * sumX;
+            if (Math.abs(denom) < 1e-9) return 0;
+            return (size * sumXY - sumX * sumY) / denom;
+        }
+    }
+}
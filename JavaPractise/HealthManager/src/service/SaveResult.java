@@ -0,0 +1,94 @@
+package service;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 带版本号检查的保存结果
+ * 更新时版本号与数据库不一致返回CONFLICT，并附带数据库中的当前记录，界面可以提示用户、合并或覆盖
+ *
+ * @param <T> 记录类型
+ */
+public class SaveResult<T> {
+
+    /**
+     * 保存状态
+     */
+    public enum Status {
+        SAVED("保存成功"),
+        MERGED("记录已被他人修改，已自动合并双方的改动"),
+        CONFLICT("记录已被他人修改"),
+        NOT_FOUND("记录不存在或已被删除"),
+        FAILED("保存失败");
+
+        private final String message;
+
+        Status(String message) {
+            this.message = message;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+    }
+
+    private final Status status;
+    private final T current;
+    private final List<String> conflictFields;
+
+    private SaveResult(Status status, T current, List<String> conflictFields) {
+        this.status = status;
+        this.current = current;
+        this.conflictFields = conflictFields;
+    }
+
+    static <T> SaveResult<T> saved(T saved) {
+        return new SaveResult<>(Status.SAVED, saved, Collections.emptyList());
+    }
+
+    static <T> SaveResult<T> merged(T saved) {
+        return new SaveResult<>(Status.MERGED, saved, Collections.emptyList());
+    }
+
+    static <T> SaveResult<T> conflict(T current, List<String> conflictFields) {
+        return new SaveResult<>(Status.CONFLICT, current, Collections.unmodifiableList(conflictFields));
+    }
+
+    static <T> SaveResult<T> notFound() {
+        return new SaveResult<>(Status.NOT_FOUND, null, Collections.emptyList());
+    }
+
+    static <T> SaveResult<T> failed() {
+        return new SaveResult<>(Status.FAILED, null, Collections.emptyList());
+    }
+
+    public Status getStatus() { return status; }
+
+    /**
+     * 是否已写入数据库（直接保存或自动合并后保存）
+     */
+    public boolean isSuccess() {
+        return status == Status.SAVED || status == Status.MERGED;
+    }
+
+    public boolean isConflict() {
+        return status == Status.CONFLICT;
+    }
+
+    /**
+     * 成功时为已保存的记录（版本号已更新）；冲突时为数据库中的当前记录；其他情况为null
+     */
+    public T getCurrent() { return current; }
+
+    /**
+     * 双方都修改且取值不同的字段名称（仅合并失败时有值）
+     */
+    public List<String> getConflictFields() { return conflictFields; }
+
+    public String getMessage() {
+        if (status == Status.CONFLICT && !conflictFields.isEmpty()) {
+            return status.getMessage() + "，冲突字段: " + String.join("、", conflictFields);
+        }
+        return status.getMessage();
+    }
+}
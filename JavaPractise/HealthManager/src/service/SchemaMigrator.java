@@ -0,0 +1,417 @@
+package service;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+/**
+ * 数据库版本迁移
+ * 按版本号顺序执行建表/升级脚本，已执行的版本记录在schema_version表中
+ *
+ * 启动流程：
+ * 1. 一次查询读取schema_version（版本号和校验和）
+ * 2. 已是最新版本且校验和一致时直接返回，不执行任何DDL
+ * 3. 否则获取MySQL命名锁，逐个执行未执行的版本，每个版本执行完立即记录
+ *
+ * 新增索引或字段时在MIGRATIONS末尾追加新版本即可，已发布的版本内容不要修改（会导致校验和不一致）
+ * 加列、加索引用addColumn/addIndex包装：版本执行到一半失败后重跑时跳过已生效的语句，不会报重复
+ */
+public class SchemaMigrator {
+
+    private static final String LOCK_NAME = "health_manager_schema_migration";
+    private static final int LOCK_TIMEOUT_SECONDS = 30;
+
+    private static final String CREATE_SCHEMA_VERSION = "CREATE TABLE IF NOT EXISTS schema_version (" +
+        "version INT PRIMARY KEY COMMENT '版本号'," +
+        "description VARCHAR(200) NOT NULL COMMENT '版本说明'," +
+        "checksum VARCHAR(16) NOT NULL COMMENT '脚本校验和'," +
+        "installed_at DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '执行时间'" +
+        ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='数据库版本表'";
+
+    // ==================== V1：初始表结构 ====================
+
+    private static final String CREATE_USERS = "CREATE TABLE IF NOT EXISTS users (" +
+        "id INT PRIMARY KEY AUTO_INCREMENT COMMENT '用户ID'," +
+        "username VARCHAR(50) NOT NULL UNIQUE COMMENT '登录用户名'," +
+        "password VARCHAR(255) NOT NULL COMMENT '密码'," +
+        "role ENUM('USER', 'ADMIN') NOT NULL DEFAULT 'USER' COMMENT '用户角色'," +
+        "profile_name VARCHAR(50) COMMENT '关联的档案名称'," +
+        "is_active BOOLEAN DEFAULT TRUE COMMENT '是否激活'," +
+        "created_at DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间'," +
+        "updated_at DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间'" +
+        ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='用户认证表'";
+
+    private static final String CREATE_USER_PROFILE = "CREATE TABLE IF NOT EXISTS user_profile (" +
+        "id INT PRIMARY KEY AUTO_INCREMENT COMMENT '用户ID'," +
+        "name VARCHAR(50) NOT NULL UNIQUE COMMENT '姓名-唯一'," +
+        "age INT NOT NULL COMMENT '年龄'," +
+        "gender ENUM('男', '女') NOT NULL COMMENT '性别'," +
+        "height DECIMAL(5,2) NOT NULL COMMENT '身高(cm)'," +
+        "weight DECIMAL(5,2) NOT NULL COMMENT '体重(kg)'," +
+        "target_weight DECIMAL(5,2) COMMENT '目标体重(kg)'," +
+        "fitness_goal VARCHAR(50) COMMENT '健身目标'," +
+        "health_status TEXT COMMENT '健康状况'," +
+        "health_notes TEXT COMMENT '健康备注'," +
+        "phone VARCHAR(20) COMMENT '联系电话'," +
+        "created_date DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间'," +
+        "updated_date DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间'," +
+        "is_active BOOLEAN DEFAULT TRUE COMMENT '是否激活'" +
+        ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='用户档案表'";
+
+    private static final String CREATE_DAILY_RECORD = "CREATE TABLE IF NOT EXISTS daily_record (" +
+        "id INT PRIMARY KEY AUTO_INCREMENT COMMENT '记录ID'," +
+        "user_name VARCHAR(50) NOT NULL COMMENT '用户名'," +
+        "date DATE NOT NULL COMMENT '日期'," +
+        "weight DECIMAL(5,2) COMMENT '体重(kg)'," +
+        "exercise VARCHAR(100) COMMENT '运动内容'," +
+        "exercise_duration DECIMAL(4,2) COMMENT '运动时长(小时)'," +
+        "sleep_duration DECIMAL(4,2) COMMENT '睡眠时长(小时)'," +
+        "mood VARCHAR(20) COMMENT '心情'," +
+        "note TEXT COMMENT '备注'," +
+        "created_at DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间'," +
+        "updated_at DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间'," +
+        "UNIQUE KEY uniq_user_date (user_name, date)," +
+        "FOREIGN KEY (user_name) REFERENCES user_profile(name) ON DELETE CASCADE ON UPDATE CASCADE" +
+        ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='每日健康记录表'";
+
+    private static final String CREATE_EXERCISE_PLAN = "CREATE TABLE IF NOT EXISTS exercise_plan (" +
+        "id INT PRIMARY KEY AUTO_INCREMENT COMMENT '计划ID'," +
+        "user_name VARCHAR(50) NOT NULL COMMENT '用户名'," +
+        "exercise_type VARCHAR(50) NOT NULL COMMENT '运动类型'," +
+        "plan_date DATE NOT NULL COMMENT '计划日期'," +
+        "duration DECIMAL(4,2) COMMENT '计划时长(小时)'," +
+        "intensity VARCHAR(20) COMMENT '运动强度(低/中/高)'," +
+        "is_completed BOOLEAN DEFAULT FALSE COMMENT '是否完成'," +
+        "actual_duration DECIMAL(4,2) COMMENT '实际完成时长(小时)'," +
+        "notes TEXT COMMENT '备注'," +
+        "created_at DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间'," +
+        "updated_at DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间'," +
+        "UNIQUE KEY uniq_user_plan_date (user_name, plan_date)," +
+        "FOREIGN KEY (user_name) REFERENCES user_profile(name) ON DELETE CASCADE ON UPDATE CASCADE" +
+        ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='运动计划表'";
+
+    private static final String CREATE_DIET_RECORD = "CREATE TABLE IF NOT EXISTS diet_record (" +
+        "id INT PRIMARY KEY AUTO_INCREMENT COMMENT '主键，自增'," +
+        "user_name VARCHAR(50) NOT NULL COMMENT '用户名，关联user_profile表'," +
+        "record_date DATE NOT NULL COMMENT '饮食记录日期'," +
+        "breakfast TEXT COMMENT '早餐内容（多选食物、其它、无安排）'," +
+        "lunch TEXT COMMENT '午餐内容（多选食物、其它、无安排）'," +
+        "dinner TEXT COMMENT '晚餐内容（多选食物、其它、无安排）'," +
+        "notes TEXT COMMENT '备注'," +
+        "created_at DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间'," +
+        "updated_at DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间'," +
+        "INDEX idx_user_date (user_name, record_date)," +
+        "CONSTRAINT fk_diet_user FOREIGN KEY (user_name) REFERENCES user_profile(name) ON DELETE CASCADE" +
+        ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='饮食记录表'";
+
+    // 没有管理员时插入默认超级管理员账户（root/123456），密码以PBKDF2哈希写入（参数在执行时计算，不计入校验和）
+    private static final String INSERT_DEFAULT_ADMIN = "INSERT INTO users (username, password, role) " +
+        "SELECT 'root', ?, 'ADMIN' FROM DUAL " +
+        "WHERE NOT EXISTS (SELECT 1 FROM users WHERE role = 'ADMIN')";
+    private static final String DEFAULT_ADMIN_PASSWORD = "123456";
+
+    // ==================== V2：热点查询索引 ====================
+    // 按用户查询的每日记录/运动计划/饮食记录走已有的 (user_name, 日期) 唯一键或索引，
+    // InnoDB二级索引隐含主键id，ORDER BY 日期 DESC, id DESC 可直接倒序扫描索引，不需要文件排序；
+    // 这些查询要读取TEXT列（备注、三餐），建不了覆盖索引，按索引顺序回表即可。
+    // 只读索引的覆盖索引仅用于投影查询（见V3）。执行计划由QueryPlanChecker检查
+
+    // loadUserProfile: WHERE is_active = TRUE ORDER BY updated_date DESC LIMIT 1
+    private static final String INDEX_PROFILE_ACTIVE_UPDATED =
+        "ALTER TABLE user_profile ADD INDEX idx_profile_active_updated (is_active, updated_date)";
+
+    // authenticateUser: WHERE username = ? 按username唯一键等值查找，最多回表一行，不另建索引
+
+    // ==================== V3：投影查询覆盖索引 ====================
+
+    // getWeightPointsByUser: SELECT date, weight ... WHERE user_name = ? ORDER BY date，只读索引
+    private static final String INDEX_DAILY_USER_DATE_WEIGHT =
+        "ALTER TABLE daily_record ADD INDEX idx_daily_user_date_weight (user_name, date, weight)";
+
+    // ==================== V4：乐观锁版本号 ====================
+    // 可编辑的表增加version列，更新时 WHERE id = ? AND version = ? 并将version加1，
+    // 影响行数为0说明记录已被他人修改（或已删除），不在读和写之间持有任何数据库锁
+
+    private static final String VERSION_USER_PROFILE =
+        "ALTER TABLE user_profile ADD COLUMN version INT NOT NULL DEFAULT 0 COMMENT '乐观锁版本号'";
+    private static final String VERSION_DAILY_RECORD =
+        "ALTER TABLE daily_record ADD COLUMN version INT NOT NULL DEFAULT 0 COMMENT '乐观锁版本号'";
+    private static final String VERSION_EXERCISE_PLAN =
+        "ALTER TABLE exercise_plan ADD COLUMN version INT NOT NULL DEFAULT 0 COMMENT '乐观锁版本号'";
+    private static final String VERSION_DIET_RECORD =
+        "ALTER TABLE diet_record ADD COLUMN version INT NOT NULL DEFAULT 0 COMMENT '乐观锁版本号'";
+
+    // ==================== V5：离线日志补写去重 ====================
+    // 数据库不可用时写入OfflineJournal的记录在恢复后补写，补写与登记op_key在同一事务中，
+    // op_key已存在说明该条已写入过（补写后、清理日志前程序退出），直接跳过
+
+    private static final String CREATE_OFFLINE_APPLIED = "CREATE TABLE IF NOT EXISTS offline_applied (" +
+        "op_key CHAR(36) PRIMARY KEY COMMENT '离线日志中的幂等键'," +
+        "applied_at DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '补写时间'" +
+        ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='离线日志已补写记录'";
+
+    /**
+     * 全部迁移脚本，按版本号升序排列
+     */
+    private static final List<Migration> MIGRATIONS = Collections.unmodifiableList(Arrays.asList(
+        new Migration(1, "初始表结构和默认管理员",
+            sql(CREATE_USERS), sql(INSERT_DEFAULT_ADMIN, () -> PasswordHasher.hash(DEFAULT_ADMIN_PASSWORD)),
+            sql(CREATE_USER_PROFILE), sql(CREATE_DAILY_RECORD), sql(CREATE_EXERCISE_PLAN), sql(CREATE_DIET_RECORD)),
+        new Migration(2, "热点查询索引",
+            addIndex("user_profile", "idx_profile_active_updated", INDEX_PROFILE_ACTIVE_UPDATED)),
+        new Migration(3, "投影查询覆盖索引",
+            addIndex("daily_record", "idx_daily_user_date_weight", INDEX_DAILY_USER_DATE_WEIGHT)),
+        new Migration(4, "乐观锁版本号",
+            addColumn("user_profile", "version", VERSION_USER_PROFILE),
+            addColumn("daily_record", "version", VERSION_DAILY_RECORD),
+            addColumn("exercise_plan", "version", VERSION_EXERCISE_PLAN),
+            addColumn("diet_record", "version", VERSION_DIET_RECORD)),
+        new Migration(5, "离线日志补写去重",
+            sql(CREATE_OFFLINE_APPLIED))
+    ));
+
+    private SchemaMigrator() {}
+
+    /**
+     * 当前代码对应的最新版本号
+     */
+    public static int latestVersion() {
+        return MIGRATIONS.get(MIGRATIONS.size() - 1).version;
+    }
+
+    /**
+     * 将数据库升级到最新版本
+     *
+     * @param conn 数据库连接
+     * @throws SQLException 迁移失败或校验和不一致
+     */
+    public static void migrate(Connection conn) throws SQLException {
+        Map<Integer, String> applied = readAppliedVersions(conn);
+        if (applied != null && isUpToDate(applied)) {
+            System.out.println("数据库版本已是最新: V" + latestVersion());
+            return;
+        }
+
+        try (Statement stmt = conn.createStatement()) {
+            if (!acquireLock(stmt)) {
+                throw new SQLException("获取数据库迁移锁超时");
+            }
+            try {
+                stmt.executeUpdate(CREATE_SCHEMA_VERSION);
+                // 持锁后重新读取，其它进程可能已完成迁移
+                applied = readAppliedVersions(conn);
+                if (applied == null) {
+                    throw new SQLException("无法读取schema_version表");
+                }
+                for (Migration migration : MIGRATIONS) {
+                    String checksum = applied.get(migration.version);
+                    if (checksum != null) {
+                        verifyChecksum(migration, checksum);
+                        continue;
+                    }
+                    apply(conn, migration);
+                }
+            } finally {
+                releaseLock(stmt);
+            }
+        }
+    }
+
+    /**
+     * 读取已执行的版本及校验和；schema_version表不存在时返回null
+     */
+    private static Map<Integer, String> readAppliedVersions(Connection conn) {
+        Map<Integer, String> applied = new LinkedHashMap<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT version, checksum FROM schema_version ORDER BY version")) {
+            while (rs.next()) {
+                applied.put(rs.getInt(1), rs.getString(2));
+            }
+            return applied;
+        } catch (SQLException e) {
+            // 首次启动或旧版本安装，表还不存在
+            return null;
+        }
+    }
+
+    /**
+     * 当前代码的各版本都已执行且校验和一致
+     * 数据库中多出的版本（由更新版本的程序执行）不影响当前代码运行，只打印提示，不走加锁迁移流程
+     */
+    private static boolean isUpToDate(Map<Integer, String> applied) {
+        for (Migration migration : MIGRATIONS) {
+            if (!migration.checksum.equals(applied.get(migration.version))) {
+                return false;
+            }
+        }
+        for (Integer version : applied.keySet()) {
+            if (version > latestVersion()) {
+                System.out.println("数据库中存在当前代码未知的版本 V" + version + "（由更新版本的程序执行），已忽略");
+            }
+        }
+        return true;
+    }
+
+    private static void verifyChecksum(Migration migration, String recorded) throws SQLException {
+        if (!migration.checksum.equals(recorded)) {
+            throw new SQLException(String.format("数据库版本V%d的脚本已被修改（记录校验和%s，当前%s）",
+                migration.version, recorded, migration.checksum));
+        }
+    }
+
+    /**
+     * 执行单个版本并记录到schema_version
+     * 注意：MySQL的DDL会隐式提交，失败时已执行的语句无法回滚，该版本也不会被记录，下次启动从头重跑；
+     * 每条语句都须可重复执行：建表用IF NOT EXISTS，加列、加索引用addColumn/addIndex先检查是否已存在
+     */
+    private static void apply(Connection conn, Migration migration) throws SQLException {
+        System.out.println("执行数据库迁移 V" + migration.version + ": " + migration.description);
+        try (Statement stmt = conn.createStatement()) {
+            for (Step step : migration.steps) {
+                if (step.isDone(conn)) {
+                    System.out.println("已存在，跳过: " + step.sql);
+                    continue;
+                }
+                step.execute(conn, stmt);
+            }
+        }
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "INSERT INTO schema_version (version, description, checksum) VALUES (?, ?, ?)")) {
+            pstmt.setInt(1, migration.version);
+            pstmt.setString(2, migration.description);
+            pstmt.setString(3, migration.checksum);
+            pstmt.executeUpdate();
+        }
+        System.out.println("数据库迁移 V" + migration.version + " 完成");
+    }
+
+    private static boolean acquireLock(Statement stmt) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery("SELECT GET_LOCK('" + LOCK_NAME + "', " + LOCK_TIMEOUT_SECONDS + ")")) {
+            return rs.next() && rs.getInt(1) == 1;
+        }
+    }
+
+    private static void releaseLock(Statement stmt) {
+        try (ResultSet rs = stmt.executeQuery("SELECT RELEASE_LOCK('" + LOCK_NAME + "')")) {
+            if (!rs.next() || rs.getInt(1) != 1) {
+                System.err.println("释放数据库迁移锁失败: 锁不由当前连接持有");
+            }
+        } catch (SQLException e) {
+            System.err.println("释放数据库迁移锁失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 单个版本的迁移脚本
+     */
+    private static class Migration {
+        private final int version;
+        private final String description;
+        private final List<Step> steps;
+        private final String checksum;
+
+        Migration(int version, String description, Step... steps) {
+            this.version = version;
+            this.description = description;
+            this.steps = Collections.unmodifiableList(new ArrayList<>(Arrays.asList(steps)));
+            this.checksum = checksumOf(this.steps);
+        }
+
+        /**
+         * 只按语句文本计算，存在性检查不计入，给已发布的语句加上检查不改变校验和
+         */
+        private static String checksumOf(List<Step> steps) {
+            CRC32 crc = new CRC32();
+            for (Step step : steps) {
+                crc.update(step.sql.getBytes(StandardCharsets.UTF_8));
+                crc.update('\n');
+            }
+            return String.format("%08x", crc.getValue());
+        }
+    }
+
+    /**
+     * 迁移中的一条语句；existsQuery查到结果说明语句已生效（上次执行到一半失败），跳过不再执行
+     */
+    private static class Step {
+        private final String sql;
+        private final String existsQuery;
+        private final String[] existsArgs;
+        /**
+         * 语句中唯一一个?参数的值，执行时才计算（如随机盐的密码哈希）；为null时语句不带参数
+         */
+        private Supplier<String> parameter;
+
+        Step(String sql, String existsQuery, String... existsArgs) {
+            this.sql = sql;
+            this.existsQuery = existsQuery;
+            this.existsArgs = existsArgs;
+        }
+
+        void execute(Connection conn, Statement stmt) throws SQLException {
+            if (parameter == null) {
+                stmt.executeUpdate(sql);
+                return;
+            }
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setString(1, parameter.get());
+                pstmt.executeUpdate();
+            }
+        }
+
+        boolean isDone(Connection conn) throws SQLException {
+            if (existsQuery == null) return false;
+            try (PreparedStatement pstmt = conn.prepareStatement(existsQuery)) {
+                for (int i = 0; i < existsArgs.length; i++) {
+                    pstmt.setString(i + 1, existsArgs[i]);
+                }
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    return rs.next();
+                }
+            }
+        }
+    }
+
+    /**
+     * 本身可重复执行的语句（CREATE TABLE IF NOT EXISTS、带NOT EXISTS条件的INSERT）
+     */
+    private static Step sql(String sql) {
+        return new Step(sql, null);
+    }
+
+    /**
+     * 带一个参数的可重复执行语句
+     */
+    private static Step sql(String sql, Supplier<String> parameter) {
+        Step step = sql(sql);
+        step.parameter = parameter;
+        return step;
+    }
+
+    /**
+     * 加列，列已存在时跳过
+     */
+    private static Step addColumn(String table, String column, String sql) {
+        return new Step(sql, "SELECT 1 FROM information_schema.COLUMNS " +
+            "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND COLUMN_NAME = ?", table, column);
+    }
+
+    /**
+     * 加索引，同名索引已存在时跳过
+     */
+    private static Step addIndex(String table, String index, String sql) {
+        return new Step(sql, "SELECT 1 FROM information_schema.STATISTICS " +
+            "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND INDEX_NAME = ? LIMIT 1", table, index);
+    }
+}
@@ -0,0 +1,685 @@
+package service;
+
+import model.DailyRecord;
+import model.DietRecord;
+import model.ExercisePlan;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 全文检索（进程内倒排索引）
+ * 检索用户自己的每日记录（备注、运动）、饮食记录（三餐、备注）、运动计划（运动类型、备注），
+ * 如"火锅"、"膝盖 疼"、"\"knee pain\""，结果按日期从新到旧排列，不再逐行LIKE '%...%'扫描
+ *
+ * 分词：连续的中日韩文字切成相邻两字一组（"膝盖疼"→"膝盖"、"盖疼"），单独一个字保留为一个词；
+ * 连续的字母数字为一个词（转小写）；其余字符是分隔符。每个词记下在文档中的位置，字段之间隔开，
+ * 短语不会跨字段匹配
+ *
+ * 查询语法：
+ * - 空格分隔的多个条件同时满足：膝盖 疼
+ * - OR（或|）连接的条件满足其一：火锅 OR 烧烤
+ * - -开头的条件排除：火锅 -外卖
+ * - 引号内为短语，按顺序相邻出现：“"knee pain"”；中文词本身按短语匹配（"膝盖疼"须三字相连）
+ * - 单个汉字匹配所有含该字的两字组
+ *
+ * 存储：每个用户一份索引，文档表（类型、ID、日期、字段文本）按文档号存数组；
+ * 每个词的倒排表是按文档号递增的字节数组，文档号和位置都存与前一个的差值（变长整数编码）
+ *
+ * 更新：首次检索某用户时从数据库建立该用户的索引；之后DatabaseManager保存、修改、删除记录成功后
+ * 增量更新（修改=删除旧文档+追加新文档）；已删除的文档过多时重建倒排表。
+ * 尚未建立索引的用户不做任何事，首次检索时从数据库读到的已是最新数据。
+ * 其他进程直接改库不会反映到这里，最近最少检索的用户超出上限后丢弃，下次检索重新建立
+ *
+ * 配置（系统属性）：
+ * -Dhealth.search.maxUsers=1000   最多保留索引的用户数
+ */
+public class SearchIndex {
+
+    public static final int TYPE_DAILY = 0;
+    public static final int TYPE_DIET = 1;
+    public static final int TYPE_PLAN = 2;
+    private static final String[] TYPE_NAMES = {"每日记录", "饮食记录", "运动计划"};
+
+    /**
+     * 字段之间的位置间隔
+     */
+    private static final int FIELD_GAP = 16;
+    /**
+     * 已删除文档超过该数且超过一半时重建倒排表
+     */
+    private static final int COMPACT_MIN_DEAD = 64;
+    private static final int MAX_USERS = Math.max(1, Integer.getInteger("health.search.maxUsers", 1000));
+
+    private static final Map<String, UserIndex> users = Collections.synchronizedMap(
+        new LinkedHashMap<String, UserIndex>(64, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, UserIndex> eldest) {
+                return size() > MAX_USERS;
+            }
+        });
+
+    private SearchIndex() {}
+
+    // ==================== 检索 ====================
+
+    /**
+     * 一条检索结果
+     */
+    public static final class Hit {
+        private final int type;
+        private final int id;
+        private final LocalDate date;
+        private final String text;
+
+        Hit(int type, int id, LocalDate date, String text) {
+            this.type = type;
+            this.id = id;
+            this.date = date;
+            this.text = text;
+        }
+
+        /**
+         * TYPE_DAILY、TYPE_DIET或TYPE_PLAN
+         */
+        public int getType() { return type; }
+        public String getTypeName() { return TYPE_NAMES[type]; }
+        public int getId() { return id; }
+        public LocalDate getDate() { return date; }
+
+        /**
+         * 被索引的字段内容，以" | "分隔
+         */
+        public String getText() { return text; }
+    }
+
+    /**
+     * 检索用户的记录
+     *
+     * @param userName 用户名
+     * @param query 查询语句（语法见类说明）
+     * @param limit 最多返回条数
+     * @return 按日期从新到旧排列的结果；查询为空或没有可检索的词时返回空列表
+     */
+    public static List<Hit> search(String userName, String query, int limit) {
+        if (userName == null || query == null || limit <= 0) return Collections.emptyList();
+        Query q = Query.parse(query);
+        if (q.groups.isEmpty()) return Collections.emptyList();
+        UserIndex index = users.computeIfAbsent(userName, UserIndex::new);
+        synchronized (index) {
+            if (!index.built) index.build();
+            return index.search(q, limit);
+        }
+    }
+
+    // ==================== 增量更新（DatabaseManager写入成功后调用） ====================
+
+    /**
+     * 记录已保存（新增或修改），record为DailyRecord、DietRecord或ExercisePlan；ID未知（离线暂存）时跳过
+     */
+    static void indexed(Object record) {
+        Doc doc = Doc.of(record);
+        if (doc == null || doc.id <= 0) return;
+        UserIndex index = users.get(doc.userName);
+        if (index == null) return;
+        synchronized (index) {
+            if (index.built) index.put(doc);
+        }
+    }
+
+    /**
+     * 记录已按ID删除（不知道所属用户，在已建立的各用户索引中查找）
+     */
+    static void removed(int type, int id) {
+        for (UserIndex index : snapshot()) {
+            synchronized (index) {
+                if (index.built) index.remove(type, id);
+            }
+        }
+    }
+
+    /**
+     * 丢弃用户的索引（删除用户档案后调用），下次检索时重新建立
+     */
+    static void forget(String userName) {
+        if (userName != null) users.remove(userName);
+    }
+
+    /**
+     * 丢弃全部索引（不知道删除了哪个用户的档案时调用）
+     */
+    static void forgetAll() {
+        users.clear();
+    }
+
+    private static List<UserIndex> snapshot() {
+        synchronized (users) {
+            return new ArrayList<>(users.values());
+        }
+    }
+
+    // ==================== 文档 ====================
+
+    /**
+     * 一条被索引的记录
+     */
+    private static final class Doc {
+        final int type;
+        final int id;
+        final String userName;
+        final int day;
+        final String[] fields;
+
+        Doc(int type, int id, String userName, LocalDate date, String... fields) {
+            this.type = type;
+            this.id = id;
+            this.userName = userName;
+            this.day = date != null ? (int) date.toEpochDay() : 0;
+            this.fields = fields;
+        }
+
+        static Doc of(Object record) {
+            if (record instanceof DailyRecord) {
+                DailyRecord r = (DailyRecord) record;
+                return new Doc(TYPE_DAILY, r.getId(), r.getUserName(), r.getDate(), r.getExercise(), r.getNote());
+            }
+            if (record instanceof DietRecord) {
+                DietRecord r = (DietRecord) record;
+                return new Doc(TYPE_DIET, r.getId(), r.getUserName(), r.getRecordDate(),
+                    r.getBreakfast(), r.getLunch(), r.getDinner(), r.getNotes());
+            }
+            if (record instanceof ExercisePlan) {
+                ExercisePlan p = (ExercisePlan) record;
+                return new Doc(TYPE_PLAN, p.getId(), p.getUserName(), p.getPlanDate(), p.getExerciseType(), p.getNotes());
+            }
+            return null;
+        }
+
+        String text() {
+            StringBuilder sb = new StringBuilder();
+            for (String f : fields) {
+                if (f == null || f.trim().isEmpty()) continue;
+                if (sb.length() > 0) sb.append(" | ");
+                sb.append(f.trim());
+            }
+            return sb.toString();
+        }
+    }
+
+    // ==================== 单个用户的索引 ====================
+
+    private static final class UserIndex {
+        final String userName;
+        boolean built;
+        // 文档表，下标为文档号
+        int[] types = new int[64];
+        int[] ids = new int[64];
+        int[] days = new int[64];
+        String[][] fields = new String[64][];
+        int docCount;
+        final BitSet dead = new BitSet();
+        int deadCount;
+        /**
+         * (类型, ID) → 当前文档号
+         */
+        final Map<Long, Integer> current = new HashMap<>();
+        Map<String, Postings> postings = new HashMap<>();
+
+        UserIndex(String userName) {
+            this.userName = userName;
+        }
+
+        void build() {
+            for (DailyRecord r : DatabaseManager.getDailyRecordsByUser(userName)) put(Doc.of(r));
+            for (DietRecord r : DatabaseManager.getDietRecordsByUser(userName)) put(Doc.of(r));
+            for (ExercisePlan p : DatabaseManager.getExercisePlansByUser(userName)) put(Doc.of(p));
+            built = true;
+        }
+
+        void put(Doc doc) {
+            remove(doc.type, doc.id);
+            if (docCount == types.length) {
+                int capacity = types.length * 2;
+                types = Arrays.copyOf(types, capacity);
+                ids = Arrays.copyOf(ids, capacity);
+                days = Arrays.copyOf(days, capacity);
+                fields = Arrays.copyOf(fields, capacity);
+            }
+            int d = docCount++;
+            types[d] = doc.type;
+            ids[d] = doc.id;
+            days[d] = doc.day;
+            fields[d] = doc.fields;
+            addPostings(d, doc.fields);
+            current.put(key(doc.type, doc.id), d);
+        }
+
+        void remove(int type, int id) {
+            Integer d = current.remove(key(type, id));
+            if (d == null) return;
+            dead.set(d);
+            fields[d] = null;
+            deadCount++;
+            if (deadCount >= COMPACT_MIN_DEAD && deadCount * 2 > docCount) compact();
+        }
+
+        /**
+         * 文档的各字段分词后追加到倒排表（文档号递增，直接追加到末尾）
+         */
+        private void addPostings(int d, String[] docFields) {
+            Map<String, int[]> positions = new LinkedHashMap<>();
+            int position = 0;
+            for (String f : docFields) {
+                if (f == null) continue;
+                position = tokenize(f, position, (token, pos) -> {
+                    int[] list = positions.get(token);
+                    if (list == null) {
+                        list = new int[]{0, 0, 0, 0, 0};
+                        positions.put(token, list);
+                    } else if (list[0] + 1 == list.length) {
+                        list = Arrays.copyOf(list, list.length * 2);
+                        positions.put(token, list);
+                    }
+                    // list[0]为个数，之后为位置
+                    list[++list[0]] = pos;
+                }) + FIELD_GAP;
+            }
+            for (Map.Entry<String, int[]> e : positions.entrySet()) {
+                postings.computeIfAbsent(e.getKey(), k -> new Postings()).add(d, e.getValue());
+            }
+        }
+
+        /**
+         * 丢掉已删除的文档，按存活文档重新编号并重建倒排表
+         */
+        private void compact() {
+            int live = docCount - deadCount;
+            int[] t = new int[Math.max(64, live * 2)];
+            int[] i2 = new int[t.length];
+            int[] dy = new int[t.length];
+            String[][] f = new String[t.length][];
+            int n = 0;
+            for (int d = 0; d < docCount; d++) {
+                if (dead.get(d)) continue;
+                t[n] = types[d];
+                i2[n] = ids[d];
+                dy[n] = days[d];
+                f[n] = fields[d];
+                n++;
+            }
+            types = t;
+            ids = i2;
+            days = dy;
+            fields = f;
+            docCount = n;
+            dead.clear();
+            deadCount = 0;
+            current.clear();
+            postings = new HashMap<>();
+            for (int d = 0; d < n; d++) {
+                current.put(key(types[d], ids[d]), d);
+                addPostings(d, fields[d]);
+            }
+        }
+
+        List<Hit> search(Query q, int limit) {
+            int[] result = null;
+            for (List<Clause> group : q.groups) {
+                int[] any = new int[0];
+                for (Clause c : group) any = union(any, match(c));
+                result = result == null ? any : intersect(result, any);
+                if (result.length == 0) return Collections.emptyList();
+            }
+            for (Clause c : q.excluded) result = subtract(result, match(c));
+            // 按日期从新到旧，同一天后写入的在前
+            List<Integer> docs = new ArrayList<>(result.length);
+            for (int d : result) {
+                if (!dead.get(d)) docs.add(d);
+            }
+            docs.sort((a, b) -> days[a] != days[b] ? Integer.compare(days[b], days[a]) : Integer.compare(b, a));
+            List<Hit> hits = new ArrayList<>(Math.min(limit, docs.size()));
+            for (int i = 0; i < docs.size() && i < limit; i++) {
+                int d = docs.get(i);
+                hits.add(new Hit(types[d], ids[d], LocalDate.ofEpochDay(days[d]),
+                    new Doc(types[d], ids[d], userName, null, fields[d]).text()));
+            }
+            return hits;
+        }
+
+        /**
+         * 满足单个条件的文档号（升序）
+         */
+        private int[] match(Clause c) {
+            if (c.tokens.length == 1 && c.tokens[0].codePointCount(0, c.tokens[0].length()) == 1
+                    && isCjk(c.tokens[0].codePointAt(0))) {
+                // 单个汉字：所有含该字的两字组
+                int[] docs = new int[0];
+                for (Map.Entry<String, Postings> e : postings.entrySet()) {
+                    if (e.getKey().contains(c.tokens[0])) docs = union(docs, e.getValue().decode().docs);
+                }
+                return docs;
+            }
+            Decoded[] lists = new Decoded[c.tokens.length];
+            for (int i = 0; i < lists.length; i++) {
+                Postings p = postings.get(c.tokens[i]);
+                if (p == null) return new int[0];
+                lists[i] = p.decode();
+            }
+            if (lists.length == 1) return lists[0].docs;
+            // 短语：第一个词的每个位置p，第i个词须出现在p+offsets[i]
+            int[] out = new int[lists[0].docs.length];
+            int n = 0;
+            int[] cursor = new int[lists.length];
+            for (int k = 0; k < lists[0].docs.length; k++) {
+                int d = lists[0].docs[k];
+                boolean all = true;
+                for (int i = 1; i < lists.length && all; i++) {
+                    cursor[i] = lists[i].find(d, cursor[i]);
+                    all = cursor[i] >= 0;
+                    if (!all) cursor[i] = 0;
+                }
+                if (!all) continue;
+                for (int p = lists[0].start[k]; p < lists[0].start[k + 1]; p++) {
+                    int base = lists[0].positions[p] - c.offsets[0];
+                    boolean phrase = true;
+                    for (int i = 1; i < lists.length && phrase; i++) {
+                        phrase = lists[i].hasPosition(cursor[i], base + c.offsets[i]);
+                    }
+                    if (phrase) {
+                        out[n++] = d;
+                        break;
+                    }
+                }
+            }
+            return Arrays.copyOf(out, n);
+        }
+    }
+
+    private static long key(int type, int id) {
+        return ((long) type << 32) | (id & 0xFFFFFFFFL);
+    }
+
+    // ==================== 倒排表 ====================
+
+    /**
+     * 一个词的倒排表：依次为文档号差值、位置个数、各位置差值，均为变长整数
+     */
+    private static final class Postings {
+        byte[] data = new byte[8];
+        int length;
+        int lastDoc = -1;
+        int docFreq;
+
+        /**
+         * @param list list[0]为位置个数，之后为递增的位置
+         */
+        void add(int doc, int[] list) {
+            writeVInt(doc - lastDoc);
+            writeVInt(list[0]);
+            int prev = 0;
+            for (int i = 1; i <= list[0]; i++) {
+                writeVInt(list[i] - prev);
+                prev = list[i];
+            }
+            lastDoc = doc;
+            docFreq++;
+        }
+
+        private void writeVInt(int v) {
+            if (length + 5 > data.length) data = Arrays.copyOf(data, Math.max(data.length * 2, length + 5));
+            while ((v & ~0x7F) != 0) {
+                data[length++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            data[length++] = (byte) v;
+        }
+
+        Decoded decode() {
+            int[] docs = new int[docFreq];
+            int[] start = new int[docFreq + 1];
+            int[] positions = new int[16];
+            int np = 0;
+            int[] at = {0};
+            int doc = -1;
+            for (int k = 0; k < docFreq; k++) {
+                doc += readVInt(at);
+                docs[k] = doc;
+                start[k] = np;
+                int count = readVInt(at);
+                int pos = 0;
+                for (int i = 0; i < count; i++) {
+                    pos += readVInt(at);
+                    if (np == positions.length) positions = Arrays.copyOf(positions, np * 2);
+                    positions[np++] = pos;
+                }
+            }
+            start[docFreq] = np;
+            return new Decoded(docs, start, positions);
+        }
+
+        private int readVInt(int[] at) {
+            int v = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[at[0]++];
+                v |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return v;
+        }
+    }
+
+    /**
+     * 解码后的倒排表：第k个文档的位置为positions[start[k], start[k+1])
+     */
+    private static final class Decoded {
+        final int[] docs;
+        final int[] start;
+        final int[] positions;
+
+        Decoded(int[] docs, int[] start, int[] positions) {
+            this.docs = docs;
+            this.start = start;
+            this.positions = positions;
+        }
+
+        /**
+         * 从from开始查找文档号，返回下标，没有返回-1
+         */
+        int find(int doc, int from) {
+            int i = Arrays.binarySearch(docs, from, docs.length, doc);
+            return i >= 0 ? i : -1;
+        }
+
+        boolean hasPosition(int k, int position) {
+            return Arrays.binarySearch(positions, start[k], start[k + 1], position) >= 0;
+        }
+    }
+
+    private static int[] union(int[] a, int[] b) {
+        if (a.length == 0) return b;
+        if (b.length == 0) return a;
+        int[] out = new int[a.length + b.length];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) out[n++] = a[i++];
+            else if (a[i] > b[j]) out[n++] = b[j++];
+            else {
+                out[n++] = a[i++];
+                j++;
+            }
+        }
+        while (i < a.length) out[n++] = a[i++];
+        while (j < b.length) out[n++] = b[j++];
+        return Arrays.copyOf(out, n);
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        int[] out = new int[Math.min(a.length, b.length)];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) i++;
+            else if (a[i] > b[j]) j++;
+            else {
+                out[n++] = a[i++];
+                j++;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    private static int[] subtract(int[] a, int[] b) {
+        int[] out = new int[a.length];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length) {
+            while (j < b.length && b[j] < a[i]) j++;
+            if (j < b.length && b[j] == a[i]) i++;
+            else out[n++] = a[i++];
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    // ==================== 分词与查询解析 ====================
+
+    @FunctionalInterface
+    private interface TokenSink {
+        void token(String token, int position);
+    }
+
+    /**
+     * 分词：中日韩文字两字一组（单独一个字为一个词），字母数字连续为一个词（小写）
+     *
+     * @param position 第一个词的位置
+     * @return 下一个词的位置
+     */
+    private static int tokenize(String text, int position, TokenSink sink) {
+        int i = 0;
+        int n = text.length();
+        int[] run = new int[16];
+        while (i < n) {
+            int cp = text.codePointAt(i);
+            if (isCjk(cp)) {
+                int len = 0;
+                while (i < n && isCjk(cp = text.codePointAt(i))) {
+                    if (len == run.length) run = Arrays.copyOf(run, len * 2);
+                    run[len++] = cp;
+                    i += Character.charCount(cp);
+                }
+                if (len == 1) {
+                    sink.token(new String(run, 0, 1), position++);
+                } else {
+                    for (int k = 0; k + 1 < len; k++) {
+                        sink.token(new String(run, k, 2), position++);
+                    }
+                }
+            } else if (Character.isLetterOrDigit(cp)) {
+                int start = i;
+                while (i < n && Character.isLetterOrDigit(cp = text.codePointAt(i)) && !isCjk(cp)) {
+                    i += Character.charCount(cp);
+                }
+                sink.token(text.substring(start, i).toLowerCase(), position++);
+            } else {
+                i += Character.charCount(cp);
+            }
+        }
+        return position;
+    }
+
+    private static boolean isCjk(int cp) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(cp);
+        return script == Character.UnicodeScript.HAN || script == Character.UnicodeScript.HIRAGANA
+            || script == Character.UnicodeScript.KATAKANA || script == Character.UnicodeScript.HANGUL;
+    }
+
+    /**
+     * 一个查询条件：一个或多个词，多个词须按offsets的相对位置出现（短语）
+     */
+    private static final class Clause {
+        final String[] tokens;
+        final int[] offsets;
+
+        Clause(String[] tokens, int[] offsets) {
+            this.tokens = tokens;
+            this.offsets = offsets;
+        }
+    }
+
+    /**
+     * 解析后的查询：groups之间同时满足，同一group内满足其一；excluded中任一满足即排除
+     */
+    private static final class Query {
+        final List<List<Clause>> groups = new ArrayList<>();
+        final List<Clause> excluded = new ArrayList<>();
+
+        static Query parse(String text) {
+            Query q = new Query();
+            boolean or = false;
+            int i = 0;
+            int n = text.length();
+            while (i < n) {
+                char c = text.charAt(i);
+                if (Character.isWhitespace(c)) {
+                    i++;
+                    continue;
+                }
+                boolean negate = false;
+                if (c == '-' && i + 1 < n && !Character.isWhitespace(text.charAt(i + 1))) {
+                    negate = true;
+                    c = text.charAt(++i);
+                }
+                String raw;
+                if (c == '"' || c == '“') {
+                    char close = c == '"' ? '"' : '”';
+                    int end = text.indexOf(close, i + 1);
+                    if (end < 0) end = n;
+                    raw = text.substring(i + 1, end);
+                    i = Math.min(n, end + 1);
+                } else {
+                    int start = i;
+                    while (i < n && !Character.isWhitespace(text.charAt(i))) i++;
+                    raw = text.substring(start, i);
+                    if (!negate && ("OR".equals(raw) || "|".equals(raw))) {
+                        or = !q.groups.isEmpty();
+                        continue;
+                    }
+                }
+                Clause clause = clause(raw);
+                if (clause == null) continue;
+                if (negate) {
+                    q.excluded.add(clause);
+                } else if (or) {
+                    q.groups.get(q.groups.size() - 1).add(clause);
+                } else {
+                    List<Clause> group = new ArrayList<>();
+                    group.add(clause);
+                    q.groups.add(group);
+                }
+                or = false;
+            }
+            return q;
+        }
+
+        private static Clause clause(String raw) {
+            List<String> tokens = new ArrayList<>();
+            List<Integer> offsets = new ArrayList<>();
+            tokenize(raw, 0, (token, pos) -> {
+                tokens.add(token);
+                offsets.add(pos);
+            });
+            if (tokens.isEmpty()) return null;
+            int[] o = new int[offsets.size()];
+            for (int k = 0; k < o.length; k++) o[k] = offsets.get(k);
+            return new Clause(tokens.toArray(new String[0]), o);
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package service;
+
+import model.DailyRecord;
+import model.DietRecord;
+import model.ExercisePlan;
+import model.UserProfile;
+import model.UserSummary;
+import model.WeightPoint;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 登录预取的会话数据
+ * 登录成功后立即并行查询各面板首次显示要用的数据（档案列表、默认用户的每日记录、运动计划、饮食记录），
+ * 主窗口构建各面板时直接取用，首屏不再逐个面板串行查库
+ *
+ * 预取的数据只在首屏有效：主窗口构建完成后调用release()释放，之后的刷新、增删改仍直接查库；
+ * 面板通过本类的静态方法读取，未预取、用户不符或预取失败时自动回退到DatabaseManager
+ *
+ * 配置（系统属性）：
+ * -Dhealth.prefetch.threads=4   预取线程数
+ */
+public class SessionContext {
+
+    private static final long WAIT_SECONDS = 10;
+
+    private static final ExecutorService PREFETCHER;
+    static {
+        AtomicInteger seq = new AtomicInteger();
+        PREFETCHER = Executors.newFixedThreadPool(Integer.getInteger("health.prefetch.threads", 4), r -> {
+            Thread t = new Thread(r, "session-prefetch-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * 默认选中的用户：普通用户为自己的档案，管理员为档案列表中的第一个（与各面板的默认选择一致）
+     */
+    private final CompletableFuture<String> subject;
+    /**
+     * 全部档案，仅管理员预取
+     */
+    private final CompletableFuture<List<UserProfile>> profiles;
+    private final CompletableFuture<List<DailyRecord>> dailyRecords;
+    private final CompletableFuture<List<ExercisePlan>> exercisePlans;
+    private final CompletableFuture<List<DietRecord>> dietRecords;
+
+    private SessionContext(UserSession session) {
+        UserProfile own = session.getProfile();
+        if (session.isAdmin()) {
+            profiles = CompletableFuture.supplyAsync(DatabaseManager::getAllUserProfiles, PREFETCHER);
+            subject = profiles.thenApply(list -> list.isEmpty() ? null : list.get(0).getName());
+        } else {
+            profiles = CompletableFuture.completedFuture(null);
+            subject = CompletableFuture.completedFuture(own != null ? own.getName() : null);
+        }
+        dailyRecords = subject.thenApplyAsync(name -> name != null ? DatabaseManager.getDailyRecordsByUser(name) : null, PREFETCHER);
+        exercisePlans = subject.thenApplyAsync(name -> name != null ? DatabaseManager.getExercisePlansByUser(name) : null, PREFETCHER);
+        dietRecords = subject.thenApplyAsync(name -> name != null ? DatabaseManager.getDietRecordsByUser(name) : null, PREFETCHER);
+    }
+
+    /**
+     * 为会话启动预取（立即返回，查询在后台并行执行）
+     */
+    static SessionContext prefetch(UserSession session) {
+        return new SessionContext(session);
+    }
+
+    /**
+     * 释放当前会话的预取数据（主窗口首屏构建完成后调用）
+     */
+    public static void release() {
+        UserSession session = SessionManager.getCurrentSession();
+        if (session != null) {
+            session.setContext(null);
+        }
+    }
+
+    /**
+     * 全部档案
+     */
+    public static List<UserProfile> loadAllUserProfiles() {
+        SessionContext ctx = current();
+        List<UserProfile> list = ctx != null ? await(ctx.profiles) : null;
+        return list != null ? new ArrayList<>(list) : DatabaseManager.getAllUserProfiles();
+    }
+
+    /**
+     * 全部档案的id和姓名（由预取的档案列表得到，两者查询顺序一致）
+     */
+    public static List<UserSummary> loadAllUserSummaries() {
+        SessionContext ctx = current();
+        List<UserProfile> list = ctx != null ? await(ctx.profiles) : null;
+        if (list == null) return DatabaseManager.getAllUserSummaries();
+        List<UserSummary> summaries = new ArrayList<>(list.size());
+        for (UserProfile p : list) {
+            summaries.add(UserSummary.of(p));
+        }
+        return summaries;
+    }
+
+    /**
+     * 根据姓名获取档案，当前登录用户自己的档案直接使用登录时加载的
+     */
+    public static UserProfile loadUserProfileByName(String name) {
+        UserSession session = SessionManager.getCurrentSession();
+        if (session != null && session.getContext() != null) {
+            UserProfile own = session.getProfile();
+            if (own != null && own.getName().equals(name)) return own;
+        }
+        return DatabaseManager.getUserProfileByName(name);
+    }
+
+    /**
+     * 用户的每日记录（日期倒序）
+     */
+    public static List<DailyRecord> loadDailyRecords(String userName) {
+        SessionContext ctx = current();
+        List<DailyRecord> list = ctx != null ? ctx.forSubject(userName, ctx.dailyRecords) : null;
+        return list != null ? new ArrayList<>(list) : DatabaseManager.getDailyRecordsByUser(userName);
+    }
+
+    /**
+     * 用户的体重数据点（日期升序，由预取的每日记录得到）
+     */
+    public static List<WeightPoint> loadWeightPoints(String userName) {
+        SessionContext ctx = current();
+        List<DailyRecord> list = ctx != null ? ctx.forSubject(userName, ctx.dailyRecords) : null;
+        if (list == null) return DatabaseManager.getWeightPointsByUser(userName);
+        List<WeightPoint> points = new ArrayList<>(list.size());
+        for (int i = list.size() - 1; i >= 0; i--) {
+            points.add(new WeightPoint(list.get(i).getDate(), list.get(i).getWeight()));
+        }
+        return points;
+    }
+
+    /**
+     * 用户的运动计划
+     */
+    public static List<ExercisePlan> loadExercisePlans(String userName) {
+        SessionContext ctx = current();
+        List<ExercisePlan> list = ctx != null ? ctx.forSubject(userName, ctx.exercisePlans) : null;
+        return list != null ? new ArrayList<>(list) : DatabaseManager.getExercisePlansByUser(userName);
+    }
+
+    /**
+     * 用户的饮食记录
+     */
+    public static List<DietRecord> loadDietRecords(String userName) {
+        SessionContext ctx = current();
+        List<DietRecord> list = ctx != null ? ctx.forSubject(userName, ctx.dietRecords) : null;
+        return list != null ? new ArrayList<>(list) : DatabaseManager.getDietRecordsByUser(userName);
+    }
+
+    private static SessionContext current() {
+        UserSession session = SessionManager.getCurrentSession();
+        return session != null ? session.getContext() : null;
+    }
+
+    /**
+     * 仅当请求的用户就是预取的用户时返回预取结果
+     */
+    private <T> T forSubject(String userName, CompletableFuture<T> future) {
+        String name = await(subject);
+        return name != null && name.equals(userName) ? await(future) : null;
+    }
+
+    /**
+     * 等待预取结果，失败或超时返回null（由调用方回退查库）
+     */
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.get(WAIT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException | TimeoutException e) {
+            System.err.println("登录预取数据失败，改为直接查询: " + e);
+            return null;
+        }
+    }
+}
@@ -5,91 +5,110 @@ import model.UserProfile;
 
 /**
  * 会话管理器
- * 管理当前登录用户的会话状态
+ * 管理桌面模式下当前登录用户的会话状态（单会话）
+ * 无界面服务模式下的多会话见SessionRegistry
  */
 public class SessionManager {
-    private static User currentUser;
-    private static UserProfile currentProfile;
-    
+    private static volatile UserSession currentSession;
+    private static volatile String lastLoginMessage;
+
     /**
      * 用户登录
      */
     public static boolean login(String username, String password) {
-        User user = DatabaseManager.authenticateUser(username, password);
-        if (user != null && user.isActive()) {
-            currentUser = user;
-            // 无论profileName是否为null，都用用户名查档案
-            currentProfile = DatabaseManager.getUserProfileByName(user.getUsername());
+        SessionRegistry.LoginResult result = SessionRegistry.authenticate(username, password, "desktop");
+        lastLoginMessage = result.getMessage();
+        if (result.isSuccess()) {
+            UserSession session = result.getSession();
+            // 先启动预取再发布会话，主窗口构建时各面板即可取用
+            session.setContext(SessionContext.prefetch(session));
+            currentSession = session;
             System.out.println("用户登录成功: " + username);
             return true;
         }
-        System.out.println("登录失败: 用户名或密码错误");
+        System.out.println("登录失败: " + lastLoginMessage);
         return false;
     }
-    
+
+    /**
+     * 最近一次登录的结果说明（登录失败时用于提示用户）
+     */
+    public static String getLastLoginMessage() {
+        return lastLoginMessage;
+    }
+
     /**
      * 用户登出
      */
     public static void logout() {
+        User currentUser = getCurrentUser();
         System.out.println("用户登出: " + (currentUser != null ? currentUser.getUsername() : "未知"));
-        currentUser = null;
-        currentProfile = null;
+        currentSession = null;
     }
-    
+
     /**
      * 检查是否已登录
      */
     public static boolean isLoggedIn() {
-        return currentUser != null;
+        return currentSession != null;
     }
-    
+
     /**
      * 检查当前用户是否为管理员
      */
     public static boolean isAdmin() {
+        User currentUser = getCurrentUser();
         return currentUser != null && currentUser.isAdmin();
     }
-    
+
     /**
      * 检查当前用户是否为普通用户
      */
     public static boolean isUser() {
+        User currentUser = getCurrentUser();
         return currentUser != null && currentUser.isUser();
     }
-    
+
+    /**
+     * 获取当前会话
+     */
+    public static UserSession getCurrentSession() {
+        return currentSession;
+    }
+
     /**
      * 获取当前登录用户
      */
     public static User getCurrentUser() {
-        return currentUser;
+        UserSession session = currentSession;
+        return session != null ? session.getUser() : null;
     }
-    
+
     /**
      * 获取当前用户的档案
      */
     public static UserProfile getCurrentProfile() {
-        return currentProfile;
+        UserSession session = currentSession;
+        return session != null ? session.getProfile() : null;
     }
-    
+
     /**
      * 设置当前用户档案
      */
     public static void setCurrentProfile(UserProfile profile) {
-        currentProfile = profile;
+        UserSession session = currentSession;
         // 同时更新用户的档案关联
-        if (currentUser != null && profile != null) {
-            currentUser.setProfileName(profile.getName());
+        if (session != null) {
+            session.setProfile(profile);
         }
     }
-    
+
     /**
      * 获取当前用户显示名称
      */
     public static String getCurrentUserDisplayName() {
-        if (currentUser == null) return "未登录";
-        if (currentProfile != null) {
-            return currentProfile.getName() + " (" + currentUser.getRole() + ")";
-        }
-        return currentUser.getUsername() + " (" + currentUser.getRole() + ")";
+        UserSession session = currentSession;
+        if (session == null) return "未登录";
+        return session.getDisplayName();
     }
-} 
\ No newline at end of file
+}
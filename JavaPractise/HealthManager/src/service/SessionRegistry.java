@@ -0,0 +1,257 @@
+package service;
+
+import model.User;
+import model.UserProfile;
+
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 多会话注册表（无界面服务模式使用）
+ * 登录成功后签发不透明令牌，之后所有请求凭令牌取回各自的会话；会话空闲超时后自动清理
+ *
+ * 配置（系统属性）：
+ * -Dhealth.session.idleMinutes=30   空闲超时分钟数
+ * -Dhealth.session.max=1000         同时存在的会话上限
+ */
+public class SessionRegistry {
+
+    private static final long IDLE_TIMEOUT_MILLIS =
+            TimeUnit.MINUTES.toMillis(Long.getLong("health.session.idleMinutes", 30));
+    private static final int MAX_SESSIONS = Integer.getInteger("health.session.max", 1000);
+    private static final int TOKEN_BYTES = 32;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final Map<String, UserSession> sessions = new ConcurrentHashMap<>();
+
+    private static ScheduledExecutorService sweeper;
+
+    private SessionRegistry() {}
+
+    /**
+     * 登录结果
+     */
+    public static class LoginResult {
+        private final UserSession session;
+        private final LoginThrottle.Decision decision;
+
+        LoginResult(UserSession session, LoginThrottle.Decision decision) {
+            this.session = session;
+            this.decision = decision;
+        }
+
+        public boolean isSuccess() { return session != null; }
+
+        /**
+         * 登录成功时的会话，否则为null
+         */
+        public UserSession getSession() { return session; }
+
+        /**
+         * 限流检查结果；ALLOWED但未成功表示用户名或密码错误
+         */
+        public LoginThrottle.Decision getDecision() { return decision; }
+
+        /**
+         * 是否因限流或锁定被拒绝（未校验密码）
+         */
+        public boolean isThrottled() {
+            return decision == LoginThrottle.Decision.RATE_LIMITED || decision == LoginThrottle.Decision.LOCKED;
+        }
+
+        /**
+         * 是否因会话数已达上限被拒绝（未校验密码）
+         */
+        public boolean isSessionLimit() {
+            return decision == LoginThrottle.Decision.SESSION_LIMIT;
+        }
+
+        /**
+         * 是否因密码校验繁忙未能完成校验（不代表密码错误，也不计入失败次数）
+         */
+        public boolean isBusy() {
+            return decision == LoginThrottle.Decision.BUSY;
+        }
+
+        public String getMessage() {
+            if (session != null) return "登录成功";
+            return decision == LoginThrottle.Decision.ALLOWED ? "用户名或密码错误" : decision.getMessage();
+        }
+    }
+
+    /**
+     * 经限流检查后校验用户名密码并加载档案，返回的会话尚未注册
+     * 桌面模式（SessionManager）与服务模式共用此登录逻辑
+     *
+     * @param source 来源（IP地址，桌面端为"desktop"）
+     */
+    static LoginResult authenticate(String username, String password, String source) {
+        if (username == null || password == null) {
+            return new LoginResult(null, LoginThrottle.Decision.ALLOWED);
+        }
+        LoginThrottle.Decision decision = LoginThrottle.check(username, source);
+        if (decision != LoginThrottle.Decision.ALLOWED) {
+            return new LoginResult(null, decision);
+        }
+        DatabaseManager.Authentication auth = DatabaseManager.authenticate(username, password);
+        if (auth.isBusy()) {
+            // 校验被拒绝不是密码错误，计入失败次数会让突发流量锁定正常用户
+            return new LoginResult(null, LoginThrottle.Decision.BUSY);
+        }
+        User user = auth.getUser();
+        if (user == null || !user.isActive()) {
+            LoginThrottle.recordFailure(username, auth.isKnownUser());
+            return new LoginResult(null, decision);
+        }
+        LoginThrottle.recordSuccess(username);
+        // 无论profileName是否为null，都用用户名查档案
+        UserProfile profile = DatabaseManager.getUserProfileByName(user.getUsername());
+        return new LoginResult(new UserSession(newToken(), user, profile), decision);
+    }
+
+    /**
+     * 登录并注册会话（控制台使用）
+     *
+     * @return 新会话，登录失败或会话数已达上限返回null
+     */
+    public static UserSession login(String username, String password) {
+        return login(username, password, "console").getSession();
+    }
+
+    /**
+     * 登录并注册会话
+     *
+     * @param source 来源（IP地址）
+     */
+    public static LoginResult login(String username, String password, String source) {
+        if (sessions.size() >= MAX_SESSIONS) {
+            evictExpired();
+            if (sessions.size() >= MAX_SESSIONS) {
+                System.err.println("会话数已达上限(" + MAX_SESSIONS + ")，拒绝登录: " + username);
+                return new LoginResult(null, LoginThrottle.Decision.SESSION_LIMIT);
+            }
+        }
+        LoginResult result = authenticate(username, password, source);
+        if (!result.isSuccess()) {
+            System.out.println("登录失败: " + username + "，" + result.getMessage());
+            return result;
+        }
+        UserSession session = result.getSession();
+        sessions.put(session.getToken(), session);
+        System.out.println("用户登录成功: " + username);
+        return result;
+    }
+
+    /**
+     * 根据令牌获取会话并刷新访问时间
+     *
+     * @return 会话，令牌无效或已超时返回null
+     */
+    public static UserSession get(String token) {
+        if (token == null) return null;
+        UserSession session = sessions.get(token);
+        if (session == null) return null;
+        if (session.isExpired(System.currentTimeMillis(), IDLE_TIMEOUT_MILLIS)) {
+            sessions.remove(token, session);
+            return null;
+        }
+        session.touch();
+        return session;
+    }
+
+    /**
+     * 注销会话
+     *
+     * @return 令牌存在时返回true
+     */
+    public static boolean logout(String token) {
+        if (token == null) return false;
+        UserSession session = sessions.remove(token);
+        if (session == null) return false;
+        System.out.println("用户登出: " + session.getUser().getUsername());
+        return true;
+    }
+
+    /**
+     * 注销某个用户名下的全部会话（删除账户时使用）
+     */
+    public static void logoutUser(String username) {
+        sessions.values().removeIf(s -> s.getUser().getUsername().equals(username));
+    }
+
+    /**
+     * 清理全部空闲超时的会话
+     *
+     * @return 清理的会话数
+     */
+    public static int evictExpired() {
+        long now = System.currentTimeMillis();
+        int removed = 0;
+        Iterator<UserSession> it = sessions.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().isExpired(now, IDLE_TIMEOUT_MILLIS)) {
+                it.remove();
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * 当前会话数
+     */
+    public static int size() {
+        return sessions.size();
+    }
+
+    /**
+     * 当前全部会话的快照
+     */
+    public static List<UserSession> snapshot() {
+        return new ArrayList<>(sessions.values());
+    }
+
+    /**
+     * 启动后台超时清理（每分钟一次，守护线程，重复调用无副作用）
+     */
+    public static synchronized void startSweeper() {
+        if (sweeper != null) return;
+        sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "session-sweeper");
+            t.setDaemon(true);
+            return t;
+        });
+        sweeper.scheduleWithFixedDelay(() -> {
+            int removed = evictExpired();
+            if (removed > 0) {
+                System.out.println("清理超时会话: " + removed + "个，剩余" + sessions.size() + "个");
+            }
+        }, 1, 1, TimeUnit.MINUTES);
+    }
+
+    /**
+     * 停止后台清理
+     */
+    public static synchronized void stopSweeper() {
+        if (sweeper == null) return;
+        sweeper.shutdownNow();
+        sweeper = null;
+    }
+
+    /**
+     * 生成不透明令牌（32字节随机数，URL安全的Base64编码）
+     */
+    private static String newToken() {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        RANDOM.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+}
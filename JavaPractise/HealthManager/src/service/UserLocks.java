@@ -0,0 +1,124 @@
+package service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 按用户名分段加锁
+ * 用户名哈希到固定数量的锁上：同一用户的写操作（含"先查后写"的组合操作）互斥，
+ * 不同用户大概率落在不同的锁上，可以并行执行；锁可重入，组合操作内部再调用单项写操作不会死锁
+ *
+ * 用法（放在try-with-resources中，离开时自动释放）：
+ * try (UserLocks.Held held = UserLocks.lock(userName)) { ... }
+ *
+ * 改变记录归属的写操作（记录改到其他用户名下、档案改名）要同时锁原用户和新用户：
+ * lock(Collection)按锁的下标从小到大依次加锁，所有多锁操作顺序一致，不会交叉等待；
+ * 已持有某个用户的锁时只能再锁同一用户（组合操作），不能再去锁其他用户
+ * 释放时记录这些用户的数据发生了变化（DataVersions），加锁的都是写操作
+ *
+ * 配置（系统属性）：
+ * -Dhealth.lock.stripes=64   锁的数量，向上取整为2的幂
+ */
+public class UserLocks {
+
+    private static final ReentrantLock[] STRIPES;
+    private static final int MASK;
+    static {
+        int requested = Math.max(1, Integer.getInteger("health.lock.stripes", 64));
+        int size = Integer.highestOneBit(requested);
+        if (size < requested) size <<= 1;
+        STRIPES = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            STRIPES[i] = new ReentrantLock();
+        }
+        MASK = size - 1;
+    }
+
+    private UserLocks() {}
+
+    /**
+     * 已持有的锁，close()时释放
+     */
+    public static final class Held implements AutoCloseable {
+        private final List<ReentrantLock> locks;
+        private final Collection<String> userNames;
+
+        private Held(List<ReentrantLock> locks, Collection<String> userNames) {
+            this.locks = locks;
+            this.userNames = userNames;
+        }
+
+        @Override
+        public void close() {
+            if (userNames != null) {
+                for (String userName : userNames) {
+                    DataVersions.changed(userName);
+                }
+            } else {
+                DataVersions.changedAll();
+            }
+            for (int i = locks.size() - 1; i >= 0; i--) {
+                locks.get(i).unlock();
+            }
+        }
+    }
+
+    /**
+     * 获取用户名对应的锁（阻塞直到获得）
+     */
+    public static Held lock(String userName) {
+        ReentrantLock lock = stripeFor(userName);
+        lock.lock();
+        return new Held(Collections.singletonList(lock), Collections.singletonList(userName));
+    }
+
+    /**
+     * 同时获取多个用户名对应的锁（按锁的下标从小到大加锁，落在同一把锁上的只加一次）
+     */
+    public static Held lock(Collection<String> userNames) {
+        TreeMap<Integer, ReentrantLock> ordered = new TreeMap<>();
+        for (String userName : userNames) {
+            int index = indexFor(userName);
+            ordered.put(index, STRIPES[index]);
+        }
+        List<ReentrantLock> locks = new ArrayList<>(ordered.values());
+        for (ReentrantLock lock : locks) {
+            lock.lock();
+        }
+        return new Held(locks, new ArrayList<>(userNames));
+    }
+
+    /**
+     * 获取全部锁（不按用户名的批量写操作使用），释放时记录所有用户的数据都可能发生了变化
+     */
+    public static Held lockAll() {
+        List<ReentrantLock> locks = new ArrayList<>(STRIPES.length);
+        for (ReentrantLock lock : STRIPES) {
+            lock.lock();
+            locks.add(lock);
+        }
+        return new Held(locks, null);
+    }
+
+    /**
+     * 当前线程是否持有该用户名对应的锁（调试用）
+     */
+    public static boolean isHeldByCurrentThread(String userName) {
+        return stripeFor(userName).isHeldByCurrentThread();
+    }
+
+    private static ReentrantLock stripeFor(String userName) {
+        return STRIPES[indexFor(userName)];
+    }
+
+    private static int indexFor(String userName) {
+        int h = userName != null ? userName.hashCode() : 0;
+        // 与HashMap相同的扰动，避免只用到哈希值的低位
+        h ^= (h >>> 16);
+        return h & MASK;
+    }
+}
@@ -0,0 +1,114 @@
+package service;
+
+import model.User;
+import model.UserProfile;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 单个登录会话的状态
+ * 桌面模式下只有一个会话（由SessionManager持有），无界面服务模式下由SessionRegistry按令牌管理多个会话
+ */
+public class UserSession {
+    /**
+     * 每个会话最多保存的附加属性个数，防止单个会话无限占用内存
+     */
+    public static final int MAX_ATTRIBUTES = 32;
+
+    private final String token;
+    private final User user;
+    private volatile UserProfile profile;
+    private final long createdAt;
+    private volatile long lastAccessAt;
+    private final Map<String, Object> attributes = new ConcurrentHashMap<>();
+    private volatile SessionContext context;
+
+    UserSession(String token, User user, UserProfile profile) {
+        this.token = token;
+        this.user = user;
+        this.profile = profile;
+        this.createdAt = System.currentTimeMillis();
+        this.lastAccessAt = createdAt;
+    }
+
+    public String getToken() { return token; }
+
+    public User getUser() { return user; }
+
+    public UserProfile getProfile() { return profile; }
+
+    /**
+     * 设置会话档案，同时更新用户的档案关联
+     */
+    public void setProfile(UserProfile profile) {
+        this.profile = profile;
+        if (profile != null) {
+            user.setProfileName(profile.getName());
+        }
+    }
+
+    /**
+     * 登录预取的数据，未预取或已释放时为null
+     */
+    SessionContext getContext() { return context; }
+
+    void setContext(SessionContext context) {
+        this.context = context;
+    }
+
+    public long getCreatedAt() { return createdAt; }
+
+    public long getLastAccessAt() { return lastAccessAt; }
+
+    /**
+     * 刷新最后访问时间
+     */
+    void touch() {
+        lastAccessAt = System.currentTimeMillis();
+    }
+
+    /**
+     * 是否已空闲超时
+     */
+    boolean isExpired(long now, long idleTimeoutMillis) {
+        return now - lastAccessAt > idleTimeoutMillis;
+    }
+
+    public boolean isAdmin() {
+        return user.isAdmin();
+    }
+
+    /**
+     * 获取显示名称（档案名优先，其次用户名）
+     */
+    public String getDisplayName() {
+        String name = profile != null ? profile.getName() : user.getUsername();
+        return name + " (" + user.getRole() + ")";
+    }
+
+    public Object getAttribute(String key) {
+        return attributes.get(key);
+    }
+
+    /**
+     * 保存会话属性
+     *
+     * @return 属性个数已达上限且为新键时返回false
+     */
+    public synchronized boolean setAttribute(String key, Object value) {
+        if (value == null) {
+            attributes.remove(key);
+            return true;
+        }
+        if (!attributes.containsKey(key) && attributes.size() >= MAX_ATTRIBUTES) {
+            return false;
+        }
+        attributes.put(key, value);
+        return true;
+    }
+
+    public void removeAttribute(String key) {
+        attributes.remove(key);
+    }
+}
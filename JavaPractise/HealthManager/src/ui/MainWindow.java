@@ -106,6 +106,10 @@ public class MainWindow extends JFrame {
         tabbedPane.addTab("运动计划", new ExercisePlanPanel());
         tabbedPane.addTab("饮食管理", new DietPanel());
         tabbedPane.addTab("数据分析", new DataAnalysisPanel());
+        // 切换标签页时写入运动计划中待写的完成状态，其他页面读到的是最新数据
+        tabbedPane.addChangeListener(e -> service.PlanCompletionQueue.flush());
+        // 各面板首屏数据已取用完毕，释放登录预取的数据，之后的刷新直接查库
+        service.SessionContext.release();
         
         // 将标签面板添加到窗口
         add(tabbedPane);
@@ -130,7 +134,8 @@ public class MainWindow extends JFrame {
         logoutItem.addActionListener(new java.awt.event.ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                // 注销当前会话
+                // 写入待写的完成状态后注销当前会话
+                service.PlanCompletionQueue.flush();
                 service.SessionManager.logout();
                 // 关闭当前主窗口
                 MainWindow.this.dispose();
@@ -0,0 +1,31 @@
+package ui.dialog;
+
+import service.SaveResult;
+
+import javax.swing.*;
+import java.awt.*;
+
+/**
+ * 保存冲突提示
+ * 记录在编辑期间已被他人修改且无法自动合并时，由用户选择覆盖还是放弃本次修改
+ */
+public class ConflictDialog {
+
+    private ConflictDialog() {}
+
+    /**
+     * 询问用户是否用自己的修改覆盖他人的修改
+     *
+     * @param parent 父组件
+     * @param result 冲突的保存结果
+     * @return 用户选择覆盖返回true，放弃返回false
+     */
+    public static boolean confirmOverwrite(Component parent, SaveResult<?> result) {
+        Object[] options = {"覆盖为我的修改", "放弃我的修改"};
+        int choice = JOptionPane.showOptionDialog(parent,
+            result.getMessage() + "\n\n覆盖：保存您填写的全部内容，他人的修改将丢失\n放弃：重新加载最新数据",
+            "保存冲突", JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE,
+            null, options, options[1]);
+        return choice == JOptionPane.YES_OPTION;
+    }
+}
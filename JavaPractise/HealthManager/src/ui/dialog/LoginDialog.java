@@ -167,7 +167,7 @@ public class LoginDialog extends JDialog {
             dispose();
         } else {
             JOptionPane.showMessageDialog(this, 
-                "用户名或密码错误，请重试", 
+                SessionManager.getLastLoginMessage() + "，请重试", 
                 "登录失败", JOptionPane.ERROR_MESSAGE);
             passwordField.setText("");
             passwordField.requestFocus();
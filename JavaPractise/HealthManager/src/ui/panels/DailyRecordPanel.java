@@ -2,7 +2,12 @@ package ui.panels;
 
 import model.DailyRecord;
 import model.UserProfile;
+import model.UserSummary;
 import service.DatabaseManager;
+import service.RecordMerger;
+import service.SaveResult;
+import service.SessionContext;
+import ui.dialog.ConflictDialog;
 
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
@@ -73,8 +78,14 @@ public class DailyRecordPanel extends JPanel {
     /** 当前编辑的记录ID - -1表示新增，>0表示编辑现有记录 */
     private Integer editingRecordId = -1;
     
+    /** 开始编辑时的记录 - 保存时用于检查版本号和合并他人的修改 */
+    private DailyRecord editingBase;
+    
+    /** 表格当前显示的记录 */
+    private List<DailyRecord> currentRecords = new java.util.ArrayList<>();
+    
     /** 用户选择下拉框 - 管理员可选择不同用户，普通用户只能看到自己 */
-    private JComboBox<UserProfile> userComboBox;
+    private JComboBox<UserSummary> userComboBox;
     
     /** 刷新按钮 - 刷新用户列表和表格数据 */
     private JButton refreshBtn;
@@ -234,7 +245,7 @@ public class DailyRecordPanel extends JPanel {
     private void onSave(ActionEvent e) {
         try {
             // ==================== 第一步：用户选择验证 ====================
-            UserProfile selectedUser = (UserProfile) userComboBox.getSelectedItem();
+            UserSummary selectedUser = (UserSummary) userComboBox.getSelectedItem();
             if (selectedUser == null) {
                 JOptionPane.showMessageDialog(this, "请先选择用户！", "提示", JOptionPane.WARNING_MESSAGE);
                 return;
@@ -319,15 +330,25 @@ public class DailyRecordPanel extends JPanel {
                     JOptionPane.showMessageDialog(this, "保存失败！", "错误", JOptionPane.ERROR_MESSAGE);
                 }
             } else {
-                // 更新记录操作
+                // 更新记录操作（按版本号检查，他人同时修改了不同字段时自动合并）
                 record.setId(editingRecordId);
-                boolean success = DatabaseManager.updateDailyRecord(record);
-                if (success) {
-                    JOptionPane.showMessageDialog(this, "保存成功！", "提示", JOptionPane.INFORMATION_MESSAGE);
+                record.setVersion(editingBase != null ? editingBase.getVersion() : 0);
+                SaveResult<DailyRecord> result = RecordMerger.updateDailyRecord(editingBase, record);
+                if (result.isConflict() && ConflictDialog.confirmOverwrite(this, result)) {
+                    record.setVersion(result.getCurrent().getVersion());
+                    result = DatabaseManager.updateDailyRecord(record);
+                }
+                if (result.isSuccess()) {
+                    String message = result.getStatus() == SaveResult.Status.MERGED ? result.getMessage() : "保存成功！";
+                    JOptionPane.showMessageDialog(this, message, "提示", JOptionPane.INFORMATION_MESSAGE);
                     clearForm();  // 清空表单
                     refreshTable();  // 刷新表格显示
+                } else if (result.isConflict()) {
+                    // 用户放弃本次修改，重新加载最新数据
+                    clearForm();
+                    refreshTable();
                 } else {
-                    JOptionPane.showMessageDialog(this, "保存失败！", "错误", JOptionPane.ERROR_MESSAGE);
+                    JOptionPane.showMessageDialog(this, "保存失败！" + result.getMessage(), "错误", JOptionPane.ERROR_MESSAGE);
                 }
             }
             
@@ -400,6 +421,13 @@ public class DailyRecordPanel extends JPanel {
         
         // 获取选中记录的ID
         editingRecordId = (int) tableModel.getValueAt(row, 0);
+        editingBase = null;
+        for (DailyRecord r : currentRecords) {
+            if (r.getId() == editingRecordId) {
+                editingBase = r;
+                break;
+            }
+        }
         
         // 将表格数据填充到表单中
         // 注意：表格列的顺序是：ID(0), 用户名(1), 日期(2), 体重(3), 运动(4), 运动时长(5), 睡眠时长(6), 心情(7), 备注(8)
@@ -426,16 +454,17 @@ public class DailyRecordPanel extends JPanel {
      */
     private void refreshTable() {
         // 获取当前选中的用户
-        UserProfile selectedUser = (UserProfile) userComboBox.getSelectedItem();
+        UserSummary selectedUser = (UserSummary) userComboBox.getSelectedItem();
         List<DailyRecord> records;
         
         if (selectedUser != null) {
             // 从数据库获取该用户的所有每日记录
-            records = DatabaseManager.getDailyRecordsByUser(selectedUser.getName());
+            records = SessionContext.loadDailyRecords(selectedUser.getName());
         } else {
             // 如果没有选中用户，显示空列表
             records = new java.util.ArrayList<>();
         }
+        currentRecords = records;
         
         // 清空表格现有数据
         tableModel.setRowCount(0);
@@ -480,7 +509,7 @@ public class DailyRecordPanel extends JPanel {
      */
     private void refreshUserComboBox() {
         // 保存当前选中的用户，用于恢复选择状态
-        UserProfile selectedUser = (UserProfile) userComboBox.getSelectedItem();
+        UserSummary selectedUser = (UserSummary) userComboBox.getSelectedItem();
         String selectedUserName = selectedUser != null ? selectedUser.getName() : null;
         
         // 清空用户下拉框
@@ -488,8 +517,8 @@ public class DailyRecordPanel extends JPanel {
         
         if (service.SessionManager.isAdmin()) {
             // 管理员可以看到所有用户
-            List<UserProfile> userList = DatabaseManager.getAllUserProfiles();
-            for (UserProfile user : userList) {
+            List<UserSummary> userList = SessionContext.loadAllUserSummaries();
+            for (UserSummary user : userList) {
                 userComboBox.addItem(user);
             }
             userComboBox.setEnabled(true);  // 管理员可以选择不同用户
@@ -497,8 +526,9 @@ public class DailyRecordPanel extends JPanel {
             // 普通用户只能看到自己的档案
             UserProfile currentUserProfile = service.SessionManager.getCurrentProfile();
             if (currentUserProfile != null) {
-                userComboBox.addItem(currentUserProfile);
-                userComboBox.setSelectedItem(currentUserProfile);
+                UserSummary self = UserSummary.of(currentUserProfile);
+                userComboBox.addItem(self);
+                userComboBox.setSelectedItem(self);
                 userComboBox.setEnabled(false);  // 普通用户不能切换用户
             }
         }
@@ -506,7 +536,7 @@ public class DailyRecordPanel extends JPanel {
         // 恢复之前选中的用户（仅管理员）
         if (service.SessionManager.isAdmin() && selectedUserName != null) {
             for (int i = 0; i < userComboBox.getItemCount(); i++) {
-                UserProfile user = userComboBox.getItemAt(i);
+                UserSummary user = userComboBox.getItemAt(i);
                 if (user.getName().equals(selectedUserName)) {
                     userComboBox.setSelectedIndex(i);
                     break;
@@ -547,6 +577,7 @@ public class DailyRecordPanel extends JPanel {
         moodBox.setSelectedIndex(0);                    // 心情重置为第一个选项
         noteArea.setText("");                           // 清空备注
         editingRecordId = -1;                           // 重置编辑状态为新增模式
+        editingBase = null;
         recordTable.clearSelection();                   // 清除表格选择
     }
 } 
\ No newline at end of file
@@ -2,16 +2,22 @@ package ui.panels;
 
 import javax.swing.*;
 import java.awt.*;
+import model.Bmi;
 import model.UserProfile;
 import service.DatabaseManager;
+import service.SessionContext;
 import java.util.List;
-import model.DailyRecord;
+import model.WeightPoint;
 import java.time.format.DateTimeFormatter;
 //import java.time.temporal.ChronoUnit;
-import java.util.Collections;
 import model.ExercisePlan;
 import java.util.Comparator;
 import model.DietRecord;
+import model.DietStats;
+import model.ExerciseStats;
+import service.AnalyticsEngine;
+import service.HealthScorer;
+import service.RollingStats;
 
 public class DataAnalysisPanel extends JPanel {
     private JComboBox<String> statsTypeCombo;
@@ -49,7 +55,7 @@ public class DataAnalysisPanel extends JPanel {
         // 用户选择下拉框和刷新按钮
         JComboBox<UserProfile> userComboBox;
         if (service.SessionManager.isAdmin()) {
-            userComboBox = new JComboBox<>(DatabaseManager.getAllUserProfiles().toArray(new UserProfile[0]));
+            userComboBox = new JComboBox<>(SessionContext.loadAllUserProfiles().toArray(new UserProfile[0]));
             userComboBox.setEnabled(true);
         } else {
             UserProfile currentUserProfile = service.SessionManager.getCurrentProfile();
@@ -79,11 +85,17 @@ public class DataAnalysisPanel extends JPanel {
         JLabel changeLabel = new JLabel();
         JLabel originWeightLabel = new JLabel();
         JLabel originBmiLabel = new JLabel();
+        JLabel trendLabel = new JLabel();
+        JLabel etaLabel = new JLabel();
+        JLabel scoreLabel = new JLabel();
         statsPanel.add(weightLabel);
         statsPanel.add(bmiLabel);
         statsPanel.add(originWeightLabel);
         statsPanel.add(originBmiLabel);
         statsPanel.add(changeLabel);
+        statsPanel.add(trendLabel);
+        statsPanel.add(etaLabel);
+        statsPanel.add(scoreLabel);
 
         // 表格区
         String[] columns = {"日期", "体重(kg)", "身高(cm)", "BMI", "等级"};
@@ -108,42 +120,39 @@ public class DataAnalysisPanel extends JPanel {
                 originWeightLabel.setText("");
                 originBmiLabel.setText("");
                 changeLabel.setText("");
+                trendLabel.setText("");
+                etaLabel.setText("");
+                scoreLabel.setText("");
                 table.setModel(new javax.swing.table.DefaultTableModel(new Object[0][0], columns));
                 return;
             }
-            List<DailyRecord> records = DatabaseManager.getDailyRecordsByUser(selectedUser.getName());
-            // 按日期升序
-            Collections.sort(records, java.util.Comparator.comparing(DailyRecord::getDate));
+            // 只取日期和体重，已按日期升序
+            List<WeightPoint> records = SessionContext.loadWeightPoints(selectedUser.getName());
             if (records.isEmpty()) {
                 weightLabel.setText("暂无每日记录");
                 bmiLabel.setText("");
                 originWeightLabel.setText("");
                 originBmiLabel.setText("");
                 changeLabel.setText("");
+                trendLabel.setText("");
+                etaLabel.setText("");
+                scoreLabel.setText("");
                 table.setModel(new javax.swing.table.DefaultTableModel(new Object[0][0], columns));
                 return;
             }
             // 最新体重、身高
-            DailyRecord latest = records.get(records.size() - 1);
+            WeightPoint latest = records.get(records.size() - 1);
             double latestWeight = latest.getWeight();
             double latestHeight = selectedUser.getHeight();
             // 原始体重、身高（改为用户档案中的weight和height）
             double originWeight = selectedUser.getWeight();
             double originHeight = selectedUser.getHeight();
             // BMI
-            double bmi = (latestHeight > 0) ? latestWeight / Math.pow(latestHeight / 100.0, 2) : 0.0;
-            String bmiLevel;
-            if (bmi < 18.5) bmiLevel = "偏瘦";
-            else if (bmi < 24.0) bmiLevel = "正常";
-            else if (bmi < 28.0) bmiLevel = "超重";
-            else bmiLevel = "肥胖";
+            double bmi = AnalyticsEngine.bmi(latestWeight, latestHeight);
+            String bmiLevel = AnalyticsEngine.bmiLevel(bmi);
             // 原始BMI（用档案体重和身高计算）
-            double originBmi = (originHeight > 0) ? originWeight / Math.pow(originHeight / 100.0, 2) : 0.0;
-            String originBmiLevel;
-            if (originBmi < 18.5) originBmiLevel = "偏瘦";
-            else if (originBmi < 24.0) originBmiLevel = "正常";
-            else if (originBmi < 28.0) originBmiLevel = "超重";
-            else originBmiLevel = "肥胖";
+            double originBmi = AnalyticsEngine.bmi(originWeight, originHeight);
+            String originBmiLevel = AnalyticsEngine.bmiLevel(originBmi);
             // 体重变化
             double change = latestWeight - originWeight;
             // 展示
@@ -152,24 +161,36 @@ public class DataAnalysisPanel extends JPanel {
             originWeightLabel.setText(String.format("原始体重：%.1f kg", originWeight));
             originBmiLabel.setText(String.format("原始BMI：%.2f（%s）", originBmi, originBmiLevel));
             changeLabel.setText(String.format("体重总变化：%+.1f kg", change));
-            // 表格数据
-            Object[][] data = new Object[records.size()][5];
+            // 趋势：移动平均、指数加权平均、最近30天每周变化，以及按当前趋势推算的目标达成日期
+            RollingStats trend = new RollingStats(selectedUser.getHeight());
+            for (WeightPoint r : records) {
+                trend.add(r.getDate(), r.getWeight(), 0);
+            }
+            RollingStats.Tracker wt = trend.weight();
+            trendLabel.setText(String.format(
+                "<html>7日均重：%.1f kg，30日均重：%.1f kg，加权趋势：%.1f kg，每周变化：%+.2f kg<br/>" +
+                "7日均BMI：%.2f，30日均BMI：%.2f，BMI每周变化：%+.2f</html>",
+                wt.ma7(), wt.ma30(), wt.ewma(), wt.weeklySlope(),
+                trend.bmi().ma7(), trend.bmi().ma30(), trend.bmi().weeklySlope()));
+            etaLabel.setText(goalEtaText(selectedUser, trend));
+            scoreLabel.setText(scoreText(HealthScorer.score(selectedUser)));
+            // 表格数据：同一身高，整列体重一次算出BMI和等级
+            int n = records.size();
+            double h = selectedUser.getHeight();
+            double[] weights = new double[n];
+            for (int i = 0; i < n; i++) weights[i] = records.get(i).getWeight();
+            double[] bmis = new double[n];
+            byte[] levels = new byte[n];
+            Bmi.compute(weights, h, bmis, n);
+            Bmi.categorize(bmis, levels, n);
+            Object[][] data = new Object[n][5];
             DateTimeFormatter fmt = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-            for (int i = 0; i < records.size(); i++) {
-                DailyRecord r = records.get(i);
-                double w = r.getWeight();
-                double h = selectedUser.getHeight();
-                double b = (h > 0) ? w / Math.pow(h / 100.0, 2) : 0.0;
-                String level;
-                if (b < 18.5) level = "偏瘦";
-                else if (b < 24.0) level = "正常";
-                else if (b < 28.0) level = "超重";
-                else level = "肥胖";
-                data[i][0] = r.getDate().format(fmt);
-                data[i][1] = String.format("%.1f", w);
+            for (int i = 0; i < n; i++) {
+                data[i][0] = records.get(i).getDate().format(fmt);
+                data[i][1] = String.format("%.1f", weights[i]);
                 data[i][2] = String.format("%.1f", h);
-                data[i][3] = String.format("%.2f", b);
-                data[i][4] = level;
+                data[i][3] = String.format("%.2f", bmis[i]);
+                data[i][4] = Bmi.name(levels[i]);
             }
             table.setModel(new javax.swing.table.DefaultTableModel(data, columns));
         };
@@ -209,7 +230,7 @@ public class DataAnalysisPanel extends JPanel {
         // 用户选择下拉框和刷新按钮
         JComboBox<UserProfile> userComboBox;
         if (service.SessionManager.isAdmin()) {
-            userComboBox = new JComboBox<>(DatabaseManager.getAllUserProfiles().toArray(new UserProfile[0]));
+            userComboBox = new JComboBox<>(SessionContext.loadAllUserProfiles().toArray(new UserProfile[0]));
             userComboBox.setEnabled(true);
         } else {
             UserProfile currentUserProfile = service.SessionManager.getCurrentProfile();
@@ -259,7 +280,7 @@ public class DataAnalysisPanel extends JPanel {
                 table.setModel(new javax.swing.table.DefaultTableModel(new Object[0][0], columns));
                 return;
             }
-            java.util.List<model.ExercisePlan> plans = DatabaseManager.getExercisePlansByUser(selectedUser.getName());
+            java.util.List<model.ExercisePlan> plans = SessionContext.loadExercisePlans(selectedUser.getName());
             if (plans == null || plans.isEmpty()) {
                 statsLabel.setText("暂无运动计划记录");
                 table.setModel(new javax.swing.table.DefaultTableModel(new Object[0][0], columns));
@@ -272,9 +293,11 @@ public class DataAnalysisPanel extends JPanel {
             java.time.LocalDate weekEnd = today.with(java.time.DayOfWeek.SUNDAY);
             java.time.LocalDate monthStart = today.withDayOfMonth(1);
             java.time.LocalDate monthEnd = today.with(java.time.temporal.TemporalAdjusters.lastDayOfMonth());
+            ExerciseStats[] stats = AnalyticsEngine.exerciseStats(selectedUser.getName(), plans,
+                AnalyticsEngine.Window.of(weekStart, weekEnd), AnalyticsEngine.Window.of(monthStart, monthEnd));
             String html = "<html>"
-                + getExerciseStats(plans, "本周", weekStart, weekEnd) + "<br>"
-                + getExerciseStats(plans, "本月", monthStart, monthEnd) + "</html>";
+                + formatExerciseStats(stats[0], "本周") + "<br>"
+                + formatExerciseStats(stats[1], "本月") + "</html>";
             statsLabel.setText(html);
             // 表格数据
             Object[][] data = new Object[plans.size()][6];
@@ -329,7 +352,7 @@ public class DataAnalysisPanel extends JPanel {
         // 用户选择下拉框和刷新按钮
         JComboBox<UserProfile> userComboBox;
         if (service.SessionManager.isAdmin()) {
-            userComboBox = new JComboBox<>(DatabaseManager.getAllUserProfiles().toArray(new UserProfile[0]));
+            userComboBox = new JComboBox<>(SessionContext.loadAllUserProfiles().toArray(new UserProfile[0]));
             userComboBox.setEnabled(true);
         } else {
             UserProfile currentUserProfile = service.SessionManager.getCurrentProfile();
@@ -382,7 +405,7 @@ public class DataAnalysisPanel extends JPanel {
                 table.setModel(new javax.swing.table.DefaultTableModel(new Object[0][0], columns));
                 return;
             }
-            List<DietRecord> records = DatabaseManager.getDietRecordsByUser(selectedUser.getName());
+            List<DietRecord> records = SessionContext.loadDietRecords(selectedUser.getName());
             if (records == null || records.isEmpty()) {
                 daysLabel.setText("暂无饮食记录");
                 freqLabel.setText("");
@@ -391,46 +414,24 @@ public class DataAnalysisPanel extends JPanel {
             }
             // 按日期升序
             records.sort(java.util.Comparator.comparing(DietRecord::getRecordDate));
-            // 统计天数
-            long days = records.stream().map(DietRecord::getRecordDate).distinct().count();
-            // 统计频率（以用户有记录的天数/总天数，若只有一条则为100%）
-            long totalDays = 1;
-            if (records.size() > 1) {
-                totalDays = java.time.temporal.ChronoUnit.DAYS.between(
-                    records.get(0).getRecordDate(),
-                    records.get(records.size() - 1).getRecordDate()
-                ) + 1;
-            }
-            double freq = totalDays > 0 ? (double) days / totalDays * 100 : 100.0;
-
-            // ===== 新增：本周、本月统计 =====
+            // 全部记录（首条到末条记录之间）、本周、本月（截至今天）的记录天数和频率
             java.time.LocalDate today = java.time.LocalDate.now();
-            // 本周
-            java.time.LocalDate weekStart = today.with(java.time.DayOfWeek.MONDAY);
-            long weekCount = records.stream()
-                .map(DietRecord::getRecordDate)
-                .filter(d -> !d.isBefore(weekStart) && !d.isAfter(today))
-                .distinct()
-                .count();
-            int weekDays = today.getDayOfWeek().getValue(); // 周一=1, 周日=7
-            double weekFreq = weekDays > 0 ? (weekCount * 100.0 / weekDays) : 0;
-
-            // 本月
-            java.time.LocalDate monthStart = today.withDayOfMonth(1);
-            long monthCount = records.stream()
-                .map(DietRecord::getRecordDate)
-                .filter(d -> !d.isBefore(monthStart) && !d.isAfter(today))
-                .distinct()
-                .count();
-            int monthDays = today.getDayOfMonth();
-            double monthFreq = monthDays > 0 ? (monthCount * 100.0 / monthDays) : 0;
+            DietStats[] stats = AnalyticsEngine.dietStats(selectedUser.getName(), records,
+                AnalyticsEngine.Window.of(records.get(0).getRecordDate(), records.get(records.size() - 1).getRecordDate()),
+                AnalyticsEngine.Window.of(today.with(java.time.DayOfWeek.MONDAY), today),
+                AnalyticsEngine.Window.of(today.withDayOfMonth(1), today));
+            DietStats all = stats[0];
+            DietStats week = stats[1];
+            DietStats month = stats[2];
 
             // 展示
             daysLabel.setText(String.format(
                 "<html>本周期饮食记录天数：%d天，本周期记录频率：%.1f%%<br/>" +
                 "本周饮食记录天数：%d天，本周记录频率：%.1f%%<br/>" +
                 "本月饮食记录天数：%d天，本月记录频率：%.1f%%</html>",
-                days, freq, weekCount, weekFreq, monthCount, monthFreq
+                all.getDaysWithRecords(), all.getRecordFrequency(),
+                week.getDaysWithRecords(), week.getRecordFrequency(),
+                month.getDaysWithRecords(), month.getRecordFrequency()
             ));
             freqLabel.setText(""); // freqLabel可留空或用于其他用途
             // 表格数据
@@ -473,24 +474,40 @@ public class DataAnalysisPanel extends JPanel {
         return panel;
     }
 
-    private String getExerciseStats(java.util.List<model.ExercisePlan> plans, String label, java.time.LocalDate start, java.time.LocalDate end) {
-        double totalPlan = 0.0, totalActual = 0.0;
-        java.util.Set<java.time.LocalDate> planDays = new java.util.HashSet<>();
-        java.util.Set<java.time.LocalDate> completedDays = new java.util.HashSet<>();
-        for (model.ExercisePlan plan : plans) {
-            java.time.LocalDate d = plan.getPlanDate();
-            if (d == null || d.isBefore(start) || d.isAfter(end)) continue;
-            planDays.add(d);
-            if (plan.getDuration() != null) totalPlan += plan.getDuration();
-            if (plan.isCompleted() && plan.getActualDuration() != null) {
-                totalActual += plan.getActualDuration();
-                completedDays.add(d);
-            }
+    /**
+     * 目标达成预测文字：已达到时直接说明，否则按当前趋势推算的日期，与档案中的目标日期比较
+     */
+    private String goalEtaText(UserProfile user, RollingStats trend) {
+        if (user.getTargetWeight() <= 0) return "未设置目标体重";
+        if (trend.goalReached(user.getWeight(), user.getTargetWeight())) {
+            return "当前体重已达到目标体重（" + user.getTargetWeight() + "kg）";
+        }
+        java.time.LocalDate eta = trend.projectGoal(user.getWeight(), user.getTargetWeight());
+        java.time.LocalDate target = user.getTargetDate();
+        String targetText = target != null ? "，目标日期：" + target : "";
+        if (eta == null) return "按当前趋势暂无法预计达成目标体重" + targetText;
+        if (target == null) return "预计达成目标体重：" + eta;
+        return "预计达成目标体重：" + eta + targetText + (eta.isAfter(target) ? "（落后于目标）" : "（按计划进行）");
+    }
+
+    /**
+     * 健康评分文字：评分、目标达成进度和建议
+     */
+    private String scoreText(model.HealthStats stats) {
+        if (stats == null) return "";
+        StringBuilder sb = new StringBuilder(String.format("<html>健康评分（%s至%s）：%s，目标达成进度：%.0f%%",
+            stats.getStartDate(), stats.getEndDate(), stats.getHealthScore(), stats.getGoalProgress()));
+        for (String r : stats.getRecommendations()) {
+            sb.append("<br/>· ").append(r);
         }
-        double rate = totalPlan > 0 ? (totalActual / totalPlan) * 100 : 0;
+        return sb.append("</html>").toString();
+    }
+
+    private String formatExerciseStats(ExerciseStats stats, String label) {
         return String.format(
             "%s计划总时长：%.1f小时，%s实际完成时长：%.1f小时，%s实际完成率：%.1f%%，%s计划天数：%d天，%s实际完成天数：%d天",
-            label, totalPlan, label, totalActual, label, rate, label, planDays.size(), label, completedDays.size()
+            label, stats.getTotalDuration(), label, stats.getTotalActualDuration(), label, stats.getActualCompletionRate(),
+            label, stats.getActiveDays(), label, stats.getCompletedDays()
         );
     }
 } 
\ No newline at end of file
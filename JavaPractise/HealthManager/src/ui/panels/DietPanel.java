@@ -2,7 +2,12 @@ package ui.panels;
 
 import model.DietRecord;
 import model.UserProfile;
+import model.UserSummary;
 import service.DatabaseManager;
+import service.RecordMerger;
+import service.SaveResult;
+import service.SessionContext;
+import ui.dialog.ConflictDialog;
 import javax.swing.*;
 import javax.swing.border.TitledBorder;
 import java.awt.*;
@@ -18,7 +23,7 @@ public class DietPanel extends JPanel {
     private static final long serialVersionUID = 1L;
 
     // 顶部：用户选择与操作按钮
-    private JComboBox<UserProfile> userComboBox;
+    private JComboBox<UserSummary> userComboBox;
     private JTextField dateField;
     private JButton addDietButton;
     private JButton deleteDietButton;
@@ -42,6 +47,7 @@ public class DietPanel extends JPanel {
     private JLabel statsLabel;
     private java.util.List<DietRecord> currentRecords = new java.util.ArrayList<>();
     private int editingDietId = -1;
+    private DietRecord editingBase; // 开始编辑时的记录，保存时用于版本检查和合并
 
     // 其它
     private static final String[] COMMON_FOODS = {
@@ -301,15 +307,15 @@ public class DietPanel extends JPanel {
     }
 
     private void refreshUserComboBox() {
-        UserProfile selectedUser = (UserProfile) userComboBox.getSelectedItem();
+        UserSummary selectedUser = (UserSummary) userComboBox.getSelectedItem();
         String selectedUserName = selectedUser != null ? selectedUser.getName() : null;
         if (service.SessionManager.isAdmin()) {
-            List<UserProfile> userList = DatabaseManager.getAllUserProfiles();
-            userComboBox.setModel(new DefaultComboBoxModel<>(userList.toArray(new UserProfile[0])));
+            List<UserSummary> userList = SessionContext.loadAllUserSummaries();
+            userComboBox.setModel(new DefaultComboBoxModel<>(userList.toArray(new UserSummary[0])));
             userComboBox.setEnabled(true);
             if (selectedUserName != null) {
                 for (int i = 0; i < userComboBox.getItemCount(); i++) {
-                    UserProfile user = userComboBox.getItemAt(i);
+                    UserSummary user = userComboBox.getItemAt(i);
                     if (user.getName().equals(selectedUserName)) {
                         userComboBox.setSelectedIndex(i);
                         break;
@@ -321,13 +327,12 @@ public class DietPanel extends JPanel {
         } else {
             UserProfile currentUserProfile = service.SessionManager.getCurrentProfile();
             if (currentUserProfile != null) {
-                List<UserProfile> userList = new java.util.ArrayList<>();
-                userList.add(currentUserProfile);
-                userComboBox.setModel(new DefaultComboBoxModel<>(userList.toArray(new UserProfile[0])));
-                userComboBox.setSelectedItem(currentUserProfile);
+                UserSummary self = UserSummary.of(currentUserProfile);
+                userComboBox.setModel(new DefaultComboBoxModel<>(new UserSummary[]{self}));
+                userComboBox.setSelectedItem(self);
                 userComboBox.setEnabled(false);
             } else {
-                userComboBox.setModel(new DefaultComboBoxModel<>(new UserProfile[0]));
+                userComboBox.setModel(new DefaultComboBoxModel<>(new UserSummary[0]));
                 userComboBox.setEnabled(false);
             }
         }
@@ -353,15 +358,16 @@ public class DietPanel extends JPanel {
         notesArea.setText("无特殊备注");
         dateField.setText(LocalDate.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd")));
         editingDietId = -1;
+        editingBase = null;
         saveButton.setText("保存");
         statusLabel.setText("表单已清空，请填写新饮食记录");
     }
 
     // 刷新表格
     private void refreshDietTable() {
-        UserProfile selected = (UserProfile) userComboBox.getSelectedItem();
+        UserSummary selected = (UserSummary) userComboBox.getSelectedItem();
         if (selected != null) {
-            currentRecords = DatabaseManager.getDietRecordsByUser(selected.getName());
+            currentRecords = SessionContext.loadDietRecords(selected.getName());
         } else {
             currentRecords = new java.util.ArrayList<>();
         }
@@ -373,6 +379,7 @@ public class DietPanel extends JPanel {
     private void fillFormWithRecord(DietRecord record) {
         if (record == null) return;
         editingDietId = record.getId();
+        editingBase = record;
         // 早餐
         fillMealForm(breakfastChecks, breakfastOther, breakfastNone, record.getBreakfast());
         // 午餐
@@ -436,7 +443,7 @@ public class DietPanel extends JPanel {
 
     // 保存/修改饮食记录
     private void saveDietRecord() {
-        UserProfile selectedUser = (UserProfile) userComboBox.getSelectedItem();
+        UserSummary selectedUser = (UserSummary) userComboBox.getSelectedItem();
         if (selectedUser == null) {
             JOptionPane.showMessageDialog(this, "请先选择用户", "提示", JOptionPane.WARNING_MESSAGE);
             return;
@@ -484,14 +491,36 @@ public class DietPanel extends JPanel {
             return;
         }
         boolean success;
+        String successMessage = editingDietId != -1 ? "饮食记录修改成功！" : "饮食记录保存成功！";
         if (editingDietId != -1) {
+            // 按版本号检查，他人同时修改了不同字段时自动合并
             record.setId(editingDietId);
-            success = DatabaseManager.updateDietRecord(record);
+            record.setVersion(editingBase != null ? editingBase.getVersion() : 0);
+            SaveResult<DietRecord> result = RecordMerger.updateDietRecord(editingBase, record);
+            if (result.isConflict()) {
+                if (!ConflictDialog.confirmOverwrite(this, result)) {
+                    // 放弃本次修改，重新加载最新数据
+                    clearForm();
+                    refreshDietTable();
+                    return;
+                }
+                record.setVersion(result.getCurrent().getVersion());
+                result = DatabaseManager.updateDietRecord(record);
+            }
+            success = result.isSuccess();
+            if (result.getStatus() == SaveResult.Status.MERGED) {
+                successMessage = result.getMessage();
+            } else if (!success && result.getStatus() == SaveResult.Status.NOT_FOUND) {
+                JOptionPane.showMessageDialog(this, result.getMessage(), "错误", JOptionPane.ERROR_MESSAGE);
+                clearForm();
+                refreshDietTable();
+                return;
+            }
         } else {
             success = DatabaseManager.insertDietRecord(record);
         }
         if (success) {
-            JOptionPane.showMessageDialog(this, editingDietId != -1 ? "饮食记录修改成功！" : "饮食记录保存成功！", "成功", JOptionPane.INFORMATION_MESSAGE);
+            JOptionPane.showMessageDialog(this, successMessage, "成功", JOptionPane.INFORMATION_MESSAGE);
             clearForm();
             refreshDietTable();
         } else {
@@ -2,7 +2,12 @@ package ui.panels;
 
 import model.ExercisePlan;
 import model.UserProfile;
+import model.UserSummary;
 import service.DatabaseManager;
+import service.RecordMerger;
+import service.SaveResult;
+import service.SessionContext;
+import ui.dialog.ConflictDialog;
 import javax.swing.*;
 import javax.swing.border.TitledBorder;
 //import javax.swing.table.DefaultCellEditor;
@@ -36,7 +41,7 @@ public class ExercisePlanPanel extends JPanel {
     private static final long serialVersionUID = 1L;
     
     // ==================== 用户选择组件 ====================
-    private JComboBox<UserProfile> userComboBox;    // 用户下拉选择框
+    private JComboBox<UserSummary> userComboBox;    // 用户下拉选择框
     private JButton refreshBtn;                     // 刷新按钮
     private JButton addPlanButton;                  // 新增计划按钮
     private JButton deletePlanButton;               // 删除计划按钮
@@ -468,17 +473,17 @@ public class ExercisePlanPanel extends JPanel {
      * 同时保持当前选中状态（如果可能）
      */
     private void refreshUserComboBox() {
-        UserProfile currentSelected = (UserProfile) userComboBox.getSelectedItem();
+        UserSummary currentSelected = (UserSummary) userComboBox.getSelectedItem();
         userComboBox.removeAllItems();
         if (service.SessionManager.isAdmin()) {
-            List<UserProfile> profiles = DatabaseManager.getAllUserProfiles();
-            for (UserProfile profile : profiles) {
+            List<UserSummary> profiles = SessionContext.loadAllUserSummaries();
+            for (UserSummary profile : profiles) {
                 userComboBox.addItem(profile);
             }
             userComboBox.setEnabled(true);
             if (currentSelected != null) {
                 for (int i = 0; i < userComboBox.getItemCount(); i++) {
-                    UserProfile profile = userComboBox.getItemAt(i);
+                    UserSummary profile = userComboBox.getItemAt(i);
                     if (profile.getName().equals(currentSelected.getName())) {
                         userComboBox.setSelectedIndex(i);
                         break;
@@ -488,8 +493,9 @@ public class ExercisePlanPanel extends JPanel {
         } else {
             UserProfile currentUserProfile = service.SessionManager.getCurrentProfile();
             if (currentUserProfile != null) {
-                userComboBox.addItem(currentUserProfile);
-                userComboBox.setSelectedItem(currentUserProfile);
+                UserSummary self = UserSummary.of(currentUserProfile);
+                userComboBox.addItem(self);
+                userComboBox.setSelectedItem(self);
                 userComboBox.setEnabled(false);
             }
         }
@@ -549,7 +555,7 @@ public class ExercisePlanPanel extends JPanel {
      */
     private void saveExercisePlan() {
         // 验证用户选择
-        UserProfile selectedUser = (UserProfile) userComboBox.getSelectedItem();
+        UserSummary selectedUser = (UserSummary) userComboBox.getSelectedItem();
         if (selectedUser == null) {
             JOptionPane.showMessageDialog(this, "请先选择用户", "提示", JOptionPane.WARNING_MESSAGE);
             return;
@@ -685,14 +691,39 @@ public class ExercisePlanPanel extends JPanel {
         
         // 保存到数据库
         boolean success;
+        String successMessage = editingPlanId == -1 ? "运动计划保存成功" : "运动计划更新成功";
         if (editingPlanId == -1) {
             success = DatabaseManager.insertExercisePlan(plan);
         } else {
-            success = DatabaseManager.updateExercisePlan(plan);
+            // 按版本号检查，他人同时修改了不同字段时自动合并（originalPlan为开始编辑时的计划）
+            plan.setVersion(originalPlan != null ? originalPlan.getVersion() : 0);
+            SaveResult<ExercisePlan> result = RecordMerger.updateExercisePlan(originalPlan, plan);
+            if (result.isConflict()) {
+                if (!ConflictDialog.confirmOverwrite(this, result)) {
+                    // 放弃本次修改，重新加载最新数据
+                    clearForm();
+                    refreshPlanTable();
+                    hasUnsavedChanges = false;
+                    statusLabel.setText("已放弃修改并重新加载");
+                    return;
+                }
+                plan.setVersion(result.getCurrent().getVersion());
+                result = DatabaseManager.updateExercisePlan(plan);
+            }
+            if (result.getStatus() == SaveResult.Status.NOT_FOUND) {
+                JOptionPane.showMessageDialog(this, result.getMessage(), "错误", JOptionPane.ERROR_MESSAGE);
+                clearForm();
+                refreshPlanTable();
+                return;
+            }
+            success = result.isSuccess();
+            if (result.getStatus() == SaveResult.Status.MERGED) {
+                successMessage = result.getMessage();
+            }
         }
         
         if (success) {
-            statusLabel.setText(editingPlanId == -1 ? "运动计划保存成功" : "运动计划更新成功");
+            statusLabel.setText(successMessage);
             clearForm();
             refreshPlanTable();
             hasUnsavedChanges = false;
@@ -718,6 +749,12 @@ public class ExercisePlanPanel extends JPanel {
      * @param plan 要编辑的运动计划对象
      */
     private void fillFormWithPlan(ExercisePlan plan) {
+        // 表格中切换过完成状态的计划版本号已过期，写入队列后按ID重新读取作为编辑的起点
+        service.PlanCompletionQueue.flush();
+        ExercisePlan latest = DatabaseManager.getExercisePlanById(plan.getId());
+        if (latest != null) {
+            plan = latest;
+        }
         for (JCheckBox cb : exerciseTypeChecks) {
             cb.setSelected(false);
         }
@@ -768,6 +805,7 @@ public class ExercisePlanPanel extends JPanel {
         originalPlan.setIntensity(plan.getIntensity());
         originalPlan.setNotes(plan.getNotes());
         originalPlan.setCompleted(plan.isCompleted());
+        originalPlan.setVersion(plan.getVersion());
         hasUnsavedChanges = false;
     }
     
@@ -810,6 +848,9 @@ public class ExercisePlanPanel extends JPanel {
                 ExercisePlan plan = currentPlans.get(row);
                 boolean newValue = (Boolean) value;
                 if (plan.isCompleted() != newValue) {
+                    // 写库失败时恢复为修改前的状态
+                    boolean oldCompleted = plan.isCompleted();
+                    Double oldActualDuration = plan.getActualDuration();
                     // 新增：检查计划日期是否为未来日期
                     if (newValue && plan.getPlanDate().isAfter(LocalDate.now())) {
                         JOptionPane.showMessageDialog(ExercisePlanPanel.this,
@@ -874,30 +915,42 @@ public class ExercisePlanPanel extends JPanel {
                     }
                     
                     plan.setCompleted(newValue);
-                    // 立即更新数据库
-                    if (DatabaseManager.updateExercisePlan(plan)) {
-                        // 通过SwingUtilities.invokeLater确保在EDT中执行UI更新
-                        javax.swing.SwingUtilities.invokeLater(() -> {
-                            statusLabel.setText("完成状态已更新");
-                            fireTableDataChanged(); // 刷新整个表格以显示实际时长变化
-                        });
-                    } else {
-                        // 更新失败，恢复原状态
-                        plan.setCompleted(!newValue);
-                        // 恢复实际时长（如果是从完成状态取消，需要恢复原值）
-                        if (!newValue) {
-                            // 这里需要恢复原来的实际时长，但由于我们已经清空了，暂时保持null
-                            // 在实际应用中，可能需要保存原始值
-                        }
-                        javax.swing.SwingUtilities.invokeLater(() -> {
-                            JOptionPane.showMessageDialog(ExercisePlanPanel.this, 
-                                "更新完成状态失败，请重试", "更新失败", JOptionPane.ERROR_MESSAGE);
-                        });
-                    }
+                    // 放入写入队列：先记入本地日志，连续切换只写最后一次，稍后批量写库，写库后回调结果
+                    int planId = plan.getId();
+                    service.PlanCompletionQueue.submit(planId, newValue, plan.getActualDuration(),
+                        ok -> javax.swing.SwingUtilities.invokeLater(() -> completionFlushed(planId, ok, oldCompleted, oldActualDuration)));
+                    // 通过SwingUtilities.invokeLater确保在EDT中执行UI更新
+                    javax.swing.SwingUtilities.invokeLater(() -> {
+                        statusLabel.setText("完成状态已提交，正在保存");
+                        fireTableDataChanged(); // 刷新整个表格以显示实际时长变化
+                    });
                 }
                 fireTableCellUpdated(row, col);
             }
         }
+
+        /**
+         * 完成状态写库后的回调（在EDT中执行）：失败时把该计划恢复为修改前的状态并提示
+         */
+        private void completionFlushed(int planId, boolean ok, boolean oldCompleted, Double oldActualDuration) {
+            if (ok) {
+                statusLabel.setText("完成状态已更新");
+                return;
+            }
+            for (ExercisePlan p : currentPlans) {
+                if (p.getId() == planId) {
+                    p.setCompleted(oldCompleted);
+                    p.setActualDuration(oldActualDuration);
+                }
+            }
+            fireTableDataChanged();
+            updateStatsLabel();
+            statusLabel.setText("完成状态保存失败");
+            JOptionPane.showMessageDialog(ExercisePlanPanel.this,
+                "完成状态保存失败，已恢复为修改前的状态，请稍后重试",
+                "数据库错误",
+                JOptionPane.ERROR_MESSAGE);
+        }
     }
     
     /**
@@ -909,9 +962,11 @@ public class ExercisePlanPanel extends JPanel {
      * - 更新统计信息显示
      */
     private void refreshPlanTable() {
-        UserProfile selected = (UserProfile) userComboBox.getSelectedItem();
+        // 先写入队列中的完成状态，保证重新加载后看到的是刚刚切换的状态
+        service.PlanCompletionQueue.flush();
+        UserSummary selected = (UserSummary) userComboBox.getSelectedItem();
         if (selected != null) {
-            currentPlans = DatabaseManager.getExercisePlansByUser(selected.getName());
+            currentPlans = SessionContext.loadExercisePlans(selected.getName());
         } else {
             currentPlans = new java.util.ArrayList<>();
         }
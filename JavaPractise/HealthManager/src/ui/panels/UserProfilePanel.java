@@ -10,9 +10,13 @@ import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
 import service.DatabaseManager;
+import service.HealthScorer;
+import service.SessionContext;
 import service.SessionManager;
+import model.Bmi;
 import model.UserProfile;
 import ui.dialog.AddUserDialog;
+import ui.dialog.ConflictDialog;
 import ui.dialog.ResetPasswordDialog;
 
 /**
@@ -562,8 +566,8 @@ public class UserProfilePanel extends JPanel {
                 
                 if (heightResult.isValid() && weightResult.isValid()) {
                     // 计算BMI
-                    double bmi = weight / ((height / 100) * (height / 100));
-                    String category = getBMICategory(bmi);
+                    double bmi = Bmi.of(weight, height);
+                    String category = Bmi.categoryName(bmi);
                     Color categoryColor = getBMIColor(bmi);
                     
                     bmiLabel.setText(String.format("BMI: %.1f", bmi));
@@ -571,8 +575,8 @@ public class UserProfilePanel extends JPanel {
                     categoryLabel.setForeground(categoryColor);
                     
                     // 计算理想体重范围
-                    double minIdeal = 18.5 * (height / 100) * (height / 100);
-                    double maxIdeal = 24.0 * (height / 100) * (height / 100);
+                    double minIdeal = Bmi.idealWeightMin(height);
+                    double maxIdeal = Bmi.idealWeightMax(height);
                     idealWeightLabel.setText(String.format("理想体重: %.0f-%.0f kg", minIdeal, maxIdeal));
                 } else {
                     // 清空BMI显示
@@ -679,10 +683,31 @@ public class UserProfilePanel extends JPanel {
                     currentProfile = profile;
                     updateStatusLabels();
                     // 新增或更新数据库
+                    String mergedNote = "";
                     if (userComboBox.getSelectedItem() instanceof UserProfile) {
-                        // 编辑：更新已有用户
-                        profile.setId(((UserProfile) userComboBox.getSelectedItem()).getId());
-                        service.DatabaseManager.updateUserProfile(profile);
+                        // 编辑：更新已有用户（按版本号检查，他人同时修改了不同字段时自动合并）
+                        UserProfile base = (UserProfile) userComboBox.getSelectedItem();
+                        profile.setId(base.getId());
+                        profile.setVersion(base.getVersion());
+                        service.SaveResult<UserProfile> result = service.RecordMerger.updateUserProfile(base, profile);
+                        if (result.isConflict()) {
+                            if (!ConflictDialog.confirmOverwrite(this, result)) {
+                                // 放弃本次修改，重新加载最新档案
+                                refreshUserComboBox();
+                                return;
+                            }
+                            profile.setVersion(result.getCurrent().getVersion());
+                            result = service.DatabaseManager.updateUserProfile(profile);
+                        }
+                        if (!result.isSuccess()) {
+                            JOptionPane.showMessageDialog(this, "保存失败：" + result.getMessage(),
+                                "保存错误", JOptionPane.ERROR_MESSAGE);
+                            refreshUserComboBox();
+                            return;
+                        }
+                        if (result.getStatus() == service.SaveResult.Status.MERGED) {
+                            mergedNote = "\n\n" + result.getMessage();
+                        }
                     } else {
                         // 新增：插入新用户
                         service.DatabaseManager.insertUserProfile(profile);
@@ -692,7 +717,7 @@ public class UserProfilePanel extends JPanel {
                     String successMessage = "成功: 用户信息保存成功！\n\n" +
                                           "基本信息已验证通过\n" +
                                           "所有数值都在合理范围内\n" +
-                                          "数据格式正确";
+                                          "数据格式正确" + mergedNote;
                     if (profile.getHeight() > 0 && profile.getWeight() > 0) {
                         successMessage += String.format("\n\n您的BMI指数：%.1f (%s)", 
                                                        profile.calculateBMI(), 
@@ -978,7 +1003,7 @@ public class UserProfilePanel extends JPanel {
             userComboBox.removeActionListener(l);
         }
         if (service.SessionManager.isAdmin()) {
-            userList = service.DatabaseManager.getAllUserProfiles();
+            userList = SessionContext.loadAllUserProfiles();
             userComboBox.setModel(new DefaultComboBoxModel<>(userList.toArray(new UserProfile[0])));
             userComboBox.setEnabled(true);
             userComboBox.setVisible(true);
@@ -989,7 +1014,7 @@ public class UserProfilePanel extends JPanel {
             UserProfile currentUserProfile = service.SessionManager.getCurrentProfile();
             if (currentUserProfile != null) {
                 // 从数据库获取最新档案
-                UserProfile dbProfile = service.DatabaseManager.getUserProfileByName(currentUserProfile.getName());
+                UserProfile dbProfile = SessionContext.loadUserProfileByName(currentUserProfile.getName());
                 userList = new java.util.ArrayList<>();
                 userList.add(dbProfile);
                 userComboBox.setModel(new DefaultComboBoxModel<>(new UserProfile[]{dbProfile}));
@@ -1109,13 +1134,12 @@ public class UserProfilePanel extends JPanel {
             if (!weightText.isEmpty() && !targetText.isEmpty()) {
                 double currentWeight = Double.parseDouble(weightText);
                 double targetWeight = Double.parseDouble(targetText);
-                double weightDiff = Math.abs(currentWeight - targetWeight);
                 
                 // 健康减重速度：0.5kg/周，增重速度：0.3kg/周
-                double weeklyRate = targetWeight < currentWeight ? 0.5 : 0.3;
-                int weeksNeeded = (int) Math.ceil(weightDiff / weeklyRate);
+                double weeklyRate = HealthScorer.weeklyRate(currentWeight, targetWeight);
+                int weeksNeeded = HealthScorer.weeksNeeded(currentWeight, targetWeight);
                 
-                LocalDate suggestedDate = LocalDate.now().plusWeeks(weeksNeeded);
+                LocalDate suggestedDate = HealthScorer.suggestedTargetDate(currentWeight, targetWeight, LocalDate.now());
                 targetDateField.setText(suggestedDate.format(DateTimeFormatter.ofPattern("yyyy-MM-dd")));
                 
                 if (showDialog) {
@@ -1135,23 +1159,14 @@ public class UserProfilePanel extends JPanel {
         }
     }
     
-    /**
-     * 获取BMI分类
-     */
-    private String getBMICategory(double bmi) {
-        if (bmi < 18.5) return "偏瘦";
-        if (bmi < 24.0) return "正常";
-        if (bmi < 28.0) return "超重";
-        return "肥胖";
-    }
-    
     /**
      * 获取BMI对应的颜色
      */
     private Color getBMIColor(double bmi) {
-        if (bmi < 18.5) return Color.RED;           // 偏瘦
-        if (bmi < 24.0) return new Color(0, 150, 0); // 正常（绿色）
-        if (bmi < 28.0) return Color.ORANGE;        // 超重（橙色）
-        return Color.RED;                           // 肥胖
+        switch (Bmi.category(bmi)) {
+            case Bmi.NORMAL: return new Color(0, 150, 0); // 正常（绿色）
+            case Bmi.OVERWEIGHT: return Color.ORANGE;     // 超重（橙色）
+            default: return Color.RED;                    // 偏瘦、肥胖
+        }
     }
 } 
\ No newline at end of file